@@ -0,0 +1,70 @@
+package spaceblaster.gui;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceblaster.model.BenchmarkWorlds;
+import spaceblaster.model.FrameSnapshot;
+import spaceblaster.model.World;
+
+/**
+ * Drawing the play screen, as PlayingPanel.paintComponent(Graphics g) does, into an off-screen
+ * BufferedImage with headless AWT. The snapshot is of a world stepped once, so the entities are
+ * interpolated between two positions as they are while playing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	@Param({"64", "512", "4096"})
+	int entities;
+
+	private FrameSnapshot frame;
+	private SnapshotRenderer renderer;
+	private BufferedImage image;
+	private Graphics2D g2;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		World world = BenchmarkWorlds.build(entities);
+		world.step();
+		frame = new FrameSnapshot(entities+1);
+		frame.capture(world);
+		renderer = new SnapshotRenderer(GameFrame.BOTTOM_BAR_HEIGHT);
+		image = new BufferedImage(BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT, BufferedImage.TYPE_INT_RGB);
+		g2 = image.createGraphics();
+		g2.setFont(new Font(Font.DIALOG, Font.PLAIN, 12));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		g2.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paint(){
+		renderer.draw(g2, BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT, frame, 0.5);
+		return image;
+	}
+
+}
@@ -0,0 +1,85 @@
+package spaceblaster.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
+import spaceblaster.model.entities.Player;
+
+/**
+ * Builds the worlds the benchmarks run on, without a window: the default waves with every image of
+ * the game loaded, filled with enemies and lasers spread over the screen. The same number of entities
+ * always gives the same world.
+ */
+public class BenchmarkWorlds {
+
+	public static final int WIDTH = 1000;
+	public static final int HEIGHT = 650;
+	public static final long SEED = 1234L;
+
+	private BenchmarkWorlds() {
+	}
+
+	/**
+	 * Creates a builder with the default waves and every image of the game.
+	 * @return
+	 */
+	public static WorldBuilder builder(){
+		AssetCache images = new AssetCache(new ImageLoader(), Long.MAX_VALUE);
+		Game.registerImages(images);
+		return new WorldBuilder(images, null, WorldBuilder.loadWaves(null));
+	}
+
+	/**
+	 * Builds a world with half the entities as enemies over the top half of the screen and half as
+	 * the player's lasers over the bottom half, flying up into them. The player cannot be destroyed,
+	 * so the world can be stepped for as long as a benchmark needs.
+	 * @param entities The number of entities, not counting the player.
+	 * @return World The world.
+	 */
+	public static World build(int entities){
+		World w = builder().build(WIDTH, HEIGHT, SEED);
+		Player p = w.getPlayer();
+		p.setMaxHealth(Integer.MAX_VALUE/2);
+		p.setHealth(Integer.MAX_VALUE/2);
+		p.setX(WIDTH/2);
+		p.setY(HEIGHT-100);
+		LevelGenorator gen = w.getLevelGenorator();
+		Random r = new Random(SEED);
+		for(int i = 0; i<entities/2; i++){
+			w.addShip(gen.getEnemy(i%gen.getEnemyCount()).getCopy(r.nextInt(WIDTH), r.nextInt(HEIGHT/2)));
+			w.addProjectile(p.getNewLaser(r.nextInt(WIDTH), HEIGHT/2+r.nextInt(HEIGHT/2), 2.0, 0.0));
+		}
+		return w;
+	}
+
+	/**
+	 * Writes the state of a world, see World.writeState(DataOutput out).
+	 * @param w The world.
+	 * @return byte[] The state.
+	 * @throws IOException If it cannot be written.
+	 */
+	public static byte[] save(World w) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		w.writeState(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Puts a world back to a state written by save(World w).
+	 * @param w The world.
+	 * @param state The state.
+	 * @throws IOException If it cannot be read.
+	 */
+	public static void restore(World w, byte[] state) throws IOException{
+		w.readState(new DataInputStream(new ByteArrayInputStream(state)));
+	}
+
+}
@@ -0,0 +1,46 @@
+package spaceblaster.model;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The projectile and ship collision loop on its own: the broadphase and the narrow phase of a tick,
+ * see World.collide(). Neither changes the entities, so the same world is collided over and over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class CollisionBenchmark {
+
+	@Param({"64", "512", "4096"})
+	int entities;
+
+	private World world;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		world = BenchmarkWorlds.build(entities);
+		world.prepareTick();
+	}
+
+	@Benchmark
+	public void collide(){
+		world.collide();
+	}
+
+}
@@ -0,0 +1,74 @@
+package spaceblaster.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceblaster.model.entities.Entity;
+
+/**
+ * LevelGenorator.getNewEntities(), called every tick of a whole level until every enemy of the
+ * level has spawned. The spawned enemies are released straight away, as if they had left the world.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LevelGenoratorBenchmark {
+
+	@Param({"1", "8", "15"})
+	int level;
+
+	private LevelGenorator gen;
+	private byte[] start;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException{
+		gen = BenchmarkWorlds.builder().build(BenchmarkWorlds.WIDTH, BenchmarkWorlds.HEIGHT, BenchmarkWorlds.SEED).getLevelGenorator();
+		while(gen.getLevel()<level){
+			gen.updateLevel(0);
+		}
+		gen.getRemainingSpawns();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		gen.writeState(out);
+		out.flush();
+		start = bytes.toByteArray();
+	}
+
+	@Setup(Level.Invocation)
+	public void rewind() throws IOException{
+		gen.readState(new DataInputStream(new ByteArrayInputStream(start)));
+	}
+
+	@Benchmark
+	public int level(){
+		int spawned = 0;
+		while(gen.getRemainingSpawns()>0){
+			for(Entity e: gen.getNewEntities()){
+				e.release();
+				spawned++;
+			}
+		}
+		return spawned;
+	}
+
+}
@@ -0,0 +1,82 @@
+package spaceblaster.model;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceblaster.model.entities.Entity;
+
+/**
+ * The tick the PlayingThread runs: World.step(), with the view's listener capturing a FrameSnapshot
+ * at the end of every tick. Each invocation starts from the same world and runs a second of ticks,
+ * so the entities do not drift off the screen over the course of a run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TickBenchmark {
+
+	private static final int TICKS = GameClock.TICKS_PER_SECOND;
+
+	@Param({"64", "512", "4096"})
+	int entities;
+
+	@Param({"false", "true"})
+	boolean parallel;
+
+	private World world;
+	private byte[] start;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException{
+		world = BenchmarkWorlds.build(entities);
+		if(parallel){
+			world.setForkJoinPool(ForkJoinPool.commonPool());
+		}
+		final FrameSnapshot snapshot = new FrameSnapshot(entities+1);
+		world.addListener(new WorldListener() {
+			public void tickFinished(World w) {
+				snapshot.capture(w);
+			}
+			public void entityAdded(Entity e) {
+			}
+			public void entityRemoved(Entity e) {
+			}
+			public void levelChanged(int level) {
+			}
+		});
+		start = BenchmarkWorlds.save(world);
+	}
+
+	@Setup(Level.Invocation)
+	public void rewind() throws IOException{
+		BenchmarkWorlds.restore(world, start);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public long tick(){
+		for(int i = 0; i<TICKS; i++){
+			world.step();
+		}
+		return world.getTickCount();
+	}
+
+}
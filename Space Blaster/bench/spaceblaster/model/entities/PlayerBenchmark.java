@@ -0,0 +1,54 @@
+package spaceblaster.model.entities;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceblaster.model.BenchmarkWorlds;
+import spaceblaster.model.entities.Player.Acceleration;
+
+/**
+ * Player.update(), with the player speeding up, slowing down and turning around every so often,
+ * so every branch of it is taken.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PlayerBenchmark {
+
+	// the accelerations cycled through, a new one every 32 updates, y a step behind x
+	private static final Acceleration[] ACCELERATIONS = {
+		Acceleration.Positive, Acceleration.Zeroing, Acceleration.Negative, Acceleration.Zeroing
+	};
+
+	private Player player;
+	private int updates;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		player = BenchmarkWorlds.build(0).getPlayer();
+	}
+
+	@Benchmark
+	public double update(){
+		int phase = updates++>>5;
+		player.setXAcceleration(ACCELERATIONS[phase & 3]);
+		player.setYAcceleration(ACCELERATIONS[(phase+3) & 3]);
+		player.update();
+		return player.getXVelocity()+player.getYVelocity();
+	}
+
+}
@@ -0,0 +1,82 @@
+package spaceblaster.model.entities;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import spaceblaster.model.collision.CollisionLayer;
+
+/**
+ * The ProjectileKernels on a store of lasers spread over and around the screen, a third fired by the
+ * player and the rest by enemies. Only the scalar kernel is run unless the benchmarks are built and
+ * run with the vector profile as well, mvn -Pjmh,vector verify, which also runs the vector kernel,
+ * in forks with the incubator module. Run from the jar, that is
+ * -p kernel=scalar,vector -jvmArgsAppend "-Djava.awt.headless=true --add-modules jdk.incubator.vector".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ProjectileKernelBenchmark {
+
+	public static final int WIDTH = 1000;
+	public static final int HEIGHT = 650;
+
+	@Param({"scalar"})
+	String kernel;
+
+	@Param({"512", "4096", "32768"})
+	int projectiles;
+
+	private ProjectileKernel k;
+	private EntityStore store;
+	private int[] results;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		k = ProjectileKernel.forName(kernel);
+		if(k==null){
+			throw new IllegalStateException("No "+kernel+" kernel, build with -Pvector and run with --add-modules jdk.incubator.vector");
+		}
+		Random r = new Random(1234L);
+		Laser laser = new Laser(0, 0, 2.0, 0.0, 1, false, null, null);
+		store = new EntityStore(projectiles);
+		for(int i = 0; i<projectiles; i++){
+			Laser l = laser.getCopy(r.nextInt(WIDTH+200)-100, r.nextInt(HEIGHT+200)-100, 0.5+r.nextDouble()*3.5, r.nextDouble()*Math.PI*2);
+			l.setIsFromPlayer(i%3==0);
+			store.add(l);
+		}
+		results = new int[projectiles];
+	}
+
+	/**
+	 * Moves every projectile. The lasers drift off over the run, which does not change how long
+	 * moving them takes.
+	 */
+	@Benchmark
+	public void integrate(){
+		k.integrate(store, 0, store.size());
+	}
+
+	@Benchmark
+	public int[] classify(){
+		k.classify(store, 0, store.size(), WIDTH, HEIGHT, -64, CollisionLayer.ENEMY | CollisionLayer.ENEMY_LASER,
+				CollisionLayer.PLAYER | CollisionLayer.PLAYER_LASER, WIDTH/2-20, HEIGHT-120, 40, 40, results);
+		return results;
+	}
+
+}
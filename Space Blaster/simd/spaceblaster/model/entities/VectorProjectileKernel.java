@@ -0,0 +1,139 @@
+package spaceblaster.model.entities;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A ProjectileKernel that runs its loops as many projectiles at a time as the widest vectors of the
+ * machine hold doubles, with the incubating Vector API of Java 17. Only built by the vector profile,
+ * and only loaded with --add-modules jdk.incubator.vector, see ProjectileKernel.getDefault().
+ *
+ * Positions and velocities are doubles and sizes, layers and flags are ints, so the ints are worked
+ * on in vectors half as wide, with the same number of lanes. Java 17 only compiles some conversions
+ * between the two to vector instructions: ints to doubles, and longs to ints, but not doubles to
+ * ints or masks between lanes of different sizes. So masks of doubles become masks of ints through
+ * longs, see toInts(VectorMask m), and the box test, which cuts positions down to whole pixels, is
+ * left to the scalar loop for the few projectiles close enough to the box to hit it. The projectiles
+ * left over at the end of a range are done by the scalar loops too. Every lane ends up with exactly
+ * what the scalar loop gives, so the results are the same to the bit.
+ */
+public class VectorProjectileKernel extends ProjectileKernel {
+
+	private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> I = VectorSpecies.of(int.class, VectorShape.forBitSize(D.vectorBitSize()/2));
+	private static final VectorSpecies<Long> L = VectorSpecies.of(long.class, D.vectorShape());
+
+	/**
+	 * Creates a new kernel.
+	 * @throws IllegalStateException If the vectors of this machine are too narrow to be worth using.
+	 */
+	public VectorProjectileKernel() {
+		if(D.length()<2 || I.length()!=D.length()){
+			throw new IllegalStateException("No vector shape holds more than one double");
+		}
+	}
+
+	@Override
+	public void integrate(EntityStore s, int from, int to){
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vx = s.vx;
+		double[] vy = s.vy;
+		double[] lastX = s.lastX;
+		double[] lastY = s.lastY;
+		int[] flags = s.flags;
+		int i = from;
+		int upper = from+D.loopBound(to-from);
+		for(; i<upper; i += D.length()){
+			DoubleVector px = DoubleVector.fromArray(D, x, i);
+			DoubleVector py = DoubleVector.fromArray(D, y, i);
+			px.intoArray(lastX, i);
+			py.intoArray(lastY, i);
+			VectorMask<Double> mobile = IntVector.fromArray(I, flags, i).and(EntityStore.MOBILE)
+					.convertShape(VectorOperators.I2D, D, 0).compare(VectorOperators.NE, 0);
+			px.add(DoubleVector.fromArray(D, vx, i), mobile).intoArray(x, i);
+			py.add(DoubleVector.fromArray(D, vy, i), mobile).intoArray(y, i);
+		}
+		super.integrate(s, i, to);
+	}
+
+	@Override
+	public void classify(EntityStore s, int from, int to, int width, int height, int top, int boxLayers, int searchLayers,
+			int left, int boxTop, int w, int h, int[] results){
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vy = s.vy;
+		int[] halfWidth = s.halfWidth;
+		int[] halfHeight = s.halfHeight;
+		int[] layer = s.layer;
+		boolean box = w>0 && h>0;
+		if(box && ((long)left+w!=left+w || (long)boxTop+h!=boxTop+h)){
+			// the edges of the box overflow, which only the scalar loop gets right
+			super.classify(s, from, to, width, height, top, boxLayers, searchLayers, left, boxTop, w, h, results);
+			return;
+		}
+		int i = from;
+		int upper = from+D.loopBound(to-from);
+		for(; i<upper; i += D.length()){
+			DoubleVector px = DoubleVector.fromArray(D, x, i);
+			DoubleVector py = DoubleVector.fromArray(D, y, i);
+			IntVector l = IntVector.fromArray(I, layer, i);
+			DoubleVector dhw = (DoubleVector)IntVector.fromArray(I, halfWidth, i).convertShape(VectorOperators.I2D, D, 0);
+			DoubleVector dhh = (DoubleVector)IntVector.fromArray(I, halfHeight, i).convertShape(VectorOperators.I2D, D, 0);
+
+			VectorMask<Double> inside = px.add(dhw).compare(VectorOperators.GT, 0)
+					.and(px.sub(dhw).compare(VectorOperators.LT, width))
+					.and(py.compare(VectorOperators.LT, height));
+			VectorMask<Double> outside = inside.not().or(py.add(dhh).compare(VectorOperators.LT, top)
+					.and(DoubleVector.fromArray(D, vy, i).compare(VectorOperators.LE, 0)));
+
+			VectorMask<Integer> onBox = l.and(boxLayers).compare(VectorOperators.NE, 0);
+			VectorMask<Integer> onSearch = l.and(searchLayers).compare(VectorOperators.NE, 0);
+			IntVector.broadcast(I, MISSED).blend(SEARCH, onSearch).blend(MISSED, onBox)
+					.blend(OUTSIDE, toInts(outside)).intoArray(results, i);
+
+			if(box){
+				// cutting a position down to whole pixels moves it by less than one, so nothing further
+				// than that from touching the box can hit it, and the scalar loop sorts out the rest
+				VectorMask<Double> near = px.add(dhw).compare(VectorOperators.GT, left-1.0)
+						.and(px.sub(dhw).compare(VectorOperators.LT, left+w+1.0))
+						.and(py.add(dhh).compare(VectorOperators.GT, boxTop-1.0))
+						.and(py.sub(dhh).compare(VectorOperators.LT, boxTop+h+1.0));
+				// as longs, since Java 17 cannot test a mask of doubles with vector instructions either
+				LongVector flagged = LongVector.zero(L).blend(1L, near.cast(L));
+				if(flagged.reduceLanes(VectorOperators.OR)!=0){
+					for(int j = 0; j<D.length(); j++){
+						if(flagged.lane(j)!=0){
+							super.classify(s, i+j, i+j+1, width, height, top, boxLayers, searchLayers, left, boxTop, w, h, results);
+						}
+					}
+				}
+			}
+		}
+		super.classify(s, i, to, width, height, top, boxLayers, searchLayers, left, boxTop, w, h, results);
+	}
+
+	/**
+	 * Turns a mask of doubles into a mask of ints with the same lanes set.
+	 */
+	private static VectorMask<Integer> toInts(VectorMask<Double> m){
+		return ((IntVector)LongVector.zero(L).blend(1L, m.cast(L)).convertShape(VectorOperators.L2I, I, 0))
+				.compare(VectorOperators.NE, 0);
+	}
+
+	@Override
+	public String getName(){
+		return "vector";
+	}
+
+	@Override
+	public String toString(){
+		return "vector ("+D.length()+" lanes)";
+	}
+
+}
@@ -0,0 +1,355 @@
+package spaceblaster.gui;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import spaceblaster.model.Game.StateOfGame;
+
+/**
+ * Holds the images for the game, each belonging to the state of the game (its scope) it is used
+ * in. Images are loaded in the background on a small pool of threads the first time they are asked
+ * for, or when their scope is pinned. While a scope is pinned its images stay loaded; the images of
+ * unpinned scopes are dropped, least recently used first, whenever the loaded images take up more
+ * memory than the budget, and loaded again if they are asked for later.
+ */
+public class AssetCache implements ImageSource {
+
+	/**
+	 * The most threads that will decode images at once.
+	 */
+	public static final int MAX_THREADS = 4;
+
+	/**
+	 * The default memory budget for loaded images, in bytes.
+	 */
+	public static final long DEFAULT_BUDGET = 2L*1024*1024;
+
+	/**
+	 * An image the cache knows how to load.
+	 */
+	private static class Entry {
+		String key;
+		URL url;
+		StateOfGame scope;
+		// the image while it is loading or loaded, null when it has never been loaded or was dropped
+		CompletableFuture<BufferedImage> image;
+		long bytes;
+	}
+
+	private final ImageLoader loader;
+	private final ThreadPoolExecutor executor;
+	private long budget;
+
+	private final Map<String, Entry> entries = new HashMap<String, Entry>();
+	// the entries with a loaded image, from least to most recently used
+	private final LinkedHashMap<String, Entry> loaded = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+	private final EnumMap<StateOfGame, Integer> pins = new EnumMap<StateOfGame, Integer>(StateOfGame.class);
+	private long loadedBytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long loads = 0;
+	private long evictions = 0;
+	private final ArrayList<String> failed = new ArrayList<String>();
+
+	/**
+	 * Creates a new cache with one loading thread per processor, up to MAX_THREADS.
+	 * @param l The loader used to decode and convert each image.
+	 * @param b The memory budget for loaded images, in bytes.
+	 */
+	public AssetCache(ImageLoader l, long b) {
+		loader = l;
+		budget = b;
+		int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "Asset loader "+count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Tells the cache where an image is, without loading it.
+	 * @param key The key to look the image up with.
+	 * @param url Where the image is.
+	 * @param scope The state of the game the image is used in.
+	 */
+	public synchronized void register(String key, URL url, StateOfGame scope){
+		Entry e = new Entry();
+		e.key = key;
+		e.url = url;
+		e.scope = scope;
+		entries.put(key, e);
+	}
+
+	/**
+	 * Keeps the images of a scope loaded until it is unpinned as many times as it was pinned, and
+	 * starts loading any of them that are not loaded.
+	 * @param scope The scope.
+	 */
+	public synchronized void pin(StateOfGame scope){
+		Integer count = pins.get(scope);
+		pins.put(scope, count==null ? 1 : count+1);
+		prefetch(scope);
+	}
+
+	/**
+	 * Lets the images of a scope be dropped again, see pin(StateOfGame scope).
+	 * @param scope The scope.
+	 */
+	public synchronized void unpin(StateOfGame scope){
+		Integer count = pins.get(scope);
+		if(count==null){
+			return;
+		}
+		if(count<=1){
+			pins.remove(scope);
+		} else {
+			pins.put(scope, count-1);
+		}
+		evict();
+	}
+
+	/**
+	 * Whether a scope is pinned.
+	 * @param scope The scope.
+	 * @return
+	 */
+	public synchronized boolean isPinned(StateOfGame scope){
+		return pins.containsKey(scope);
+	}
+
+	/**
+	 * Starts loading every image in a scope that is not already loaded or loading.
+	 * @param scope The scope.
+	 */
+	public synchronized void prefetch(StateOfGame scope){
+		for(Entry e: entries.values()){
+			if(e.scope==scope && e.image==null){
+				startLoading(e);
+			}
+		}
+	}
+
+	/**
+	 * Runs a task once every image in the given scopes has finished loading, successfully or not.
+	 * Starts loading any that are not loaded.
+	 * @param task The task, run on one of the loading threads (or straight away on the calling thread
+	 * if everything has already loaded).
+	 * @param scopes The scopes.
+	 */
+	public void whenLoaded(final Runnable task, StateOfGame... scopes){
+		ArrayList<CompletableFuture<BufferedImage>> images = new ArrayList<CompletableFuture<BufferedImage>>();
+		synchronized(this){
+			for(StateOfGame scope: scopes){
+				prefetch(scope);
+			}
+			for(Entry e: entries.values()){
+				for(StateOfGame scope: scopes){
+					if(e.scope==scope){
+						images.add(e.image);
+					}
+				}
+			}
+		}
+		CompletableFuture.allOf(images.toArray(new CompletableFuture<?>[images.size()])).whenComplete(new BiConsumer<Void, Throwable>() {
+			public void accept(Void v, Throwable t) {
+				task.run();
+			}
+		});
+	}
+
+	/**
+	 * Gets an image, loading it if it is not loaded and waiting for it to finish loading if it has not yet.
+	 * @param key The key it was registered with.
+	 * @return BufferedImage The image.
+	 * @throws IllegalStateException If no image was registered with the key, or it failed to load.
+	 */
+	public BufferedImage get(String key){
+		CompletableFuture<BufferedImage> image;
+		synchronized(this){
+			Entry e = entries.get(key);
+			if(e==null){
+				throw new IllegalStateException("No image registered for "+key);
+			}
+			if(loaded.get(key)!=null){
+				hits++;
+			} else {
+				misses++;
+				if(e.image==null){
+					startLoading(e);
+				}
+			}
+			image = e.image;
+		}
+		try {
+			return image.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading "+key, e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Could not load "+key, e.getCause());
+		}
+	}
+
+	@Override
+	public Image getImage(String key){
+		return get(key);
+	}
+
+	private void startLoading(final Entry e){
+		final URL url = e.url;
+		final CompletableFuture<BufferedImage> image = CompletableFuture.supplyAsync(new Supplier<BufferedImage>() {
+			public BufferedImage get() {
+				try {
+					return loader.load(e.key, url);
+				} catch (IOException ex) {
+					throw new CompletionException(ex);
+				}
+			}
+		}, executor);
+		e.image = image;
+		image.whenComplete(new BiConsumer<BufferedImage, Throwable>() {
+			public void accept(BufferedImage img, Throwable t) {
+				finishLoading(e, image, img);
+			}
+		});
+	}
+
+	/**
+	 * Adds an image that has finished loading to the loaded images, dropping others if that takes
+	 * them over the budget.
+	 */
+	private synchronized void finishLoading(Entry e, CompletableFuture<BufferedImage> image, BufferedImage img){
+		if(e.image!=image){
+			return;
+		}
+		if(img==null){
+			// forget the failed image so asking for it again tries again
+			e.image = null;
+			failed.add(e.key);
+			return;
+		}
+		loads++;
+		e.bytes = (long)img.getWidth()*img.getHeight()*img.getColorModel().getPixelSize()/8;
+		loaded.put(e.key, e);
+		loadedBytes += e.bytes;
+		evict();
+	}
+
+	/**
+	 * Drops the least recently used images that are not pinned until the loaded images fit in the
+	 * budget, or only pinned images are left.
+	 */
+	private void evict(){
+		Iterator<Entry> it = loaded.values().iterator();
+		while(loadedBytes>budget && it.hasNext()){
+			Entry e = it.next();
+			if(pins.containsKey(e.scope)){
+				continue;
+			}
+			it.remove();
+			e.image = null;
+			loadedBytes -= e.bytes;
+			evictions++;
+		}
+	}
+
+	/**
+	 * Changes the memory budget, dropping images straight away if they no longer fit.
+	 * @param b The budget in bytes.
+	 */
+	public synchronized void setBudget(long b){
+		budget = b;
+		evict();
+	}
+
+	public synchronized long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * Gets the memory taken up by the loaded images.
+	 * @return long The size in bytes.
+	 */
+	public synchronized long getLoadedBytes(){
+		return loadedBytes;
+	}
+
+	/**
+	 * Gets the number of times an image was asked for and was already loaded.
+	 * @return
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * Gets the number of times an image was asked for and had to be loaded or waited for.
+	 * @return
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Gets the number of images that have been loaded, counting each time one was loaded again.
+	 * @return
+	 */
+	public synchronized long getLoads(){
+		return loads;
+	}
+
+	/**
+	 * Gets the number of times an image was dropped to stay within the budget.
+	 * @return
+	 */
+	public synchronized long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	 * How long each image took to decode and convert, see ImageLoader.getReport(), and how the cache
+	 * has been used so far.
+	 * @return
+	 */
+	public synchronized String getReport(){
+		StringBuilder sb = new StringBuilder(loader.getReport());
+		sb.append(String.format("cache %d/%d KB  hits %d  misses %d  loads %d  evictions %d%n",
+				loadedBytes/1024, budget/1024, hits, misses, loads, evictions));
+		if(!failed.isEmpty()){
+			sb.append("failed: ").append(failed).append(String.format("%n"));
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "AssetCache[loaded="+loaded.size()+"/"+entries.size()+", bytes="+loadedBytes+", budget="+budget
+				+", hits="+hits+", misses="+misses+", loads="+loads+", evictions="+evictions+"]";
+	}
+
+}
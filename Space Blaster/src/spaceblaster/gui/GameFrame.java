@@ -7,34 +7,67 @@ import java.awt.FlowLayout;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.GridLayout;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsDevice;
 import java.awt.Image;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.awt.Toolkit;
+import java.awt.image.VolatileImage;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 
+import spaceblaster.model.Camera;
+import spaceblaster.model.FrameSnapshot;
+import spaceblaster.model.TripleBuffer;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldListener;
+import spaceblaster.model.metrics.TickMetrics;
 import spaceblaster.model.Game.StateOfGame;
 import spaceblaster.model.entities.Entity;
-import spaceblaster.model.entities.Player;
 
-public class GameFrame extends JFrame {
+public class GameFrame extends JFrame implements WorldListener {
 
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * The height of the bar along the bottom of the screen showing the player's health, score and money.
+	 */
+	public static final int BOTTOM_BAR_HEIGHT = 50;
+	
 	int screenWidth = java.awt.Toolkit.getDefaultToolkit().getScreenSize().width;
 	int screenHeight = java.awt.Toolkit.getDefaultToolkit().getScreenSize().height;
 	
 	
 	/**
-	 * List of the entities to display on screen.
+	 * The number of entities each snapshot has room for before it has to grow.
 	 */
-	private List<Entity> entitiesToDisplay = new CopyOnWriteArrayList<Entity>();
+	private static final int SNAPSHOT_CAPACITY = 256;
+	
+	/**
+	 * The frame rate the play screen is drawn at when the refresh rate of the display is unknown.
+	 */
+	public static final int DEFAULT_FRAME_RATE = 60;
+	
+	/**
+	 * Snapshots of the world, captured by the playing thread at the end of every tick and drawn by
+	 * the render thread, which only ever draws the latest one.
+	 */
+	private volatile TripleBuffer<FrameSnapshot> frames = newFrames();
+	
+	// held while taking and drawing a snapshot, since only one thread at a time may read the frames
+	private final Object frameLock = new Object();
 	
-	// the player
-	private Player player = null;
+	// the part of the world on screen, moved by the playing thread at the end of every tick
+	private final Camera camera;
+	
+	// draws the play screen while the game is being played, null otherwise
+	private RenderThread renderThread = null;
+	
+	// where the render thread records how long frames take, null to not record them
+	private volatile TickMetrics metrics = null;
 	//private ArrayList<GameComponents> otherComponents = new ArrayList<GameComponents>();
 	
 	/**
@@ -51,7 +84,6 @@ public class GameFrame extends JFrame {
 	 */
 	StateOfGame state = StateOfGame.MainMenu;
 	
-	public int Level = 1;
 			
 	/**
 	 * Constructor, creates new frame with specific width and height in the center of the screen,
@@ -65,6 +97,7 @@ public class GameFrame extends JFrame {
 		
 		this.setResizable(false);
 		
+		camera = new Camera(w, h-BOTTOM_BAR_HEIGHT);
 		playView = new PlayingPanel(w, h);
 		main = new MainPanel(w, h);
 		main.setBackground(Color.BLACK);
@@ -109,20 +142,24 @@ public class GameFrame extends JFrame {
 	}
 	
 	/**
-	 * Removes all entities from the view.
+	 * Sets the metrics the render thread records each frame and each dropped frame in.
+	 * @param m The metrics, or null to not record anything.
 	 */
-	public void clearAllEntities(){
-		entitiesToDisplay.clear();
+	public void setMetrics(TickMetrics m){
+		metrics = m;
 	}
 	
-	
 	/**
-	 * Sets which entity is the player, and is controlled by the user's input. Must be a Player object
-	 * or inherited from Player.
-	 * @param p The player.
+	 * Removes all entities from the view.
 	 */
-	public void setPlayer(Player p){
-		player = p;
+	public void clearAllEntities(){
+		frames = newFrames();
+		camera.reset();
+	}
+	
+	private static TripleBuffer<FrameSnapshot> newFrames(){
+		return new TripleBuffer<FrameSnapshot>(new FrameSnapshot(SNAPSHOT_CAPACITY),
+				new FrameSnapshot(SNAPSHOT_CAPACITY), new FrameSnapshot(SNAPSHOT_CAPACITY));
 	}
 	
 	/**
@@ -145,19 +182,21 @@ public class GameFrame extends JFrame {
 	
 	/**
 	 * Sets the main menu background image.
-	 * @param img The image to be displayed on the main menu (center justified).
+	 * @param src Where to look up the image.
+	 * @param key The key of the image to be displayed on the main menu (center justified).
 	 */
-	public void setMainBackgroundImage(Image img){
-		main.setBackgroundImage(img);
+	public void setMainBackgroundImage(ImageSource src, String key){
+		main.setBackgroundImage(src, key);
 		main.repaint();
 	}
 	
 	/**
 	 * Sets the paused menu background image.
-	 * @param img The image to be displayed on the paused menu (center justified).
+	 * @param src Where to look up the image.
+	 * @param key The key of the image to be displayed on the paused menu (center justified).
 	 */
-	public void setPausedBackgroundImage(Image img){
-		paused.setBackgroundImage(img);
+	public void setPausedBackgroundImage(ImageSource src, String key){
+		paused.setBackgroundImage(src, key);
 		paused.repaint();
 	}
 	
@@ -202,37 +241,149 @@ public class GameFrame extends JFrame {
 			}
 		}
 			
+		if(gameState==StateOfGame.Playing && state!=StateOfGame.Playing){
+			startRendering();
+		} else if (state==StateOfGame.Playing && gameState!=StateOfGame.Playing){
+			stopRendering();
+		}
 		state = gameState;
 
 	}
 	
+	/**
+	 * Starts drawing the play screen actively on its own thread, in step with the display.
+	 */
+	private void startRendering(){
+		stopRendering();
+		renderThread = new RenderThread(getFrameRate());
+		renderThread.start();
+	}
+	
+	/**
+	 * Stops the render thread and waits for it to finish the frame it is on, however long that
+	 * takes, so it does not draw over the menu replacing the play screen.
+	 */
+	private void stopRendering(){
+		RenderThread t = renderThread;
+		if(t==null){
+			return;
+		}
+		renderThread = null;
+		t.end();
+		boolean interrupted = false;
+		while(t.isAlive()){
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+	}
 	
 	/**
-	 * Adds an entity to be displayed on screen during gameplay.
-	 * @param e The entity to be added
+	 * Gets the refresh rate of the display the frame is on.
+	 * @return int The refresh rate in Hz, or DEFAULT_FRAME_RATE if it cannot be found.
 	 */
-	public void addEntity(Entity e){
-		entitiesToDisplay.add(e);
+	private int getFrameRate(){
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		if(gc==null){
+			return DEFAULT_FRAME_RATE;
+		}
+		GraphicsDevice device = gc.getDevice();
+		int rate = device.getDisplayMode().getRefreshRate();
+		return rate>0 ? rate : DEFAULT_FRAME_RATE;
+	}
+	
+	
+	@Override
+	public void entityAdded(Entity e){
+	}
+	
+	@Override
+	public void entityRemoved(Entity e){
 	}
 	
 	/**
-	 * Removes the specific entity so that it will no longer be drawn on screen.
-	 * @param e The entity to be removed
+	 * Moves the camera and captures what it can see of the world at the end of the tick for the
+	 * renderer. Called on the playing thread, which is the only one to write to the snapshots.
 	 */
-	public void removeEntity(Entity e){
-		entitiesToDisplay.remove(e);
+	@Override
+	public void tickFinished(World world){
+		TripleBuffer<FrameSnapshot> f = frames;
+		camera.follow(world);
+		f.getBack().capture(world, camera);
+		f.publish();
+	}
+	
+	@Override
+	public void levelChanged(int level){
 	}
 	
 	/**
-	 * Updates the graphics during gameplay (as it should not be necessary to update during
-	 * main menu or other areas of static graphics during the game). 
+	 * Draws the play screen at a fixed frame rate, independently of the playing thread. Each frame
+	 * is drawn into a back buffer and copied to the screen in one go, then flushed with
+	 * Toolkit.sync() so it is shown straight away rather than whenever the window system gets to it.
+	 * @author kaspergammeltoft
+	 *
 	 */
-	public void updateGraphics(){
-		javax.swing.SwingUtilities.invokeLater(new Runnable() {
-            public void run() {
-        		playView.repaint();
-            }
-        });
+	private class RenderThread extends Thread{
+		
+		// remaining time above which the thread sleeps rather than yields
+		private static final long SLEEP_THRESHOLD = 1000000L;
+		
+		private volatile boolean end = false;
+		private long nanosPerFrame;
+		
+		public RenderThread(int frameRate){
+			super("Render");
+			setDaemon(true);
+			nanosPerFrame = 1000000000L/frameRate;
+		}
+		
+		public void end(){
+			end = true;
+		}
+		
+		/**
+		 * Draws a frame, then waits until the next one is due. A frame that is late by more than a
+		 * whole frame is not made up for, the next one is simply timed from now.
+		 */
+		public void run(){
+			long nextFrame = System.nanoTime();
+			while(!end){
+				long start = System.nanoTime();
+				playView.renderFrame();
+				TickMetrics m = metrics;
+				if(m!=null){
+					m.recordFrame(System.nanoTime()-start);
+				}
+				
+				nextFrame += nanosPerFrame;
+				long remaining = nextFrame - System.nanoTime();
+				if(remaining<-nanosPerFrame){
+					if(m!=null){
+						m.frameDropped();
+					}
+					nextFrame = System.nanoTime();
+					continue;
+				}
+				try {
+					while(remaining>0 && !end){
+						if(remaining>SLEEP_THRESHOLD){
+							Thread.sleep((remaining-SLEEP_THRESHOLD)/1000000L);
+						} else {
+							Thread.yield();
+						}
+						remaining = nextFrame - System.nanoTime();
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
 	}
 	
 	
@@ -249,61 +400,79 @@ public class GameFrame extends JFrame {
 		private static final long serialVersionUID = 1L;
 			int width;
 			int height;
+			
+			// the frame drawn by the render thread before it is copied to the screen
+			private VolatileImage backBuffer;
+			
+			// draws the snapshots, with the bar along the bottom
+			private SnapshotRenderer renderer = new SnapshotRenderer(BOTTOM_BAR_HEIGHT);
 		
 			public PlayingPanel(int w, int h){
 				super();
 				this.setBackground(Color.BLACK);
+				this.setIgnoreRepaint(true);
 				width = w;
 				height = h;
 				
 			}
-		
-		   @Override
-		    protected void paintComponent(Graphics g) {
-		        super.paintComponent(g);
-		        
-		        Graphics2D g2 = (Graphics2D)g;
-		        
-		        //clears area and paints the background
-				g2.clearRect(0, 0, getWidth(), getHeight());
-				g2.setColor(Color.BLACK);
-				g2.fillRect(0, 0, getWidth(), getHeight());
-				
-				//draws entities
-				g2.setColor(Color.WHITE);
-				for(Entity e: entitiesToDisplay){
-					if(e.getImage()!=null){
-						Image i = e.getImage();
-						g2.drawImage(i, (int)e.getX()-i.getWidth(null)/2, (int)e.getY()-i.getHeight(null)/2, null);
-					} else {
-						g2.drawRect((int)e.getX()-e.getWidth()/2, (int)e.getY()-e.getHeight()/2, e.getWidth(), e.getHeight());
+			
+			/**
+			 * Draws a frame into the back buffer and copies it to the screen, called from the render
+			 * thread. Redraws the frame if the contents of the back buffer are lost while doing so.
+			 */
+			void renderFrame(){
+				GraphicsConfiguration gc = getGraphicsConfiguration();
+				if(gc==null || !isShowing()){
+					return;
+				}
+				int w = getWidth();
+				int h = getHeight();
+				do {
+					if(backBuffer==null || backBuffer.getWidth()!=w || backBuffer.getHeight()!=h
+							|| backBuffer.validate(gc)==VolatileImage.IMAGE_INCOMPATIBLE){
+						if(backBuffer!=null){
+							backBuffer.flush();
+						}
+						backBuffer = gc.createCompatibleVolatileImage(w, h);
+					}
+					Graphics2D g2 = backBuffer.createGraphics();
+					try {
+						drawFrame(g2);
+					} finally {
+						g2.dispose();
 					}
+					Graphics g = getGraphics();
+					if(g==null){
+						return;
+					}
+					try {
+						g.drawImage(backBuffer, 0, 0, null);
+					} finally {
+						g.dispose();
+					}
+				} while(backBuffer.contentsLost());
+				Toolkit.getDefaultToolkit().sync();
+			}
+		
+			@Override
+			protected void paintComponent(Graphics g) {
+				super.paintComponent(g);
+				drawFrame((Graphics2D)g);
+			}
+			
+			/**
+			 * Draws the latest snapshot of the game, with the bar along the bottom.
+			 * @param g2 The graphics to draw with.
+			 */
+			private void drawFrame(Graphics2D g2){
+				synchronized(frameLock){
+					drawSnapshot(g2, frames.getFront());
 				}
-				
-				//draws the bottom bar of the game, with the information pertaining to the player (health, money, etc)
-				g2.setColor(Color.LIGHT_GRAY);
-				g2.fillRect(0, this.getHeight()-50, this.getWidth(), 50);
-				
-				//draws health bar
-				g2.setColor(Color.BLACK);
-				g2.drawRect(getWidth()/2-100, getHeight()-35, 200, 20);
-				double hp = player.getHealth();
-				double max = player.getMaxHealth();
-				double ratio = (double)hp/max;
-				Color c = new Color((int)((1-ratio)*255), (int)(ratio*255), 0);
-				g2.setColor(c);
-				g2.fillRect(getWidth()/2-100+1, getHeight()-34, (int)(199*ratio), 19);
-				
-				//draws the score in the right corner of the gui
-				g2.setColor(Color.BLACK);
-				int score = player.getScore();
-				g2.drawString("Score: "+Integer.toString(score), getWidth()-60-8*((int)Math.log10(score)), getHeight()-20);
-				
-				double money = player.getMoney();
-				g2.drawString("$"+Double.toString(money), 10, getHeight()-20);
-				
-				g2.setColor(Color.WHITE);
-				g2.drawString("Level "+Integer.toString(Level), getWidth()-60-8*((int)Math.log10(Level)), 20);
+			}
+			
+			private void drawSnapshot(Graphics2D g2, FrameSnapshot frame){
+				g2.setFont(getFont());
+				renderer.draw(g2, getWidth(), getHeight(), frame, frame.getAlpha(System.nanoTime()));
 		    }
 
 		    //so our panel is the corerct size when pack() is called on Jframe
@@ -327,7 +496,8 @@ public class GameFrame extends JFrame {
 		private static final long serialVersionUID = 1L;
 		int width;
 		int height;
-		Image backgroundImage;
+		ImageSource images;
+		String backgroundImage;
 	
 		public MainPanel(int w, int h){
 			super();
@@ -336,14 +506,19 @@ public class GameFrame extends JFrame {
 			
 		}
 		
-		public void setBackgroundImage(Image img){
-			backgroundImage = img;
+		public void setBackgroundImage(ImageSource src, String key){
+			images = src;
+			backgroundImage = key;
 		}
 		
 		@Override
 		public void paintComponent(Graphics g){
 			Graphics2D g2 = (Graphics2D)g;
-			g2.drawImage(backgroundImage, (this.getWidth()-backgroundImage.getWidth(null))/2, 0, null);
+			if(backgroundImage==null){
+				return;
+			}
+			Image img = images.getImage(backgroundImage);
+			g2.drawImage(img, (this.getWidth()-img.getWidth(null))/2, 0, null);
 		}
 
 	    @Override
@@ -0,0 +1,253 @@
+package spaceblaster.gui;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import spaceblaster.model.FrameSnapshot;
+
+/**
+ * The heads up display drawn over the play screen: the bar along the bottom with the player's
+ * health, score and money, and the level in the top right corner. Both are drawn into images that
+ * are only redrawn when one of the values on them changes, so a normal frame draws the HUD with two
+ * drawImage calls. Numbers are put together from images of each character, drawn once, rather
+ * than by building and drawing strings.
+ */
+public class HudLayer {
+
+	// the characters there are glyphs for, the digits must come first
+	private static final String CHARACTERS = "0123456789.$-";
+	private static final int DOT = 10;
+	private static final int DOLLAR = 11;
+	private static final int MINUS = 12;
+
+	private static final String SCORE_LABEL = "Score: ";
+	private static final String LEVEL_LABEL = "Level ";
+
+	// gap between the text and the edges of the screen
+	private static final int MARGIN = 10;
+
+	private int barHeight;
+
+	private GraphicsConfiguration config;
+	private Font font;
+	private BufferedImage[] darkGlyphs;
+	private BufferedImage[] lightGlyphs;
+	private int[] advances;
+	private BufferedImage scoreLabel;
+	private BufferedImage levelLabel;
+	private int ascent;
+
+	private BufferedImage bar;
+	private BufferedImage badge;
+
+	// the values last drawn, -1 to redraw
+	private int health = -1;
+	private int maxHealth = -1;
+	private int score = -1;
+	private long cents = -1;
+	private int level = -1;
+
+	// holds the digits of a number while it is drawn, the longest long has 19
+	private final int[] digits = new int[20];
+
+	/**
+	 * Creates a new HUD.
+	 * @param height The height of the bar along the bottom.
+	 */
+	public HudLayer(int height) {
+		barHeight = height;
+	}
+
+	/**
+	 * Draws the HUD for a snapshot, redrawing its images first if the values on them have changed.
+	 * @param g The graphics of the play screen.
+	 * @param width The width of the play screen.
+	 * @param height The height of the play screen.
+	 * @param frame The snapshot to take the values from.
+	 */
+	public void draw(Graphics2D g, int width, int height, FrameSnapshot frame){
+		GraphicsConfiguration gc = g.getDeviceConfiguration();
+		if(gc!=config || !g.getFont().equals(font)){
+			createGlyphs(gc, g.getFont());
+		}
+
+		long c = Math.round(frame.getMoney()*100);
+		if(bar==null || bar.getWidth()!=width || frame.getHealth()!=health || frame.getMaxHealth()!=maxHealth
+				|| frame.getScore()!=score || c!=cents){
+			health = frame.getHealth();
+			maxHealth = frame.getMaxHealth();
+			score = frame.getScore();
+			cents = c;
+			drawBar(width);
+		}
+		if(frame.getLevel()!=level){
+			level = frame.getLevel();
+			drawBadge();
+		}
+
+		g.drawImage(bar, 0, height-barHeight, null);
+		g.drawImage(badge, width-MARGIN-badge.getWidth(), 20-ascent, null);
+	}
+
+	/**
+	 * Forgets the values last drawn, so the next frame redraws everything.
+	 */
+	public void invalidate(){
+		bar = null;
+		level = -1;
+	}
+
+	private void createGlyphs(GraphicsConfiguration gc, Font f){
+		config = gc;
+		font = f;
+		BufferedImage scratch = createImage(1, 1);
+		Graphics2D g = scratch.createGraphics();
+		FontMetrics fm = g.getFontMetrics(f);
+		g.dispose();
+		ascent = fm.getAscent();
+
+		darkGlyphs = new BufferedImage[CHARACTERS.length()];
+		lightGlyphs = new BufferedImage[CHARACTERS.length()];
+		advances = new int[CHARACTERS.length()];
+		for(int i = 0; i<CHARACTERS.length(); i++){
+			String s = CHARACTERS.substring(i, i+1);
+			darkGlyphs[i] = createText(s, fm, Color.BLACK);
+			lightGlyphs[i] = createText(s, fm, Color.WHITE);
+			advances[i] = fm.stringWidth(s);
+		}
+		scoreLabel = createText(SCORE_LABEL, fm, Color.BLACK);
+		levelLabel = createText(LEVEL_LABEL, fm, Color.WHITE);
+		invalidate();
+	}
+
+	private BufferedImage createText(String s, FontMetrics fm, Color c){
+		BufferedImage img = createImage(Math.max(fm.stringWidth(s), 1), fm.getHeight());
+		Graphics2D g = img.createGraphics();
+		g.setFont(fm.getFont());
+		g.setColor(c);
+		g.drawString(s, 0, fm.getAscent());
+		g.dispose();
+		return img;
+	}
+
+	private BufferedImage createImage(int w, int h){
+		if(config==null){
+			return new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		}
+		return config.createCompatibleImage(w, h, Transparency.TRANSLUCENT);
+	}
+
+	/**
+	 * Redraws the bar along the bottom with the current health, score and money.
+	 */
+	private void drawBar(int width){
+		if(bar==null || bar.getWidth()!=width){
+			bar = config==null ? new BufferedImage(width, barHeight, BufferedImage.TYPE_INT_RGB)
+					: config.createCompatibleImage(width, barHeight, Transparency.OPAQUE);
+		}
+		Graphics2D g = bar.createGraphics();
+		g.setColor(Color.LIGHT_GRAY);
+		g.fillRect(0, 0, width, barHeight);
+
+		//draws health bar
+		g.setColor(Color.BLACK);
+		g.drawRect(width/2-100, barHeight-35, 200, 20);
+		double ratio = maxHealth>0 ? Math.max(0, Math.min(1, (double)health/maxHealth)) : 0;
+		g.setColor(new Color((int)((1-ratio)*255), (int)(ratio*255), 0));
+		g.fillRect(width/2-100+1, barHeight-34, (int)(199*ratio), 19);
+
+		//draws the score in the right corner and the money in the left
+		int y = barHeight-20-ascent;
+		int x = width-MARGIN-numberWidth(score, 0);
+		g.drawImage(scoreLabel, x-scoreLabel.getWidth(), y, null);
+		drawNumber(g, darkGlyphs, score, 0, x, y);
+
+		g.drawImage(darkGlyphs[DOLLAR], MARGIN, y, null);
+		drawNumber(g, darkGlyphs, cents, 2, MARGIN+advances[DOLLAR], y);
+		g.dispose();
+	}
+
+	/**
+	 * Redraws the level in the corner.
+	 */
+	private void drawBadge(){
+		int w = levelLabel.getWidth()+numberWidth(level, 0);
+		if(badge==null || badge.getWidth()!=w){
+			badge = createImage(w, levelLabel.getHeight());
+		}
+		Graphics2D g = badge.createGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, badge.getWidth(), badge.getHeight());
+		g.setComposite(AlphaComposite.SrcOver);
+		g.drawImage(levelLabel, 0, 0, null);
+		drawNumber(g, lightGlyphs, level, 0, levelLabel.getWidth(), 0);
+		g.dispose();
+	}
+
+	/**
+	 * Splits a number into digits, least significant first.
+	 * @param value The number, which must not be negative.
+	 * @param decimals The number of digits after the decimal point, which are always shown.
+	 * @return int The number of digits.
+	 */
+	private int splitDigits(long value, int decimals){
+		int n = 0;
+		do {
+			digits[n++] = (int)(value%10);
+			value /= 10;
+		} while(value>0 || n<=decimals);
+		return n;
+	}
+
+	/**
+	 * Gets the width a number will be drawn at.
+	 * @param value The number.
+	 * @param decimals The number of digits after the decimal point.
+	 * @return int The width in pixels.
+	 */
+	private int numberWidth(long value, int decimals){
+		int w = 0;
+		if(value<0){
+			w += advances[MINUS];
+			value = -value;
+		}
+		int n = splitDigits(value, decimals);
+		for(int i = 0; i<n; i++){
+			w += advances[digits[i]];
+		}
+		return decimals>0 ? w+advances[DOT] : w;
+	}
+
+	/**
+	 * Draws a number from the glyphs.
+	 * @param g The graphics to draw with.
+	 * @param glyphs The glyphs to draw it with.
+	 * @param value The number, scaled up by 10 to the power of decimals.
+	 * @param decimals The number of digits after the decimal point.
+	 * @param x The left edge of the number.
+	 * @param y The top edge of the number.
+	 */
+	private void drawNumber(Graphics2D g, BufferedImage[] glyphs, long value, int decimals, int x, int y){
+		if(value<0){
+			g.drawImage(glyphs[MINUS], x, y, null);
+			x += advances[MINUS];
+			value = -value;
+		}
+		int n = splitDigits(value, decimals);
+		for(int i = n-1; i>=0; i--){
+			if(i==decimals-1){
+				g.drawImage(glyphs[DOT], x, y, null);
+				x += advances[DOT];
+			}
+			g.drawImage(glyphs[digits[i]], x, y, null);
+			x += advances[digits[i]];
+		}
+	}
+
+}
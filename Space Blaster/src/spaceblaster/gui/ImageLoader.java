@@ -0,0 +1,147 @@
+package spaceblaster.gui;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Loads images in the pixel format of the screen, so drawing them every frame is a straight copy
+ * (which Java2D can keep in video memory) rather than a conversion from whatever format the file
+ * was in. Every image is decoded with ImageIO and then drawn once into a compatible image with the
+ * same kind of transparency. The time taken to decode and to convert each image is recorded, see
+ * getReport().
+ */
+public class ImageLoader {
+
+	private GraphicsConfiguration config;
+
+	private ArrayList<String> names = new ArrayList<String>();
+	private ArrayList<long[]> times = new ArrayList<long[]>();
+
+	/**
+	 * Creates a new loader for the default screen, or for plain images if there is no screen.
+	 */
+	public ImageLoader() {
+		this(defaultConfiguration());
+	}
+
+	/**
+	 * Creates a new loader for a particular screen.
+	 * @param gc The configuration of the screen, or null to create plain ARGB and RGB images.
+	 */
+	public ImageLoader(GraphicsConfiguration gc) {
+		config = gc;
+	}
+
+	private static GraphicsConfiguration defaultConfiguration(){
+		if(GraphicsEnvironment.isHeadless()){
+			return null;
+		}
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration();
+	}
+
+	/**
+	 * Loads an image and converts it to the format of the screen.
+	 * @param name The name to use for the image in the report.
+	 * @param url Where the image is, for example from Class.getResource(String name).
+	 * @return BufferedImage The image.
+	 * @throws IOException If the image is missing or cannot be decoded.
+	 */
+	public BufferedImage load(String name, URL url) throws IOException{
+		if(url==null){
+			throw new IOException("Missing image: "+name);
+		}
+		long start = System.nanoTime();
+		BufferedImage decoded = ImageIO.read(url);
+		if(decoded==null){
+			throw new IOException("Unsupported image format: "+url);
+		}
+		long loaded = System.nanoTime();
+		BufferedImage image = toCompatibleImage(decoded);
+		long converted = System.nanoTime();
+
+		synchronized(this){
+			names.add(name);
+			times.add(new long[]{loaded-start, converted-loaded, image.getWidth(), image.getHeight()});
+		}
+		return image;
+	}
+
+	/**
+	 * Copies an image into a new one in the format of the screen, keeping its transparency. An
+	 * opaque image is given an opaque format and a bitmask image a bitmask format, since those
+	 * are faster to draw than a fully translucent one.
+	 * @param src The image.
+	 * @return BufferedImage The copy, or src itself if it is already in the right format.
+	 */
+	public BufferedImage toCompatibleImage(BufferedImage src){
+		int transparency = src.getColorModel().getTransparency();
+		BufferedImage image;
+		if(config!=null){
+			if(src.getColorModel().equals(config.getColorModel(transparency))){
+				return src;
+			}
+			image = config.createCompatibleImage(src.getWidth(), src.getHeight(), transparency);
+		} else {
+			int type = transparency==Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+			if(src.getType()==type){
+				return src;
+			}
+			image = new BufferedImage(src.getWidth(), src.getHeight(), type);
+		}
+		Graphics2D g = image.createGraphics();
+		try {
+			g.drawImage(src, 0, 0, null);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+
+	/**
+	 * Gets the number of images loaded so far.
+	 * @return
+	 */
+	public synchronized int getLoadedCount(){
+		return names.size();
+	}
+
+	/**
+	 * Gets the total time spent decoding and converting images.
+	 * @return long The time in nanoseconds.
+	 */
+	public synchronized long getTotalTime(){
+		long total = 0;
+		for(long[] t: times){
+			total += t[0]+t[1];
+		}
+		return total;
+	}
+
+	/**
+	 * Describes every image loaded so far, one per line with its size and how long it took to
+	 * decode and to convert in milliseconds, followed by the totals.
+	 * @return
+	 */
+	public synchronized String getReport(){
+		StringBuilder sb = new StringBuilder();
+		long load = 0;
+		long convert = 0;
+		for(int i = 0; i<names.size(); i++){
+			long[] t = times.get(i);
+			load += t[0];
+			convert += t[1];
+			sb.append(String.format("%-16s %4dx%-4d load %7.2f ms  convert %7.2f ms%n", names.get(i), t[2], t[3], t[0]/1e6, t[1]/1e6));
+		}
+		sb.append(String.format("%d images         load %7.2f ms  convert %7.2f ms%n", names.size(), load/1e6, convert/1e6));
+		return sb.toString();
+	}
+
+}
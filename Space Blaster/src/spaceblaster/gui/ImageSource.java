@@ -0,0 +1,18 @@
+package spaceblaster.gui;
+
+import java.awt.Image;
+
+/**
+ * Somewhere to look images up by key. Components that draw an image keep its key rather than the
+ * image itself, so the image can be dropped while it is not needed and loaded again later.
+ */
+public interface ImageSource {
+
+	/**
+	 * Gets an image, loading it first if it is not loaded.
+	 * @param key The key of the image.
+	 * @return Image The image.
+	 */
+	public Image getImage(String key);
+
+}
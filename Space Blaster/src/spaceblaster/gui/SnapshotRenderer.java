@@ -0,0 +1,67 @@
+package spaceblaster.gui;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+
+import spaceblaster.model.FrameSnapshot;
+import spaceblaster.model.entities.SpriteRegistry;
+
+/**
+ * Draws a snapshot of the game: the background, every entity at its interpolated position and the
+ * HUD. Only needs a Graphics2D to draw into, so the play screen can be drawn without a window, for
+ * instance into a BufferedImage.
+ */
+public class SnapshotRenderer {
+
+	// the bar along the bottom and the level, only redrawn when they change
+	private HudLayer hud;
+
+	/**
+	 * Creates a new renderer.
+	 * @param barHeight The height of the bar along the bottom of the screen.
+	 */
+	public SnapshotRenderer(int barHeight) {
+		hud = new HudLayer(barHeight);
+	}
+
+	/**
+	 * Draws a snapshot. The HUD is drawn with the font of the graphics.
+	 * @param g2 The graphics to draw with.
+	 * @param width The width of the area to draw.
+	 * @param height The height of the area to draw.
+	 * @param frame The snapshot.
+	 * @param alpha How far between the last two ticks to draw the entities, see FrameSnapshot.getAlpha(long now).
+	 */
+	public void draw(Graphics2D g2, int width, int height, FrameSnapshot frame, double alpha){
+		//clears area and paints the background
+		g2.clearRect(0, 0, width, height);
+		g2.setColor(Color.BLACK);
+		g2.fillRect(0, 0, width, height);
+		
+		if(frame.isEmpty()){
+			return;
+		}
+		
+		//draws entities, interpolated between the last two ticks, relative to the camera
+		g2.setColor(Color.WHITE);
+		double viewX = frame.getViewX(alpha);
+		double viewY = frame.getViewY(alpha);
+		for(int n = 0; n<frame.getCount(); n++){
+			int x = (int)(frame.getRenderX(n, alpha)-viewX);
+			int y = (int)(frame.getRenderY(n, alpha)-viewY);
+			Image i = SpriteRegistry.get(frame.getSprite(n));
+			if(i!=null){
+				g2.drawImage(i, x-i.getWidth(null)/2, y-i.getHeight(null)/2, null);
+			} else {
+				int w = frame.getHalfWidth(n);
+				int h = frame.getHalfHeight(n);
+				g2.drawRect(x-w, y-h, w*2, h*2);
+			}
+		}
+		
+		//draws the bottom bar of the game, with the information pertaining to the player (health, money, etc)
+		hud.draw(g2, width, height, frame);
+	}
+
+}
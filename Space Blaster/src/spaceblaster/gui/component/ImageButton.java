@@ -12,6 +12,8 @@ import java.awt.event.MouseListener;
 
 import javax.swing.JComponent;
 
+import spaceblaster.gui.ImageSource;
+
 public class ImageButton extends JComponent implements MouseListener {
 
 	
@@ -19,17 +21,33 @@ public class ImageButton extends JComponent implements MouseListener {
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
-	private Image image;
-	private Image highlighted;
+	private ImageSource images;
+	private String image;
+	private String highlighted;
+	private int width;
+	private int height;
 	
 	private boolean isHighlighted = false;
 	private ActionListener listener;
 	
 	
-	public ImageButton(Image img, Image himg, String name, ActionListener listener) {
+	/**
+	 * Creates a new button, looking its images up by key every time it is drawn so they do not
+	 * have to stay loaded while the button is not showing.
+	 * @param src Where to look up the images.
+	 * @param img The key of the image shown normally, which also sets the size of the button.
+	 * @param himg The key of the image shown while the mouse is over the button.
+	 * @param name The name of the button, passed on to the listener as the name of the source.
+	 * @param listener Told when the button is pressed.
+	 */
+	public ImageButton(ImageSource src, String img, String himg, String name, ActionListener listener) {
 		super();
+		images = src;
 		image = img;
 		highlighted = himg;
+		Image i = src.getImage(img);
+		width = i.getWidth(null);
+		height = i.getHeight(null);
 		this.listener = listener;
 		this.setName(name);
 		addMouseListener(this);
@@ -39,9 +57,9 @@ public class ImageButton extends JComponent implements MouseListener {
 	
 	public Image getImage(){
 		if(isHighlighted){
-			return highlighted;
+			return images.getImage(highlighted);
 		} else {
-			return image;
+			return images.getImage(image);
 		}
 	}
 	
@@ -95,7 +113,7 @@ public class ImageButton extends JComponent implements MouseListener {
 	
     @Override
     public Dimension getPreferredSize() {
-        return new Dimension(image.getWidth(null), image.getHeight(null));
+        return new Dimension(width, height);
     }
 
 }
@@ -0,0 +1,119 @@
+package spaceblaster.model;
+
+import spaceblaster.model.entities.Player;
+
+/**
+ * The part of the world shown on screen, a rectangle the size of the view in world coordinates, so
+ * the world can be any size and the view only draws what is inside the camera. The camera follows
+ * the player, moving only once the player gets further than DEAD_ZONE from the middle of the view,
+ * and never shows anything outside the world. A world no bigger than the view is shown from its top
+ * left corner, as it always was.
+ *
+ * The camera moves once a tick, so like the entities it is drawn between where it was at the start
+ * of the tick and where it is now: FrameSnapshot keeps both, and the renderer gets the view between
+ * them from FrameSnapshot.getViewX(double alpha) and getViewY(double alpha).
+ */
+public class Camera {
+
+	/**
+	 * How far the player can move from the middle of the view before the camera follows, as a
+	 * fraction of the width or height of the view.
+	 */
+	public static final double DEAD_ZONE = 0.2;
+
+	private int width;
+	private int height;
+	private double x;
+	private double y;
+	private double lastX;
+	private double lastY;
+
+	// whether to jump straight to the player rather than follow it, for the first tick of a world
+	private boolean snap = true;
+
+	/**
+	 * Creates a new camera, which jumps to the player the first time it follows one.
+	 * @param w The width of the view.
+	 * @param h The height of the view.
+	 */
+	public Camera(int w, int h) {
+		width = w;
+		height = h;
+	}
+
+	/**
+	 * Moves the camera to keep the player of a world in view. Called at the end of every tick from
+	 * the thread stepping the world.
+	 * @param w The world.
+	 */
+	public void follow(World w){
+		Player p = w.getPlayer();
+		if(snap){
+			x = clamp(p.getX()-width/2.0, width, w.getWidth());
+			y = clamp(p.getY()-height/2.0, height, w.getHeight());
+			lastX = x;
+			lastY = y;
+			snap = false;
+			return;
+		}
+		lastX = x;
+		lastY = y;
+		x = follow(x, p.getX(), width, w.getWidth());
+		y = follow(y, p.getY(), height, w.getHeight());
+	}
+
+	/**
+	 * Makes the camera jump to the player the next time it follows one, for instance in a new world.
+	 */
+	public void reset(){
+		snap = true;
+	}
+
+	private static double follow(double position, double target, int size, int worldSize){
+		double slack = size*DEAD_ZONE;
+		double middle = position+size/2.0;
+		if(target<middle-slack){
+			position = target+slack-size/2.0;
+		} else if(target>middle+slack){
+			position = target-slack-size/2.0;
+		}
+		return clamp(position, size, worldSize);
+	}
+
+	private static double clamp(double position, int size, int worldSize){
+		return Math.max(0, Math.min(position, worldSize-size));
+	}
+
+	public double getX(){
+		return x;
+	}
+
+	public double getY(){
+		return y;
+	}
+
+	public double getLastX(){
+		return lastX;
+	}
+
+	public double getLastY(){
+		return lastY;
+	}
+
+	/**
+	 * Gets the width of the view.
+	 * @return
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Gets the height of the view.
+	 * @return
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+}
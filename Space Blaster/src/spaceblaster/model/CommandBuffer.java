@@ -0,0 +1,122 @@
+package spaceblaster.model;
+
+import java.util.Arrays;
+
+import spaceblaster.model.entities.Entity;
+import spaceblaster.model.entities.EntityStore;
+
+/**
+ * Collects the entities spawned and despawned during a tick so the stores being looped over are
+ * not changed until the tick is over. Despawned entities are only marked in their store, then
+ * apply() removes all of them with one compaction pass per store and adds the spawned ones. The
+ * buffer keeps its arrays from tick to tick.
+ */
+public class CommandBuffer {
+
+	private EntityStore[] spawnStores = new EntityStore[16];
+	private Entity[] spawns = new Entity[16];
+	private int spawnCount = 0;
+
+	private Entity[] despawns = new Entity[16];
+	private int despawnCount = 0;
+
+	private EntityStore[] touched = new EntityStore[4];
+	private int touchedCount = 0;
+
+	/**
+	 * Queues an entity to be added to a store at the end of the tick.
+	 * @param store The store to add it to.
+	 * @param e The entity.
+	 */
+	public void spawn(EntityStore store, Entity e){
+		if(spawnCount==spawns.length){
+			spawns = Arrays.copyOf(spawns, spawnCount*2);
+			spawnStores = Arrays.copyOf(spawnStores, spawnCount*2);
+		}
+		spawnStores[spawnCount] = store;
+		spawns[spawnCount] = e;
+		spawnCount++;
+	}
+
+	/**
+	 * Marks an entity in a store to be removed at the end of the tick. Despawning the same entity
+	 * twice in one tick only removes it once.
+	 * @param e The entity.
+	 * @return boolean true if the entity will be removed, false if it was not in a store or was already despawned.
+	 */
+	public boolean despawn(Entity e){
+		EntityStore store = e.getStore();
+		if(store==null || !store.markRemoved(e.getStoreIndex())){
+			return false;
+		}
+		if(despawnCount==despawns.length){
+			despawns = Arrays.copyOf(despawns, despawnCount*2);
+		}
+		despawns[despawnCount++] = e;
+		touch(store);
+		return true;
+	}
+
+	private void touch(EntityStore store){
+		for(int i = 0; i<touchedCount; i++){
+			if(touched[i]==store){
+				return;
+			}
+		}
+		if(touchedCount==touched.length){
+			touched = Arrays.copyOf(touched, touchedCount*2);
+		}
+		touched[touchedCount++] = store;
+	}
+
+	/**
+	 * Removes every despawned entity from its store and then adds every spawned one, in the order
+	 * they were queued. The entities stay readable through getDespawned(int i) and getSpawned(int i)
+	 * until clear() is called.
+	 */
+	public void apply(){
+		for(int i = 0; i<touchedCount; i++){
+			touched[i].compact();
+			touched[i] = null;
+		}
+		touchedCount = 0;
+		for(int i = 0; i<spawnCount; i++){
+			if(spawnStores[i].add(spawns[i])<0){
+				spawns[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Forgets every queued entity, ready for the next tick.
+	 */
+	public void clear(){
+		Arrays.fill(spawns, 0, spawnCount, null);
+		Arrays.fill(spawnStores, 0, spawnCount, null);
+		Arrays.fill(despawns, 0, despawnCount, null);
+		spawnCount = 0;
+		despawnCount = 0;
+	}
+
+	public int getSpawnedCount(){
+		return spawnCount;
+	}
+
+	/**
+	 * Gets a queued spawn.
+	 * @param i The index, in the order the entities were queued.
+	 * @return Entity The entity, or null if it could not be added because it was already in a store.
+	 */
+	public Entity getSpawned(int i){
+		return spawns[i];
+	}
+
+	public int getDespawnedCount(){
+		return despawnCount;
+	}
+
+	public Entity getDespawned(int i){
+		return despawns[i];
+	}
+
+}
@@ -0,0 +1,261 @@
+package spaceblaster.model;
+
+import java.util.Arrays;
+
+import spaceblaster.model.entities.EntityStore;
+import spaceblaster.model.entities.Player;
+
+/**
+ * Everything needed to draw one frame of the game, copied out of a World at the end of a tick:
+ * where the Camera and each entity it can see were at the start and end of the tick, the sprite and
+ * size of each entity, and the values shown in the bar along the bottom. Entities the camera cannot
+ * see are left out, so drawing a frame only costs as much as what is on screen however big the
+ * world is. Snapshots are reused, capturing only allocates when the world holds more entities than
+ * ever before. Passed from the playing thread to the renderer through a
+ * TripleBuffer so the renderer never reads an entity the simulation is changing.
+ */
+public class FrameSnapshot {
+
+	private int count = 0;
+	private float[] x;
+	private float[] y;
+	private float[] lastX;
+	private float[] lastY;
+	private int[] sprite;
+	private int[] halfWidth;
+	private int[] halfHeight;
+
+	// the indices of the entities of one store the camera can see, while capturing
+	private int[] found = new int[0];
+
+	// the top left corner of the view in the world, at the start and end of the tick
+	private float viewX;
+	private float viewY;
+	private float lastViewX;
+	private float lastViewY;
+
+	private long tick = -1;
+	private long captureTime;
+	private int health;
+	private int maxHealth;
+	private int score;
+	private double money;
+	private int level;
+
+	/**
+	 * Creates a new, empty snapshot.
+	 * @param capacity The number of entities to make room for at first.
+	 */
+	public FrameSnapshot(int capacity) {
+		capacity = Math.max(capacity, 1);
+		x = new float[capacity];
+		y = new float[capacity];
+		lastX = new float[capacity];
+		lastY = new float[capacity];
+		sprite = new int[capacity];
+		halfWidth = new int[capacity];
+		halfHeight = new int[capacity];
+	}
+
+	private void ensureCapacity(int n){
+		if(n<=x.length){
+			return;
+		}
+		int capacity = Math.max(n, x.length*2);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		lastX = Arrays.copyOf(lastX, capacity);
+		lastY = Arrays.copyOf(lastY, capacity);
+		sprite = Arrays.copyOf(sprite, capacity);
+		halfWidth = Arrays.copyOf(halfWidth, capacity);
+		halfHeight = Arrays.copyOf(halfHeight, capacity);
+	}
+
+	/**
+	 * Copies the current state of every entity in a world into this snapshot, seen from the top
+	 * left corner of the world, see capture(World world, Camera camera).
+	 * @param world The world.
+	 */
+	public void capture(World world){
+		capture(world, null);
+	}
+
+	/**
+	 * Copies the current state of a world into this snapshot, the player first, then the ships and
+	 * then the projectiles the camera can see. Must be called from the thread stepping the world.
+	 * @param world The world.
+	 * @param camera The camera, already moved for this tick, or null to copy every entity.
+	 */
+	public void capture(World world, Camera camera){
+		EntityStore ships = world.getShips();
+		EntityStore projectiles = world.getProjectiles();
+		ensureCapacity(1+ships.size()+projectiles.size());
+		if(found.length<Math.max(ships.size(), projectiles.size())){
+			found = new int[Math.max(Math.max(ships.size(), projectiles.size()), found.length*2)];
+		}
+
+		Player p = world.getPlayer();
+		x[0] = (float)p.getX();
+		y[0] = (float)p.getY();
+		lastX[0] = (float)p.getRenderX(0);
+		lastY[0] = (float)p.getRenderY(0);
+		sprite[0] = p.getSpriteId();
+		halfWidth[0] = p.getWidth()/2;
+		halfHeight[0] = p.getHeight()/2;
+		count = 1;
+		if(camera==null){
+			viewX = viewY = lastViewX = lastViewY = 0;
+			copy(ships, -1);
+			copy(projectiles, -1);
+		} else {
+			viewX = (float)camera.getX();
+			viewY = (float)camera.getY();
+			lastViewX = (float)camera.getLastX();
+			lastViewY = (float)camera.getLastY();
+			// everything seen at any point between the start and the end of the tick
+			double left = Math.min(viewX, lastViewX);
+			double top = Math.min(viewY, lastViewY);
+			double right = Math.max(viewX, lastViewX)+camera.getWidth();
+			double bottom = Math.max(viewY, lastViewY)+camera.getHeight();
+			copy(ships, ships.findOverlapping(left, top, right, bottom, found));
+			copy(projectiles, projectiles.findOverlapping(left, top, right, bottom, found));
+		}
+
+		tick = world.getTickCount();
+		captureTime = System.nanoTime();
+		health = p.getHealth();
+		maxHealth = p.getMaxHealth();
+		score = p.getScore();
+		money = p.getMoney();
+		level = world.getLevel();
+	}
+
+	/**
+	 * Copies entities of a store.
+	 * @param store The store.
+	 * @param visible The number of entities found by findOverlapping(), whose indices are in found,
+	 * or -1 to copy the whole store.
+	 */
+	private void copy(EntityStore store, int visible){
+		int n = count;
+		int total = visible<0 ? store.size() : visible;
+		for(int j = 0; j<total; j++){
+			int i = visible<0 ? j : found[j];
+			x[n] = (float)store.getX(i);
+			y[n] = (float)store.getY(i);
+			lastX[n] = (float)store.getLastX(i);
+			lastY[n] = (float)store.getLastY(i);
+			sprite[n] = store.getSprite(i);
+			halfWidth[n] = store.getHalfWidth(i);
+			halfHeight[n] = store.getHalfHeight(i);
+			n++;
+		}
+		count = n;
+	}
+
+	/**
+	 * Gets how far past this snapshot the game is at the given time, as a fraction of a tick, for
+	 * interpolating between where entities were at the start of the tick and where they are now.
+	 * @param now The current System.nanoTime().
+	 * @return double A value from 0 to 1.
+	 */
+	public double getAlpha(long now){
+		double alpha = (double)(now-captureTime)/GameClock.NANOS_PER_TICK;
+		if(alpha<0){
+			return 0;
+		}
+		return alpha>1 ? 1 : alpha;
+	}
+
+	/**
+	 * Whether anything has been captured into this snapshot yet.
+	 * @return
+	 */
+	public boolean isEmpty(){
+		return tick<0;
+	}
+
+	/**
+	 * The number of entities in the snapshot, the first of which is the player.
+	 * @return
+	 */
+	public int getCount(){
+		return count;
+	}
+
+	/**
+	 * The x coordinate to draw an entity at.
+	 * @param i The index of the entity.
+	 * @param alpha How far between its last position and the current one, see getAlpha(long now).
+	 * @return
+	 */
+	public double getRenderX(int i, double alpha){
+		return lastX[i] + (x[i]-lastX[i])*alpha;
+	}
+
+	/**
+	 * The y coordinate to draw an entity at, see getRenderX(int i, double alpha).
+	 * @param i The index of the entity.
+	 * @param alpha How far between its last position and the current one.
+	 * @return
+	 */
+	public double getRenderY(int i, double alpha){
+		return lastY[i] + (y[i]-lastY[i])*alpha;
+	}
+
+	/**
+	 * The left edge of the view in the world to draw the entities relative to, see
+	 * getRenderX(int i, double alpha).
+	 * @param alpha How far between the start and the end of the tick.
+	 * @return
+	 */
+	public double getViewX(double alpha){
+		return lastViewX + (viewX-lastViewX)*alpha;
+	}
+
+	/**
+	 * The top edge of the view in the world, see getViewX(double alpha).
+	 * @param alpha How far between the start and the end of the tick.
+	 * @return
+	 */
+	public double getViewY(double alpha){
+		return lastViewY + (viewY-lastViewY)*alpha;
+	}
+
+	public int getSprite(int i){
+		return sprite[i];
+	}
+
+	public int getHalfWidth(int i){
+		return halfWidth[i];
+	}
+
+	public int getHalfHeight(int i){
+		return halfHeight[i];
+	}
+
+	public long getTick(){
+		return tick;
+	}
+
+	public int getHealth(){
+		return health;
+	}
+
+	public int getMaxHealth(){
+		return maxHealth;
+	}
+
+	public int getScore(){
+		return score;
+	}
+
+	public double getMoney(){
+		return money;
+	}
+
+	public int getLevel(){
+		return level;
+	}
+
+}
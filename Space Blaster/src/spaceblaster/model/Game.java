@@ -1,30 +1,35 @@
 package spaceblaster.model;
 
-import java.awt.Image;
-import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.WindowEvent;
 import java.awt.event.WindowListener;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
-import javax.sound.sampled.Clip;
-import javax.swing.ImageIcon;
+import javax.management.JMException;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
 import spaceblaster.gui.GameFrame;
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
 import spaceblaster.gui.component.*;
 
+import spaceblaster.model.bot.AutoPilot;
 import spaceblaster.model.entities.*;
-import spaceblaster.model.entities.Player.Acceleration;
+import spaceblaster.model.metrics.MetricsServer;
+import spaceblaster.model.metrics.TickMetrics;
+import spaceblaster.model.metrics.TickWatchdog;
+import spaceblaster.model.replay.Replay;
+import spaceblaster.model.replay.ReplayRecorder;
+import spaceblaster.model.save.Autosaver;
+import spaceblaster.model.save.SaveFile;
 
 public class Game implements KeyListener, ActionListener, WindowListener {
 	
@@ -101,9 +106,31 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	}
 	
 	/**
-	 * All of the images for the game are loaded into this map, with strings describing them above. 
+	 * All of the images for the game are held by this cache, looked up with the strings describing
+	 * them above, and loaded when first needed.
 	 */
-	Map<String, Image> images = new HashMap<String, Image>();
+	AssetCache images;
+	
+	/**
+	 * The default memory budget for images that are not in use, overridden by the system property
+	 * spaceblaster.imageBudget (in bytes).
+	 */
+	public static final long IMAGE_BUDGET = AssetCache.DEFAULT_BUDGET;
+	
+	/**
+	 * The state whose images are pinned in the cache, see showState(StateOfGame s).
+	 */
+	private StateOfGame pinnedState;
+	
+	/**
+	 * Whether all of the images have loaded and the rest of the game has been set up with them.
+	 */
+	private boolean loaded = false;
+	
+	/**
+	 * When the game started loading, for the load report.
+	 */
+	private long startTime = System.nanoTime();
 	
 	
 	/**
@@ -111,6 +138,50 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 */
 	Map<String, URL> sounds = new HashMap<String, URL>();
 	
+	/**
+	 * Decodes and mixes the sounds, playing the ones for lasers as they are added to the world.
+	 */
+	SoundManager soundManager = new SoundManager();
+	
+	/**
+	 * Sets up each new world with the enemies and levels of the game, loaded from the file named by the
+	 * system property spaceblaster.waves, or WorldBuilder.DEFAULT_WAVES if it is not set.
+	 */
+	WorldBuilder builder;
+	
+	/**
+	 * Records the game being played when the system property spaceblaster.record is set to the file
+	 * to save it in, see ReplayTool.
+	 */
+	ReplayRecorder recorder;
+	
+	/**
+	 * Saves the game in the background while playing and when paused, to the file named by the system
+	 * property spaceblaster.save, or autosave.sbsave in the .spaceblaster directory of the user's home.
+	 * The game carries on from the save when it is started again.
+	 */
+	Autosaver autosaver = new Autosaver(saveFile(), System.getProperty("spaceblaster.waves"), Autosaver.DEFAULT_INTERVAL);
+	
+	/**
+	 * The keys that control the player.
+	 */
+	KeyBindings keys = KeyBindings.createDefault();
+	
+	/**
+	 * Flies the player instead of the keyboard when the system property spaceblaster.autopilot is
+	 * true, see AutoPilot. Null while the keys control the player.
+	 */
+	AutoPilot autopilot;
+	
+	/**
+	 * How long each tick and frame takes, shown over JMX and, when the system property
+	 * spaceblaster.metrics.port is set, served to Prometheus on that port of localhost. Ticks over
+	 * budget are logged by the watchdog.
+	 */
+	TickMetrics metrics = new TickMetrics(GameClock.NANOS_PER_TICK);
+	TickWatchdog watchdog = new TickWatchdog(metrics);
+	MetricsServer metricsServer;
+	
 	
 	/**
 	 * The state of the game.
@@ -123,18 +194,20 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	int points;
 	
 	/**
-	 * A list of all of the entities currently in the game.
+	 * The world being played, holding all of the entities currently in the game.
 	 */
-	List<Entity> shipEntities = new CopyOnWriteArrayList<Entity>();
-	List<Entity> projectiles = new CopyOnWriteArrayList<Entity>();
-	
-	LevelGenorator levelGen;
+	World world;
 	
 	/**
 	 * A thread to dispatch in game events and update the game wile playing.
 	 */
 	PlayingThread gameThread = new PlayingThread();
 	
+	/**
+	 * The fixed timestep clock that paces the playing thread.
+	 */
+	GameClock clock = new GameClock();
+	
 	/**
 	 * The graphics or view of the game, specifically an extension of a JFrame
 	 */
@@ -153,147 +226,348 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 		view = frame;
 		view.addKeyListener(this);
 		view.addWindowListener(this);
+		view.setMetrics(metrics);
+		startMetrics();
 		loadImages();
 		loadSounds();
+		images.pin(StateOfGame.MainMenu);
+		pinnedState = StateOfGame.MainMenu;
 		loadMainScreen();
+		if(Boolean.getBoolean("spaceblaster.loadReport")){
+			System.out.printf("main menu ready after %.2f ms%n", (System.nanoTime()-startTime)/1e6);
+		}
+		images.whenLoaded(new Runnable() {
+			public void run() {
+				javax.swing.SwingUtilities.invokeLater(new Runnable() {
+					public void run() {
+						finishLoading();
+					}
+				});
+			}
+		}, StateOfGame.Playing, StateOfGame.Paused);
+	}
+	
+	/**
+	 * Shows a state of the game, keeping the images it uses loaded and letting the images of the
+	 * previous state be dropped if memory is needed.
+	 * @param s The state.
+	 */
+	private void showState(StateOfGame s){
+		if(s!=pinnedState){
+			images.pin(s);
+			images.unpin(pinnedState);
+			pinnedState = s;
+		}
+		view.setStateOfGame(s);
+	}
+	
+	/**
+	 * Sets up the parts of the game that were waiting for their images, once the main menu is
+	 * showing. Waits for any images that are still loading, so it can be called early when the
+	 * player starts playing before everything has loaded.
+	 */
+	private void finishLoading(){
+		if(loaded){
+			return;
+		}
+		loaded = true;
+		// the entities hold on to their images for as long as there is a world, so they stay pinned
+		images.pin(StateOfGame.Playing);
 		loadPausedScreen();
-		//new player object
-		player = new Player(200, 200, images.get(PLAYER_SHIP_IMAGE));
-		player.setLaser(new Laser(0, 0, 2.0, 0.0, 20, true, images.get(BASIC_LASER_IMAGE), sounds.get(BASIC_LASTER_FIRING_SOUND)));
-		levelGen = new LevelGenorator(view.getWidth());
-		
-		BasicEnemy enemy1 = new BasicEnemy(0, 0, images.get(BASIC_ENEMY_IMAGE));
-		enemy1.setLaser(new Laser(0, 0, -2.0, Math.PI, 5, false, images.get(BASIC_LASER_IMAGE), sounds.get(BASIC_LASTER_FIRING_SOUND)));
-		
-		F250Bullet enemy2 = new F250Bullet(0, 0, images.get(F250BULLET_IMAGE), 40, view.getWidth()-40);
-		enemy2.setLaser(new Laser(0, 0, -3.0, Math.PI, 10, false, images.get(BASIC_LASER_IMAGE), sounds.get(BASIC_LASTER_FIRING_SOUND)));
-		
-		levelGen.addNewEnemy(enemy1);
-		levelGen.addNewEnemy(enemy2);
-		//testing
-		view.addEntity(player);
-		view.setPlayer(player);
+		if(!restoreWorld()){
+			newWorld();
+		}
+		if(Boolean.getBoolean("spaceblaster.loadReport")){
+			System.out.print(images.getReport());
+		}
+	}
+	
+	/**
+	 * Creates a new player and a new world for it to play in, starting again from the first level.
+	 * The playing area is the size of the view minus the bar along the bottom, or larger if the system properties
+	 * spaceblaster.worldWidth and spaceblaster.worldHeight ask for it, in which case the view scrolls to follow the
+	 * player. The levels are generated from the system property spaceblaster.seed if it is set, so a game can be
+	 * played again exactly.
+	 */
+	private void newWorld(){
+		int w = Math.max(view.getWidth(), Integer.getInteger("spaceblaster.worldWidth", 0));
+		int h = Math.max(view.getHeight()-GameFrame.BOTTOM_BAR_HEIGHT, Integer.getInteger("spaceblaster.worldHeight", 0));
+		world = getBuilder().build(w, h, Long.getLong("spaceblaster.seed", System.nanoTime()));
+		setUpWorld();
 	}
 	
 	/**
-	 * Loads the images for the game, all of which must be contained in the spaceblaster.resources directory.
+	 * Carries on from the autosave, if there is one that was saved with the same waves.
+	 * @return boolean true if the world was restored from the save.
+	 */
+	private boolean restoreWorld(){
+		long start = System.nanoTime();
+		SaveFile save = autosaver.load();
+		String waves = System.getProperty("spaceblaster.waves");
+		if(save==null || !save.getWaves().equals(waves==null ? "" : waves)){
+			return false;
+		}
+		try {
+			world = save.restore(getBuilder());
+		} catch (IOException e) {
+			System.err.println("Could not restore the saved game: "+e.getMessage());
+			return false;
+		}
+		setUpWorld();
+		if(Boolean.getBoolean("spaceblaster.loadReport")){
+			System.out.printf("restored %s in %.2f ms%n", save, (System.nanoTime()-start)/1e6);
+		}
+		return true;
+	}
+	
+	private WorldBuilder getBuilder(){
+		if(builder==null){
+			builder = new WorldBuilder(images, sounds, WorldBuilder.loadWaves(System.getProperty("spaceblaster.waves")));
+		}
+		return builder;
+	}
+	
+	/**
+	 * Registers the metrics over JMX, starts the watchdog, and serves the metrics over HTTP if a port
+	 * is set. The game carries on without them if they cannot be set up.
+	 */
+	private void startMetrics(){
+		try {
+			metrics.register();
+		} catch (JMException e) {
+			System.err.println("Could not register the metrics: "+e.getMessage());
+		}
+		watchdog.start();
+		Integer port = Integer.getInteger("spaceblaster.metrics.port");
+		if(port!=null){
+			try {
+				metricsServer = new MetricsServer(metrics, port);
+				metricsServer.start();
+			} catch (IOException e) {
+				System.err.println("Could not serve the metrics on port "+port+": "+e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Connects a new world to the view, the sounds, the autosaver and the metrics.
+	 */
+	private void setUpWorld(){
+		player = world.getPlayer();
+		world.setForkJoinPool(ForkJoinPool.commonPool());
+		world.setMetrics(metrics);
+		world.addListener(view);
+		soundManager.register(world);
+		world.addListener(soundManager);
+		world.addListener(autosaver);
+		if(Boolean.getBoolean("spaceblaster.autopilot")){
+			autopilot = new AutoPilot();
+		}
+		if(System.getProperty("spaceblaster.record")!=null){
+			recorder = ReplayRecorder.record(world, System.getProperty("spaceblaster.waves"), ReplayRecorder.DEFAULT_KEYFRAME_INTERVAL);
+		}
+	}
+	
+	/**
+	 * Gets the file the game is autosaved to.
+	 */
+	private static File saveFile(){
+		String path = System.getProperty("spaceblaster.save");
+		if(path!=null){
+			return new File(path);
+		}
+		return new File(new File(System.getProperty("user.home"), ".spaceblaster"), "autosave"+SaveFile.EXTENSION);
+	}
+	
+	/**
+	 * Saves the game recorded so far to the file named by the system property spaceblaster.record,
+	 * if anything has been played, and stops recording.
+	 */
+	private void saveReplay(){
+		if(recorder==null){
+			return;
+		}
+		recorder.detach();
+		Replay replay = recorder.getReplay();
+		recorder = null;
+		if(replay.getEndTick()==0){
+			return;
+		}
+		try {
+			replay.save(new File(System.getProperty("spaceblaster.record")));
+		} catch (IOException e) {
+			System.err.println("Could not save the replay: "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * Registers the images for the game with the cache, all of which must be contained in the spaceblaster.resources
+	 * directory, each with the state of the game it is used in. Nothing is loaded until a state is pinned or an image
+	 * is asked for. Every image is converted to the format of the screen as it is loaded, see ImageLoader. Set the
+	 * system property spaceblaster.loadReport to true to print how long each image took.
 	 */
 	private void loadImages(){
-		String resourceDir = "/spaceblaster/resources/";
-		Image player = new ImageIcon(this.getClass().getResource(resourceDir+"playerShip.png")).getImage();
-		images.put(PLAYER_SHIP_IMAGE, player);
-		
-		Image basicEnemy = new ImageIcon(this.getClass().getResource(resourceDir+"basicEnemy.png")).getImage();
-		images.put(BASIC_ENEMY_IMAGE, basicEnemy);
-		
-		Image F250BulletEnemy = new ImageIcon(this.getClass().getResource(resourceDir+"F250Bullet0.png")).getImage();
-		images.put(F250BULLET_IMAGE, F250BulletEnemy);
-		
-		Image basicLaser = new ImageIcon(this.getClass().getResource(resourceDir+"baseLaser.png")).getImage();
-		images.put(BASIC_LASER_IMAGE, basicLaser);
-		
+		images = new AssetCache(new ImageLoader(view.getGraphicsConfiguration()), Long.getLong("spaceblaster.imageBudget", IMAGE_BUDGET));
+		registerImages(images);
+	}
+	
+	/**
+	 * Registers every image of the game with a cache, see loadImages(). Also used by the tools that
+	 * run the game without a window.
+	 * @param images The cache.
+	 */
+	public static void registerImages(AssetCache images){
 		// images for the main menu
-		Image play0 = new ImageIcon(this.getClass().getResource(resourceDir+"playButton0.png")).getImage();
-		Image play1 = new ImageIcon(this.getClass().getResource(resourceDir+"playButton1.png")).getImage();
-		images.put(PLAY_BUTTON_N, play0);
-		images.put(PLAY_BUTTON_H, play1);
+		loadImage(images, PLAY_BUTTON_N, "playButton0.png", StateOfGame.MainMenu);
+		loadImage(images, PLAY_BUTTON_H, "playButton1.png", StateOfGame.MainMenu);
 		
-		Image creds0 = new ImageIcon(this.getClass().getResource(resourceDir+"creditsButton0.png")).getImage();
-		Image creds1 = new ImageIcon(this.getClass().getResource(resourceDir+"creditsButton1.png")).getImage();
-		images.put(CREDITS_BUTTON_N, creds0);
-		images.put(CREDITS_BUTTON_H, creds1);
+		loadImage(images, CREDITS_BUTTON_N, "creditsButton0.png", StateOfGame.MainMenu);
+		loadImage(images, CREDITS_BUTTON_H, "creditsButton1.png", StateOfGame.MainMenu);
 
-		Image info0 = new ImageIcon(this.getClass().getResource(resourceDir+"controlsButton0.png")).getImage();
-		Image info1 = new ImageIcon(this.getClass().getResource(resourceDir+"controlsButton1.png")).getImage();
-		images.put(INFO_BUTTON_N, info0);
-		images.put(INFO_BUTTON_H, info1);
+		loadImage(images, INFO_BUTTON_N, "controlsButton0.png", StateOfGame.MainMenu);
+		loadImage(images, INFO_BUTTON_H, "controlsButton1.png", StateOfGame.MainMenu);
 		
-		Image quit0 = new ImageIcon(this.getClass().getResource(resourceDir+"quitButton0.png")).getImage();
-		Image quit1 = new ImageIcon(this.getClass().getResource(resourceDir+"quitButton1.png")).getImage();
-		images.put(QUIT_BUTTON_N, quit0);
-		images.put(QUIT_BUTTON_H, quit1);
+		loadImage(images, QUIT_BUTTON_N, "quitButton0.png", StateOfGame.MainMenu);
+		loadImage(images, QUIT_BUTTON_H, "quitButton1.png", StateOfGame.MainMenu);
 		
-		Image mainBackground = new ImageIcon(this.getClass().getResource(resourceDir+"spaceBlasterMainBackground.png")).getImage();
-		images.put(MAIN_BACKGROUND_IMAGE, mainBackground);
+		loadImage(images, MAIN_BACKGROUND_IMAGE, "spaceBlasterMainBackground.png", StateOfGame.MainMenu);
 
 		
 		
 		// images for the paused menu
-		Image continue0 = new ImageIcon(this.getClass().getResource(resourceDir+"continueButton0.png")).getImage();
-		Image continue1 = new ImageIcon(this.getClass().getResource(resourceDir+"continueButton1.png")).getImage();
-		images.put(CONTINUE_BUTTON_N, continue0);
-		images.put(CONTINUE_BUTTON_H, continue1);
+		loadImage(images, CONTINUE_BUTTON_N, "continueButton0.png", StateOfGame.Paused);
+		loadImage(images, CONTINUE_BUTTON_H, "continueButton1.png", StateOfGame.Paused);
 		
-		Image store0 = new ImageIcon(this.getClass().getResource(resourceDir+"storeButton0.png")).getImage();
-		Image store1 = new ImageIcon(this.getClass().getResource(resourceDir+"storeButton1.png")).getImage();
-		images.put(STORE_BUTTON_N, store0);
-		images.put(STORE_BUTTON_H, store1);
+		loadImage(images, STORE_BUTTON_N, "storeButton0.png", StateOfGame.Paused);
+		loadImage(images, STORE_BUTTON_H, "storeButton1.png", StateOfGame.Paused);
 		
-		Image backMain0 = new ImageIcon(this.getClass().getResource(resourceDir+"backMainButton0.png")).getImage();
-		Image backMain1 = new ImageIcon(this.getClass().getResource(resourceDir+"backMainButton1.png")).getImage();
-		images.put(BACK_TO_MAIN_BUTTON_N, backMain0);
-		images.put(BACK_TO_MAIN_BUTTON_H, backMain1);
-
-		Image pauseBackground = new ImageIcon(this.getClass().getResource(resourceDir+"pausedBackground.png")).getImage();
-		images.put(PAUSE_BACKGROUND_IMAGE, pauseBackground);
+		loadImage(images, BACK_TO_MAIN_BUTTON_N, "backMainButton0.png", StateOfGame.Paused);
+		loadImage(images, BACK_TO_MAIN_BUTTON_H, "backMainButton1.png", StateOfGame.Paused);
 
+		loadImage(images, PAUSE_BACKGROUND_IMAGE, "pausedBackground.png", StateOfGame.Paused);
+		
+		// images for the entities
+		loadImage(images, PLAYER_SHIP_IMAGE, "playerShip.png", StateOfGame.Playing);
+		
+		loadImage(images, BASIC_ENEMY_IMAGE, "basicEnemy.png", StateOfGame.Playing);
+		
+		loadImage(images, F250BULLET_IMAGE, "F250Bullet0.png", StateOfGame.Playing);
+		
+		loadImage(images, BASIC_LASER_IMAGE, "baseLaser.png", StateOfGame.Playing);
+	}
+	
+	/**
+	 * Registers one image from the spaceblaster.resources directory.
+	 * @param images The cache.
+	 * @param key The key to look it up with, one of the constants above.
+	 * @param file The name of the file.
+	 * @param scope The state of the game it is used in.
+	 */
+	private static void loadImage(AssetCache images, String key, String file, StateOfGame scope){
+		images.register(key, Game.class.getResource("/spaceblaster/resources/"+file), scope);
 	}
 	
 	
+	/**
+	 * Loads the sounds for the game into the sound manager, and starts it playing to the default
+	 * audio line if there is one.
+	 */
 	private void loadSounds(){
 		String resourceDir = "/spaceblaster/resources/sounds/";
 
 		
-		URL basicLaserFire = this.getClass().getResource(resourceDir+"basicLaserFire.wav");
+		URL basicLaserFire = this.getClass().getResource(resourceDir+"basicLaserFire.m4a");
 		sounds.put(BASIC_LASTER_FIRING_SOUND, basicLaserFire);
+		loadSound(basicLaserFire, SoundManager.createSweep(1800, 300, 120));
+		
+		soundManager.start();
+	}
+	
+	/**
+	 * Decodes a sound into the sound manager. Java Sound cannot decode every format (m4a in
+	 * particular), so a sound that cannot be decoded is replaced with a generated one.
+	 * @param url Where the sound is.
+	 * @param fallback The samples to use instead if it cannot be decoded, see SoundManager.FORMAT.
+	 */
+	private void loadSound(URL url, short[] fallback){
+		try {
+			soundManager.load(url);
+		} catch (IOException e) {
+			soundManager.add(url, fallback);
+		} catch (UnsupportedAudioFileException e) {
+			soundManager.add(url, fallback);
+		}
 	}
 	
 	/**
 	 * Loads the main screen buttons and background image, and gives this information to the view  to display.
 	 */
 	private void loadMainScreen(){
-		FillButtonSpace spacer1 = new FillButtonSpace(images.get(PLAY_BUTTON_N).getWidth(null), images.get(PLAY_BUTTON_N).getHeight(null));
+		FillButtonSpace spacer1 = new FillButtonSpace(images.get(PLAY_BUTTON_N).getWidth(), images.get(PLAY_BUTTON_N).getHeight());
 		view.addButtonToMain(spacer1);
 		view.addButtonToMain(new FillButtonSpace(spacer1.getPreferredSize().width, spacer1.getPreferredSize().height));
-		ImageButton play = new ImageButton(images.get(PLAY_BUTTON_N), images.get(PLAY_BUTTON_H), "Play", this);
+		ImageButton play = new ImageButton(images, PLAY_BUTTON_N, PLAY_BUTTON_H, "Play", this);
 		view.addButtonToMain(play);
-		ImageButton credits = new ImageButton(images.get(CREDITS_BUTTON_N), images.get(CREDITS_BUTTON_H), "Credits", this);
+		ImageButton credits = new ImageButton(images, CREDITS_BUTTON_N, CREDITS_BUTTON_H, "Credits", this);
 		view.addButtonToMain(credits);
-		ImageButton info = new ImageButton(images.get(INFO_BUTTON_N), images.get(INFO_BUTTON_H), "Info", this);
+		ImageButton info = new ImageButton(images, INFO_BUTTON_N, INFO_BUTTON_H, "Info", this);
 		view.addButtonToMain(info);
-		ImageButton quit = new ImageButton(images.get(QUIT_BUTTON_N), images.get(QUIT_BUTTON_H), "Quit", this);
+		ImageButton quit = new ImageButton(images, QUIT_BUTTON_N, QUIT_BUTTON_H, "Quit", this);
 		view.addButtonToMain(quit);
 		
-		view.setMainBackgroundImage(images.get(MAIN_BACKGROUND_IMAGE));
+		view.setMainBackgroundImage(images, MAIN_BACKGROUND_IMAGE);
 	}
 	
 	/**
 	 * Loads the buttons and background for the paused menu in game.
 	 */
 	private void loadPausedScreen(){
-		FillButtonSpace spacer1 = new FillButtonSpace(images.get(PLAY_BUTTON_N).getWidth(null), images.get(PLAY_BUTTON_N).getHeight(null));
+		FillButtonSpace spacer1 = new FillButtonSpace(images.get(CONTINUE_BUTTON_N).getWidth(), images.get(CONTINUE_BUTTON_N).getHeight());
 		view.addButtonToPaused(spacer1);
 		view.addButtonToPaused(new FillButtonSpace(spacer1.getPreferredSize().width, spacer1.getPreferredSize().height));
-		ImageButton continueButton = new ImageButton(images.get(CONTINUE_BUTTON_N), images.get(CONTINUE_BUTTON_H), "Continue", this);
+		ImageButton continueButton = new ImageButton(images, CONTINUE_BUTTON_N, CONTINUE_BUTTON_H, "Continue", this);
 		view.addButtonToPaused(continueButton);
-		ImageButton store = new ImageButton(images.get(STORE_BUTTON_N), images.get(STORE_BUTTON_H), "Store", this);
+		ImageButton store = new ImageButton(images, STORE_BUTTON_N, STORE_BUTTON_H, "Store", this);
 		view.addButtonToPaused(store);
-		ImageButton backMain = new ImageButton(images.get(BACK_TO_MAIN_BUTTON_N), images.get(BACK_TO_MAIN_BUTTON_H), "BackMain", this);
+		ImageButton backMain = new ImageButton(images, BACK_TO_MAIN_BUTTON_N, BACK_TO_MAIN_BUTTON_H, "BackMain", this);
 		view.addButtonToPaused(backMain);
 		
-		view.setPausedBackgroundImage(images.get(PAUSE_BACKGROUND_IMAGE));
+		view.setPausedBackgroundImage(images, PAUSE_BACKGROUND_IMAGE);
 		
 	}
 	
 	
+	/**
+	 * Stops the playing thread and gets a new one ready to start. Waits for the thread to finish the
+	 * tick it is on and save the game, however long that takes, so nothing else touches the world
+	 * until it is started again, and the world is not swapped or its autosave deleted under it.
+	 */
+	private void stopPlaying(){
+		PlayingThread t = gameThread;
+		t.end();
+		if(t.isAlive() && t!=Thread.currentThread()){
+			boolean interrupted = false;
+			while(t.isAlive()){
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+		gameThread = new PlayingThread();
+	}
+	
 	/**
 	 * Pauses the game.
 	 */
 	private void pauseGame(){
-		gameThread.end();
-		gameThread = new PlayingThread();
+		stopPlaying();
 		state = StateOfGame.Paused;
-		view.setStateOfGame(state);
+		showState(state);
 	}
 	
 	/**
@@ -305,7 +579,7 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 		}
 		gameThread.start();
 		state = StateOfGame.Playing;
-		view.setStateOfGame(state);
+		showState(state);
 	}
 	
 	/**
@@ -314,12 +588,15 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	private void returnToMain(){
 		view.clearAllEntities();
 		view.repaint();
-		gameThread.end();
-		gameThread = new PlayingThread();
+		stopPlaying();
 		state = StateOfGame.MainMenu;
-		view.setStateOfGame(state);
-		player = new Player(200, 200, images.get(PLAYER_SHIP_IMAGE));
-		player.setLaser(new Laser(0, 0, 2.0, 0.0, 20, true, images.get(BASIC_LASER_IMAGE), sounds.get(BASIC_LASTER_FIRING_SOUND)));
+		showState(state);
+		world.removeListener(view);
+		world.removeListener(soundManager);
+		world.removeListener(autosaver);
+		autosaver.delete();
+		saveReplay();
+		newWorld();
 	}
 	
 	/**
@@ -333,9 +610,8 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 		source.setHighlighed(false);
 		if(state==StateOfGame.MainMenu){
 			if(source.getName().equals("Play")){
-				view.setStateOfGame(StateOfGame.Playing);
-				view.addEntity(player);
-				view.setPlayer(player);
+				finishLoading();
+				showState(StateOfGame.Playing);
 				state = StateOfGame.Playing;
 				gameThread.start();
 			} else if (source.getName().equals("Credits")){
@@ -343,6 +619,9 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 			} else if (source.getName().equals("Info")){
 				
 			} else if (source.getName().equals("Quit")){
+				saveReplay();
+				autosaver.flush(1000);
+				soundManager.stop();
 				view.dispose();
 				System.exit(0);
 			}
@@ -365,43 +644,25 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 */
 	@Override
 	public void keyPressed(KeyEvent e) {
-		char c = e.getKeyChar();
-		
 		if(state==StateOfGame.Playing){
-			//for upward movement
-			if(c=='w' || c=='W'){
-				player.setYAcceleration(Acceleration.Negative);
-			//for down
-			} else if (c=='s' || c=='S'){
-				player.setYAcceleration(Acceleration.Positive);
-
-			//for left
-			} else if (c=='a' || c=='A'){
-				player.setXAcceleration(Acceleration.Negative);
-
-			//for right
-			} else if (c=='d' || c=='D'){
-				player.setXAcceleration(Acceleration.Positive);
-				
-			//space fires a new laser
-			} else if (c==' '){
-				Laser l = player.getNewLaser((int)player.getX(), (int)player.getY()-player.getHeight()/2, 2.0, 0.0);
-				projectiles.add(l);
-				view.addEntity(l);
+			//movement and firing are applied by the world at the start of the next tick
+			int action = keys.getAction(e.getKeyCode());
+			if(action!=KeyBindings.NONE && autopilot==null){
+				world.submitInput(InputEvent.pressed(action));
 			}
 			//P pauses the game.
-			if(c=='p' || c=='P'){
+			if(e.getKeyCode()==KeyEvent.VK_P){
 				state = StateOfGame.Paused;
 				pauseGame();
-				view.setStateOfGame(state);
+				showState(state);
 			}
 		
 			// un-pauses the game.
 		} else if (state==StateOfGame.Paused){
-			if(c=='p' || c=='P'){
+			if(e.getKeyCode()==KeyEvent.VK_P){
 				state = StateOfGame.Playing;
 				unpauseGame();
-				view.setStateOfGame(state);
+				showState(state);
 			}
 		}
 	}
@@ -413,22 +674,14 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 */
 	@Override
 	public void keyReleased(KeyEvent e) {
-		char c = e.getKeyChar();
-		double yv = player.getYVelocity();
-		double xv = player.getXVelocity();
-		//stops upward motion
-		if((c=='w' || c=='W') && yv<0){
-			player.setYAcceleration(Acceleration.Zeroing);
-		//stops downard 
-		} else if ((c=='s' || c=='S') && yv>0){
-			player.setYAcceleration(Acceleration.Zeroing);
-		//stops left
-		} else if ((c=='a' || c=='A') && xv<0){
-			player.setXAcceleration(Acceleration.Zeroing);
-		//stops right
-		} else if ((c=='d' || c=='D') && xv>0){
-			player.setXAcceleration(Acceleration.Zeroing);
-		} 
+		//the world does not exist until everything has loaded
+		if(world==null){
+			return;
+		}
+		int action = keys.getAction(e.getKeyCode());
+		if(action!=KeyBindings.NONE && autopilot==null){
+			world.submitInput(InputEvent.released(action));
+		}
 	}
 
 
@@ -449,8 +702,14 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	}
 
 	@Override
+	/**
+	 * Saves the game before the window closes and the game exits.
+	 */
 	public void windowClosing(WindowEvent arg0) {
-		
+		stopPlaying();
+		saveReplay();
+		autosaver.flush(1000);
+		soundManager.stop();
 	}
 
 	@Override
@@ -468,8 +727,7 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 * Pauses the game when the window is minimized.
 	 */
 	public void windowIconified(WindowEvent arg0) {
-		gameThread.end();
-		gameThread = new PlayingThread();
+		stopPlaying();
 		state = StateOfGame.Paused;
 
 	}
@@ -479,7 +737,7 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 * Shows the pause screen as the window becomes un-minimized.
 	 */
 	public void windowOpened(WindowEvent arg0) {
-		view.setStateOfGame(state);
+		showState(state);
 	}
 	
 	/**
@@ -489,7 +747,7 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 	 */
 	public class PlayingThread extends Thread{
 		
-		boolean end = false;
+		volatile boolean end = false;
 		public PlayingThread(){
 			super();
 		}
@@ -498,142 +756,44 @@ public class Game implements KeyListener, ActionListener, WindowListener {
 			end = true;
 		}
 		
+		/**
+		 * Runs whole ticks at a fixed rate of GameClock.TICKS_PER_SECOND, catching up after a slow
+		 * frame. The screen is redrawn separately by the view's render thread.
+		 */
 		public void run(){
-			while(true && !end){
-				
-				Rectangle pBounds = new Rectangle((int)player.getX()-player.getWidth()/2, (int)player.getY()-player.getHeight()/2, player.getWidth(), player.getHeight());
-				
-				// updates the projectiles
-				for(Entity e: projectiles){
-					if(e.isMobile()){
-						e.setY(e.getY()+e.getYVelocity());
-						e.setX(e.getX()+e.getXVelocity());
-					}
-					Rectangle ebounds = new Rectangle((int)e.getX()-e.getWidth()/2, (int)e.getY()-e.getHeight()/2, e.getWidth(), e.getHeight());
-					if(e.getX()+e.getWidth()/2>0 && e.getX()-e.getWidth()/2<view.getWidth() && e.getY()<view.getHeight()-50){
-						boolean isPlayer = true;
-						
-						if(Laser.class.isInstance(e)){ 
-							Laser l = (Laser)e;
-							isPlayer = l.getIsFromPlayer();
-							if(!isPlayer){
-								
-								if(ebounds.intersects(pBounds)){
-									view.removeEntity(e);
-									projectiles.remove(e);
-									player.setHealth(player.getHealth()-(int)l.getDamage());
-								}
-							}
-						}
-						if(isPlayer){
-							for(Entity ent: shipEntities){
-								Rectangle bounds = new Rectangle((int)ent.getX()-ent.getWidth()/2, (int)ent.getY()-ent.getHeight()/2, ent.getWidth(), ent.getHeight());
-								if(ebounds.intersects(bounds)){
-									Ship ship = (Ship)ent;
-									Laser l = (Laser)e;
-									view.removeEntity(e);
-									projectiles.remove(e);
-									ship.setHealth(ship.getHealth()-(int)l.getDamage());
-								}
-							}
-						}
-					} else {
-						projectiles.remove(e);
-						view.removeEntity(e);
+			// the world this thread plays, which is the one it saves even if it is replaced meanwhile
+			World playing = world;
+			AutoPilot pilot = autopilot;
+			clock.reset();
+			while(!end){
+				int ticks = clock.advance();
+				metrics.setDroppedTicks(clock.getDroppedTicks());
+				for(int i = 0; i<ticks && !end && !playing.isPlayerDestroyed(); i++){
+					playing.step();
+					// between ticks, so the time it takes is not counted as the engine's
+					if(pilot!=null){
+						pilot.fly(playing);
 					}
 				}
-				
-				// updates the ships/enemies
-				for(Entity e: shipEntities){
-					boolean alive = true;
-					if( e instanceof Ship) {
-						Ship ship = (Ship)e;
-						if(ship.getHealth()<=0){
-							view.removeEntity(e);
-							shipEntities.remove(e);
-							player.addToScore(10);
-							alive = false;
-						}
-					}
-					if(e instanceof BasicEnemy){
-						BasicEnemy enemy = (BasicEnemy)e;
-						if(enemy.shouldFire()){
-							Laser l = enemy.getNewLaser((int)enemy.getX(), (int)enemy.getY()+enemy.getHeight()/2, 2.0, Math.PI);
-							projectiles.add(l);
-							view.addEntity(l);
-							enemy.justFired();
+				if(playing.isPlayerDestroyed()){
+					end();
+					javax.swing.SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							pauseGame();
+							returnToMain();
 						}
-					}
-					if(alive){
-						if(e.isMobile()){
-							e.setY(e.getY()+e.getYVelocity());
-							e.setX(e.getX()+e.getXVelocity());
-						}
-						Rectangle ebounds = new Rectangle((int)e.getX()-e.getWidth()/2, (int)e.getY()-e.getHeight()/2, e.getWidth(), e.getHeight());
-						if(e.getX()+e.getWidth()/2>0 && e.getX()-e.getWidth()/2<view.getWidth() && e.getY()<view.getHeight()-50){
-							if(e.isAlive()){
-								e.update();
-							}
-							if(ebounds.intersects(pBounds)){
-								view.removeEntity(e);
-								shipEntities.remove(e);
-								player.setHealth(player.getHealth()-10);
-							}
-							
-						} else {
-							shipEntities.remove(e);
-							view.removeEntity(e);
-						}
-					}
-				}
-				player.update();
-				
-				if(levelGen.isCurrentLevelDone()){
-					levelGen.updateLevel(3.0);
-					view.Level++;
-				}
-				
-				ArrayList<Entity> newEntities = levelGen.getNewEntities();
-				if(newEntities !=null && !newEntities.isEmpty()){
-					for(Entity e: newEntities){
-						view.addEntity(e);
-						shipEntities.add(e);
-					}
-				}
-				
-				// keeps the player in bounds.
-				if((player.getX()<player.getWidth()/2) && player.getXVelocity()<0){
-					player.setXVelocity(0);
-				} else if ((player.getX()>view.getWidth()-player.getWidth()/2) && player.getXVelocity()>0){
-					player.setXVelocity(0);
-				} else {
-					player.setX(player.getX()+player.getXVelocity());
-				} 
-					
-				if((player.getY()<player.getHeight()/2) && player.getYVelocity()<0){
-					player.setYVelocity(0);
-				} else if ((player.getY()>view.getHeight()-player.getHeight() - 50) && player.getYVelocity()>0){
-					player.setYVelocity(0);
-				} else {
-					player.setY(player.getY()+player.getYVelocity());
-				} 
-				
-				if(player.getHealth()<=0){
-					pauseGame();
-					returnToMain();
+					});
+					return;
 				}
 				
-				//refresh the screen.
-				view.updateGraphics();
-				
-				
-				//Sleeps (10 milliseconds)
 				try {
-					Thread.sleep(10);
+					clock.waitForNextTick();
 				} catch (InterruptedException e) {
 					
 				}
 			}
+			// paused, so save where the game got to
+			autosaver.capture(playing);
 		}
 	}
 	
@@ -0,0 +1,117 @@
+package spaceblaster.model;
+
+/**
+ * A fixed timestep clock for the simulation. Real time measured with System.nanoTime() is
+ * collected into an accumulator and handed out as whole ticks of exactly 1/TICKS_PER_SECOND
+ * seconds, so every per tick constant in the game (shoot times, spawn frequencies, acceleration)
+ * means the same thing no matter how long a tick took to compute.
+ */
+public class GameClock {
+
+	/**
+	 * The number of simulation ticks in one second of game time.
+	 */
+	public static final int TICKS_PER_SECOND = 100;
+
+	/**
+	 * The length of a single tick in nanoseconds.
+	 */
+	public static final long NANOS_PER_TICK = 1000000000L/TICKS_PER_SECOND;
+
+	/**
+	 * The most ticks that will be run to catch up after a slow frame. Any time owed beyond this
+	 * is dropped, so a slow machine runs the game slower rather than falling further and further behind.
+	 */
+	public static final int MAX_CATCH_UP_TICKS = 5;
+
+	// remaining time above which the waiting thread sleeps, and above which it yields rather than spins.
+	private static final long SLEEP_THRESHOLD = 2000000L;
+	private static final long YIELD_THRESHOLD = 200000L;
+
+	private long lastTime;
+	private long accumulator;
+	private long ticks;
+	private long droppedTicks;
+
+	/**
+	 * Creates a new clock, starting from the current time.
+	 */
+	public GameClock() {
+		reset();
+	}
+
+	/**
+	 * Restarts the clock from the current time, discarding any time collected so far. Should be
+	 * called when the game resumes after being paused so the pause is not treated as lag.
+	 */
+	public void reset(){
+		lastTime = System.nanoTime();
+		accumulator = 0;
+	}
+
+	/**
+	 * Collects the time passed since the last call and returns how many ticks should be run now.
+	 * Never returns more than MAX_CATCH_UP_TICKS, any extra whole ticks are counted as dropped.
+	 * @return int The number of ticks to run before the next frame is drawn.
+	 */
+	public int advance(){
+		long now = System.nanoTime();
+		accumulator += now-lastTime;
+		lastTime = now;
+
+		long due = accumulator/NANOS_PER_TICK;
+		if(due>MAX_CATCH_UP_TICKS){
+			droppedTicks += due-MAX_CATCH_UP_TICKS;
+			due = MAX_CATCH_UP_TICKS;
+			accumulator = NANOS_PER_TICK*MAX_CATCH_UP_TICKS + accumulator%NANOS_PER_TICK;
+		}
+		accumulator -= due*NANOS_PER_TICK;
+		ticks += due;
+		return (int)due;
+	}
+
+	/**
+	 * Gets how far the clock is between the last tick run and the next one, used by the renderer to
+	 * interpolate entity positions.
+	 * @return double A value from 0 (just ticked) up to but not including 1 (about to tick).
+	 */
+	public double getAlpha(){
+		return (double)accumulator/NANOS_PER_TICK;
+	}
+
+	/**
+	 * Blocks until the next tick is due. Sleeps while there is plenty of time left, then yields,
+	 * and spins for the last fraction of a millisecond since Thread.sleep() can overshoot by more
+	 * than a whole tick on some platforms.
+	 * @throws InterruptedException If the thread is interrupted while sleeping.
+	 */
+	public void waitForNextTick() throws InterruptedException{
+		long wakeTime = lastTime + NANOS_PER_TICK - accumulator;
+		long remaining = wakeTime - System.nanoTime();
+		while(remaining>0){
+			if(remaining>SLEEP_THRESHOLD){
+				Thread.sleep((remaining-SLEEP_THRESHOLD)/1000000L);
+			} else if (remaining>YIELD_THRESHOLD){
+				Thread.yield();
+			}
+			remaining = wakeTime - System.nanoTime();
+		}
+	}
+
+	/**
+	 * Gets the total number of ticks handed out by this clock.
+	 * @return
+	 */
+	public long getTicks(){
+		return ticks;
+	}
+
+	/**
+	 * Gets the number of ticks that were dropped because the game fell too far behind.
+	 * @return
+	 */
+	public long getDroppedTicks(){
+		return droppedTicks;
+	}
+
+}
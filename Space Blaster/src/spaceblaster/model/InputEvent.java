@@ -0,0 +1,63 @@
+package spaceblaster.model;
+
+/**
+ * The inputs that control the player. An input event is an action and whether it was pressed or
+ * released, packed into an int so events can be queued, recorded and played back without creating
+ * objects. Events are applied to the world at the start of a tick, see World.submitInput(int event).
+ */
+public final class InputEvent {
+
+	/**
+	 * The actions.
+	 */
+	public static final int UP = 0;
+	public static final int DOWN = 1;
+	public static final int LEFT = 2;
+	public static final int RIGHT = 3;
+	public static final int FIRE = 4;
+
+	/**
+	 * The number of actions, one more than the largest.
+	 */
+	public static final int ACTION_COUNT = 5;
+
+	private InputEvent() {
+	}
+
+	/**
+	 * Gets the event for an action being pressed.
+	 * @param action One of the actions above.
+	 * @return
+	 */
+	public static int pressed(int action){
+		return action<<1 | 1;
+	}
+
+	/**
+	 * Gets the event for an action being released.
+	 * @param action One of the actions above.
+	 * @return
+	 */
+	public static int released(int action){
+		return action<<1;
+	}
+
+	/**
+	 * Gets the action of an event.
+	 * @param event The event.
+	 * @return
+	 */
+	public static int getAction(int event){
+		return event>>>1;
+	}
+
+	/**
+	 * Whether an event is for its action being pressed rather than released.
+	 * @param event The event.
+	 * @return
+	 */
+	public static boolean isPressed(int event){
+		return (event & 1)!=0;
+	}
+
+}
@@ -0,0 +1,16 @@
+package spaceblaster.model;
+
+/**
+ * Told about every input event a World applies, for instance to record a game so it can be played
+ * again, see World.setInputListener(InputListener l).
+ */
+public interface InputListener {
+
+	/**
+	 * Called from the thread stepping the world as an input event is applied, at the start of a tick.
+	 * @param tick The number of the tick it is applied in, see World.getTickCount().
+	 * @param event The event, see InputEvent.
+	 */
+	public void inputApplied(long tick, int event);
+
+}
@@ -0,0 +1,113 @@
+package spaceblaster.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size ring of input events, each with the System.nanoTime() it was submitted at, passed from
+ * one thread (the event dispatch thread) to another (the thread stepping the world) without locks or
+ * allocation. Only one thread at a time may offer events and only one thread at a time may poll them.
+ * The producer publishes an event by moving the tail on with an ordered write after filling the slot,
+ * and the consumer frees slots the same way with the head, so neither ever waits for the other.
+ */
+public class InputQueue {
+
+	/**
+	 * The number of events the queue holds before events are dropped, far more than are ever
+	 * submitted in one tick.
+	 */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final int[] events;
+	private final long[] stamps;
+	private final int mask;
+
+	// the next slot to read, written by the consumer
+	private final AtomicLong head = new AtomicLong();
+	// the next slot to write, written by the producer
+	private final AtomicLong tail = new AtomicLong();
+
+	// the producer's copy of the head, only read again when the queue looks full
+	private long cachedHead = 0;
+
+	// the stamp of the last event polled, only used by the consumer
+	private long lastStamp;
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	/**
+	 * Creates a new, empty queue.
+	 * @param capacity The number of events it holds, rounded up to a power of two.
+	 */
+	public InputQueue(int capacity) {
+		int size = Integer.highestOneBit(Math.max(capacity, 2)-1)<<1;
+		events = new int[size];
+		stamps = new long[size];
+		mask = size-1;
+	}
+
+	/**
+	 * Adds an event, from the producer's thread.
+	 * @param event The event, see InputEvent.
+	 * @param stamp The System.nanoTime() the input happened at.
+	 * @return boolean false if the queue was full and the event was dropped.
+	 */
+	public boolean offer(int event, long stamp){
+		long t = tail.get();
+		if(t-cachedHead>mask){
+			cachedHead = head.get();
+			if(t-cachedHead>mask){
+				dropped.incrementAndGet();
+				return false;
+			}
+		}
+		int i = (int)t & mask;
+		events[i] = event;
+		stamps[i] = stamp;
+		tail.lazySet(t+1);
+		return true;
+	}
+
+	/**
+	 * Takes the oldest event, from the consumer's thread.
+	 * @return int The event, or -1 if the queue is empty.
+	 */
+	public int poll(){
+		long h = head.get();
+		if(h>=tail.get()){
+			return -1;
+		}
+		int i = (int)h & mask;
+		int event = events[i];
+		lastStamp = stamps[i];
+		head.lazySet(h+1);
+		return event;
+	}
+
+	/**
+	 * Gets when the event last returned by poll() was submitted.
+	 * @return long The System.nanoTime() it was submitted at.
+	 */
+	public long getLastStamp(){
+		return lastStamp;
+	}
+
+	/**
+	 * Drops every event in the queue, from the consumer's thread.
+	 */
+	public void clear(){
+		head.lazySet(tail.get());
+	}
+
+	/**
+	 * Gets the number of events dropped because the queue was full.
+	 * @return
+	 */
+	public long getDropped(){
+		return dropped.get();
+	}
+
+	public int getCapacity(){
+		return events.length;
+	}
+
+}
@@ -0,0 +1,77 @@
+package spaceblaster.model;
+
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+
+/**
+ * Maps keys to the actions in InputEvent through a table indexed by key code, so a key is looked up
+ * with one array read, and keys are found by code rather than by the character they type (which
+ * changes with shift and caps lock).
+ */
+public class KeyBindings {
+
+	/**
+	 * Returned for a key not bound to any action.
+	 */
+	public static final int NONE = -1;
+
+	// key codes at or above this are never bound, every key the game uses is below it
+	private static final int TABLE_SIZE = 256;
+
+	private final int[] actions = new int[TABLE_SIZE];
+
+	/**
+	 * Creates a new table with no keys bound.
+	 */
+	public KeyBindings() {
+		Arrays.fill(actions, NONE);
+	}
+
+	/**
+	 * Creates the default bindings: W, A, S and D or the arrow keys to move, and space to fire.
+	 * @return KeyBindings The bindings.
+	 */
+	public static KeyBindings createDefault(){
+		KeyBindings k = new KeyBindings();
+		k.bind(KeyEvent.VK_W, InputEvent.UP);
+		k.bind(KeyEvent.VK_UP, InputEvent.UP);
+		k.bind(KeyEvent.VK_S, InputEvent.DOWN);
+		k.bind(KeyEvent.VK_DOWN, InputEvent.DOWN);
+		k.bind(KeyEvent.VK_A, InputEvent.LEFT);
+		k.bind(KeyEvent.VK_LEFT, InputEvent.LEFT);
+		k.bind(KeyEvent.VK_D, InputEvent.RIGHT);
+		k.bind(KeyEvent.VK_RIGHT, InputEvent.RIGHT);
+		k.bind(KeyEvent.VK_SPACE, InputEvent.FIRE);
+		return k;
+	}
+
+	/**
+	 * Binds a key to an action, replacing what it was bound to before. More than one key may be
+	 * bound to the same action.
+	 * @param keyCode The key, see KeyEvent.getKeyCode().
+	 * @param action The action, see InputEvent, or NONE to unbind the key.
+	 * @throws IllegalArgumentException If the key code or action is out of range.
+	 */
+	public void bind(int keyCode, int action){
+		if(keyCode<0 || keyCode>=TABLE_SIZE){
+			throw new IllegalArgumentException("Key code "+keyCode+" cannot be bound");
+		}
+		if(action!=NONE && (action<0 || action>=InputEvent.ACTION_COUNT)){
+			throw new IllegalArgumentException("Unknown action "+action);
+		}
+		actions[keyCode] = action;
+	}
+
+	/**
+	 * Gets the action a key is bound to.
+	 * @param keyCode The key, see KeyEvent.getKeyCode().
+	 * @return int The action, see InputEvent, or NONE.
+	 */
+	public int getAction(int keyCode){
+		if(keyCode<0 || keyCode>=TABLE_SIZE){
+			return NONE;
+		}
+		return actions[keyCode];
+	}
+
+}
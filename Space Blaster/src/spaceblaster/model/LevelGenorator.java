@@ -1,66 +1,115 @@
 package spaceblaster.model;
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Random;
 
 import spaceblaster.model.entities.*;
+import spaceblaster.model.waves.WaveTable;
 
 public class LevelGenorator {
-	
+
 	private int level = 1;
-	private Random randgen = new Random();
+	private long seed;
 	private int timeOutCount = 0;
 	ArrayList<BasicEnemy> enemies = new ArrayList<BasicEnemy>();
-	private Map<BasicEnemy, Integer> numEnemiesSpawned = new HashMap<BasicEnemy, Integer>();
 	private int width;
-	
-	
+
 	/**
-	 * Creates a new LevelGenorator, used for keeping track of enemy spawning and level completion.
+	 * The spawn timeline of the current level, sorted by tick: spawnTick[i] ticks after the level
+	 * starts, a copy of enemies.get(spawnType[i]) is spawned at spawnX[i].
+	 */
+	private int[] spawnTick = new int[64];
+	private int[] spawnType = new int[64];
+	private int[] spawnX = new int[64];
+	private int spawnCount = 0;
+
+	// the next spawn in the timeline, and the number of ticks since the level started
+	private int cursor = 0;
+	private int levelTick = 0;
+
+	// the level the timeline was built for, 0 when it needs building
+	private int timelineLevel = 0;
+
+	// the entities spawned by the last call to getNewEntities(), reused every tick
+	private ArrayList<Entity> spawned = new ArrayList<Entity>();
+
+	// the counts and frequencies of the enemies in each level, null to grow them the old way
+	private WaveTable waves;
+	// the level the counts and frequencies were last set from the waves for
+	private int wavesLevel = 0;
+
+
+	/**
+	 * Creates a new LevelGenorator, used for keeping track of enemy spawning and level completion,
+	 * with a random seed.
 	 * @param w The width of the map or playing area, helps to spawn enemies.
-	 */ 
+	 */
 	public LevelGenorator(int w) {
+		this(w, new Random().nextLong());
+	}
+
+	/**
+	 * Creates a new LevelGenorator, used for keeping track of enemy spawning and level completion.
+	 * The same seed and enemies always give the same levels.
+	 * @param w The width of the map or playing area, helps to spawn enemies.
+	 * @param s The seed every level's spawn timeline is generated from.
+	 */
+	public LevelGenorator(int w, long s) {
 		width = w;
+		seed = s;
 	}
-	
+
 	/**
 	 * Adds a new type of enemy to the game, as long as it is a type of BasicEnemy (must be inherited
 	 * from that class) and must have a functioning getCopy(int x, int y) method to reproduce this enemy.
+	 * The random numbers the enemy's copies are spawned with are seeded from the seed of the levels.
 	 * @param e
 	 */
 	public void addNewEnemy(BasicEnemy e){
+		e.setRandomSeed(enemySeed(enemies.size()));
 		enemies.add(e);
-		numEnemiesSpawned.put(e, 0);
+		timelineLevel = 0;
+	}
+
+	/**
+	 * Sets the counts and frequencies of the enemies in each level from a table, instead of adding
+	 * a random 5 to 19 enemies of each type every level until level 15. The enemies must have been
+	 * added in the order of the table.
+	 * @param w The table, or null to go back to the old way.
+	 */
+	public void setWaves(WaveTable w){
+		waves = w;
+		wavesLevel = 0;
+		timelineLevel = 0;
 	}
 	
 	/**
-	 * Gets a list of all of the new entities generated each tick, or 1/100 seconds.
-	 * @return ArrayList<Entity> An ArrayList containing all of the new entities created.
+	 * Gets a list of all of the new entities generated each tick, or 1/GameClock.TICKS_PER_SECOND seconds.
+	 * Only moves through the level's timeline, so it costs nothing on ticks where nothing spawns.
+	 * @return ArrayList<Entity> The entities created this tick. The same list is reused every tick, so it
+	 * must not be kept.
 	 */
 	public ArrayList<Entity> getNewEntities(){
+		spawned.clear();
 		if(timeOutCount>0){
 			timeOutCount--;
-			return null;
+			return spawned;
 		}
-		ArrayList<Entity> entities = new ArrayList<Entity>();
-		
-		for(BasicEnemy e: enemies){
-			if(level>=e.getMinLevel() && numEnemiesSpawned.get(e)<e.getAmountForLevel()){
-				if(0 == randgen.nextInt()%(int)e.getFrequency()){
-					entities.add(e.getCopy((int)(Math.random()*width), 0));
-					numEnemiesSpawned.put(e, numEnemiesSpawned.get(e)+1);
-				}
-			}
-		
+		buildTimeline();
+		while(cursor<spawnCount && spawnTick[cursor]<=levelTick){
+			spawned.add(enemies.get(spawnType[cursor]).getCopy(spawnX[cursor], 0));
+			cursor++;
 		}
-		
-		return entities;
+		levelTick++;
+		return spawned;
 	}
-	
-	
+
+
 	/**
 	 * A utility method for checking if the current level completion parameters are all met. Should
 	 * be called from the model to update to the next level.
@@ -70,30 +119,131 @@ public class LevelGenorator {
 		if(enemies.isEmpty()){
 			return false;
 		}
-		for(BasicEnemy e: numEnemiesSpawned.keySet()){
-			if(numEnemiesSpawned.get(e).intValue()<e.getAmountForLevel()){
-				return false;
-			}
-		}
-		
-		return true;
+		buildTimeline();
+		return cursor>=spawnCount;
 	}
-	
+
 	/**
 	 * Updates the level, giving a certain timeout until the next level starts generating enemies.
 	 * @param timeOut The amount of time in seconds to wait before resuming enemy generation.
 	 */
 	public void updateLevel(double timeOut){
-		timeOutCount = (int)(timeOut*100);
+		timeOutCount = (int)(timeOut*GameClock.TICKS_PER_SECOND);
 		level++;
-		for(BasicEnemy e: numEnemiesSpawned.keySet()){
-			numEnemiesSpawned.put(e, 0);
-			if(level<15){
-				e.setAmountForLevel(e.getAmountForLevel()+(int)(Math.random()*15)+5);
+		Random r = levelRandom();
+		if(waves==null && level<15){
+			for(BasicEnemy e: enemies){
+				e.setAmountForLevel(e.getAmountForLevel()+r.nextInt(15)+5);
 			}
 		}
+		buildTimeline(r);
+	}
+
+	/**
+	 * Gets the seed for the random numbers of a type of enemy, see BasicEnemy.setRandomSeed(long seed).
+	 */
+	private long enemySeed(int type){
+		return seed + (type+1)*0xC2B2AE3D27D4EB4FL;
 	}
 	
+	/**
+	 * Gets the random numbers for the current level, which depend only on the seed and the level.
+	 */
+	private Random levelRandom(){
+		return new Random(seed + level*0x9E3779B97F4A7C15L);
+	}
+
+	/**
+	 * Builds the timeline for the current level if it has not been built yet.
+	 */
+	private void buildTimeline(){
+		if(timelineLevel!=level){
+			buildTimeline(levelRandom());
+		}
+	}
+
+	/**
+	 * Generates when and where every enemy of the current level spawns. Each type of enemy that can
+	 * appear in the level spawns getAmountForLevel() times, with a 1 in getFrequency() chance each tick,
+	 * so the gaps between its spawns are drawn from a geometric distribution. The spawns of every type
+	 * are then merged into one list sorted by tick.
+	 * @param r The random numbers to use.
+	 */
+	private void buildTimeline(Random r){
+		if(waves!=null && wavesLevel!=level){
+			applyWaves(r);
+		}
+		int total = 0;
+		for(BasicEnemy e: enemies){
+			if(level>=e.getMinLevel()){
+				total += Math.max(e.getAmountForLevel(), 0);
+			}
+		}
+		if(total>spawnTick.length){
+			spawnTick = new int[total];
+			spawnType = new int[total];
+			spawnX = new int[total];
+		}
+
+		// sorted by tick, then by the order they were generated in, which is packed into the low bits
+		long[] order = new long[total];
+		int n = 0;
+		for(int type = 0; type<enemies.size(); type++){
+			BasicEnemy e = enemies.get(type);
+			if(level<e.getMinLevel()){
+				continue;
+			}
+			double p = 1/Math.max(e.getFrequency(), 1);
+			double logMiss = Math.log(1-p);
+			long tick = -1;
+			for(int i = 0; i<e.getAmountForLevel(); i++){
+				tick += p>=1 ? 1 : 1+(long)Math.floor(Math.log(1-r.nextDouble())/logMiss);
+				spawnType[n] = type;
+				spawnX[n] = r.nextInt(Math.max(width, 1));
+				spawnTick[n] = (int)Math.min(tick, Integer.MAX_VALUE);
+				order[n] = ((long)spawnTick[n]<<32) | n;
+				n++;
+			}
+		}
+		Arrays.sort(order);
+		int[] ticks = new int[n];
+		int[] types = new int[n];
+		int[] xs = new int[n];
+		for(int i = 0; i<n; i++){
+			int j = (int)order[i];
+			ticks[i] = spawnTick[j];
+			types[i] = spawnType[j];
+			xs[i] = spawnX[j];
+		}
+		System.arraycopy(ticks, 0, spawnTick, 0, n);
+		System.arraycopy(types, 0, spawnType, 0, n);
+		System.arraycopy(xs, 0, spawnX, 0, n);
+
+		spawnCount = n;
+		cursor = 0;
+		levelTick = 0;
+		timelineLevel = level;
+	}
+
+	/**
+	 * Sets the count and frequency of each enemy for the current level from its row of the waves,
+	 * picking each count from its range.
+	 * @param r The random numbers to use.
+	 */
+	private void applyWaves(Random r){
+		int n = Math.min(enemies.size(), waves.getEnemyCount());
+		for(int i = 0; i<n; i++){
+			BasicEnemy e = enemies.get(i);
+			int min = waves.getCountMin(level, i);
+			int max = waves.getCountMax(level, i);
+			int amount = waves.getCountMode(level, i)==WaveTable.COUNT_ADD ? e.getAmountForLevel() : 0;
+			amount += max>min ? min+r.nextInt(max-min+1) : min;
+			e.setAmountForLevel(amount);
+			e.setFrequency(waves.getFrequency(level, i));
+		}
+		wavesLevel = level;
+	}
+
 	/**
 	 * Gets the current level
 	 * @return int The current level, usually starts at 1 and is incrimented.
@@ -102,4 +252,121 @@ public class LevelGenorator {
 		return level;
 	}
 
+	/**
+	 * Gets the seed the levels are generated from.
+	 * @return
+	 */
+	public long getSeed(){
+		return seed;
+	}
+
+	/**
+	 * Gets the number of types of enemy added with addNewEnemy(BasicEnemy e).
+	 * @return
+	 */
+	public int getEnemyCount(){
+		return enemies.size();
+	}
+	
+	/**
+	 * Gets a type of enemy added with addNewEnemy(BasicEnemy e).
+	 * @param i The index of the type, in the order they were added.
+	 * @return
+	 */
+	public BasicEnemy getEnemy(int i){
+		return enemies.get(i);
+	}
+	
+	/**
+	 * Gets the index of a type of enemy added with addNewEnemy(BasicEnemy e).
+	 * @param e The enemy.
+	 * @return int The index, or -1 if it was never added.
+	 */
+	public int indexOf(BasicEnemy e){
+		return enemies.indexOf(e);
+	}
+	
+	/**
+	 * Writes where this generator is in the levels: the level, the spawn timeline and how far
+	 * through it the level is, and the counts, frequencies and random numbers of each type of enemy.
+	 * The types of enemy themselves are not written, and must be added to the generator the state is
+	 * read back into in the same order.
+	 * @param out Where to write it.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void writeState(DataOutput out) throws IOException{
+		out.writeLong(seed);
+		out.writeInt(level);
+		out.writeInt(timeOutCount);
+		out.writeInt(wavesLevel);
+		out.writeInt(enemies.size());
+		for(BasicEnemy e: enemies){
+			out.writeInt(e.getAmountForLevel());
+			out.writeDouble(e.getFrequency());
+			out.writeLong(e.getRandomCount());
+		}
+		out.writeInt(timelineLevel);
+		out.writeInt(cursor);
+		out.writeInt(levelTick);
+		out.writeInt(spawnCount);
+		for(int i = 0; i<spawnCount; i++){
+			out.writeInt(spawnTick[i]);
+			out.writeInt(spawnType[i]);
+			out.writeInt(spawnX[i]);
+		}
+	}
+	
+	/**
+	 * Puts back the state written by writeState(DataOutput out).
+	 * @param in Where to read it from.
+	 * @throws IOException If it cannot be read, or was written with different types of enemy.
+	 */
+	public void readState(DataInput in) throws IOException{
+		seed = in.readLong();
+		level = in.readInt();
+		timeOutCount = in.readInt();
+		wavesLevel = in.readInt();
+		int n = in.readInt();
+		if(n!=enemies.size()){
+			throw new IOException("Expected "+enemies.size()+" types of enemy, not "+n);
+		}
+		for(int i = 0; i<n; i++){
+			BasicEnemy e = enemies.get(i);
+			e.setAmountForLevel(in.readInt());
+			e.setFrequency(in.readDouble());
+			e.setRandomSeed(enemySeed(i));
+			e.setRandomCount(in.readLong());
+		}
+		timelineLevel = in.readInt();
+		cursor = in.readInt();
+		levelTick = in.readInt();
+		int count = in.readInt();
+		if(count<0 || cursor<0 || cursor>count){
+			throw new IOException("Bad spawn timeline");
+		}
+		if(count>spawnTick.length){
+			spawnTick = new int[count];
+			spawnType = new int[count];
+			spawnX = new int[count];
+		}
+		for(int i = 0; i<count; i++){
+			spawnTick[i] = in.readInt();
+			spawnType[i] = in.readInt();
+			spawnX[i] = in.readInt();
+			if(spawnType[i]<0 || spawnType[i]>=n){
+				throw new IOException("Bad type of enemy in the spawn timeline");
+			}
+		}
+		spawnCount = count;
+	}
+	
+	/**
+	 * Gets the number of enemies still to spawn in the current level.
+	 * @return
+	 */
+	public int getRemainingSpawns(){
+		buildTimeline();
+		return spawnCount-cursor;
+	}
+
 }
@@ -0,0 +1,76 @@
+package spaceblaster.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a loop over a range of indices on a ForkJoinPool, splitting it in half until the pieces
+ * are small enough to be worth running on their own. Used for the phases of a tick where every
+ * entity can be worked on independently of the others.
+ */
+public class RangeTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The body of a loop, which must be safe to run for different ranges at the same time.
+	 */
+	public interface Body {
+
+		/**
+		 * Runs the loop for the indices from (inclusive) to (exclusive).
+		 * @param from The first index.
+		 * @param to One past the last index.
+		 */
+		public void run(int from, int to);
+
+	}
+
+	private Body body;
+	private int from;
+	private int to;
+	private int grain;
+
+	/**
+	 * Creates a new task over a range.
+	 * @param b The body of the loop.
+	 * @param f The first index.
+	 * @param t One past the last index.
+	 * @param g The largest range that will be run without splitting it further.
+	 */
+	public RangeTask(Body b, int f, int t, int g) {
+		body = b;
+		from = f;
+		to = t;
+		grain = Math.max(g, 1);
+	}
+
+	@Override
+	protected void compute(){
+		if(to-from<=grain){
+			body.run(from, to);
+		} else {
+			int mid = (from+to)>>>1;
+			invokeAll(new RangeTask(body, from, mid, grain), new RangeTask(body, mid, to, grain));
+		}
+	}
+
+	/**
+	 * Runs a loop over the indices from 0 to n, on the pool if there is one and the range is larger
+	 * than the grain, otherwise directly on the calling thread.
+	 * @param pool The pool, or null to always run on the calling thread.
+	 * @param b The body of the loop.
+	 * @param n The number of indices.
+	 * @param grain The largest range that will be run without splitting it further.
+	 */
+	public static void run(ForkJoinPool pool, Body b, int n, int grain){
+		if(pool==null || n<=grain){
+			if(n>0){
+				b.run(0, n);
+			}
+		} else {
+			pool.invoke(new RangeTask(b, 0, n, grain));
+		}
+	}
+
+}
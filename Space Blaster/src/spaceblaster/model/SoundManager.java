@@ -1,26 +1,508 @@
 package spaceblaster.model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
-public class SoundManager implements Runnable {
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import javax.sound.sampled.UnsupportedAudioFileException;
 
-	
-	ArrayList<URL> soundsToPlay = new ArrayList<URL>();
-	
+import spaceblaster.model.entities.Entity;
+import spaceblaster.model.entities.Laser;
+
+/**
+ * Plays the game's sound effects through a single audio line. Every effect is decoded to 16 bit
+ * PCM once when it is loaded and kept in memory. A mixer thread adds up the effects currently
+ * playing (its voices) into one small buffer and writes it to the line, so playing an effect is just
+ * a request put on a lock-free queue, and firing many lasers a second never opens a line or starts
+ * a thread. When there are more requests than voices the oldest voice is stolen.
+ *
+ * As a WorldListener it plays the fire sound of every laser added to the world, by the id the
+ * laser it was copied from was registered with, see register(World w).
+ */
+public class SoundManager implements Runnable, WorldListener {
+
+	/**
+	 * The format everything is mixed in, 44.1 kHz 16 bit signed little endian mono.
+	 */
+	public static final AudioFormat FORMAT = new AudioFormat(44100f, 16, 1, true, false);
+
+	/**
+	 * The number of effects that can play at once.
+	 */
+	public static final int MAX_VOICES = 8;
+
+	/**
+	 * The number of copies of a single effect that can play at once, so one effect played very
+	 * often does not drown out every other.
+	 */
+	public static final int MAX_VOICES_PER_SOUND = 3;
+
+	/**
+	 * The number of frames mixed at a time, about 6 ms. The line holds a few of these so there is
+	 * little delay between a request and the effect being heard.
+	 */
+	public static final int BUFFER_FRAMES = 256;
+
+	/**
+	 * The id of no sound, returned for an unknown effect.
+	 */
+	public static final int NO_SOUND = -1;
+
+	// scales every voice so a few at once rarely clip
+	private static final int VOICE_GAIN = 96;
+	private static final int GAIN_SHIFT = 8;
+
+	/**
+	 * Somewhere for the mixed audio to go, normally an audio line.
+	 */
+	public interface Sink {
+
+		/**
+		 * Writes mixed audio in FORMAT, blocking until there is room for it.
+		 * @param b The audio.
+		 * @param off The first byte to write.
+		 * @param len The number of bytes to write.
+		 */
+		public void write(byte[] b, int off, int len);
+
+	}
+
+	// the effects, each as 16 bit samples
+	private volatile short[][] sounds = new short[0][];
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private final RequestQueue requests = new RequestQueue(256);
+
+	// the voices, only touched by the mixing thread
+	private final int[] voiceSound = new int[MAX_VOICES];
+	private final int[] voicePosition = new int[MAX_VOICES];
+	private final long[] voiceStarted = new long[MAX_VOICES];
+	private long voicesStarted = 0;
+	private long voicesStolen = 0;
+	private final AtomicLong requestsDropped = new AtomicLong();
+
+	private final int[] mix = new int[BUFFER_FRAMES];
+	private final byte[] out = new byte[BUFFER_FRAMES*2];
+
+	// the mixer thread, which mixes for as long as it is this one
+	private volatile Thread thread;
+	private Sink sink;
+	private SourceDataLine line;
+
+	/**
+	 * Creates a new sound manager with no effects and nothing playing.
+	 */
 	public SoundManager() {
-		
-		
-		
-		
-		
+		Arrays.fill(voiceSound, NO_SOUND);
+	}
+
+	/**
+	 * Decodes an effect and keeps it for playing, converting it to FORMAT.
+	 * @param url Where the effect is.
+	 * @return int The id to play it with.
+	 * @throws IOException If the effect cannot be read.
+	 * @throws UnsupportedAudioFileException If Java Sound cannot decode the effect or convert it to FORMAT.
+	 */
+	public int load(URL url) throws IOException, UnsupportedAudioFileException{
+		if(url==null){
+			throw new IOException("Missing sound");
+		}
+		AudioInputStream in = AudioSystem.getAudioInputStream(url);
+		try {
+			if(!in.getFormat().matches(FORMAT)){
+				if(!AudioSystem.isConversionSupported(FORMAT, in.getFormat())){
+					throw new UnsupportedAudioFileException("Cannot convert "+url+" from "+in.getFormat());
+				}
+				in = AudioSystem.getAudioInputStream(FORMAT, in);
+			}
+			byte[] bytes = readAll(in);
+			short[] samples = new short[bytes.length/2];
+			for(int i = 0; i<samples.length; i++){
+				samples[i] = (short)((bytes[i*2] & 0xff) | (bytes[i*2+1]<<8));
+			}
+			return add(url, samples);
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] b = new byte[4096];
+		int n;
+		while((n = in.read(b))>0){
+			bytes.write(b, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Keeps an effect that is already in FORMAT for playing.
+	 * @param url The URL entities refer to the effect by, or null if it is only played by id.
+	 * @param samples The samples of the effect.
+	 * @return int The id to play it with.
+	 */
+	public synchronized int add(URL url, short[] samples){
+		short[][] current = sounds;
+		short[][] next = Arrays.copyOf(current, current.length+1);
+		next[current.length] = samples;
+		sounds = next;
+		if(url!=null){
+			ids.put(url.toString(), current.length);
+		}
+		return current.length;
+	}
+
+	/**
+	 * Gets the id of an effect by the URL it was loaded from.
+	 * @param url The URL.
+	 * @return int The id, or NO_SOUND if no effect was loaded from it.
+	 */
+	public synchronized int idOf(URL url){
+		if(url==null){
+			return NO_SOUND;
+		}
+		Integer id = ids.get(url.toString());
+		return id==null ? NO_SOUND : id;
+	}
+
+	/**
+	 * Looks up the id of the fire sound of a laser once, so every copy of it can be played by id.
+	 * @param l The laser.
+	 */
+	public void register(Laser l){
+		if(l!=null){
+			l.setFireSoundId(idOf(l.getFireSound()));
+		}
+	}
+
+	/**
+	 * Registers the lasers every laser in a world is copied from, the player's and those of each
+	 * type of enemy, see register(Laser l). Called once the world is built or restored, before it is
+	 * played.
+	 * @param w The world.
+	 */
+	public void register(World w){
+		register(w.getPlayer().getLaser());
+		LevelGenorator gen = w.getLevelGenorator();
+		for(int i = 0; i<gen.getEnemyCount(); i++){
+			register(gen.getEnemy(i).getLaser());
+		}
+	}
+
+	/**
+	 * Creates a laser like effect for when no recording can be decoded: a short sine sweep falling
+	 * from one frequency to another and fading out.
+	 * @param startHz The frequency at the start.
+	 * @param endHz The frequency at the end.
+	 * @param millis The length in milliseconds.
+	 * @return short[] The samples in FORMAT.
+	 */
+	public static short[] createSweep(double startHz, double endHz, int millis){
+		int n = (int)(FORMAT.getSampleRate()*millis/1000);
+		short[] samples = new short[n];
+		double phase = 0;
+		for(int i = 0; i<n; i++){
+			double t = (double)i/n;
+			phase += 2*Math.PI*(startHz+(endHz-startHz)*t)/FORMAT.getSampleRate();
+			samples[i] = (short)(Math.sin(phase)*(1-t)*(1-t)*Short.MAX_VALUE*0.8);
+		}
+		return samples;
+	}
+
+	/**
+	 * Asks for an effect to be played, from any thread. Never blocks; if the mixer is too far
+	 * behind to take the request it is dropped.
+	 * @param id The id of the effect.
+	 */
+	public void play(int id){
+		if(id<0 || id>=sounds.length){
+			return;
+		}
+		if(!requests.offer(id)){
+			requestsDropped.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Mixes the next block of audio, starting the effects asked for since the last block. Called
+	 * by the mixer thread, or directly when rendering without a line.
+	 * @param b Where to put the audio, at least BUFFER_FRAMES*2 bytes.
+	 * @return int The number of bytes mixed.
+	 */
+	public int render(byte[] b){
+		short[][] all = sounds;
+		for(int id = requests.poll(); id!=NO_SOUND; id = requests.poll()){
+			startVoice(id);
+		}
+
+		Arrays.fill(mix, 0);
+		for(int v = 0; v<MAX_VOICES; v++){
+			int id = voiceSound[v];
+			if(id==NO_SOUND){
+				continue;
+			}
+			short[] samples = all[id];
+			int pos = voicePosition[v];
+			int n = Math.min(BUFFER_FRAMES, samples.length-pos);
+			for(int i = 0; i<n; i++){
+				mix[i] += samples[pos+i]*VOICE_GAIN;
+			}
+			pos += n;
+			if(pos>=samples.length){
+				voiceSound[v] = NO_SOUND;
+			} else {
+				voicePosition[v] = pos;
+			}
+		}
+
+		for(int i = 0; i<BUFFER_FRAMES; i++){
+			int s = mix[i]>>GAIN_SHIFT;
+			if(s>Short.MAX_VALUE){
+				s = Short.MAX_VALUE;
+			} else if (s<Short.MIN_VALUE){
+				s = Short.MIN_VALUE;
+			}
+			b[i*2] = (byte)s;
+			b[i*2+1] = (byte)(s>>8);
+		}
+		return BUFFER_FRAMES*2;
+	}
+
+	/**
+	 * Starts an effect on a free voice. If the effect is already playing MAX_VOICES_PER_SOUND
+	 * times its oldest copy is restarted, otherwise if no voice is free the oldest voice is stolen.
+	 */
+	private void startVoice(int id){
+		int free = -1;
+		int oldest = -1;
+		int oldestSame = -1;
+		int same = 0;
+		for(int v = 0; v<MAX_VOICES; v++){
+			if(voiceSound[v]==NO_SOUND){
+				if(free==-1){
+					free = v;
+				}
+				continue;
+			}
+			if(oldest==-1 || voiceStarted[v]<voiceStarted[oldest]){
+				oldest = v;
+			}
+			if(voiceSound[v]==id){
+				same++;
+				if(oldestSame==-1 || voiceStarted[v]<voiceStarted[oldestSame]){
+					oldestSame = v;
+				}
+			}
+		}
+		int v;
+		if(same>=MAX_VOICES_PER_SOUND){
+			v = oldestSame;
+			voicesStolen++;
+		} else if (free!=-1){
+			v = free;
+		} else {
+			v = oldest;
+			voicesStolen++;
+		}
+		voiceSound[v] = id;
+		voicePosition[v] = 0;
+		voiceStarted[v] = voicesStarted++;
+	}
+
+	/**
+	 * Gets the number of voices playing, for the mixer thread or a test rendering directly.
+	 * @return
+	 */
+	public int getActiveVoices(){
+		int n = 0;
+		for(int v = 0; v<MAX_VOICES; v++){
+			if(voiceSound[v]!=NO_SOUND){
+				n++;
+			}
+		}
+		return n;
+	}
+
+	public long getVoicesStarted(){
+		return voicesStarted;
+	}
+
+	public long getVoicesStolen(){
+		return voicesStolen;
+	}
+
+	public long getRequestsDropped(){
+		return requestsDropped.get();
+	}
+
+	/**
+	 * Starts mixing into the default audio line, which is closed again by stop(). If there is no
+	 * line to play to (no sound card, or a headless machine) the game simply has no sound.
+	 * @return boolean Whether the line was opened.
+	 */
+	public synchronized boolean start(){
+		stop();
+		final SourceDataLine l;
+		try {
+			l = AudioSystem.getSourceDataLine(FORMAT);
+			l.open(FORMAT, BUFFER_FRAMES*2*4);
+		} catch (LineUnavailableException e) {
+			return false;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		l.start();
+		start(new Sink() {
+			public void write(byte[] b, int off, int len) {
+				l.write(b, off, len);
+			}
+		});
+		line = l;
+		return true;
+	}
+
+	/**
+	 * Starts mixing into a sink on a new thread, which the sink's blocking writes keep in time. Any
+	 * mixer already running is stopped first, see stop().
+	 * @param s The sink.
+	 */
+	public synchronized void start(Sink s){
+		stop();
+		sink = s;
+		Thread t = new Thread(this, "Sound mixer");
+		t.setDaemon(true);
+		t.setPriority(Thread.MAX_PRIORITY);
+		thread = t;
+		t.start();
+	}
+
+	/**
+	 * Stops the mixer thread and waits for it to finish the block it is on, so only one thread ever
+	 * mixes, then closes the audio line if start() opened one. The line is stopped first, which lets
+	 * a write blocked on it return. Should be called before the game exits.
+	 */
+	public synchronized void stop(){
+		Thread t = thread;
+		thread = null;
+		SourceDataLine l = line;
+		line = null;
+		if(l!=null){
+			l.stop();
+			l.flush();
+		}
+		if(t!=null){
+			t.interrupt();
+			boolean interrupted = false;
+			while(t.isAlive() && t!=Thread.currentThread()){
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+		if(l!=null){
+			l.close();
+		}
 	}
 
 	@Override
 	public void run() {
+		Sink s = sink;
+		while(thread==Thread.currentThread()){
+			int n = render(out);
+			s.write(out, 0, n);
+		}
+	}
+
+	@Override
+	public void entityAdded(Entity e){
+		if(e instanceof Laser){
+			play(((Laser)e).getFireSoundId());
+		}
+	}
+
+	@Override
+	public void entityRemoved(Entity e){
+	}
+
+	@Override
+	public void levelChanged(int level){
+	}
+
+	@Override
+	public void tickFinished(World world){
+	}
+
+	/**
+	 * A bounded lock-free queue of sound ids which any number of threads can add to and one thread
+	 * takes from, without allocating. Each slot has a sequence number saying whose turn it is,
+	 * after D. Vyukov's bounded queue.
+	 */
+	static class RequestQueue {
+
+		private final int[] values;
+		private final AtomicLongArray sequence;
+		private final int mask;
+		private final AtomicLong tail = new AtomicLong();
+		private long head = 0;
+
+		RequestQueue(int capacity) {
+			int size = Integer.highestOneBit(Math.max(capacity, 2)-1)<<1;
+			values = new int[size];
+			sequence = new AtomicLongArray(size);
+			mask = size-1;
+			for(int i = 0; i<size; i++){
+				sequence.set(i, i);
+			}
+		}
+
+		boolean offer(int v){
+			long pos = tail.get();
+			while(true){
+				int i = (int)(pos & mask);
+				long diff = sequence.get(i)-pos;
+				if(diff==0){
+					if(tail.compareAndSet(pos, pos+1)){
+						values[i] = v;
+						sequence.lazySet(i, pos+1);
+						return true;
+					}
+					pos = tail.get();
+				} else if (diff<0){
+					return false;
+				} else {
+					pos = tail.get();
+				}
+			}
+		}
+
+		int poll(){
+			int i = (int)(head & mask);
+			if(sequence.get(i)!=head+1){
+				return NO_SOUND;
+			}
+			int v = values[i];
+			sequence.lazySet(i, head+mask+1);
+			head++;
+			return v;
+		}
 
-		
-		
 	}
 
 }
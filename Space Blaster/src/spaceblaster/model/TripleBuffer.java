@@ -0,0 +1,63 @@
+package spaceblaster.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Passes whole objects from one producer thread to one consumer thread without either of them
+ * blocking. The producer fills the back buffer and publishes it, the consumer always takes the
+ * most recently published one, and the third buffer sits between them so neither ever writes to
+ * or reads from a buffer the other is using.
+ * @param <T> The type of the buffers.
+ */
+public class TripleBuffer<T> {
+
+	// the index of the middle buffer is kept in the low bits, with this bit set when it is newer than the front buffer
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+
+	private final Object[] buffers;
+	private final AtomicInteger middle = new AtomicInteger(1);
+	private int back = 0;
+	private int front = 2;
+
+	/**
+	 * Creates a new triple buffer from three distinct buffers.
+	 * @param a The first back buffer.
+	 * @param b The first middle buffer.
+	 * @param c The first front buffer.
+	 */
+	public TripleBuffer(T a, T b, T c) {
+		buffers = new Object[]{a, b, c};
+	}
+
+	/**
+	 * Gets the buffer the producer should write to next. Only the producer may call this.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack(){
+		return (T)buffers[back];
+	}
+
+	/**
+	 * Hands the back buffer to the consumer and gives the producer a new back buffer. Only the
+	 * producer may call this.
+	 */
+	public void publish(){
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * Gets the most recently published buffer, which stays the consumer's until the next call.
+	 * Only the consumer may call this.
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront(){
+		if((middle.get() & FRESH)!=0){
+			front = middle.getAndSet(front) & INDEX;
+		}
+		return (T)buffers[front];
+	}
+
+}
@@ -0,0 +1,780 @@
+package spaceblaster.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import spaceblaster.model.collision.CollisionLayer;
+import spaceblaster.model.collision.SpatialGrid;
+import spaceblaster.model.entities.*;
+import spaceblaster.model.entities.Player.Acceleration;
+import spaceblaster.model.metrics.TickMetrics;
+
+/**
+ * The simulated game world: the player, the enemy ships, the projectiles, the bounds of the playing
+ * area and the LevelGenorator spawning new enemies. A World knows nothing about Swing and can be
+ * stepped as fast as the machine allows, the GameFrame only watches it through a WorldListener.
+ */
+public class World {
+
+	/**
+	 * How much health the player loses when an enemy ship flies into it.
+	 */
+	public static final int SHIP_COLLISION_DAMAGE = 10;
+
+	/**
+	 * The time in seconds between one level ending and the next one starting to spawn enemies.
+	 */
+	public static final double LEVEL_TIME_OUT = 3.0;
+
+	/**
+	 * The size of a cell in the collision grid, a little larger than the biggest enemy ship.
+	 */
+	public static final int GRID_CELL_SIZE = 64;
+
+	/**
+	 * The fewest entities a parallel phase hands to one thread, smaller phases run on one thread.
+	 */
+	public static final int PARALLEL_GRAIN = 1024;
+
+	private int width;
+	private int height;
+	private Player player;
+	private LevelGenorator levelGen;
+
+	/**
+	 * All of the entities currently in the world, other than the player.
+	 */
+	EntityStore ships = new EntityStore(64);
+	EntityStore projectiles = new EntityStore(256);
+
+	private SpatialGrid grid;
+	private CommandBuffer commands = new CommandBuffer();
+
+	/**
+	 * Runs the parallel phases of each tick, null to run them on the thread stepping the world.
+	 */
+	private ForkJoinPool pool = null;
+
+	/**
+	 * Times the phases of each tick, null to not measure anything.
+	 */
+	private TickMetrics metrics = null;
+
+	/**
+	 * Moves the projectiles and sorts out which left the world and which hit the player: the one
+	 * set, or else the default, taken afresh every tick since it changes once the vector kernel has
+	 * warmed up.
+	 */
+	private ProjectileKernel kernel = null;
+	private ProjectileKernel tickKernel = ProjectileKernel.getDefault();
+
+	/**
+	 * What the narrow phase found for each projectile: the index of the ship it hit, or one of these.
+	 */
+	private static final int PROJECTILE_MISSED = ProjectileKernel.MISSED;
+	private static final int PROJECTILE_HIT_PLAYER = ProjectileKernel.HIT_BOX;
+	private static final int PROJECTILE_OUTSIDE = ProjectileKernel.OUTSIDE;
+	private int[] projectileResults = new int[256];
+
+	/**
+	 * The layers of the projectiles that can hit the player, and of those that can only hit ships.
+	 */
+	private static final int HITS_PLAYER = CollisionLayer.ENEMY | CollisionLayer.ENEMY_LASER;
+	private static final int HITS_SHIPS = CollisionLayer.PLAYER | CollisionLayer.PLAYER_LASER;
+
+	/**
+	 * What the enemy update and narrow phases found for each ship, as flags.
+	 */
+	private static final int SHIP_FIRES = 1;
+	private static final int SHIP_OUTSIDE = 1<<1;
+	private static final int SHIP_HIT_PLAYER = 1<<2;
+	private int[] shipResults = new int[64];
+
+	// the bounds of the player at the start of the current tick
+	private int playerLeft;
+	private int playerTop;
+	private int playerWidth;
+	private int playerHeight;
+
+	private final RangeTask.Body integrateProjectiles = new RangeTask.Body() {
+		public void run(int from, int to) {
+			tickKernel.integrate(projectiles, from, to);
+		}
+	};
+
+	private final RangeTask.Body integrateShips = new RangeTask.Body() {
+		public void run(int from, int to) {
+			ships.integrate(from, to);
+		}
+	};
+
+	/**
+	 * Decides which enemies fire and updates the ones still in the world. Enemies only change
+	 * their own state in update(), so any number can be updated at once.
+	 */
+	private final RangeTask.Body updateShips = new RangeTask.Body() {
+		public void run(int from, int to) {
+			for(int i = from; i<to; i++){
+				Entity e = ships.getEntity(i);
+				int result = 0;
+				if(e instanceof BasicEnemy && ((BasicEnemy)e).shouldFire()){
+					result |= SHIP_FIRES;
+				}
+				if(ships.isInside(i, width, height)){
+					if(e.isAlive()){
+						e.update();
+					}
+				} else {
+					result |= SHIP_OUTSIDE;
+				}
+				shipResults[i] = result;
+			}
+		}
+	};
+
+	/**
+	 * Finds what each projectile hit, without changing anything but its own result.
+	 */
+	private final RangeTask.Body collideProjectiles = new RangeTask.Body() {
+		public void run(int from, int to) {
+			// ships spawn at the top of the screen and only move down, so nothing is more than
+			// GRID_CELL_SIZE above it, and a projectile further up than that and still going up is gone
+			tickKernel.classify(projectiles, from, to, width, height, -GRID_CELL_SIZE, HITS_PLAYER, HITS_SHIPS,
+					playerLeft, playerTop, playerWidth, playerHeight, projectileResults);
+			for(int i = from; i<to; i++){
+				if(projectileResults[i]!=ProjectileKernel.SEARCH){
+					continue;
+				}
+				int hw = projectiles.getHalfWidth(i);
+				int hh = projectiles.getHalfHeight(i);
+				int mask = CollisionLayer.maskFor(projectiles.getCollisionLayer(i));
+				int hit = grid.findFirst((int)projectiles.getX(i)-hw, (int)projectiles.getY(i)-hh, hw*2, hh*2, mask);
+				projectileResults[i] = hit>=0 ? hit : PROJECTILE_MISSED;
+			}
+		}
+	};
+
+	/**
+	 * Finds which ships flew into the player.
+	 */
+	private final RangeTask.Body collideShips = new RangeTask.Body() {
+		public void run(int from, int to) {
+			for(int i = from; i<to; i++){
+				if((shipResults[i] & SHIP_OUTSIDE)!=0
+						|| !CollisionLayer.canCollide(ships.getCollisionLayer(i), CollisionLayer.PLAYER)){
+					continue;
+				}
+				int hw = ships.getHalfWidth(i);
+				int hh = ships.getHalfHeight(i);
+				if(SpatialGrid.intersects((int)ships.getX(i)-hw, (int)ships.getY(i)-hh, hw*2, hh*2, playerLeft, playerTop, playerWidth, playerHeight)){
+					shipResults[i] |= SHIP_HIT_PLAYER;
+				}
+			}
+		}
+	};
+
+	private List<WorldListener> listeners = new CopyOnWriteArrayList<WorldListener>();
+
+	private long tickCount = 0;
+	private boolean playerDestroyed = false;
+
+	/**
+	 * The input events submitted since the last tick, see submitInput(int event, long stamp).
+	 */
+	private final InputQueue inputs = new InputQueue(InputQueue.DEFAULT_CAPACITY);
+	private InputListener inputListener;
+
+	/**
+	 * The actions held down as of the start of the tick, a bit for each action in InputEvent.
+	 */
+	private int held = 0;
+
+	/**
+	 * Creates a new world.
+	 * @param w The width of the playing area.
+	 * @param h The height of the playing area, entities below this are out of the world.
+	 * @param p The player.
+	 * @param gen The LevelGenorator used to spawn enemies, already loaded with the enemy types.
+	 */
+	public World(int w, int h, Player p, LevelGenorator gen) {
+		width = w;
+		height = h;
+		player = p;
+		levelGen = gen;
+		grid = new SpatialGrid(w, h, GRID_CELL_SIZE);
+	}
+
+	/**
+	 * Adds a listener to be told about entities and levels changing.
+	 * @param l The listener.
+	 */
+	public void addListener(WorldListener l){
+		listeners.add(l);
+	}
+
+	/**
+	 * Removes a listener added with addListener(WorldListener l).
+	 * @param l The listener.
+	 */
+	public void removeListener(WorldListener l){
+		listeners.remove(l);
+	}
+
+	/**
+	 * Adds a new projectile (usually a Laser) to the world straight away. Should not be called while
+	 * the world is being stepped, entities created during a tick go through the CommandBuffer.
+	 * @param e The projectile.
+	 */
+	public void addProjectile(Entity e){
+		if(projectiles.add(e)<0){
+			return;
+		}
+		for(WorldListener l: listeners){
+			l.entityAdded(e);
+		}
+	}
+
+	/**
+	 * Adds a new ship to the world straight away, see addProjectile(Entity e).
+	 * @param e The ship, usually a BasicEnemy.
+	 */
+	public void addShip(Entity e){
+		if(ships.add(e)<0){
+			return;
+		}
+		for(WorldListener l: listeners){
+			l.entityAdded(e);
+		}
+	}
+
+	/**
+	 * Queues an input event to be applied at the start of the next tick, so the same events
+	 * submitted before the same ticks always play out the same way, and an input never waits more
+	 * than a tick to take effect. Events may be submitted from any one thread at a time, usually the
+	 * event dispatch thread, without holding up the thread stepping the world.
+	 * @param event The event, see InputEvent.
+	 * @param stamp The System.nanoTime() the input happened at, for measuring how long it took to apply.
+	 * @return boolean false if too many events are waiting and this one was dropped.
+	 */
+	public boolean submitInput(int event, long stamp){
+		return inputs.offer(event, stamp);
+	}
+
+	/**
+	 * Queues an input event that happened now, see submitInput(int event, long stamp).
+	 * @param event The event, see InputEvent.
+	 * @return boolean false if too many events are waiting and this one was dropped.
+	 */
+	public boolean submitInput(int event){
+		return submitInput(event, System.nanoTime());
+	}
+
+	/**
+	 * Sets the listener told about every input event as it is applied.
+	 * @param l The listener, or null for none.
+	 */
+	public void setInputListener(InputListener l){
+		inputListener = l;
+	}
+
+	/**
+	 * Whether an action was held down at the start of the current tick.
+	 * @param action The action, see InputEvent.
+	 * @return
+	 */
+	public boolean isHeld(int action){
+		return (held & 1<<action)!=0;
+	}
+
+	/**
+	 * Drains the input events submitted since the last tick into the actions held down, in the order
+	 * they were submitted, and steers the player by them. Pressing a direction accelerates the player
+	 * that way; releasing it accelerates the other way if that is still held, and otherwise slows
+	 * the player down. Key repeats of an action already held change nothing but firing.
+	 * @param m The metrics to record how long each event waited in, or null.
+	 * @return boolean true if the player fired.
+	 */
+	private boolean applyInputs(TickMetrics m){
+		boolean fire = false;
+		int event;
+		while((event = inputs.poll())>=0){
+			if(m!=null){
+				m.recordInput(inputs.getLastStamp());
+			}
+			InputListener l = inputListener;
+			if(l!=null){
+				l.inputApplied(tickCount, event);
+			}
+			int action = InputEvent.getAction(event);
+			if(action>=InputEvent.ACTION_COUNT){
+				continue;
+			}
+			if(InputEvent.isPressed(event)){
+				held |= 1<<action;
+				if(action==InputEvent.UP){
+					player.setYAcceleration(Acceleration.Negative);
+				} else if (action==InputEvent.DOWN){
+					player.setYAcceleration(Acceleration.Positive);
+				} else if (action==InputEvent.LEFT){
+					player.setXAcceleration(Acceleration.Negative);
+				} else if (action==InputEvent.RIGHT){
+					player.setXAcceleration(Acceleration.Positive);
+				} else if (action==InputEvent.FIRE){
+					fire = true;
+				}
+			} else {
+				held &= ~(1<<action);
+				if(action==InputEvent.UP || action==InputEvent.DOWN){
+					player.setYAcceleration(isHeld(InputEvent.UP) ? Acceleration.Negative
+							: isHeld(InputEvent.DOWN) ? Acceleration.Positive : Acceleration.Zeroing);
+				} else if (action==InputEvent.LEFT || action==InputEvent.RIGHT){
+					player.setXAcceleration(isHeld(InputEvent.LEFT) ? Acceleration.Negative
+							: isHeld(InputEvent.RIGHT) ? Acceleration.Positive : Acceleration.Zeroing);
+				}
+			}
+		}
+		return fire;
+	}
+
+	/**
+	 * Applies the spawns and despawns queued during the tick, telling the listeners about them and
+	 * returning the despawned entities to their pools.
+	 */
+	private void applyCommands(){
+		commands.apply();
+		for(int i = 0; i<commands.getDespawnedCount(); i++){
+			Entity e = commands.getDespawned(i);
+			for(WorldListener l: listeners){
+				l.entityRemoved(e);
+			}
+			e.release();
+		}
+		for(int i = 0; i<commands.getSpawnedCount(); i++){
+			Entity e = commands.getSpawned(i);
+			if(e!=null){
+				for(WorldListener l: listeners){
+					l.entityAdded(e);
+				}
+			}
+		}
+		commands.clear();
+	}
+
+	/**
+	 * Moves the world forward by the given number of ticks, stopping early if the player is destroyed.
+	 * @param n The number of ticks.
+	 */
+	public void step(int n){
+		for(int i = 0; i<n && !playerDestroyed; i++){
+			step();
+		}
+	}
+
+	/**
+	 * Sets the pool used to run the data parallel phases of a tick. A tick gives the same result
+	 * whether or not it runs in parallel.
+	 * @param p The pool, or null to run every phase on the thread stepping the world.
+	 */
+	public void setForkJoinPool(ForkJoinPool p){
+		pool = p;
+	}
+
+	/**
+	 * Sets the kernel the projectiles are moved and collided with, ProjectileKernel.getDefault()
+	 * unless set. A tick gives the same result whichever kernel runs it.
+	 * @param k The kernel, or null for the default.
+	 */
+	public void setProjectileKernel(ProjectileKernel k){
+		kernel = k;
+	}
+
+	public ProjectileKernel getProjectileKernel(){
+		return kernel!=null ? kernel : ProjectileKernel.getDefault();
+	}
+
+	/**
+	 * Sets the metrics each tick is measured into, see TickMetrics.
+	 * @param m The metrics, or null to not measure the ticks.
+	 */
+	public void setMetrics(TickMetrics m){
+		metrics = m;
+	}
+
+	/**
+	 * Moves the world forward by exactly one tick, or 1/GameClock.TICKS_PER_SECOND seconds. The tick
+	 * runs in phases: integrate, enemy updates, broadphase, narrow phase and resolve. Integration,
+	 * the enemy updates and the narrow phase only touch the entity at their own index and may run
+	 * in parallel, all damage, score, spawns and despawns are applied afterwards in index order.
+	 */
+	public void step(){
+		TickMetrics m = metrics;
+		if(m!=null){
+			m.beginTick(tickCount);
+		}
+		if(applyInputs(m)){
+			commands.spawn(projectiles, player.getNewLaser((int)player.getX(), (int)player.getY()-player.getHeight()/2, 2.0, 0.0));
+		}
+
+		prepareTick();
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_INPUT);
+		}
+
+		// integrate
+		RangeTask.run(pool, integrateProjectiles, projectiles.size(), PARALLEL_GRAIN);
+		RangeTask.run(pool, integrateShips, ships.size(), PARALLEL_GRAIN);
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_INTEGRATE);
+		}
+
+		// enemy updates and fire decisions
+		RangeTask.run(pool, updateShips, ships.size(), PARALLEL_GRAIN);
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_ENEMIES);
+		}
+
+		collide();
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_COLLIDE);
+		}
+
+		// resolve, in index order so the result never depends on how the phases above were split up
+		int tested = 0;
+		int hit = 0;
+		int killed = 0;
+		for(int i = 0; i<projectiles.size(); i++){
+			int result = projectileResults[i];
+			if(result!=PROJECTILE_OUTSIDE){
+				tested++;
+			}
+			if(result==PROJECTILE_MISSED){
+				continue;
+			}
+			Entity e = projectiles.getEntity(i);
+			commands.despawn(e);
+			if(result==PROJECTILE_HIT_PLAYER){
+				hit++;
+				player.setHealth(player.getHealth()-(int)((Laser)e).getDamage());
+			} else if (result>=0){
+				hit++;
+				Ship ship = (Ship)ships.getEntity(result);
+				ship.setHealth(ship.getHealth()-(int)((Laser)e).getDamage());
+			}
+		}
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_PROJECTILES);
+		}
+		for(int i = 0; i<ships.size(); i++){
+			Entity e = ships.getEntity(i);
+			int result = shipResults[i];
+			if((result & SHIP_OUTSIDE)==0){
+				tested++;
+			}
+			if(e instanceof Ship && ships.getHealth(i)<=0){
+				commands.despawn(e);
+				if(e instanceof BasicEnemy){
+					player.addToScore(((BasicEnemy)e).getPointsPerShip());
+				}
+				killed++;
+				continue;
+			}
+			if((result & SHIP_FIRES)!=0){
+				BasicEnemy enemy = (BasicEnemy)e;
+				Laser l = enemy.getNewLaser((int)ships.getLastX(i), (int)ships.getLastY(i)+ships.getHalfHeight(i));
+				commands.spawn(projectiles, l);
+				enemy.justFired();
+			}
+			if((result & SHIP_OUTSIDE)!=0){
+				commands.despawn(e);
+			} else if ((result & SHIP_HIT_PLAYER)!=0){
+				hit++;
+				commands.despawn(e);
+				player.setHealth(player.getHealth()-SHIP_COLLISION_DAMAGE);
+			}
+		}
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_SHIPS);
+		}
+		player.update();
+
+		if(levelGen.isCurrentLevelDone()){
+			levelGen.updateLevel(LEVEL_TIME_OUT);
+			for(WorldListener l: listeners){
+				l.levelChanged(levelGen.getLevel());
+			}
+		}
+
+		ArrayList<Entity> newEntities = levelGen.getNewEntities();
+		int spawned = newEntities==null ? 0 : newEntities.size();
+		if(newEntities !=null && !newEntities.isEmpty()){
+			for(Entity e: newEntities){
+				commands.spawn(ships, e);
+			}
+		}
+
+		// keeps the player in bounds.
+		if((player.getX()<player.getWidth()/2) && player.getXVelocity()<0){
+			player.setXVelocity(0);
+		} else if ((player.getX()>width-player.getWidth()/2) && player.getXVelocity()>0){
+			player.setXVelocity(0);
+		} else {
+			player.setX(player.getX()+player.getXVelocity());
+		}
+
+		if((player.getY()<player.getHeight()/2) && player.getYVelocity()<0){
+			player.setYVelocity(0);
+		} else if ((player.getY()>height-player.getHeight()) && player.getYVelocity()>0){
+			player.setYVelocity(0);
+		} else {
+			player.setY(player.getY()+player.getYVelocity());
+		}
+
+		if(player.getHealth()<=0){
+			playerDestroyed = true;
+		}
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_SPAWN);
+		}
+		applyCommands();
+		tickCount++;
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_COMMANDS);
+		}
+		for(WorldListener l: listeners){
+			l.tickFinished(this);
+		}
+		if(m!=null){
+			m.endPhase(TickMetrics.PHASE_LISTENERS);
+			m.setDroppedInputs(inputs.getDropped());
+			m.endTick(ships.size(), projectiles.size(), levelGen.getLevel(), spawned, killed, tested, hit);
+		}
+	}
+
+	/**
+	 * Holds where the player is at the start of the tick and makes room for the results of every
+	 * entity, before any of the phases of a tick.
+	 */
+	void prepareTick(){
+		tickKernel = kernel!=null ? kernel : ProjectileKernel.getDefault();
+		player.savePosition();
+		playerWidth = player.getWidth();
+		playerHeight = player.getHeight();
+		playerLeft = (int)player.getX()-playerWidth/2;
+		playerTop = (int)player.getY()-playerHeight/2;
+		if(projectileResults.length<projectiles.size()){
+			projectileResults = new int[Math.max(projectiles.size(), projectileResults.length*2)];
+		}
+		if(shipResults.length<ships.size()){
+			shipResults = new int[Math.max(ships.size(), shipResults.length*2)];
+		}
+	}
+
+	/**
+	 * Runs the broadphase and the narrow phase, finding what every projectile hit and which ships flew
+	 * into the player. Only the results are changed, not the entities, so this can be run again on the
+	 * same world (which is how it is benchmarked on its own).
+	 */
+	void collide(){
+		// broadphase, holding the ships where they were at the start of the tick
+		grid.clear();
+		for(int i = 0; i<ships.size(); i++){
+			int hw = ships.getHalfWidth(i);
+			int hh = ships.getHalfHeight(i);
+			grid.insert(ships.getCollisionLayer(i), (int)ships.getLastX(i)-hw, (int)ships.getLastY(i)-hh, hw*2, hh*2);
+		}
+
+		// narrow phase
+		RangeTask.run(pool, collideProjectiles, projectiles.size(), PARALLEL_GRAIN);
+		RangeTask.run(pool, collideShips, ships.size(), PARALLEL_GRAIN);
+	}
+
+	/**
+	 * Writes the state of the world: the tick, the actions held, the player, every ship and projectile and where the
+	 * LevelGenorator is in the levels. Only what changes as the world is stepped is written, so the
+	 * state can only be read back into a world set up the same way (the same size, player laser and
+	 * types of enemy), after which it steps exactly as this one would have. Should only be called
+	 * from the thread stepping the world, between ticks.
+	 * @param out Where to write it.
+	 * @throws IOException If it cannot be written, or an entity is not a copy of the player's laser
+	 * or of one of the LevelGenorator's enemies and lasers.
+	 */
+	public void writeState(DataOutput out) throws IOException{
+		out.writeLong(tickCount);
+		out.writeBoolean(playerDestroyed);
+		out.writeByte(held);
+		player.writeState(out);
+		out.writeInt(ships.size());
+		for(int i = 0; i<ships.size(); i++){
+			Entity e = ships.getEntity(i);
+			int type = e instanceof BasicEnemy ? levelGen.indexOf(((BasicEnemy)e).getPrototype()) : -1;
+			if(type<0){
+				throw new IOException("Ship "+i+" is not a copy of a known enemy");
+			}
+			out.writeShort(type);
+			e.writeState(out);
+		}
+		out.writeInt(projectiles.size());
+		for(int i = 0; i<projectiles.size(); i++){
+			Entity e = projectiles.getEntity(i);
+			int type = e instanceof Laser ? laserIndex(((Laser)e).getPrototype()) : -1;
+			if(type<0){
+				throw new IOException("Projectile "+i+" is not a copy of a known laser");
+			}
+			out.writeShort(type);
+			e.writeState(out);
+		}
+		// last, so copying the enemies above cannot change the random numbers it restores
+		levelGen.writeState(out);
+	}
+
+	/**
+	 * Replaces the state of the world with one written by writeState(DataOutput out), dropping every
+	 * entity and any input events not yet applied. The listeners are not told about the entities
+	 * dropped or added. Should only be called while the world is not being stepped.
+	 * @param in Where to read it from.
+	 * @throws IOException If it cannot be read, or was written by a world set up differently.
+	 */
+	public void readState(DataInput in) throws IOException{
+		clear(ships);
+		clear(projectiles);
+		inputs.clear();
+		tickCount = in.readLong();
+		playerDestroyed = in.readBoolean();
+		held = in.readUnsignedByte();
+		player.readState(in);
+		int n = in.readInt();
+		for(int i = 0; i<n; i++){
+			int type = in.readUnsignedShort();
+			if(type>=levelGen.getEnemyCount()){
+				throw new IOException("Unknown enemy "+type);
+			}
+			BasicEnemy e = levelGen.getEnemy(type).getCopy(0, 0);
+			ships.add(e);
+			e.readState(in);
+		}
+		n = in.readInt();
+		for(int i = 0; i<n; i++){
+			Laser prototype = getLaser(in.readUnsignedShort());
+			if(prototype==null){
+				throw new IOException("Unknown laser");
+			}
+			Laser l = prototype.getCopy(0, 0, 0, 0);
+			projectiles.add(l);
+			l.readState(in);
+		}
+		levelGen.readState(in);
+	}
+
+	private void clear(EntityStore store){
+		while(store.size()>0){
+			Entity e = store.getEntity(store.size()-1);
+			store.removeAt(store.size()-1);
+			e.release();
+		}
+	}
+
+	/**
+	 * Gets a laser the projectiles can be copies of: 0 is the player's, then the laser of each
+	 * type of enemy in the LevelGenorator.
+	 */
+	private Laser getLaser(int i){
+		if(i==0){
+			return player.getLaser();
+		}
+		if(i<=levelGen.getEnemyCount()){
+			return levelGen.getEnemy(i-1).getLaser();
+		}
+		return null;
+	}
+
+	private int laserIndex(Laser l){
+		if(l==null){
+			return -1;
+		}
+		for(int i = 0; i<=levelGen.getEnemyCount(); i++){
+			if(getLaser(i)==l){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Whether the player has run out of health, after which the world stops stepping.
+	 * @return
+	 */
+	public boolean isPlayerDestroyed(){
+		return playerDestroyed;
+	}
+
+	/**
+	 * Gets the number of ticks this world has been stepped.
+	 * @return
+	 */
+	public long getTickCount(){
+		return tickCount;
+	}
+
+	/**
+	 * Gets the player.
+	 * @return
+	 */
+	public Player getPlayer(){
+		return player;
+	}
+
+	/**
+	 * Gets the current level, see LevelGenorator.getLevel().
+	 * @return
+	 */
+	public int getLevel(){
+		return levelGen.getLevel();
+	}
+
+	/**
+	 * Gets the LevelGenorator that spawns the enemies in this world.
+	 * @return
+	 */
+	public LevelGenorator getLevelGenorator(){
+		return levelGen;
+	}
+
+	/**
+	 * Gets the width of the playing area.
+	 * @return
+	 */
+	public int getWidth(){
+		return width;
+	}
+
+	/**
+	 * Gets the height of the playing area.
+	 * @return
+	 */
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Gets the ships currently in the world, not including the player. Should only be read from
+	 * the thread stepping the world.
+	 * @return
+	 */
+	public EntityStore getShips(){
+		return ships;
+	}
+
+	/**
+	 * Gets the projectiles currently in the world. Should only be read from the thread stepping the world.
+	 * @return
+	 */
+	public EntityStore getProjectiles(){
+		return projectiles;
+	}
+
+}
@@ -0,0 +1,129 @@
+package spaceblaster.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+
+import spaceblaster.gui.ImageSource;
+import spaceblaster.model.entities.*;
+import spaceblaster.model.waves.WaveTable;
+
+/**
+ * Sets up new worlds: the player and its laser, and a LevelGenorator with the enemies and levels
+ * of a WaveTable. Worlds built with the same size and seed start out the same, so a recorded or
+ * saved game can be put back into a world built again later, with or without a window.
+ */
+public class WorldBuilder {
+
+	/**
+	 * The wave definition the levels are loaded from unless another is given.
+	 */
+	public static final String DEFAULT_WAVES = "/spaceblaster/resources/levels/default.waves";
+
+	private final ImageSource images;
+	private final Map<String, URL> sounds;
+	private final WaveTable waves;
+
+	/**
+	 * Creates a new builder.
+	 * @param i Where the images of the entities are looked up, with the keys in Game and in the waves.
+	 * @param s The sounds the lasers play, looked up the same way. May be null for no sounds.
+	 * @param w The enemies and levels.
+	 */
+	public WorldBuilder(ImageSource i, Map<String, URL> s, WaveTable w) {
+		images = i;
+		sounds = s;
+		waves = w;
+	}
+
+	/**
+	 * Loads the enemies and levels of the game.
+	 * @param path The path of a .waves or compiled .wavesc file, or null for DEFAULT_WAVES.
+	 * @return WaveTable The enemies and levels.
+	 * @throws IllegalStateException If the waves cannot be loaded.
+	 */
+	public static WaveTable loadWaves(String path){
+		URL url;
+		try {
+			url = path==null ? WorldBuilder.class.getResource(DEFAULT_WAVES) : new File(path).toURI().toURL();
+		} catch (MalformedURLException e) {
+			throw new IllegalStateException("Bad wave definition path "+path, e);
+		}
+		try {
+			return WaveTable.load(url);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not load the waves: "+e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Builds a new world at the first level, with a new player.
+	 * @param width The width of the playing area.
+	 * @param height The height of the playing area.
+	 * @param seed The seed the levels are generated from, see LevelGenorator.
+	 * @return World The world.
+	 */
+	public World build(int width, int height, long seed){
+		Player player = new Player(200, 200, images.getImage(Game.PLAYER_SHIP_IMAGE));
+		player.setLaser(new Laser(0, 0, 2.0, 0.0, 20, true, images.getImage(Game.BASIC_LASER_IMAGE), getSound(Game.BASIC_LASTER_FIRING_SOUND)));
+		LevelGenorator levelGen = new LevelGenorator(width, seed);
+		for(int i = 0; i<waves.getEnemyCount(); i++){
+			levelGen.addNewEnemy(createEnemy(i, width));
+		}
+		levelGen.setWaves(waves);
+		return new World(width, height, player, levelGen);
+	}
+
+	/**
+	 * Creates the enemy that copies of one of the enemies in the waves are spawned from, with its
+	 * laser. Anything the waves do not set is left as the default for the enemy's kind.
+	 * @param i The enemy's index in the waves.
+	 * @param width The width of the playing area.
+	 * @return BasicEnemy The enemy.
+	 */
+	private BasicEnemy createEnemy(int i, int width){
+		BasicEnemy enemy;
+		if(waves.getEnemyKind(i)==WaveTable.KIND_F250){
+			int margin = waves.getEnemyMargin(i)==WaveTable.UNSET ? 0 : waves.getEnemyMargin(i);
+			enemy = new F250Bullet(0, 0, images.getImage(waves.getEnemyImage(i)), margin, width-margin);
+		} else {
+			enemy = new BasicEnemy(0, 0, images.getImage(waves.getEnemyImage(i)));
+		}
+		if(waves.getEnemyHealth(i)!=WaveTable.UNSET){
+			enemy.setMaxHealth(waves.getEnemyHealth(i));
+			enemy.setHealth(waves.getEnemyHealth(i));
+		}
+		if(waves.getEnemySpeed(i)!=WaveTable.UNSET){
+			enemy.setSpeed(waves.getEnemySpeed(i));
+		}
+		if(waves.getEnemyShootTime(i)!=WaveTable.UNSET){
+			enemy.setShootTime(waves.getEnemyShootTime(i));
+		}
+		if(waves.getEnemyPoints(i)!=WaveTable.UNSET){
+			enemy.setPointsPerShip(waves.getEnemyPoints(i));
+		}
+		
+		int l = waves.getEnemyLaser(i);
+		enemy.setLaser(new Laser(0, 0, waves.getLaserSpeed(l), waves.getLaserAngle(l), waves.getLaserDamage(l), false,
+				images.getImage(waves.getLaserImage(l)), getSound(waves.getLaserSound(l))));
+		return enemy;
+	}
+
+	private URL getSound(String key){
+		if(sounds==null || key.isEmpty()){
+			return null;
+		}
+		return sounds.get(key);
+	}
+
+	/**
+	 * Gets the enemies and levels the worlds are built with.
+	 * @return
+	 */
+	public WaveTable getWaves(){
+		return waves;
+	}
+
+}
@@ -0,0 +1,37 @@
+package spaceblaster.model;
+
+import spaceblaster.model.entities.Entity;
+
+/**
+ * Observes a World, for instance to draw it on screen. A World runs the same with or without
+ * listeners, all methods are called from the thread stepping the world. Entities added or removed
+ * during a tick are reported together once the tick is over.
+ */
+public interface WorldListener {
+
+	/**
+	 * Called when a new entity enters the world.
+	 * @param e The entity that was added.
+	 */
+	public void entityAdded(Entity e);
+
+	/**
+	 * Called when an entity is destroyed or leaves the world.
+	 * @param e The entity that was removed.
+	 */
+	public void entityRemoved(Entity e);
+
+	/**
+	 * Called when the world moves on to a new level.
+	 * @param level The new level.
+	 */
+	public void levelChanged(int level);
+
+	/**
+	 * Called at the end of every tick, after all of the entities added and removed during the tick
+	 * have been reported.
+	 * @param world The world that was stepped.
+	 */
+	public void tickFinished(World world);
+
+}
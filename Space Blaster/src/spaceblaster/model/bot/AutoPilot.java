@@ -0,0 +1,242 @@
+package spaceblaster.model.bot;
+
+import spaceblaster.model.InputEvent;
+import spaceblaster.model.World;
+import spaceblaster.model.collision.CollisionLayer;
+import spaceblaster.model.entities.EntityStore;
+import spaceblaster.model.entities.Player;
+
+/**
+ * Plays the game instead of a person at the keyboard. After every tick it looks at the world and
+ * submits the same input events the keys do, pressing and releasing the directions and tapping fire,
+ * so the world cannot tell it from a player and records and replays it the same way.
+ *
+ * Each tick it tries holding each of the nine combinations of directions (including none) for the
+ * next LOOKAHEAD ticks, moving the player the way Player.update() would, and checks where every
+ * enemy laser and ship would be at the time, assuming they keep going the way they are. The move
+ * that hits nothing soonest wins, and between moves that are equally safe, the one that ends up
+ * under the lowest enemy, where a laser fired now would meet it, and low on the screen. It fires
+ * whenever it is under its target.
+ *
+ * It is not a WorldListener: fly(World w) is called by whatever steps the world, after step()
+ * returns, so the time it takes is not counted in the TickMetrics of the world, which measure the
+ * engine alone. The events are submitted from the thread stepping the world, so nothing else may
+ * submit events to a world the autopilot is flying.
+ */
+public class AutoPilot {
+
+	/**
+	 * How many ticks ahead each move is tried for.
+	 */
+	public static final int LOOKAHEAD = 40;
+
+	/**
+	 * The fewest ticks between two shots, about how fast a held key repeats.
+	 */
+	public static final int FIRE_INTERVAL = 10;
+
+	/**
+	 * The speed the player's lasers are fired at, see World.step().
+	 */
+	private static final double LASER_SPEED = 2.0;
+
+	// how much room to leave around anything that could hit the player
+	private static final int MARGIN = 4;
+
+	// the weights of what makes a move better or worse
+	private static final double DANGER = 10000;
+	private static final double AIM = 1;
+	private static final double HOME = 0.5;
+	private static final double CHANGE = 2;
+
+	private static final int MOVES = 9;
+
+	// where the player would be after each tick of each move, move*LOOKAHEAD+tick
+	private final double[] pathX = new double[MOVES*LOOKAHEAD];
+	private final double[] pathY = new double[MOVES*LOOKAHEAD];
+	private final double[] cost = new double[MOVES];
+
+	// the directions the autopilot is holding down, a bit for each action, 1<<action
+	private int held = 0;
+	private int lastMove = 4;
+	private long nextFire = 0;
+
+	private long shots = 0;
+
+	/**
+	 * Decides what to do in the next tick and submits the events for it. Called between ticks.
+	 * @param w The world, which must not be stepped until this returns.
+	 */
+	public void fly(World w){
+		if(w.isPlayerDestroyed()){
+			return;
+		}
+		Player p = w.getPlayer();
+		double px = p.getX();
+		double py = p.getY();
+
+		// the lowest enemy above the player, and where it will be when a laser fired now gets there
+		EntityStore ships = w.getShips();
+		int target = -1;
+		for(int i = 0; i<ships.size(); i++){
+			if(CollisionLayer.canCollide(ships.getCollisionLayer(i), CollisionLayer.PLAYER_LASER)
+					&& ships.getY(i)>=0 && ships.getY(i)<py && (target<0 || ships.getY(i)>ships.getY(target))){
+				target = i;
+			}
+		}
+		double aimX = w.getWidth()/2;
+		int targetHalfWidth = 0;
+		if(target>=0){
+			double gap = py-p.getHeight()/2-ships.getY(target);
+			double time = gap/Math.max(LASER_SPEED+ships.getYVelocity(target), 0.1);
+			aimX = Math.max(0, Math.min(w.getWidth(), ships.getX(target)+ships.getXVelocity(target)*time));
+			targetHalfWidth = ships.getHalfWidth(target);
+		}
+		double homeY = w.getHeight()-p.getHeight()*3;
+
+		for(int m = 0; m<MOVES; m++){
+			predict(w, p, m);
+			int end = m*LOOKAHEAD+LOOKAHEAD-1;
+			cost[m] = Math.abs(pathX[end]-aimX)*AIM+Math.abs(pathY[end]-homeY)*HOME+(m==lastMove ? 0 : CHANGE);
+		}
+		addDanger(w.getProjectiles(), p);
+		addDanger(ships, p);
+
+		int best = 0;
+		for(int m = 1; m<MOVES; m++){
+			if(cost[m]<cost[best]){
+				best = m;
+			}
+		}
+		steer(w, best);
+
+		if(target>=0 && Math.abs(px-aimX)<targetHalfWidth && w.getTickCount()>=nextFire){
+			w.submitInput(InputEvent.pressed(InputEvent.FIRE));
+			w.submitInput(InputEvent.released(InputEvent.FIRE));
+			nextFire = w.getTickCount()+FIRE_INTERVAL;
+			shots++;
+		}
+	}
+
+	/**
+	 * Works out where the player would be after each of the next LOOKAHEAD ticks holding down the
+	 * directions of a move, the same way World.step() and Player.update() move it.
+	 * @param m The move, 3*(x direction+1)+(y direction+1).
+	 */
+	private void predict(World w, Player p, int m){
+		int dx = m/3-1;
+		int dy = m%3-1;
+		double x = p.getX();
+		double y = p.getY();
+		double xv = p.getXVelocity();
+		double yv = p.getYVelocity();
+		double speed = p.getMaxSpeed();
+		double a = p.getMaxAcceleration();
+		int hw = p.getWidth()/2;
+		for(int t = 0; t<LOOKAHEAD; t++){
+			xv = accelerate(xv, dx, speed, a);
+			yv = accelerate(yv, dy, speed, a);
+			if((x<hw && xv<0) || (x>w.getWidth()-hw && xv>0)){
+				xv = 0;
+			} else {
+				x += xv;
+			}
+			if((y<p.getHeight()/2 && yv<0) || (y>w.getHeight()-p.getHeight() && yv>0)){
+				yv = 0;
+			} else {
+				y += yv;
+			}
+			pathX[m*LOOKAHEAD+t] = x;
+			pathY[m*LOOKAHEAD+t] = y;
+		}
+	}
+
+	private static double accelerate(double v, int direction, double speed, double a){
+		if(direction>0){
+			return Math.min(v+a, Math.max(v, speed));
+		} else if(direction<0){
+			return Math.max(v-a, Math.min(v, -speed));
+		}
+		if(v<0){
+			v += a;
+		} else if(v>0){
+			v -= a;
+		}
+		return Math.abs(v)<.15 ? 0 : v;
+	}
+
+	/**
+	 * Adds to the cost of each move for everything in a store that would hit the player, more the
+	 * sooner it would.
+	 */
+	private void addDanger(EntityStore store, Player p){
+		int phw = p.getWidth()/2+MARGIN;
+		int phh = p.getHeight()/2+MARGIN;
+		double reach = LOOKAHEAD*p.getMaxSpeed();
+		for(int i = 0; i<store.size(); i++){
+			if(!CollisionLayer.canCollide(store.getCollisionLayer(i), CollisionLayer.PLAYER)){
+				continue;
+			}
+			double x = store.getX(i);
+			double y = store.getY(i);
+			double xv = store.getXVelocity(i);
+			double yv = store.getYVelocity(i);
+			double w = store.getHalfWidth(i)+phw;
+			double h = store.getHalfHeight(i)+phh;
+			// too far away to reach the player whatever it does
+			if(Math.abs(x-p.getX())>w+reach+Math.abs(xv)*LOOKAHEAD || Math.abs(y-p.getY())>h+reach+Math.abs(yv)*LOOKAHEAD){
+				continue;
+			}
+			for(int m = 0; m<MOVES; m++){
+				for(int t = 0; t<LOOKAHEAD; t++){
+					int j = m*LOOKAHEAD+t;
+					if(Math.abs(x+xv*(t+1)-pathX[j])<w && Math.abs(y+yv*(t+1)-pathY[j])<h){
+						cost[m] += DANGER*(LOOKAHEAD-t);
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Presses and releases directions so exactly those of a move are held down, releasing before
+	 * pressing so two opposite directions are never held at once.
+	 */
+	private void steer(World w, int m){
+		int want = 0;
+		int dx = m/3-1;
+		int dy = m%3-1;
+		if(dx<0){
+			want |= 1<<InputEvent.LEFT;
+		} else if(dx>0){
+			want |= 1<<InputEvent.RIGHT;
+		}
+		if(dy<0){
+			want |= 1<<InputEvent.UP;
+		} else if(dy>0){
+			want |= 1<<InputEvent.DOWN;
+		}
+		for(int action = 0; action<InputEvent.FIRE; action++){
+			if((held & 1<<action)!=0 && (want & 1<<action)==0){
+				w.submitInput(InputEvent.released(action));
+			}
+		}
+		for(int action = 0; action<InputEvent.FIRE; action++){
+			if((held & 1<<action)==0 && (want & 1<<action)!=0){
+				w.submitInput(InputEvent.pressed(action));
+			}
+		}
+		held = want;
+		lastMove = m;
+	}
+
+	/**
+	 * Gets the number of times the autopilot has fired.
+	 * @return
+	 */
+	public long getShots(){
+		return shots;
+	}
+
+}
@@ -0,0 +1,286 @@
+package spaceblaster.model.bot;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.LockSupport;
+
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
+import spaceblaster.model.Game;
+import spaceblaster.model.GameClock;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+import spaceblaster.model.metrics.TickMetrics;
+import spaceblaster.model.metrics.TickWatchdog;
+import spaceblaster.model.save.Autosaver;
+
+/**
+ * Lets the AutoPilot play game after game without a window, for as long as it is told to, watching
+ * for anything that grows the longer the game runs:
+ *
+ * <pre>
+ * java -Djava.awt.headless=true spaceblaster.model.bot.SoakTest [-minutes m | -ticks n] [-report s]
+ *     [-speed x] [-seed s] [-parallel] [-autosave file] [-max-entities n]
+ * </pre>
+ *
+ * The game runs as fast as it can, or at x times real time with -speed. A new game is started each
+ * time the autopilot is destroyed. Every report interval (10 seconds unless given) it prints the
+ * ticks a second and 99th percentile tick since the last report, the game and level, the entities
+ * in the world, the heap still in use after the last collection and the threads alive and started.
+ * With -autosave, each game is also saved in the background as it would be while playing. The
+ * autopilot flies between ticks, so the ticks a second, the tick times and the overruns the
+ * TickWatchdog reports are those of the engine alone; only the final multiple of real time
+ * includes the autopilot.
+ *
+ * At the end the tool exits with 1 if anything looked like a leak: more entities at once than
+ * max-entities (20000 unless given), more threads alive than at the first report, or the ticks a
+ * second of the last report less than half those of the best one when running flat out.
+ */
+public class SoakTest {
+
+	public static final int WIDTH = 1000;
+	public static final int HEIGHT = 650;
+
+	public static void main(String[] args) {
+		long ticks = Long.MAX_VALUE;
+		long millis = Long.MAX_VALUE;
+		long report = 10000;
+		double speed = 0;
+		long seed = 1234L;
+		boolean parallel = false;
+		File save = null;
+		int maxEntities = 20000;
+		try {
+			for(int i = 0; i<args.length; i++){
+				if(args[i].equals("-minutes") && i+1<args.length){
+					millis = (long)(Double.parseDouble(args[++i])*60000);
+				} else if(args[i].equals("-ticks") && i+1<args.length){
+					ticks = Long.parseLong(args[++i]);
+				} else if(args[i].equals("-report") && i+1<args.length){
+					report = (long)(Double.parseDouble(args[++i])*1000);
+				} else if(args[i].equals("-speed") && i+1<args.length){
+					speed = Double.parseDouble(args[++i]);
+				} else if(args[i].equals("-seed") && i+1<args.length){
+					seed = Long.parseLong(args[++i]);
+				} else if(args[i].equals("-autosave") && i+1<args.length){
+					save = new File(args[++i]);
+				} else if(args[i].equals("-max-entities") && i+1<args.length){
+					maxEntities = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-parallel")){
+					parallel = true;
+				} else {
+					throw new IllegalArgumentException("Unknown option "+args[i]);
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: SoakTest [-minutes m | -ticks n] [-report s] [-speed x] [-seed s] [-parallel] [-autosave file] [-max-entities n]");
+			System.exit(2);
+		}
+		if(ticks==Long.MAX_VALUE && millis==Long.MAX_VALUE){
+			millis = 60000;
+		}
+
+		AssetCache images = new AssetCache(new ImageLoader(), Long.MAX_VALUE);
+		Game.registerImages(images);
+		WorldBuilder builder = new WorldBuilder(images, null, WorldBuilder.loadWaves(null));
+		SoakTest soak = new SoakTest(builder, seed, parallel ? ForkJoinPool.commonPool() : null, save, maxEntities);
+		boolean ok = soak.run(ticks, millis, report, speed);
+		System.exit(ok ? 0 : 1);
+	}
+
+	private final WorldBuilder builder;
+	private final ForkJoinPool pool;
+	private final Autosaver autosaver;
+	private final int maxEntities;
+	private final TickMetrics metrics = new TickMetrics(GameClock.NANOS_PER_TICK);
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private long seed;
+	private World world;
+	private AutoPilot pilot;
+
+	private int games = 0;
+	private int bestLevel = 0;
+	private long totalTicks = 0;
+	private long shots = 0;
+	private int peakEntities = 0;
+
+	// what the first report saw, and the best throughput of any report
+	private int firstThreads = -1;
+	private long firstHeap = -1;
+	private double bestRate = 0;
+	private double lastRate = 0;
+
+	/**
+	 * Creates a new soak test.
+	 * @param b Builds the worlds the games are played in.
+	 * @param s The seed of the first game, each game after it uses the next seed.
+	 * @param p The pool to step the worlds with, or null for the thread running the test.
+	 * @param save The file to autosave to, or null to not save.
+	 * @param max The most entities the world should ever hold at once.
+	 */
+	public SoakTest(WorldBuilder b, long s, ForkJoinPool p, File save, int max) {
+		builder = b;
+		seed = s;
+		pool = p;
+		autosaver = save==null ? null : new Autosaver(save, null, Autosaver.DEFAULT_INTERVAL);
+		maxEntities = max;
+	}
+
+	/**
+	 * Plays until enough ticks have been played or enough time has passed, whichever comes first.
+	 * @param ticks The number of ticks to play.
+	 * @param millis How long to play for.
+	 * @param reportMillis How often to report.
+	 * @param speed How many times faster than real time to play, or 0 for as fast as possible.
+	 * @return boolean false if anything looked like a leak.
+	 */
+	public boolean run(long ticks, long millis, long reportMillis, double speed){
+		TickWatchdog watchdog = new TickWatchdog(metrics);
+		watchdog.start();
+		long start = System.nanoTime();
+		long end = millis==Long.MAX_VALUE ? Long.MAX_VALUE : start+millis*1000000L;
+		long nextReport = start+reportMillis*1000000L;
+		long reportTicks = 0;
+		long reportStepNanos = 0;
+		long nanosPerTick = speed>0 ? (long)(GameClock.NANOS_PER_TICK/speed) : 0;
+		long due = start;
+		newGame();
+		while(totalTicks<ticks){
+			long stepStart = System.nanoTime();
+			world.step();
+			reportStepNanos += System.nanoTime()-stepStart;
+			// outside the tick, so the metrics and the watchdog only see the engine
+			pilot.fly(world);
+			totalTicks++;
+			reportTicks++;
+			peakEntities = Math.max(peakEntities, world.getShips().size()+world.getProjectiles().size());
+			if(world.isPlayerDestroyed()){
+				endGame();
+				newGame();
+			}
+
+			long now = System.nanoTime();
+			if(nanosPerTick>0){
+				due += nanosPerTick;
+				if(due>now){
+					LockSupport.parkNanos(due-now);
+				} else if(now-due>GameClock.MAX_CATCH_UP_TICKS*nanosPerTick){
+					due = now;
+				}
+				now = System.nanoTime();
+			}
+			if(now>=nextReport || now>=end){
+				report(reportTicks, reportStepNanos, now-start, speed>0);
+				reportTicks = 0;
+				reportStepNanos = 0;
+				nextReport = now+reportMillis*1000000L;
+				if(now>=end){
+					break;
+				}
+			}
+		}
+		if(reportTicks>0){
+			report(reportTicks, reportStepNanos, System.nanoTime()-start, speed>0);
+		}
+		endGame();
+		watchdog.end();
+		if(autosaver!=null){
+			autosaver.delete();
+			autosaver.flush(1000);
+		}
+		return summarize(System.nanoTime()-start, speed>0);
+	}
+
+	private void newGame(){
+		games++;
+		world = builder.build(WIDTH, HEIGHT, seed++);
+		world.setForkJoinPool(pool);
+		world.setMetrics(metrics);
+		if(autosaver!=null){
+			world.addListener(autosaver);
+		}
+		pilot = new AutoPilot();
+		// the first move, the pilot moves again after every tick
+		pilot.fly(world);
+	}
+
+	private void endGame(){
+		System.out.println("  game "+games+(world.isPlayerDestroyed() ? " lost" : " stopped")+" at tick "+world.getTickCount()
+				+", level "+world.getLevel()+", score "+world.getPlayer().getScore());
+		bestLevel = Math.max(bestLevel, world.getLevel());
+		shots += pilot.getShots();
+		if(autosaver!=null){
+			world.removeListener(autosaver);
+		}
+	}
+
+	/**
+	 * Prints a report of the ticks since the last one.
+	 * @param ticks The number of ticks.
+	 * @param nanos The time spent stepping the world for them, without the autopilot or pacing.
+	 * @param elapsed The time since the start.
+	 * @param paced Whether the ticks are paced to a multiple of real time.
+	 */
+	private void report(long ticks, long nanos, long elapsed, boolean paced){
+		double rate = ticks/(nanos/1e9);
+		lastRate = rate;
+		if(!paced){
+			bestRate = Math.max(bestRate, rate);
+		}
+		long heap = getLiveHeap();
+		int alive = threads.getThreadCount();
+		if(firstThreads<0){
+			firstThreads = alive;
+			firstHeap = heap;
+		}
+		System.out.printf(Locale.ROOT, "%7.1f min: %.0f ticks/s, p99 %.3f ms, game %d level %d health %d score %d, %d ships %d projectiles, heap %.1f MB (%.1f MB after the last gc), %d threads (%d started)%n",
+				elapsed/6e10, rate, metrics.getTickHistogram().getPercentile(0.99)/1e6, games, world.getLevel(),
+				world.getPlayer().getHealth(), world.getPlayer().getScore(), world.getShips().size(), world.getProjectiles().size(),
+				ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()/1048576.0, heap/1048576.0, alive,
+				threads.getTotalStartedThreadCount());
+		metrics.reset();
+	}
+
+	private boolean summarize(long nanos, boolean paced){
+		boolean ok = true;
+		System.out.printf(Locale.ROOT, "%d ticks in %.1f min (%.0fx real time), %d games, best level %d, %d shots, at most %d entities at once%n",
+				totalTicks, nanos/6e10, totalTicks/(nanos/1e9)/GameClock.TICKS_PER_SECOND, games, bestLevel, shots, peakEntities);
+		if(peakEntities>maxEntities){
+			System.out.println("LEAK? the world held "+peakEntities+" entities at once, more than "+maxEntities);
+			ok = false;
+		}
+		int alive = threads.getThreadCount();
+		if(firstThreads>=0 && alive>firstThreads){
+			System.out.println("LEAK? "+alive+" threads alive at the end, "+firstThreads+" at the first report");
+			ok = false;
+		}
+		if(!paced && lastRate<bestRate/2){
+			System.out.printf(Locale.ROOT, "SLOWDOWN? %.0f ticks/s at the end, %.0f at best%n", lastRate, bestRate);
+			ok = false;
+		}
+		System.out.printf(Locale.ROOT, "heap after the last gc %.1f MB at the first report, %.1f MB at the end%n", firstHeap/1048576.0, getLiveHeap()/1048576.0);
+		return ok;
+	}
+
+	/**
+	 * Gets the heap still in use after the last collection of each of its pools, which only grows
+	 * over a long run if something is holding on to memory.
+	 */
+	private static long getLiveHeap(){
+		long used = 0;
+		for(MemoryPoolMXBean pool: ManagementFactory.getMemoryPoolMXBeans()){
+			if(pool.getType()==MemoryType.HEAP && pool.getCollectionUsage()!=null){
+				used += pool.getCollectionUsage().getUsed();
+			}
+		}
+		return used;
+	}
+
+}
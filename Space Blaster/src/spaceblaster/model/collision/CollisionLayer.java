@@ -0,0 +1,48 @@
+package spaceblaster.model.collision;
+
+/**
+ * The collision layers an entity can be on, as bit flags, and which layers each one can hit.
+ * Player lasers only hit enemy ships, while enemy lasers and enemy ships only hit the player.
+ */
+public final class CollisionLayer {
+
+	public static final int NONE = 0;
+	public static final int PLAYER = 1;
+	public static final int PLAYER_LASER = 1<<1;
+	public static final int ENEMY = 1<<2;
+	public static final int ENEMY_LASER = 1<<3;
+
+	private CollisionLayer() {
+	}
+
+	/**
+	 * Gets the mask of layers that an entity on the given layer collides with.
+	 * @param layer One of the layer constants.
+	 * @return int The layers, or'ed together, that can be hit from the given layer.
+	 */
+	public static int maskFor(int layer){
+		switch(layer){
+		case PLAYER:
+			return ENEMY | ENEMY_LASER;
+		case PLAYER_LASER:
+			return ENEMY;
+		case ENEMY:
+			return PLAYER | PLAYER_LASER;
+		case ENEMY_LASER:
+			return PLAYER;
+		default:
+			return NONE;
+		}
+	}
+
+	/**
+	 * Whether an entity on layer a can hit one on layer b.
+	 * @param a The layer of the first entity.
+	 * @param b The layer of the second entity.
+	 * @return
+	 */
+	public static boolean canCollide(int a, int b){
+		return (maskFor(a) & b)!=0;
+	}
+
+}
@@ -0,0 +1,171 @@
+package spaceblaster.model.collision;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid broadphase over the playing area. Boxes are inserted into every cell they touch,
+ * and findFirst() only looks at the boxes in the cells its own box touches, so
+ * finding what a projectile hits no longer means checking every ship in the world. The grid is
+ * meant to be cleared and rebuilt every tick and keeps its arrays between ticks, so it does not
+ * allocate once it has grown to the size of the game.
+ */
+public class SpatialGrid {
+
+	private int cellSize;
+	private int cols;
+	private int rows;
+
+	// the first node in each cell, -1 for an empty cell
+	private int[] cellHeads;
+
+	// the nodes, each linking one cell to one item
+	private int[] nodeItem = new int[64];
+	private int[] nodeNext = new int[64];
+	private int nodeCount = 0;
+
+	// the layers and bounds of the items
+	private int[] itemLayer = new int[32];
+	private int[] itemLeft = new int[32];
+	private int[] itemTop = new int[32];
+	private int[] itemWidth = new int[32];
+	private int[] itemHeight = new int[32];
+	private int itemCount = 0;
+
+	/**
+	 * Creates a new grid covering the given area. Entities outside of the area are put into the
+	 * nearest cell along the edge.
+	 * @param w The width of the area.
+	 * @param h The height of the area.
+	 * @param cell The width and height of each cell, ideally a bit larger than the biggest ship.
+	 */
+	public SpatialGrid(int w, int h, int cell) {
+		cellSize = cell;
+		cols = Math.max(1, (w+cell-1)/cell);
+		rows = Math.max(1, (h+cell-1)/cell);
+		cellHeads = new int[cols*rows];
+		Arrays.fill(cellHeads, -1);
+	}
+
+	/**
+	 * Removes every item from the grid, keeping the memory for the next tick.
+	 */
+	public void clear(){
+		Arrays.fill(cellHeads, -1);
+		nodeCount = 0;
+		itemCount = 0;
+	}
+
+	/**
+	 * Adds a box to the grid, such as the bounds of a ship.
+	 * @param layer The CollisionLayer the box is on.
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 * @return int The index of the box, counting from 0 for the first one inserted since the grid was cleared.
+	 */
+	public int insert(int layer, int x, int y, int w, int h){
+		if(itemCount==itemLayer.length){
+			int size = itemCount*2;
+			itemLayer = Arrays.copyOf(itemLayer, size);
+			itemLeft = Arrays.copyOf(itemLeft, size);
+			itemTop = Arrays.copyOf(itemTop, size);
+			itemWidth = Arrays.copyOf(itemWidth, size);
+			itemHeight = Arrays.copyOf(itemHeight, size);
+		}
+		int item = itemCount++;
+		itemLayer[item] = layer;
+		itemLeft[item] = x;
+		itemTop[item] = y;
+		itemWidth[item] = w;
+		itemHeight[item] = h;
+
+		int c0 = col(x);
+		int c1 = col(x+w);
+		int r0 = row(y);
+		int r1 = row(y+h);
+		for(int r = r0; r<=r1; r++){
+			for(int c = c0; c<=c1; c++){
+				if(nodeCount==nodeItem.length){
+					nodeItem = Arrays.copyOf(nodeItem, nodeCount*2);
+					nodeNext = Arrays.copyOf(nodeNext, nodeCount*2);
+				}
+				int cell = r*cols+c;
+				nodeItem[nodeCount] = item;
+				nodeNext[nodeCount] = cellHeads[cell];
+				cellHeads[cell] = nodeCount;
+				nodeCount++;
+			}
+		}
+		return item;
+	}
+
+	/**
+	 * Finds the first box, in the order they were inserted, that overlaps the given box and whose
+	 * layer is in the mask. This does not change the grid, so any number of threads can call it at
+	 * once while nothing is being inserted.
+	 * @param x The left edge.
+	 * @param y The top edge.
+	 * @param w The width.
+	 * @param h The height.
+	 * @param mask The layers to look for, see CollisionLayer.maskFor(int layer).
+	 * @return int The index the box was inserted at, see insert(), or -1 if nothing overlaps.
+	 */
+	public int findFirst(int x, int y, int w, int h, int mask){
+		int first = -1;
+		int c0 = col(x);
+		int c1 = col(x+w);
+		int r0 = row(y);
+		int r1 = row(y+h);
+		for(int r = r0; r<=r1; r++){
+			for(int c = c0; c<=c1; c++){
+				for(int n = cellHeads[r*cols+c]; n!=-1; n = nodeNext[n]){
+					int item = nodeItem[n];
+					if((first!=-1 && item>=first) || (itemLayer[item] & mask)==0){
+						continue;
+					}
+					if(intersects(x, y, w, h, itemLeft[item], itemTop[item], itemWidth[item], itemHeight[item])){
+						first = item;
+					}
+				}
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Gets the number of boxes in the grid.
+	 * @return
+	 */
+	public int size(){
+		return itemCount;
+	}
+
+	/**
+	 * Whether two boxes overlap, the same test as java.awt.Rectangle.intersects(Rectangle r)
+	 * without having to create the rectangles.
+	 */
+	public static boolean intersects(int x1, int y1, int w1, int h1, int x2, int y2, int w2, int h2){
+		if(w1<=0 || h1<=0 || w2<=0 || h2<=0){
+			return false;
+		}
+		return x1<x2+w2 && x2<x1+w1 && y1<y2+h2 && y2<y1+h1;
+	}
+
+	private int col(int x){
+		int c = x/cellSize;
+		if(x<0 || c<0){
+			return 0;
+		}
+		return c<cols ? c : cols-1;
+	}
+
+	private int row(int y){
+		int r = y/cellSize;
+		if(y<0 || r<0){
+			return 0;
+		}
+		return r<rows ? r : rows-1;
+	}
+
+}
@@ -1,6 +1,9 @@
 package spaceblaster.model.entities;
 
 import java.awt.Image;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 
 public class BasicEnemy extends Ship {
@@ -15,6 +18,22 @@ public class BasicEnemy extends Ship {
 	private int count = 0;
 	protected int pointsPerShip = 10;
 	
+	/**
+	 * The most free copies of one enemy kept for reuse.
+	 */
+	public static final int POOL_CAPACITY = 128;
+	
+	private EntityPool<BasicEnemy> copies;
+	
+	/**
+	 * The enemy this one is a copy of, or null if it is not a copy.
+	 */
+	protected BasicEnemy prototype;
+	
+	// the seed of the random numbers used to spawn copies of this enemy and how many have been drawn, see nextRandom()
+	private long randomSeed = 0;
+	private long randomCount = 0;
+	
 
 	/**
 	 * Creates a new BasicEnemy, with the given parameters and 60 health, .5 y Velocity, and 0 x Velocity and, as by default,
@@ -52,6 +71,14 @@ public class BasicEnemy extends Ship {
 		laser = l;
 	}
 	
+	/**
+	 * Gets the laser this enemy fires copies of.
+	 * @return
+	 */
+	public Laser getLaser(){
+		return laser;
+	}
+	
 	/**
 	 * Gets a new laser depending on what laser is assigned to be the current one for this player.
 	 * @param x The x coordinate of the laser
@@ -65,6 +92,16 @@ public class BasicEnemy extends Ship {
 		Laser l = laser.getCopy(x, y, speed, angle);
 		return l;
 	}
+
+	/**
+	 * Gets a new laser flying at the speed and in the direction of the laser assigned to this enemy.
+	 * @param x The x coordinate of the laser
+	 * @param y The y coordinate of the laser
+	 * @return Laser l Returns the new laser object, a copy of the laser given to this enemy at the new position.
+	 */
+	public Laser getNewLaser(int x, int y){
+		return laser.getCopy(x, y);
+	}
 	
 	
 	/**
@@ -100,6 +137,11 @@ public class BasicEnemy extends Ship {
 		pointsPerShip = points;
 	}
 	
+	@Override
+	public int getTypeId(){
+		return EntityStore.TYPE_BASIC_ENEMY;
+	}
+	
 	@Override
 	/**
 	 * Updates the recharging period for when this enemy can fire.
@@ -148,13 +190,61 @@ public class BasicEnemy extends Ship {
 	 * @return BasicEnemy a copy of this enemy, with all of its settings.
 	 */
 	public BasicEnemy getCopy(int x, int y){
-		BasicEnemy copy = new BasicEnemy(x, y, this.getImage(), this.getHealth(), this.getSpeed(), this.getXVelocity());
-		copy.setFrequency(this.getFrequency());
-		copy.setLaser(laser);
-		copy.setMinLevel(this.getMinLevel());
+		BasicEnemy copy = getCopyPool().obtain();
+		copy.reinit(this, x, y);
 		return copy;
 	}
 	
+	/**
+	 * Gets the pool that copies of this enemy are taken from and released to.
+	 * @return
+	 */
+	public EntityPool<BasicEnemy> getCopyPool(){
+		if(copies==null){
+			copies = new EntityPool<BasicEnemy>(POOL_CAPACITY){
+				@Override
+				protected BasicEnemy create(){
+					return newInstance();
+				}
+			};
+		}
+		return copies;
+	}
+	
+	/**
+	 * Creates a new, blank enemy of the same class as this one for the pool of copies. Subclasses
+	 * must override this to create their own type.
+	 * @return
+	 */
+	protected BasicEnemy newInstance(){
+		return new BasicEnemy(0, 0, this.getImage());
+	}
+	
+	/**
+	 * Makes this enemy a copy of another one at a new position, with full health and a fresh
+	 * recharging period. Used instead of creating a new enemy when reusing one from a pool.
+	 * @param e The enemy to copy.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 */
+	protected void reinit(BasicEnemy e, int x, int y){
+		reset(x, y);
+		prototype = e;
+		setImage(e.getImage());
+		maxHealth = e.getHealth();
+		health = e.getHealth();
+		speed = e.getSpeed();
+		setXVelocity(e.getXVelocity());
+		setYVelocity(Math.sqrt(speed*speed - e.getXVelocity()*e.getXVelocity()));
+		frequency = e.getFrequency();
+		laser = e.laser;
+		minLevel = e.getMinLevel();
+		shootTime = e.shootTime;
+		pointsPerShip = e.getPointsPerShip();
+		count = 0;
+		fireFlag = false;
+	}
+	
 	/**
 	 * Gets the frequency of this enemy, or how often it spawns. Divide this number by 100 to get
 	 * how much time between ships on average.
@@ -172,6 +262,69 @@ public class BasicEnemy extends Ship {
 		frequency = f;
 	}
 	
+	/**
+	 * Gets the enemy this one was copied from with getCopy(int x, int y).
+	 * @return BasicEnemy The enemy, or null if this one is not a copy.
+	 */
+	public BasicEnemy getPrototype(){
+		return prototype;
+	}
+	
+	/**
+	 * Seeds the random numbers used when spawning copies of this enemy, so the same seed always
+	 * spawns the same copies. Starts the numbers again from the beginning.
+	 * @param seed The seed.
+	 */
+	public void setRandomSeed(long seed){
+		randomSeed = seed;
+		randomCount = 0;
+	}
+	
+	/**
+	 * Gets how many random numbers have been drawn since the seed was set.
+	 * @return
+	 */
+	public long getRandomCount(){
+		return randomCount;
+	}
+	
+	/**
+	 * Carries on the random numbers from a count returned by getRandomCount(), for instance after
+	 * loading a saved game.
+	 * @param count The count.
+	 */
+	public void setRandomCount(long count){
+		randomCount = count;
+	}
+	
+	/**
+	 * Gets the next random number for this enemy. Each number depends only on the seed and how many
+	 * numbers came before it (it is the SplitMix64 hash of the two), so unlike Math.random() a game can be
+	 * played again exactly, or carried on from a saved count.
+	 * @return double A number from 0 (inclusive) to 1 (exclusive).
+	 */
+	protected double nextRandom(){
+		long z = randomSeed + (++randomCount)*0x9E3779B97F4A7C15L;
+		z = (z ^ (z>>>30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z>>>27))*0x94D049BB133111EBL;
+		z ^= z>>>31;
+		return (z>>>11)*0x1.0p-53;
+	}
+	
+	@Override
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		out.writeInt(count);
+		out.writeBoolean(fireFlag);
+	}
+	
+	@Override
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		count = in.readInt();
+		fireFlag = in.readBoolean();
+	}
+	
 	/**
 	 * Gets the minimum level that this enemy can spawn at.
 	 * @return
@@ -1,6 +1,11 @@
 package spaceblaster.model.entities;
 
 import java.awt.Image;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import spaceblaster.model.collision.CollisionLayer;
 
 public class Entity {
 
@@ -13,7 +18,25 @@ public class Entity {
 	protected double yCoord;
 	protected double xVelocity;
 	protected double yVelocity;
+	protected double lastXCoord;
+	protected double lastYCoord;
 	protected Image image;
+	protected int width = 10;
+	protected int height = 10;
+	protected int spriteId = SpriteRegistry.NO_SPRITE;
+	
+	/**
+	 * The store this entity is a view onto and its index there, or null and -1 while it is not in a
+	 * store, in which case the fields above hold its state.
+	 */
+	EntityStore store;
+	int slot = -1;
+	
+	/**
+	 * The pool this entity came from and whether it is currently sitting in it, see EntityPool.
+	 */
+	EntityPool<?> pool;
+	boolean pooled = false;
 	
 	
 	/**
@@ -31,7 +54,9 @@ public class Entity {
 		animate = canMove;
 		xCoord = x;
 		yCoord = y;
-		image = img;
+		lastXCoord = x;
+		lastYCoord = y;
+		setImage(img);
 		
 	}
 	
@@ -50,7 +75,9 @@ public class Entity {
 			canMove = false;
 		animate = canMove;
 		xCoord = x;
-		yCoord = y;		
+		yCoord = y;
+		lastXCoord = x;
+		lastYCoord = y;
 	}
 	
 	/**
@@ -66,21 +93,170 @@ public class Entity {
 		animate = canMove;
 		xCoord = x;
 		yCoord = y;
-		image = img;
+		lastXCoord = x;
+		lastYCoord = y;
+		setImage(img);
 	}
 	
 	/**
-	 * This method is called on all entities that are alive every 10 milliseconds, or every tick.
+	 * This method is called on all entities that are alive every tick, or exactly 1/100 seconds of game time.
 	 */
 	public void update(){
 		
 	}
 	
+	/**
+	 * Moves this entity to a new position with no movement since the last tick, used when reusing
+	 * an entity from a pool. The entity must not be in a store.
+	 * @param x The x coordinate for the center of the entity
+	 * @param y The y coordinate for the center of the entity
+	 */
+	protected void reset(int x, int y){
+		xCoord = x;
+		yCoord = y;
+		lastXCoord = x;
+		lastYCoord = y;
+	}
+	
+	/**
+	 * Writes the state of this entity that changes as the world is stepped, so it can be put back
+	 * with readState(DataInput in). Things set up when the entity was created, such as its image,
+	 * are not written. Subclasses with more state should add to this.
+	 * @param out Where to write it.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void writeState(DataOutput out) throws IOException{
+		int i = slot;
+		EntityStore s = store;
+		out.writeDouble(getX());
+		out.writeDouble(getY());
+		out.writeDouble(s!=null && i>=0 ? s.lastX[i] : lastXCoord);
+		out.writeDouble(s!=null && i>=0 ? s.lastY[i] : lastYCoord);
+		out.writeDouble(getXVelocity());
+		out.writeDouble(getYVelocity());
+	}
+	
+	/**
+	 * Puts back the state written by writeState(DataOutput out).
+	 * @param in Where to read it from.
+	 * @throws IOException If it cannot be read.
+	 */
+	public void readState(DataInput in) throws IOException{
+		setX(in.readDouble());
+		setY(in.readDouble());
+		double lx = in.readDouble();
+		double ly = in.readDouble();
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0){
+			s.lastX[i] = lx;
+			s.lastY[i] = ly;
+		} else {
+			lastXCoord = lx;
+			lastYCoord = ly;
+		}
+		setXVelocity(in.readDouble());
+		setYVelocity(in.readDouble());
+	}
+	
+	/**
+	 * Returns this entity to the pool it came from so it can be reused, should be called once it has
+	 * left the world and nothing else refers to it. Does nothing for entities not from a pool.
+	 */
+	public void release(){
+		if(pool!=null && store==null){
+			pool.recycle(this);
+		}
+	}
+	
+	/**
+	 * Copies the state of this entity into the given store index and makes it a view onto that index.
+	 * Subclasses storing more state in the store should add to this.
+	 * @param s The store.
+	 * @param i The index in the store.
+	 */
+	void attach(EntityStore s, int i){
+		s.x[i] = xCoord;
+		s.y[i] = yCoord;
+		s.lastX[i] = lastXCoord;
+		s.lastY[i] = lastYCoord;
+		s.vx[i] = xVelocity;
+		s.vy[i] = yVelocity;
+		s.halfWidth[i] = width/2;
+		s.halfHeight[i] = height/2;
+		s.health[i] = 0;
+		s.typeId[i] = getTypeId();
+		s.flags[i] = getStoreFlags();
+		s.layer[i] = getCollisionLayer();
+		s.sprite[i] = spriteId;
+		slot = i;
+		store = s;
+	}
+	
+	/**
+	 * Copies the state of this entity back out of its store, after which it no longer is a view onto it.
+	 */
+	void detach(){
+		EntityStore s = store;
+		int i = slot;
+		xCoord = s.x[i];
+		yCoord = s.y[i];
+		lastXCoord = s.lastX[i];
+		lastYCoord = s.lastY[i];
+		xVelocity = s.vx[i];
+		yVelocity = s.vy[i];
+		store = null;
+		slot = -1;
+	}
+	
+	/**
+	 * The flags this entity is stored with, see EntityStore.
+	 * @return
+	 */
+	int getStoreFlags(){
+		int f = 0;
+		if(canMove){
+			f |= EntityStore.MOBILE;
+		}
+		if(animate){
+			f |= EntityStore.ALIVE;
+		}
+		return f;
+	}
+	
+	/**
+	 * The type id of this entity, one of the EntityStore.TYPE constants.
+	 * @return
+	 */
+	public int getTypeId(){
+		return EntityStore.TYPE_ENTITY;
+	}
+	
+	/**
+	 * Gets the store this entity is currently in.
+	 * @return EntityStore The store, or null if this entity is not in one.
+	 */
+	public EntityStore getStore(){
+		return store;
+	}
+	
+	/**
+	 * Gets the index of this entity in its store.
+	 * @return int The index, or -1 if this entity is not in a store.
+	 */
+	public int getStoreIndex(){
+		return slot;
+	}
+	
 	/**
 	 * The x coordinate in the game.
 	 * @return
 	 */
 	public double getX(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.x[i];
 		return xCoord;
 	}
 	
@@ -89,17 +265,63 @@ public class Entity {
 	 * @return
 	 */
 	public double getY(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.y[i];
 		return yCoord;
 	}
 	
+	/**
+	 * Remembers the current position as the position at the start of the tick, should be called
+	 * on every entity that is not in a store before the world is moved forward. EntityStore.integrate()
+	 * does this for the entities in a store.
+	 */
+	public void savePosition(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0){
+			s.lastX[i] = s.x[i];
+			s.lastY[i] = s.y[i];
+		} else {
+			lastXCoord = xCoord;
+			lastYCoord = yCoord;
+		}
+	}
+	
+	/**
+	 * The x coordinate to draw this entity at, between where it was at the start of the last
+	 * tick and where it is now.
+	 * @param alpha How far between the last tick and the next one the renderer is, from 0 to 1.
+	 * @return
+	 */
+	public double getRenderX(double alpha){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.lastX[i] + (s.x[i]-s.lastX[i])*alpha;
+		return lastXCoord + (xCoord-lastXCoord)*alpha;
+	}
+	
+	/**
+	 * The y coordinate to draw this entity at, see getRenderX(double alpha).
+	 * @param alpha How far between the last tick and the next one the renderer is, from 0 to 1.
+	 * @return
+	 */
+	public double getRenderY(double alpha){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.lastY[i] + (s.y[i]-s.lastY[i])*alpha;
+		return lastYCoord + (yCoord-lastYCoord)*alpha;
+	}
+	
 	/**
 	 * Gets the width of this entity, as it is represented on screen.
 	 * @return
 	 */
 	public int getWidth(){
-		if(image==null)
-			return 10;
-		return image.getWidth(null);
+		return width;
 	}
 	
 	/**
@@ -107,24 +329,40 @@ public class Entity {
 	 * @return
 	 */
 	public int getHeight(){
-		if(image==null)
-			return 10;
-		return image.getHeight(null);
+		return height;
 	}
 	
 	public void setXVelocity(double xv){
-		xVelocity = xv;
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			s.vx[i] = xv;
+		else
+			xVelocity = xv;
 	}
 	
 	public void setYVelocity(double yv){
-		yVelocity = yv;
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			s.vy[i] = yv;
+		else
+			yVelocity = yv;
 	}
 	
 	public double getXVelocity(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.vx[i];
 		return xVelocity;
 	}
 	
 	public double getYVelocity(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.vy[i];
 		return yVelocity;
 	}
 	
@@ -136,6 +374,14 @@ public class Entity {
 		return image;
 	}
 	
+	/**
+	 * The id of the image used to represent the entity, see SpriteRegistry.
+	 * @return
+	 */
+	public int getSpriteId(){
+		return spriteId;
+	}
+	
 	/**
 	 * If this entity has health or not, whether it can be killed.
 	 * @return
@@ -154,22 +400,73 @@ public class Entity {
 	
 	public void setIsMobile(boolean mobile){
 		canMove = mobile;
+		updateStoreFlags();
 	}
 	
 	public void setIsAlive(boolean isAlive){
 		animate = isAlive;
+		updateStoreFlags();
+	}
+	
+	/**
+	 * Copies the flags of this entity into its store after one of them has changed.
+	 */
+	protected void updateStoreFlags(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0){
+			s.flags[i] = getStoreFlags();
+			s.layer[i] = getCollisionLayer();
+		}
 	}
 	
 	public void setX(double x){
-		xCoord = x;
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			s.x[i] = x;
+		else
+			xCoord = x;
 	}
 	
 	public void setY(double y){
-		yCoord = y;
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			s.y[i] = y;
+		else
+			yCoord = y;
 	}
 	
+	/**
+	 * Sets the image used to represent this entity, and takes the size of the entity from it.
+	 * @param img The image, or null for a 10 by 10 entity drawn as a rectangle.
+	 */
 	public void setImage(Image img){
 		image = img;
+		if(img==null){
+			width = 10;
+			height = 10;
+		} else {
+			width = img.getWidth(null);
+			height = img.getHeight(null);
+		}
+		spriteId = SpriteRegistry.idOf(img);
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0){
+			s.halfWidth[i] = width/2;
+			s.halfHeight[i] = height/2;
+			s.sprite[i] = spriteId;
+		}
+	}
+	
+	/**
+	 * The collision layer this entity is on, which decides what it can hit. See CollisionLayer.
+	 * @return int One of the CollisionLayer constants, NONE if this entity never collides.
+	 */
+	public int getCollisionLayer(){
+		return CollisionLayer.NONE;
 	}
 
 }
@@ -0,0 +1,119 @@
+package spaceblaster.model.entities;
+
+/**
+ * A bounded pool of entities of one kind, so that lasers and enemies leaving the world can be
+ * reused for the next ones instead of being left for the garbage collector. Entities taken from a
+ * pool go back into it with Entity.release(). A pool is not thread safe and should only be used
+ * from the thread stepping the world.
+ * @param <T> The type of entity in the pool.
+ */
+public abstract class EntityPool<T extends Entity> {
+
+	private Entity[] free;
+	private int freeCount = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private int inUse = 0;
+	private int highWaterMark = 0;
+
+	/**
+	 * Creates a new, empty pool.
+	 * @param capacity The most free entities the pool will hold on to, any more released are dropped.
+	 */
+	public EntityPool(int capacity) {
+		free = new Entity[capacity];
+	}
+
+	/**
+	 * Creates a new entity for the pool when there is no free one to reuse.
+	 * @return T A new entity, which will be reinitialized by the caller.
+	 */
+	protected abstract T create();
+
+	/**
+	 * Takes a free entity from the pool, or creates one if the pool is empty. The entity still holds
+	 * the state it had when it was released, so it must be reinitialized before use.
+	 * @return T The entity.
+	 */
+	@SuppressWarnings("unchecked")
+	public T obtain(){
+		T e;
+		if(freeCount>0){
+			e = (T)free[--freeCount];
+			free[freeCount] = null;
+			hits++;
+		} else {
+			e = create();
+			e.pool = this;
+			misses++;
+		}
+		e.pooled = false;
+		inUse++;
+		if(inUse>highWaterMark){
+			highWaterMark = inUse;
+		}
+		return e;
+	}
+
+	/**
+	 * Puts an entity taken from this pool back, see Entity.release().
+	 * @param e The entity, which must not be in a store.
+	 */
+	void recycle(Entity e){
+		if(e.pooled){
+			return;
+		}
+		e.pooled = true;
+		inUse--;
+		if(freeCount<free.length){
+			free[freeCount++] = e;
+		}
+	}
+
+	/**
+	 * The number of times an entity was reused from the pool.
+	 * @return
+	 */
+	public long getHits(){
+		return hits;
+	}
+
+	/**
+	 * The number of times the pool was empty and a new entity had to be created.
+	 * @return
+	 */
+	public long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * The most entities from this pool that have been in use at the same time.
+	 * @return
+	 */
+	public int getHighWaterMark(){
+		return highWaterMark;
+	}
+
+	/**
+	 * The number of entities from this pool currently in use.
+	 * @return
+	 */
+	public int getInUse(){
+		return inUse;
+	}
+
+	/**
+	 * The number of free entities waiting in the pool.
+	 * @return
+	 */
+	public int getFreeCount(){
+		return freeCount;
+	}
+
+	@Override
+	public String toString(){
+		return "hits="+hits+" misses="+misses+" highWater="+highWaterMark+" inUse="+inUse+" free="+freeCount;
+	}
+
+}
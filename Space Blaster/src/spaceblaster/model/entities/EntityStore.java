@@ -0,0 +1,353 @@
+package spaceblaster.model.entities;
+
+import java.util.Arrays;
+
+/**
+ * Holds the state of many entities in parallel primitive arrays, one index per entity. Indices are
+ * kept dense, removing an entity moves the last one into its place, so the per tick loops over
+ * positions, velocities and bounds run straight through memory. An Entity added to a store becomes
+ * a view onto its index and reads and writes its state here until it is removed again.
+ */
+public class EntityStore {
+
+	/**
+	 * Flags stored for each entity.
+	 */
+	public static final int MOBILE = 1;
+	public static final int ALIVE = 1<<1;
+	public static final int FROM_PLAYER = 1<<2;
+	public static final int REMOVED = 1<<3;
+
+	/**
+	 * Type ids stored for each entity, see Entity.getTypeId().
+	 */
+	public static final int TYPE_ENTITY = 0;
+	public static final int TYPE_SHIP = 1;
+	public static final int TYPE_PLAYER = 2;
+	public static final int TYPE_LASER = 3;
+	public static final int TYPE_BASIC_ENEMY = 4;
+	public static final int TYPE_F250_BULLET = 5;
+
+	double[] x;
+	double[] y;
+	double[] lastX;
+	double[] lastY;
+	double[] vx;
+	double[] vy;
+	int[] halfWidth;
+	int[] halfHeight;
+	int[] health;
+	int[] typeId;
+	int[] flags;
+	int[] layer;
+	int[] sprite;
+	Entity[] entities;
+	private int size = 0;
+
+	/**
+	 * Creates a new store, which grows as entities are added.
+	 * @param capacity The number of entities to make room for at first.
+	 */
+	public EntityStore(int capacity) {
+		capacity = Math.max(capacity, 1);
+		x = new double[capacity];
+		y = new double[capacity];
+		lastX = new double[capacity];
+		lastY = new double[capacity];
+		vx = new double[capacity];
+		vy = new double[capacity];
+		halfWidth = new int[capacity];
+		halfHeight = new int[capacity];
+		health = new int[capacity];
+		typeId = new int[capacity];
+		flags = new int[capacity];
+		layer = new int[capacity];
+		sprite = new int[capacity];
+		entities = new Entity[capacity];
+	}
+
+	private void grow(){
+		int capacity = entities.length*2;
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		lastX = Arrays.copyOf(lastX, capacity);
+		lastY = Arrays.copyOf(lastY, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		halfWidth = Arrays.copyOf(halfWidth, capacity);
+		halfHeight = Arrays.copyOf(halfHeight, capacity);
+		health = Arrays.copyOf(health, capacity);
+		typeId = Arrays.copyOf(typeId, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+		layer = Arrays.copyOf(layer, capacity);
+		sprite = Arrays.copyOf(sprite, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+	}
+
+	/**
+	 * Adds an entity to the end of the store. Does nothing if the entity is already in a store.
+	 * @param e The entity.
+	 * @return int The index of the entity, or -1 if it was not added.
+	 */
+	public int add(Entity e){
+		if(e.store!=null){
+			return -1;
+		}
+		if(size==entities.length){
+			grow();
+		}
+		int i = size++;
+		entities[i] = e;
+		e.attach(this, i);
+		return i;
+	}
+
+	/**
+	 * Removes an entity, moving the last entity in the store into its index. The entity keeps the
+	 * state it had in the store.
+	 * @param e The entity.
+	 * @return boolean true if the entity was in this store and has been removed.
+	 */
+	public boolean remove(Entity e){
+		if(e.store!=this){
+			return false;
+		}
+		removeAt(e.slot);
+		return true;
+	}
+
+	/**
+	 * Removes the entity at the given index, moving the last entity into its place.
+	 * @param i The index.
+	 */
+	public void removeAt(int i){
+		entities[i].detach();
+		int last = --size;
+		if(i!=last){
+			x[i] = x[last];
+			y[i] = y[last];
+			lastX[i] = lastX[last];
+			lastY[i] = lastY[last];
+			vx[i] = vx[last];
+			vy[i] = vy[last];
+			halfWidth[i] = halfWidth[last];
+			halfHeight[i] = halfHeight[last];
+			health[i] = health[last];
+			typeId[i] = typeId[last];
+			flags[i] = flags[last];
+			layer[i] = layer[last];
+			sprite[i] = sprite[last];
+			entities[i] = entities[last];
+			entities[i].slot = i;
+		}
+		entities[last] = null;
+	}
+
+	/**
+	 * Marks the entity at the given index to be removed by the next call to compact(). Until then
+	 * it stays where it is, so indices do not change while the store is being looped over.
+	 * @param i The index.
+	 * @return boolean true if the entity was not already marked.
+	 */
+	public boolean markRemoved(int i){
+		if((flags[i] & REMOVED)!=0){
+			return false;
+		}
+		flags[i] |= REMOVED;
+		return true;
+	}
+
+	/**
+	 * Whether the entity at the given index is marked to be removed.
+	 * @param i The index.
+	 * @return
+	 */
+	public boolean isRemoved(int i){
+		return (flags[i] & REMOVED)!=0;
+	}
+
+	/**
+	 * Removes every entity marked with markRemoved(int i) in a single pass, keeping the rest in the
+	 * same order.
+	 * @return int The number of entities removed.
+	 */
+	public int compact(){
+		int j = 0;
+		for(int i = 0; i<size; i++){
+			if((flags[i] & REMOVED)!=0){
+				entities[i].detach();
+				continue;
+			}
+			if(i!=j){
+				x[j] = x[i];
+				y[j] = y[i];
+				lastX[j] = lastX[i];
+				lastY[j] = lastY[i];
+				vx[j] = vx[i];
+				vy[j] = vy[i];
+				halfWidth[j] = halfWidth[i];
+				halfHeight[j] = halfHeight[i];
+				health[j] = health[i];
+				typeId[j] = typeId[i];
+				flags[j] = flags[i];
+				layer[j] = layer[i];
+				sprite[j] = sprite[i];
+				entities[j] = entities[i];
+				entities[j].slot = j;
+			}
+			j++;
+		}
+		int removed = size-j;
+		for(int i = j; i<size; i++){
+			entities[i] = null;
+		}
+		size = j;
+		return removed;
+	}
+
+	/**
+	 * Removes every entity.
+	 */
+	public void clear(){
+		while(size>0){
+			removeAt(size-1);
+		}
+	}
+
+	/**
+	 * Remembers where every entity is at the start of the tick and moves every mobile entity by its velocity.
+	 */
+	public void integrate(){
+		integrate(0, size);
+	}
+
+	/**
+	 * Does the same as integrate() for the indices from (inclusive) to (exclusive) only, so
+	 * different ranges can be integrated at the same time.
+	 * @param from The first index.
+	 * @param to One past the last index.
+	 */
+	public void integrate(int from, int to){
+		double[] x = this.x;
+		double[] y = this.y;
+		double[] vx = this.vx;
+		double[] vy = this.vy;
+		double[] lastX = this.lastX;
+		double[] lastY = this.lastY;
+		int[] flags = this.flags;
+		for(int i = from; i<to; i++){
+			lastX[i] = x[i];
+			lastY[i] = y[i];
+			if((flags[i] & MOBILE)!=0){
+				x[i] += vx[i];
+				y[i] += vy[i];
+			}
+		}
+	}
+
+	/**
+	 * Whether the entity at the given index is still in a playing area running from 0 to w
+	 * horizontally and above h vertically.
+	 * @param i The index.
+	 * @param w The width of the playing area.
+	 * @param h The height of the playing area.
+	 * @return
+	 */
+	public boolean isInside(int i, int w, int h){
+		return x[i]+halfWidth[i]>0 && x[i]-halfWidth[i]<w && y[i]<h;
+	}
+
+	/**
+	 * Finds the entities that overlap a rectangle anywhere between where they were at the start of
+	 * the tick and where they are now, such as those that can be seen in the part of the world on
+	 * screen while the tick is drawn.
+	 * @param left The left edge of the rectangle.
+	 * @param top The top edge.
+	 * @param right The right edge.
+	 * @param bottom The bottom edge.
+	 * @param out Where to put the indices of the entities found, at least size() long.
+	 * @return int The number of entities found.
+	 */
+	public int findOverlapping(double left, double top, double right, double bottom, int[] out){
+		int n = 0;
+		for(int i = 0; i<size; i++){
+			int hw = halfWidth[i];
+			int hh = halfHeight[i];
+			if(Math.min(x[i], lastX[i])-hw<right && Math.max(x[i], lastX[i])+hw>left
+					&& Math.min(y[i], lastY[i])-hh<bottom && Math.max(y[i], lastY[i])+hh>top){
+				out[n++] = i;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * The number of entities in the store.
+	 * @return
+	 */
+	public int size(){
+		return size;
+	}
+
+	public Entity getEntity(int i){
+		return entities[i];
+	}
+
+	public double getX(int i){
+		return x[i];
+	}
+
+	public double getY(int i){
+		return y[i];
+	}
+
+	public double getLastX(int i){
+		return lastX[i];
+	}
+
+	public double getLastY(int i){
+		return lastY[i];
+	}
+
+	public double getXVelocity(int i){
+		return vx[i];
+	}
+
+	public double getYVelocity(int i){
+		return vy[i];
+	}
+
+	public int getHalfWidth(int i){
+		return halfWidth[i];
+	}
+
+	public int getHalfHeight(int i){
+		return halfHeight[i];
+	}
+
+	public int getHealth(int i){
+		return health[i];
+	}
+
+	public int getTypeId(int i){
+		return typeId[i];
+	}
+
+	public int getFlags(int i){
+		return flags[i];
+	}
+
+	public int getCollisionLayer(int i){
+		return layer[i];
+	}
+
+	/**
+	 * Gets the sprite id of the entity at the given index, see SpriteRegistry.
+	 * @param i The index.
+	 * @return
+	 */
+	public int getSprite(int i){
+		return sprite[i];
+	}
+
+}
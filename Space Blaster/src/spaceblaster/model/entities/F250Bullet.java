@@ -24,8 +24,8 @@ public class F250Bullet extends BasicEnemy {
 		super(x, y, img);
 		this.health = 20;
 		this.setSpeed(1.0);
-		boolean neg = Math.random()<.5;
-		this.setXVelocity(Math.random());
+		boolean neg = nextRandom()<.5;
+		this.setXVelocity(nextRandom());
 		if(neg){
 			this.setXVelocity(this.getXVelocity()*-1);
 		}
@@ -60,11 +60,27 @@ public class F250Bullet extends BasicEnemy {
 	 * Gets a copy of this enemy, using the new x and y positions.
 	 */
 	public F250Bullet getCopy(int x, int y){
-		F250Bullet copy = new F250Bullet(x, y, this.getImage(), xMinVal, xMaxVal);
-		copy.setLaser(this.laser);
-		copy.setMinLevel(this.getMinLevel());
-		copy.setFrequency(this.getFrequency());
-		return copy;
+		return (F250Bullet)super.getCopy(x, y);
+	}
+	
+	@Override
+	protected BasicEnemy newInstance(){
+		return new F250Bullet(0, 0, this.getImage(), xMinVal, xMaxVal);
+	}
+	
+	@Override
+	/**
+	 * Makes this a copy of another F250Bullet, heading left or right at a new random speed drawn from
+	 * the other's random numbers.
+	 */
+	protected void reinit(BasicEnemy e, int x, int y){
+		super.reinit(e, x, y);
+		F250Bullet f = (F250Bullet)e;
+		xMaxVal = f.xMaxVal;
+		xMinVal = f.xMinVal;
+		boolean neg = f.nextRandom()<.5;
+		this.setXVelocity(neg ? -f.nextRandom() : f.nextRandom());
+		this.setYVelocity(speed);
 	}
 	
 	/**
@@ -83,6 +99,11 @@ public class F250Bullet extends BasicEnemy {
 		xMaxVal = xmax;
 	}
 	
+	@Override
+	public int getTypeId(){
+		return EntityStore.TYPE_F250_BULLET;
+	}
+	
 	@Override
 	/**
 	 * Updates the enemy, checks the x maximum and minimum values with the current x coordinate.
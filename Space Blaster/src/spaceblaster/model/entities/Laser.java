@@ -1,8 +1,13 @@
 package spaceblaster.model.entities;
 
 import java.awt.Image;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.net.URL;
 
+import spaceblaster.model.collision.CollisionLayer;
+
 
 public class Laser extends Entity {
 	
@@ -12,6 +17,23 @@ public class Laser extends Entity {
 	protected double damage;
 	protected boolean fromPlayer = false;
 	protected URL fireSound;
+	
+	/**
+	 * The id the fire sound was registered with, see SoundManager.register(Laser l), or -1 if it has not been.
+	 */
+	protected int fireSoundId = -1;
+	
+	/**
+	 * The most free copies of one laser kept for reuse.
+	 */
+	public static final int POOL_CAPACITY = 512;
+	
+	private EntityPool<Laser> copies;
+	
+	/**
+	 * The laser this one is a copy of, or null if it is not a copy.
+	 */
+	protected Laser prototype;
 
 	public Laser(int x, int y, double spd, double ang, double dmg, boolean playerFired, Image img, URL sound) {
 		super(true, false, x, y, img);
@@ -20,6 +42,7 @@ public class Laser extends Entity {
 		directionAngle = ang + Math.PI/2;
 		fromPlayer = playerFired;
 		fireSound = sound;
+		updateVelocity();
 	}
 	
 	public double getDamage(){
@@ -30,8 +53,26 @@ public class Laser extends Entity {
 		return fireSound;
 	}
 	
+	/**
+	 * Sets the sound played when this laser is fired. The sound is only played once registered again,
+	 * see SoundManager.register(Laser l).
+	 * @param sound The sound.
+	 */
 	public void setFireSound(URL sound){
 		fireSound = sound;
+		fireSoundId = -1;
+	}
+	
+	/**
+	 * Gets the id of the sound played when this laser is fired, which copies of it share.
+	 * @return int The id, or -1 if the sound has not been registered.
+	 */
+	public int getFireSoundId(){
+		return fireSoundId;
+	}
+	
+	public void setFireSoundId(int id){
+		fireSoundId = id;
 	}
 	
 	/**
@@ -40,6 +81,7 @@ public class Laser extends Entity {
 	 */
 	public void setIsFromPlayer(boolean playerFired){
 		fromPlayer = playerFired;
+		updateStoreFlags();
 	}
 	
 	/**
@@ -60,16 +102,36 @@ public class Laser extends Entity {
 	public void setSpeed(double spd, double angle){
 		speed = spd;
 		directionAngle = angle+Math.PI/2;
+		updateVelocity();
+	}
+	
+	/**
+	 * Works out the x and y velocity from the speed and angle once, rather than every time they are read.
+	 */
+	private void updateVelocity(){
+		setXVelocity(speed*Math.cos(directionAngle));
+		setYVelocity(-speed*Math.sin(directionAngle));
+	}
+	
+	@Override
+	public int getCollisionLayer(){
+		if(fromPlayer){
+			return CollisionLayer.PLAYER_LASER;
+		}
+		return CollisionLayer.ENEMY_LASER;
 	}
 	
 	@Override
-	public double getXVelocity(){
-		return speed*Math.cos(directionAngle);
+	public int getTypeId(){
+		return EntityStore.TYPE_LASER;
 	}
 	
 	@Override
-	public double getYVelocity(){
-		return -speed*Math.sin(directionAngle);
+	int getStoreFlags(){
+		if(fromPlayer){
+			return super.getStoreFlags() | EntityStore.FROM_PLAYER;
+		}
+		return super.getStoreFlags();
 	}
 	
 	/**
@@ -81,8 +143,83 @@ public class Laser extends Entity {
 	 * @return Laser a new laser object originating from this one.
 	 */
 	public Laser getCopy(int x, int y, double speed, double ang){
-		Laser l = new Laser(x, y, speed, ang, this.getDamage(), this.getIsFromPlayer(), this.getImage(), this.fireSound);
+		Laser l = getCopyPool().obtain();
+		l.reinit(this, x, y, speed, ang);
 		return l;
 	}
 
+	/**
+	 * Returns a new laser object that is a copy of this one at a new x and y, flying at the same speed
+	 * and in the same direction as this one.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return Laser a new laser object originating from this one.
+	 */
+	public Laser getCopy(int x, int y){
+		return getCopy(x, y, speed, directionAngle-Math.PI/2);
+	}
+	
+	/**
+	 * Gets the pool that copies of this laser are taken from and released to.
+	 * @return
+	 */
+	public EntityPool<Laser> getCopyPool(){
+		if(copies==null){
+			copies = new EntityPool<Laser>(POOL_CAPACITY){
+				@Override
+				protected Laser create(){
+					return new Laser(0, 0, speed, directionAngle-Math.PI/2, damage, fromPlayer, getImage(), fireSound);
+				}
+			};
+		}
+		return copies;
+	}
+	
+	/**
+	 * Makes this laser a copy of another one, with a new x, y, and velocity. Used instead of
+	 * creating a new laser when reusing one from a pool.
+	 * @param l The laser to copy.
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @param spd The speed of this laser
+	 * @param ang The direction of the laser, see Laser.setSpeed(double spd, double angle)
+	 */
+	protected void reinit(Laser l, int x, int y, double spd, double ang){
+		reset(x, y);
+		prototype = l;
+		setImage(l.getImage());
+		damage = l.damage;
+		fromPlayer = l.fromPlayer;
+		fireSound = l.fireSound;
+		fireSoundId = l.fireSoundId;
+		setSpeed(spd, ang);
+	}
+	
+	/**
+	 * Gets the laser this one was copied from with getCopy(int x, int y, double speed, double ang).
+	 * @return Laser The laser, or null if this one is not a copy.
+	 */
+	public Laser getPrototype(){
+		return prototype;
+	}
+	
+	@Override
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		out.writeDouble(speed);
+		out.writeDouble(directionAngle);
+		out.writeDouble(damage);
+		out.writeBoolean(fromPlayer);
+	}
+	
+	@Override
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		speed = in.readDouble();
+		directionAngle = in.readDouble();
+		damage = in.readDouble();
+		fromPlayer = in.readBoolean();
+		updateStoreFlags();
+	}
+
 }
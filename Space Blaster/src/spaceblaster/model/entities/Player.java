@@ -1,6 +1,11 @@
 package spaceblaster.model.entities;
 
 import java.awt.Image;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import spaceblaster.model.collision.CollisionLayer;
 
 public class Player extends Ship {
 	
@@ -49,6 +54,14 @@ public class Player extends Ship {
 		laser = l;
 	}
 	
+	/**
+	 * Gets the laser this player fires copies of.
+	 * @return
+	 */
+	public Laser getLaser(){
+		return laser;
+	}
+	
 	/**
 	 * Gets a new laser depending on what laser is assigned to be the current one for this player.
 	 * @param x The x coordinate of the laser
@@ -138,6 +151,14 @@ public class Player extends Ship {
 		maxSpeed = speed;
 	}
 	
+	/**
+	 * Gets the max speed, see setMaxSpeed(double speed).
+	 * @return
+	 */
+	public double getMaxSpeed(){
+		return maxSpeed;
+	}
+	
 	/**
 	 * Sets the maximum acceleration (cap for bot vertical and horizontal motion).
 	 * @param a The new max acceleration, or change in virtical or horizontal velocity. Set
@@ -147,51 +168,106 @@ public class Player extends Ship {
 		maxAcceleration = a;
 	}
 	
+	/**
+	 * Gets the max acceleration, see setMaxAcceleration(double a).
+	 * @return
+	 */
+	public double getMaxAcceleration(){
+		return maxAcceleration;
+	}
+	
+	@Override
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		out.writeByte(xAcceleration==null ? -1 : xAcceleration.ordinal());
+		out.writeByte(yAcceleration==null ? -1 : yAcceleration.ordinal());
+		out.writeDouble(maxAcceleration);
+		out.writeDouble(maxSpeed);
+		out.writeInt(score);
+		out.writeDouble(money);
+	}
+	
+	@Override
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		xAcceleration = readAcceleration(in);
+		yAcceleration = readAcceleration(in);
+		maxAcceleration = in.readDouble();
+		maxSpeed = in.readDouble();
+		score = in.readInt();
+		money = in.readDouble();
+	}
+	
+	private static Acceleration readAcceleration(DataInput in) throws IOException{
+		int a = in.readByte();
+		if(a<0){
+			return null;
+		}
+		if(a>=Acceleration.values().length){
+			throw new IOException("Unknown acceleration "+a);
+		}
+		return Acceleration.values()[a];
+	}
+	
+	@Override
+	public int getCollisionLayer(){
+		return CollisionLayer.PLAYER;
+	}
+	
+	@Override
+	public int getTypeId(){
+		return EntityStore.TYPE_PLAYER;
+	}
+	
 	@Override
 	public void update(){
-		if(xAcceleration == Acceleration.Positive && xVelocity<maxSpeed){
-			xVelocity+=maxAcceleration;
-			if(xVelocity>maxSpeed){
-				xVelocity = maxSpeed;
+		double xv = getXVelocity();
+		double yv = getYVelocity();
+		if(xAcceleration == Acceleration.Positive && xv<maxSpeed){
+			xv+=maxAcceleration;
+			if(xv>maxSpeed){
+				xv = maxSpeed;
 			}
-		} else if (xAcceleration == Acceleration.Negative && xVelocity>-maxSpeed){
-			xVelocity-=maxAcceleration;
-			if(xVelocity<-maxSpeed){
-				xVelocity = -maxSpeed;
+		} else if (xAcceleration == Acceleration.Negative && xv>-maxSpeed){
+			xv-=maxAcceleration;
+			if(xv<-maxSpeed){
+				xv = -maxSpeed;
 			}
 		} else if (xAcceleration== Acceleration.Zeroing) {
-			if(xVelocity<0){
-				xVelocity+=maxAcceleration;
-			} else if (xVelocity>0){
-				xVelocity-=maxAcceleration;
+			if(xv<0){
+				xv+=maxAcceleration;
+			} else if (xv>0){
+				xv-=maxAcceleration;
 			}
-			if(Math.abs(xVelocity)<.15){
-				xVelocity = 0;
+			if(Math.abs(xv)<.15){
+				xv = 0;
 			}
 		}
 		
-		if(yAcceleration == Acceleration.Positive && yVelocity<maxSpeed){
-			yVelocity+=maxAcceleration;
-			if(yVelocity>maxSpeed){
-				yVelocity = maxSpeed;
+		if(yAcceleration == Acceleration.Positive && yv<maxSpeed){
+			yv+=maxAcceleration;
+			if(yv>maxSpeed){
+				yv = maxSpeed;
 			}
-		} else if (yAcceleration == Acceleration.Negative && yVelocity>-maxSpeed){
-			yVelocity-=maxAcceleration;
-			if(yVelocity<-maxSpeed){
-				yVelocity = -maxSpeed;
+		} else if (yAcceleration == Acceleration.Negative && yv>-maxSpeed){
+			yv-=maxAcceleration;
+			if(yv<-maxSpeed){
+				yv = -maxSpeed;
 			}
 		} else if (yAcceleration== Acceleration.Zeroing) {
-			if(yVelocity<0){
-				yVelocity+=maxAcceleration;
-			} else if (yVelocity>0){
-				yVelocity-=maxAcceleration;
+			if(yv<0){
+				yv+=maxAcceleration;
+			} else if (yv>0){
+				yv-=maxAcceleration;
 			}
 			
-			if(Math.abs(yVelocity)<.15){
-				yVelocity = 0;
+			if(Math.abs(yv)<.15){
+				yv = 0;
 			}
 		}
 		
+		setXVelocity(xv);
+		setYVelocity(yv);
 	}
 
 }
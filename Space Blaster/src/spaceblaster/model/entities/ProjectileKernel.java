@@ -0,0 +1,261 @@
+package spaceblaster.model.entities;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import spaceblaster.model.collision.CollisionLayer;
+
+/**
+ * The per tick loops over every projectile, run straight over the arrays of an EntityStore: moving
+ * each one by its velocity, and sorting out which have left the world, which have hit a box (the
+ * player) and which still have to be looked up in the broadphase. These are the tightest loops of a
+ * tick, since projectiles outnumber ships many times over in a heavy fight.
+ *
+ * This class runs them one entity at a time, and works everywhere. A faster kernel that runs them
+ * several entities at a time with the Vector API of Java 17 can be built with the vector profile
+ * (see VectorProjectileKernel in the simd folder), and is used when the game runs with
+ * --add-modules jdk.incubator.vector once it has warmed up, see getDefault(). Every kernel gives
+ * exactly the same results, so games, saves and replays do not depend on which one was used, even
+ * when the kernel changes in the middle of a game.
+ */
+public class ProjectileKernel {
+
+	/**
+	 * What classify() found for each projectile.
+	 */
+	public static final int MISSED = -1;
+	public static final int HIT_BOX = -2;
+	public static final int OUTSIDE = -3;
+	public static final int SEARCH = -4;
+
+	/**
+	 * The kernel built with the vector profile, loaded by name since it is not compiled otherwise.
+	 */
+	public static final String VECTOR_KERNEL = "spaceblaster.model.entities.VectorProjectileKernel";
+
+	/**
+	 * How many projectiles the vector kernel is warmed up on, not a multiple of any number of lanes so
+	 * the loops over the ones left over are warmed up as well, and how many times it is run over them
+	 * between checking whether it still allocates.
+	 */
+	static final int WARM_UP_PROJECTILES = 251;
+	static final int WARM_UP_CALLS = 100;
+
+	/**
+	 * How many rounds of WARM_UP_CALLS the vector kernel gets to stop allocating before it is given
+	 * up on, or is taken to be compiled if the JVM cannot tell what a thread allocates.
+	 */
+	static final int WARM_UP_ROUNDS = 200;
+
+	private static final ProjectileKernel SCALAR = new ProjectileKernel();
+
+	private static volatile ProjectileKernel best;
+	private static Thread warmUp;
+
+	/**
+	 * Gets the fastest kernel ready to run here: the vector kernel if it was built, the
+	 * jdk.incubator.vector module is present and the system property spaceblaster.vector is not
+	 * false, or else this one. Until the JIT compiles the loops of the vector kernel, the Vector API
+	 * allocates every vector it works on, megabytes a tick, so the first call only starts warming it
+	 * up on a thread of its own, and this kernel is returned until that is done, see warmUp().
+	 * @return
+	 */
+	public static ProjectileKernel getDefault(){
+		ProjectileKernel k = best;
+		if(k==null){
+			k = startWarmUp();
+		}
+		return k;
+	}
+
+	/**
+	 * Gets the kernel getDefault() settles on, waiting for the vector kernel to warm up if it is
+	 * going to be used.
+	 * @return
+	 */
+	public static ProjectileKernel awaitDefault(){
+		getDefault();
+		Thread t;
+		synchronized(ProjectileKernel.class){
+			t = warmUp;
+		}
+		boolean interrupted = false;
+		while(t!=null && t.isAlive()){
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted){
+			Thread.currentThread().interrupt();
+		}
+		return getDefault();
+	}
+
+	private static synchronized ProjectileKernel startWarmUp(){
+		if(best==null && warmUp==null){
+			final ProjectileKernel vector = "false".equals(System.getProperty("spaceblaster.vector")) ? null : forName("vector");
+			if(vector==null){
+				best = SCALAR;
+			} else {
+				warmUp = new Thread("Projectile kernel warm-up"){
+					public void run(){
+						best = vector.warmUp() ? vector : SCALAR;
+					}
+				};
+				warmUp.setDaemon(true);
+				warmUp.start();
+			}
+		}
+		return best!=null ? best : SCALAR;
+	}
+
+	/**
+	 * Gets a kernel by name.
+	 * @param name "scalar" or "vector".
+	 * @return ProjectileKernel The kernel, or null if there is no such kernel or it cannot run here.
+	 */
+	public static ProjectileKernel forName(String name){
+		if(name.equals("scalar")){
+			return new ProjectileKernel();
+		}
+		if(!name.equals("vector")){
+			return null;
+		}
+		try {
+			return (ProjectileKernel)Class.forName(VECTOR_KERNEL).newInstance();
+		} catch (ClassNotFoundException e) {
+			// not built with the vector profile
+		} catch (LinkageError e) {
+			// built, but running without the incubator module
+		} catch (Exception e) {
+			// no vector shape this machine can use
+		}
+		return null;
+	}
+
+	/**
+	 * Remembers where every projectile in a range is at the start of the tick and moves every mobile
+	 * one by its velocity, the same as EntityStore.integrate(int from, int to).
+	 * @param s The store.
+	 * @param from The first index.
+	 * @param to One past the last index.
+	 */
+	public void integrate(EntityStore s, int from, int to){
+		s.integrate(from, to);
+	}
+
+	/**
+	 * Sorts out what happened to each projectile in a range, putting one of these in its place in
+	 * results: OUTSIDE if it is out of a playing area running from 0 to width horizontally and above
+	 * height vertically, or has flown up past the line top and is still going up; otherwise HIT_BOX
+	 * or MISSED if it is on one of boxLayers, depending on whether it overlaps the box, SEARCH if it
+	 * is on one of searchLayers, and MISSED if it is on neither. The box test is the same as
+	 * SpatialGrid.intersects(), on the position of the projectile cut down to whole pixels.
+	 * @param s The store.
+	 * @param from The first index.
+	 * @param to One past the last index.
+	 * @param width The width of the playing area.
+	 * @param height The height of the playing area.
+	 * @param top Where projectiles further up and still going up are gone.
+	 * @param boxLayers The collision layers, or'ed together, of the projectiles that can hit the box.
+	 * @param searchLayers The layers of the projectiles that have to be searched for otherwise.
+	 * @param left The left edge of the box.
+	 * @param boxTop The top edge of the box.
+	 * @param w The width of the box.
+	 * @param h The height of the box.
+	 * @param results Where to put the results, at least to long.
+	 */
+	public void classify(EntityStore s, int from, int to, int width, int height, int top, int boxLayers, int searchLayers,
+			int left, int boxTop, int w, int h, int[] results){
+		double[] x = s.x;
+		double[] y = s.y;
+		double[] vy = s.vy;
+		int[] halfWidth = s.halfWidth;
+		int[] halfHeight = s.halfHeight;
+		int[] layer = s.layer;
+		boolean box = w>0 && h>0;
+		for(int i = from; i<to; i++){
+			int hw = halfWidth[i];
+			int hh = halfHeight[i];
+			if(!(x[i]+hw>0 && x[i]-hw<width && y[i]<height) || (y[i]+hh<top && vy[i]<=0)){
+				results[i] = OUTSIDE;
+			} else if((layer[i] & boxLayers)!=0){
+				int bx = (int)x[i]-hw;
+				int by = (int)y[i]-hh;
+				boolean hit = box && hw>0 && hh>0 && bx<left+w && left<bx+hw*2 && by<boxTop+h && boxTop<by+hh*2;
+				results[i] = hit ? HIT_BOX : MISSED;
+			} else if((layer[i] & searchLayers)!=0){
+				results[i] = SEARCH;
+			} else {
+				results[i] = MISSED;
+			}
+		}
+	}
+
+	/**
+	 * Runs this kernel over lasers flying every way over and around a screen, put back where they
+	 * started every round, with the player in the middle of it or gone, until a round of
+	 * WARM_UP_CALLS calls of each loop allocates nothing, which it does once the JIT has compiled
+	 * them. Every path through the loops has to be taken here, or the JIT throws the compiled loops
+	 * away the first time a game takes it.
+	 * @return boolean true if it stopped allocating within WARM_UP_ROUNDS rounds, or the JVM cannot
+	 * tell and they were all run.
+	 */
+	boolean warmUp(){
+		int width = 1000;
+		int height = 650;
+		Random r = new Random(WARM_UP_PROJECTILES);
+		Laser laser = new Laser(0, 0, 0.0, 0.0, 1, false, null, null);
+		EntityStore s = new EntityStore(WARM_UP_PROJECTILES);
+		for(int i = 0; i<WARM_UP_PROJECTILES; i++){
+			Laser l = laser.getCopy(r.nextInt(width+200)-100, r.nextInt(height+200)-100, r.nextDouble()*4, r.nextDouble()*Math.PI*2);
+			l.setIsFromPlayer(i%3==0);
+			s.add(l);
+		}
+		double[] x = s.x.clone();
+		double[] y = s.y.clone();
+		int[] results = new int[WARM_UP_PROJECTILES];
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean t = null;
+		if(threads instanceof com.sun.management.ThreadMXBean){
+			t = (com.sun.management.ThreadMXBean)threads;
+			if(!t.isThreadAllocatedMemorySupported() || !t.isThreadAllocatedMemoryEnabled()){
+				t = null;
+			}
+		}
+		long id = Thread.currentThread().getId();
+		for(int round = 0; round<WARM_UP_ROUNDS; round++){
+			long before = t==null ? 0 : t.getThreadAllocatedBytes(id);
+			System.arraycopy(x, 0, s.x, 0, WARM_UP_PROJECTILES);
+			System.arraycopy(y, 0, s.y, 0, WARM_UP_PROJECTILES);
+			for(int i = 0; i<WARM_UP_CALLS; i++){
+				integrate(s, 0, WARM_UP_PROJECTILES);
+				int size = i%4==3 ? 0 : 40;
+				classify(s, 0, WARM_UP_PROJECTILES, width, height, -64, CollisionLayer.ENEMY_LASER, CollisionLayer.PLAYER_LASER,
+						width/2-20, height/2-20, size, size, results);
+			}
+			if(t!=null && t.getThreadAllocatedBytes(id)==before){
+				return true;
+			}
+		}
+		return t==null;
+	}
+
+	/**
+	 * The name of the kernel, see forName(String name).
+	 * @return
+	 */
+	public String getName(){
+		return "scalar";
+	}
+
+	@Override
+	public String toString(){
+		return getName();
+	}
+
+}
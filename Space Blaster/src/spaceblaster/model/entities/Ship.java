@@ -1,6 +1,11 @@
 package spaceblaster.model.entities;
 
 import java.awt.Image;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import spaceblaster.model.collision.CollisionLayer;
 
 public class Ship extends Entity {
 
@@ -58,6 +63,10 @@ public class Ship extends Entity {
 	 * @return
 	 */
 	public int getHealth(){
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			return s.health[i];
 		return health;
 	}
 	
@@ -67,7 +76,7 @@ public class Ship extends Entity {
 	 */
 	public void setSpeed(double spd){
 		speed = spd;
-		this.setYVelocity(Math.sqrt(speed*speed - xVelocity*xVelocity));
+		this.setYVelocity(Math.sqrt(speed*speed - getXVelocity()*getXVelocity()));
 	}
 	
 	/**
@@ -78,7 +87,7 @@ public class Ship extends Entity {
 	public void setSpeed(double spd, double xv){
 		speed = spd;
 		this.setXVelocity(xv);
-		this.setYVelocity(Math.sqrt(speed*speed - xVelocity*xVelocity));
+		this.setYVelocity(Math.sqrt(speed*speed - xv*xv));
 	}
 	
 	/**
@@ -88,10 +97,14 @@ public class Ship extends Entity {
 	 */
 	public void setHealth(int hp){
 		if(hp>maxHealth){
-			health = maxHealth;
-		} else {
-			health = hp;
+			hp = maxHealth;
 		}
+		int i = slot;
+		EntityStore s = store;
+		if(s!=null && i>=0)
+			s.health[i] = hp;
+		else
+			health = hp;
 	}
 	
 	/**
@@ -106,5 +119,43 @@ public class Ship extends Entity {
 		return maxHealth;
 	}
 	
+	@Override
+	public int getCollisionLayer(){
+		return CollisionLayer.ENEMY;
+	}
+	
+	@Override
+	public int getTypeId(){
+		return EntityStore.TYPE_SHIP;
+	}
+	
+	@Override
+	public void writeState(DataOutput out) throws IOException{
+		super.writeState(out);
+		out.writeInt(maxHealth);
+		out.writeInt(getHealth());
+		out.writeDouble(speed);
+	}
+	
+	@Override
+	public void readState(DataInput in) throws IOException{
+		super.readState(in);
+		maxHealth = in.readInt();
+		setHealth(in.readInt());
+		speed = in.readDouble();
+	}
+	
+	@Override
+	void attach(EntityStore s, int i){
+		super.attach(s, i);
+		s.health[i] = health;
+	}
+	
+	@Override
+	void detach(){
+		health = store.health[slot];
+		super.detach();
+	}
+	
 
 }
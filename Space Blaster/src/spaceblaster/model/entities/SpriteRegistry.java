@@ -0,0 +1,59 @@
+package spaceblaster.model.entities;
+
+import java.awt.Image;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Gives every image used by an entity a small integer id, so that a frame to draw can be
+ * described with primitive arrays and the renderer can look the image up again.
+ */
+public final class SpriteRegistry {
+
+	/**
+	 * The id of a missing image, entities without one are drawn as a rectangle.
+	 */
+	public static final int NO_SPRITE = 0;
+
+	private static final Map<Image, Integer> ids = new IdentityHashMap<Image, Integer>();
+	private static volatile Image[] sprites = new Image[1];
+
+	private SpriteRegistry() {
+	}
+
+	/**
+	 * Gets the id of an image, registering it if it has not been seen before.
+	 * @param img The image.
+	 * @return int The id, or NO_SPRITE for null.
+	 */
+	public static synchronized int idOf(Image img){
+		if(img==null){
+			return NO_SPRITE;
+		}
+		Integer id = ids.get(img);
+		if(id==null){
+			Image[] current = sprites;
+			Image[] next = Arrays.copyOf(current, current.length+1);
+			next[current.length] = img;
+			id = current.length;
+			ids.put(img, id);
+			sprites = next;
+		}
+		return id;
+	}
+
+	/**
+	 * Gets the image with the given id, can be called from any thread.
+	 * @param id The id.
+	 * @return Image The image, or null for NO_SPRITE or an unknown id.
+	 */
+	public static Image get(int id){
+		Image[] current = sprites;
+		if(id<0 || id>=current.length){
+			return null;
+		}
+		return current[id];
+	}
+
+}
@@ -0,0 +1,116 @@
+package spaceblaster.model.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations into buckets, eight for every power of two, so any value is known to within
+ * about 12% with a fixed 488 buckets covering every positive long. Recording takes a few atomic
+ * increments and never locks or allocates, and any thread may read the percentiles while another
+ * records; a read while values are being recorded may be off by the values being recorded.
+ */
+public class LatencyHistogram {
+
+	// the number of bits of each value below its highest bit kept, 8 buckets for each power of two
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1<<SUB_BITS;
+	private static final int BUCKETS = (64-SUB_BITS)*SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value.
+	 * @param value The value, usually a duration in nanoseconds. Negative values are recorded as 0.
+	 */
+	public void record(long value){
+		if(value<0){
+			value = 0;
+		}
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long m = max.get();
+		while(value>m && !max.compareAndSet(m, value)){
+			m = max.get();
+		}
+	}
+
+	/**
+	 * Gets the bucket a value is counted in: values below 8 have one each, then each power of two
+	 * is split into 8 by the 3 bits below its highest bit.
+	 */
+	static int bucket(long value){
+		if(value<SUB_BUCKETS){
+			return (int)value;
+		}
+		int shift = 63-Long.numberOfLeadingZeros(value)-SUB_BITS;
+		return (shift+1)*SUB_BUCKETS + (int)((value>>>shift) & (SUB_BUCKETS-1));
+	}
+
+	/**
+	 * Gets the largest value counted in a bucket.
+	 */
+	static long highestInBucket(int bucket){
+		if(bucket<SUB_BUCKETS){
+			return bucket;
+		}
+		int shift = bucket/SUB_BUCKETS-1;
+		long lowest = (long)(SUB_BUCKETS+bucket%SUB_BUCKETS)<<shift;
+		return lowest+(1L<<shift)-1;
+	}
+
+	/**
+	 * Gets the value a given fraction of the recorded values are at or below, rounded up to the top
+	 * of its bucket but never above the largest value recorded.
+	 * @param fraction The fraction, 0.5 for the median and 0.99 for the 99th percentile.
+	 * @return long The value, or 0 if nothing has been recorded.
+	 */
+	public long getPercentile(double fraction){
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for(int i = 0; i<BUCKETS; i++){
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if(total==0){
+			return 0;
+		}
+		long rank = Math.max((long)Math.ceil(fraction*total), 1);
+		long seen = 0;
+		for(int i = 0; i<BUCKETS; i++){
+			seen += snapshot[i];
+			if(seen>=rank){
+				return Math.min(highestInBucket(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public long getCount(){
+		return count.get();
+	}
+
+	public long getSum(){
+		return sum.get();
+	}
+
+	public long getMax(){
+		return max.get();
+	}
+
+	/**
+	 * Forgets every value recorded. Values recorded at the same time may be partly forgotten.
+	 */
+	public void reset(){
+		for(int i = 0; i<BUCKETS; i++){
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+}
@@ -0,0 +1,170 @@
+package spaceblaster.model.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Serves TickMetrics at /metrics in the Prometheus text format, on the loopback address only. Times
+ * are exported as summaries in seconds with the median and 99th percentile, and a gauge of the
+ * longest; counters end in _total.
+ */
+public class MetricsServer {
+
+	/**
+	 * The path the metrics are served at.
+	 */
+	public static final String PATH = "/metrics";
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final TickMetrics metrics;
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Metrics server");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Creates a new server, which must be started.
+	 * @param m The metrics to serve.
+	 * @param port The port to listen on, or 0 for any free port (see getPort()).
+	 * @throws IOException If the port cannot be listened on.
+	 */
+	public MetricsServer(TickMetrics m, int port) throws IOException {
+		metrics = m;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.setExecutor(executor);
+		server.createContext(PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					if(!exchange.getRequestMethod().equals("GET") && !exchange.getRequestMethod().equals("HEAD")){
+						exchange.sendResponseHeaders(405, -1);
+						return;
+					}
+					byte[] body = format().getBytes(UTF8);
+					exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+					if(exchange.getRequestMethod().equals("HEAD")){
+						exchange.sendResponseHeaders(200, -1);
+						return;
+					}
+					exchange.sendResponseHeaders(200, body.length);
+					OutputStream out = exchange.getResponseBody();
+					out.write(body);
+					out.close();
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+	}
+
+	public void start(){
+		server.start();
+	}
+
+	/**
+	 * Stops listening, waiting up to a second for requests being answered.
+	 */
+	public void stop(){
+		server.stop(1);
+		executor.shutdown();
+	}
+
+	/**
+	 * Gets the port the server listens on.
+	 * @return
+	 */
+	public int getPort(){
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Writes the metrics in the Prometheus text format.
+	 * @return String The metrics.
+	 */
+	public String format(){
+		StringBuilder sb = new StringBuilder(4096);
+		summary(sb, "spaceblaster_tick_seconds", "Time to step the world one tick.", "", metrics.getTickHistogram(), true);
+		for(int i = 0; i<TickMetrics.PHASE_COUNT; i++){
+			summary(sb, "spaceblaster_tick_phase_seconds", "Time spent in each phase of a tick.",
+					"phase=\""+TickMetrics.getPhaseName(i)+"\",", metrics.getPhaseHistogram(i), i==0);
+		}
+		summary(sb, "spaceblaster_frame_seconds", "Time for the render thread to draw a frame.", "", metrics.getFrameHistogram(), true);
+		summary(sb, "spaceblaster_input_delay_seconds", "Time an input event waited for the tick applying it.", "", metrics.getInputHistogram(), true);
+
+		max(sb, "spaceblaster_tick_max_seconds", "Longest tick.", "", metrics.getTickHistogram(), true);
+		for(int i = 0; i<TickMetrics.PHASE_COUNT; i++){
+			max(sb, "spaceblaster_tick_phase_max_seconds", "Longest time spent in each phase of a tick.",
+					"{phase=\""+TickMetrics.getPhaseName(i)+"\"}", metrics.getPhaseHistogram(i), i==0);
+		}
+		max(sb, "spaceblaster_frame_max_seconds", "Longest time to draw a frame.", "", metrics.getFrameHistogram(), true);
+		max(sb, "spaceblaster_input_delay_max_seconds", "Longest an input event waited for the tick applying it.", "", metrics.getInputHistogram(), true);
+
+		value(sb, "spaceblaster_tick_overruns_total", "counter", "Ticks that took longer than the budget.", metrics.getTickOverruns());
+		value(sb, "spaceblaster_tick_budget_seconds", "gauge", "The longest a tick should take.", metrics.getTickBudgetNanos()/1e9);
+		value(sb, "spaceblaster_spawns_total", "counter", "Enemies spawned.", metrics.getSpawns());
+		value(sb, "spaceblaster_kills_total", "counter", "Enemies killed.", metrics.getKills());
+		value(sb, "spaceblaster_collisions_tested_total", "counter", "Projectiles and ships tested for collisions.", metrics.getCollisionsTested());
+		value(sb, "spaceblaster_collisions_hit_total", "counter", "Projectiles and ships that hit something.", metrics.getCollisionsHit());
+		value(sb, "spaceblaster_dropped_frames_total", "counter", "Frames the render thread skipped to catch up.", metrics.getDroppedFrames());
+		value(sb, "spaceblaster_dropped_ticks_total", "counter", "Ticks the game clock dropped to catch up.", metrics.getDroppedTicks());
+		value(sb, "spaceblaster_dropped_inputs_total", "counter", "Input events dropped because too many were waiting.", metrics.getDroppedInputs());
+		value(sb, "spaceblaster_ships", "gauge", "Ships in the world.", metrics.getShips());
+		value(sb, "spaceblaster_projectiles", "gauge", "Projectiles in the world.", metrics.getProjectiles());
+		value(sb, "spaceblaster_level", "gauge", "The current level.", metrics.getLevel());
+		return sb.toString();
+	}
+
+	private static void header(StringBuilder sb, String name, String type, String help){
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * Writes a histogram of nanoseconds as a summary in seconds.
+	 * @param labels Any labels to put before the quantile, each followed by a comma.
+	 * @param first Whether this is the first of the summaries with this name, which has the header.
+	 */
+	private static void summary(StringBuilder sb, String name, String help, String labels, LatencyHistogram h, boolean first){
+		if(first){
+			header(sb, name, "summary", help);
+		}
+		sb.append(name).append("{").append(labels).append("quantile=\"0.5\"} ").append(h.getPercentile(0.5)/1e9).append('\n');
+		sb.append(name).append("{").append(labels).append("quantile=\"0.99\"} ").append(h.getPercentile(0.99)/1e9).append('\n');
+		String suffixLabels = labels.isEmpty() ? "" : "{"+labels.substring(0, labels.length()-1)+"}";
+		sb.append(name).append("_sum").append(suffixLabels).append(' ').append(h.getSum()/1e9).append('\n');
+		sb.append(name).append("_count").append(suffixLabels).append(' ').append(h.getCount()).append('\n');
+	}
+
+	private static void max(StringBuilder sb, String name, String help, String labels, LatencyHistogram h, boolean first){
+		if(first){
+			header(sb, name, "gauge", help);
+		}
+		sb.append(name).append(labels).append(' ').append(h.getMax()/1e9).append('\n');
+	}
+
+	private static void value(StringBuilder sb, String name, String type, String help, double v){
+		header(sb, name, type, help);
+		sb.append(name).append(' ').append(v).append('\n');
+	}
+
+	private static void value(StringBuilder sb, String name, String type, String help, long v){
+		header(sb, name, type, help);
+		sb.append(name).append(' ').append(v).append('\n');
+	}
+
+}
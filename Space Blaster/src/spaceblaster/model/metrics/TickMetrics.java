@@ -0,0 +1,470 @@
+package spaceblaster.model.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures the game while it runs: how long each tick and each phase of a tick takes, how long the
+ * render thread takes to draw a frame, how long input events wait to be applied, counters of what
+ * happened and gauges of how full the world is. The world marks the end of each phase as it steps (see World.setMetrics(TickMetrics m)), which
+ * costs a System.nanoTime() call a phase; the times go into LatencyHistograms and the counters into
+ * atomics, so the numbers can be read from any thread (over JMX, see register(), or from a
+ * MetricsServer) without holding up the game.
+ *
+ * A tick that takes longer than the budget is counted as an overrun, and its breakdown into phases
+ * is kept for a TickWatchdog to log.
+ */
+public class TickMetrics implements TickMetricsMBean {
+
+	/**
+	 * The name TickMetrics are registered with over JMX.
+	 */
+	public static final String OBJECT_NAME = "spaceblaster:type=TickMetrics";
+
+	/**
+	 * Applying the inputs and holding the player's position for the tick.
+	 */
+	public static final int PHASE_INPUT = 0;
+	/**
+	 * Moving every ship and projectile.
+	 */
+	public static final int PHASE_INTEGRATE = 1;
+	/**
+	 * The enemies' updates and decisions to fire.
+	 */
+	public static final int PHASE_ENEMIES = 2;
+	/**
+	 * The broadphase and narrow phase.
+	 */
+	public static final int PHASE_COLLIDE = 3;
+	/**
+	 * Applying what each projectile hit.
+	 */
+	public static final int PHASE_PROJECTILES = 4;
+	/**
+	 * Applying kills, enemy fire and ships leaving or hitting the player.
+	 */
+	public static final int PHASE_SHIPS = 5;
+	/**
+	 * Updating the player, moving to the next level and spawning the new enemies.
+	 */
+	public static final int PHASE_SPAWN = 6;
+	/**
+	 * Adding and removing the entities spawned and despawned during the tick.
+	 */
+	public static final int PHASE_COMMANDS = 7;
+	/**
+	 * The listeners at the end of the tick, which capture the frame for the view, autosave and record.
+	 */
+	public static final int PHASE_LISTENERS = 8;
+	public static final int PHASE_COUNT = 9;
+
+	private static final String[] PHASE_NAMES = {
+		"input", "integrate", "enemies", "collide", "projectiles", "ships", "spawn", "commands", "listeners"
+	};
+
+	private final LatencyHistogram ticks = new LatencyHistogram();
+	private final LatencyHistogram[] phases = new LatencyHistogram[PHASE_COUNT];
+	private final LatencyHistogram frames = new LatencyHistogram();
+	private final LatencyHistogram inputs = new LatencyHistogram();
+
+	private volatile long budget;
+
+	// only used on the thread stepping the world
+	private long lastMark;
+	private final long[] current = new long[PHASE_COUNT];
+
+	// the tick being stepped and when it started, for the watchdog to spot a stalled tick
+	private volatile long runningTick = -1;
+	private volatile long runningSince;
+	private volatile int runningPhase;
+
+	// the last overrun not yet logged: the tick, its length, then the length of each phase
+	private final AtomicReference<long[]> lastOverrun = new AtomicReference<long[]>();
+
+	private final AtomicLong overruns = new AtomicLong();
+	private final AtomicLong spawns = new AtomicLong();
+	private final AtomicLong kills = new AtomicLong();
+	private final AtomicLong collisionsTested = new AtomicLong();
+	private final AtomicLong collisionsHit = new AtomicLong();
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private volatile long droppedTicks;
+	private volatile long droppedInputs;
+
+	private volatile int ships;
+	private volatile int projectiles;
+	private volatile int level;
+
+	/**
+	 * Creates new, empty metrics.
+	 * @param budgetNanos The longest a tick should take, usually GameClock.NANOS_PER_TICK.
+	 */
+	public TickMetrics(long budgetNanos) {
+		budget = budgetNanos;
+		for(int i = 0; i<PHASE_COUNT; i++){
+			phases[i] = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * Registers these metrics with the platform MBean server, under OBJECT_NAME.
+	 * @throws JMException If they cannot be registered, for instance because other metrics already are.
+	 */
+	public void register() throws JMException{
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(this, new ObjectName(OBJECT_NAME));
+	}
+
+	/**
+	 * Marks the start of a tick. Called by the world, as are the other methods up to endTick().
+	 * @param tick The tick count of the world.
+	 */
+	public void beginTick(long tick){
+		long now = System.nanoTime();
+		lastMark = now;
+		runningSince = now;
+		runningPhase = -1;
+		runningTick = tick;
+	}
+
+	/**
+	 * Marks the end of a phase, which started when the last one ended.
+	 * @param phase The phase, one of the PHASE constants.
+	 */
+	public void endPhase(int phase){
+		long now = System.nanoTime();
+		current[phase] = now-lastMark;
+		lastMark = now;
+		runningPhase = phase;
+	}
+
+	/**
+	 * Marks the end of a tick, recording how long it and each of its phases took.
+	 * @param shipCount The number of ships in the world now.
+	 * @param projectileCount The number of projectiles in the world now.
+	 * @param currentLevel The level now.
+	 * @param spawned The number of enemies spawned in the tick.
+	 * @param killed The number of enemies killed in the tick.
+	 * @param tested The number of projectiles and ships tested for collisions in the tick.
+	 * @param hit The number of those that hit something.
+	 */
+	public void endTick(int shipCount, int projectileCount, int currentLevel, int spawned, int killed, int tested, int hit){
+		long total = lastMark-runningSince;
+		ticks.record(total);
+		for(int i = 0; i<PHASE_COUNT; i++){
+			phases[i].record(current[i]);
+		}
+		if(total>budget){
+			overruns.incrementAndGet();
+			long[] breakdown = new long[PHASE_COUNT+2];
+			breakdown[0] = runningTick;
+			breakdown[1] = total;
+			System.arraycopy(current, 0, breakdown, 2, PHASE_COUNT);
+			lastOverrun.set(breakdown);
+		}
+		ships = shipCount;
+		projectiles = projectileCount;
+		level = currentLevel;
+		if(spawned>0){
+			spawns.addAndGet(spawned);
+		}
+		if(killed>0){
+			kills.addAndGet(killed);
+		}
+		collisionsTested.addAndGet(tested);
+		if(hit>0){
+			collisionsHit.addAndGet(hit);
+		}
+		runningTick = -1;
+	}
+
+	/**
+	 * Records how long an input event waited before the tick applying it started. Called by the world
+	 * between beginTick() and endTick().
+	 * @param stamp The System.nanoTime() the event was submitted at.
+	 */
+	public void recordInput(long stamp){
+		inputs.record(runningSince-stamp);
+	}
+
+	/**
+	 * Records how long the render thread took to draw a frame.
+	 * @param nanos The time in nanoseconds.
+	 */
+	public void recordFrame(long nanos){
+		frames.record(nanos);
+	}
+
+	/**
+	 * Counts a frame the render thread skipped because it fell more than a frame behind.
+	 */
+	public void frameDropped(){
+		droppedFrames.incrementAndGet();
+	}
+
+	/**
+	 * Sets the number of ticks the game clock has dropped, see GameClock.getDroppedTicks().
+	 * @param dropped The number of ticks.
+	 */
+	public void setDroppedTicks(long dropped){
+		droppedTicks = dropped;
+	}
+
+	/**
+	 * Sets the number of input events the world has dropped because too many were waiting.
+	 * @param dropped The number of events.
+	 */
+	public void setDroppedInputs(long dropped){
+		droppedInputs = dropped;
+	}
+
+	/**
+	 * Takes the last overrun not taken yet, for logging.
+	 * @return long[] The tick, how long it took, then how long each phase took, or null if there has
+	 * been no overrun since the last call.
+	 */
+	long[] takeOverrun(){
+		return lastOverrun.getAndSet(null);
+	}
+
+	/**
+	 * Gets the tick being stepped right now.
+	 * @return long The tick, or -1 if the world is between ticks.
+	 */
+	long getRunningTick(){
+		return runningTick;
+	}
+
+	/**
+	 * Gets when the tick being stepped right now started.
+	 * @return long The System.nanoTime() it started at.
+	 */
+	long getRunningSince(){
+		return runningSince;
+	}
+
+	/**
+	 * Gets the last phase of the tick being stepped that has finished.
+	 * @return int The phase, or -1 if none have.
+	 */
+	int getRunningPhase(){
+		return runningPhase;
+	}
+
+	/**
+	 * Gets the name of a phase, as it is logged and exported.
+	 * @param phase The phase, one of the PHASE constants.
+	 * @return
+	 */
+	public static String getPhaseName(int phase){
+		return PHASE_NAMES[phase];
+	}
+
+	public LatencyHistogram getTickHistogram(){
+		return ticks;
+	}
+
+	public LatencyHistogram getPhaseHistogram(int phase){
+		return phases[phase];
+	}
+
+	public LatencyHistogram getFrameHistogram(){
+		return frames;
+	}
+
+	public LatencyHistogram getInputHistogram(){
+		return inputs;
+	}
+
+	/**
+	 * Writes a tick broken down into phases, with every time in milliseconds.
+	 * @param breakdown The tick, its length and the length of each phase, see takeOverrun().
+	 * @return String The breakdown.
+	 */
+	static String describe(long[] breakdown){
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "tick %d took %.2f ms:", breakdown[0], millis(breakdown[1])));
+		for(int i = 0; i<PHASE_COUNT; i++){
+			sb.append(String.format(Locale.ROOT, " %s %.2f", PHASE_NAMES[i], millis(breakdown[i+2])));
+		}
+		return sb.toString();
+	}
+
+	private static double millis(long nanos){
+		return nanos/1e6;
+	}
+
+	@Override
+	public long getTicks(){
+		return ticks.getCount();
+	}
+
+	@Override
+	public long getTickOverruns(){
+		return overruns.get();
+	}
+
+	@Override
+	public long getTickBudgetNanos(){
+		return budget;
+	}
+
+	@Override
+	public void setTickBudgetNanos(long nanos){
+		budget = nanos;
+	}
+
+	@Override
+	public double getTickP50Millis(){
+		return millis(ticks.getPercentile(0.5));
+	}
+
+	@Override
+	public double getTickP99Millis(){
+		return millis(ticks.getPercentile(0.99));
+	}
+
+	@Override
+	public double getTickMaxMillis(){
+		return millis(ticks.getMax());
+	}
+
+	@Override
+	public String[] getPhaseNames(){
+		return PHASE_NAMES.clone();
+	}
+
+	@Override
+	public double[] getPhaseP50Millis(){
+		double[] p = new double[PHASE_COUNT];
+		for(int i = 0; i<PHASE_COUNT; i++){
+			p[i] = millis(phases[i].getPercentile(0.5));
+		}
+		return p;
+	}
+
+	@Override
+	public double[] getPhaseP99Millis(){
+		double[] p = new double[PHASE_COUNT];
+		for(int i = 0; i<PHASE_COUNT; i++){
+			p[i] = millis(phases[i].getPercentile(0.99));
+		}
+		return p;
+	}
+
+	@Override
+	public double[] getPhaseMaxMillis(){
+		double[] p = new double[PHASE_COUNT];
+		for(int i = 0; i<PHASE_COUNT; i++){
+			p[i] = millis(phases[i].getMax());
+		}
+		return p;
+	}
+
+	@Override
+	public double getFrameP50Millis(){
+		return millis(frames.getPercentile(0.5));
+	}
+
+	@Override
+	public double getFrameP99Millis(){
+		return millis(frames.getPercentile(0.99));
+	}
+
+	@Override
+	public double getFrameMaxMillis(){
+		return millis(frames.getMax());
+	}
+
+	@Override
+	public double getInputP50Millis(){
+		return millis(inputs.getPercentile(0.5));
+	}
+
+	@Override
+	public double getInputP99Millis(){
+		return millis(inputs.getPercentile(0.99));
+	}
+
+	@Override
+	public double getInputMaxMillis(){
+		return millis(inputs.getMax());
+	}
+
+	@Override
+	public long getDroppedInputs(){
+		return droppedInputs;
+	}
+
+	@Override
+	public long getSpawns(){
+		return spawns.get();
+	}
+
+	@Override
+	public long getKills(){
+		return kills.get();
+	}
+
+	@Override
+	public long getCollisionsTested(){
+		return collisionsTested.get();
+	}
+
+	@Override
+	public long getCollisionsHit(){
+		return collisionsHit.get();
+	}
+
+	@Override
+	public long getDroppedFrames(){
+		return droppedFrames.get();
+	}
+
+	@Override
+	public long getDroppedTicks(){
+		return droppedTicks;
+	}
+
+	@Override
+	public int getShips(){
+		return ships;
+	}
+
+	@Override
+	public int getProjectiles(){
+		return projectiles;
+	}
+
+	@Override
+	public int getLevel(){
+		return level;
+	}
+
+	/**
+	 * Forgets the times and counters so far, keeping the gauges.
+	 */
+	@Override
+	public void reset(){
+		ticks.reset();
+		for(LatencyHistogram h: phases){
+			h.reset();
+		}
+		frames.reset();
+		inputs.reset();
+		overruns.set(0);
+		spawns.set(0);
+		kills.set(0);
+		collisionsTested.set(0);
+		collisionsHit.set(0);
+		droppedFrames.set(0);
+		lastOverrun.set(null);
+	}
+
+}
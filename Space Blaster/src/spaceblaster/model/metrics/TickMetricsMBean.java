@@ -0,0 +1,64 @@
+package spaceblaster.model.metrics;
+
+/**
+ * What TickMetrics shows over JMX, under TickMetrics.OBJECT_NAME. Times are in milliseconds.
+ */
+public interface TickMetricsMBean {
+
+	long getTicks();
+
+	long getTickOverruns();
+
+	long getTickBudgetNanos();
+
+	void setTickBudgetNanos(long nanos);
+
+	double getTickP50Millis();
+
+	double getTickP99Millis();
+
+	double getTickMaxMillis();
+
+	String[] getPhaseNames();
+
+	double[] getPhaseP50Millis();
+
+	double[] getPhaseP99Millis();
+
+	double[] getPhaseMaxMillis();
+
+	double getFrameP50Millis();
+
+	double getFrameP99Millis();
+
+	double getFrameMaxMillis();
+
+	double getInputP50Millis();
+
+	double getInputP99Millis();
+
+	double getInputMaxMillis();
+
+	long getDroppedInputs();
+
+	long getSpawns();
+
+	long getKills();
+
+	long getCollisionsTested();
+
+	long getCollisionsHit();
+
+	long getDroppedFrames();
+
+	long getDroppedTicks();
+
+	int getShips();
+
+	int getProjectiles();
+
+	int getLevel();
+
+	void reset();
+
+}
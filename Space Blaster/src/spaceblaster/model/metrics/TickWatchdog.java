@@ -0,0 +1,87 @@
+package spaceblaster.model.metrics;
+
+import java.util.Locale;
+
+/**
+ * Watches TickMetrics from a thread of its own and logs ticks that go over budget, with the time each
+ * phase took, so a slowdown can be traced to a phase. Overruns are logged at most once a second,
+ * with a count of those in between. A tick still running after STALL_MILLIS is logged as stalled,
+ * with the last phase it finished, since it will not show up as an overrun until it ends.
+ */
+public class TickWatchdog extends Thread {
+
+	/**
+	 * How long a tick may run before it is logged as stalled, in milliseconds.
+	 */
+	public static final long STALL_MILLIS = 1000;
+
+	// how often the metrics are checked, and the least time between two logged overruns
+	private static final long POLL_MILLIS = 250;
+	private static final long LOG_INTERVAL_NANOS = 1000000000L;
+
+	private final TickMetrics metrics;
+	private volatile boolean end = false;
+
+	private long lastLogged;
+	private long overrunsLogged;
+	private long stalledTick = -1;
+
+	/**
+	 * Creates a new watchdog, which must be started.
+	 * @param m The metrics to watch.
+	 */
+	public TickWatchdog(TickMetrics m) {
+		super("Tick watchdog");
+		setDaemon(true);
+		metrics = m;
+		lastLogged = System.nanoTime()-LOG_INTERVAL_NANOS;
+	}
+
+	public void end(){
+		end = true;
+		interrupt();
+	}
+
+	public void run(){
+		while(!end){
+			try {
+				Thread.sleep(POLL_MILLIS);
+			} catch (InterruptedException e) {
+				return;
+			}
+			check();
+		}
+	}
+
+	/**
+	 * Logs the last overrun if it is time to, and the tick running now if it has stalled.
+	 */
+	private void check(){
+		long now = System.nanoTime();
+		if(now-lastLogged>=LOG_INTERVAL_NANOS){
+			long[] overrun = metrics.takeOverrun();
+			if(overrun!=null){
+				long total = metrics.getTickOverruns();
+				long missed = total-overrunsLogged-1;
+				overrunsLogged = total;
+				lastLogged = now;
+				System.err.println("Tick over budget of "+format(metrics.getTickBudgetNanos())+" ms, "
+						+TickMetrics.describe(overrun)+(missed>0 ? " (and "+missed+" more since the last)" : ""));
+			}
+		}
+
+		long tick = metrics.getRunningTick();
+		long since = metrics.getRunningSince();
+		if(tick>=0 && tick!=stalledTick && now-since>=STALL_MILLIS*1000000L){
+			stalledTick = tick;
+			int phase = metrics.getRunningPhase();
+			System.err.println("Tick "+tick+" has been running for "+format(now-since)+" ms, "
+					+(phase<0 ? "before the first phase finished" : "since "+TickMetrics.getPhaseName(phase)+" finished"));
+		}
+	}
+
+	private static String format(long nanos){
+		return String.format(Locale.ROOT, "%.2f", nanos/1e6);
+	}
+
+}
@@ -0,0 +1,353 @@
+package spaceblaster.model.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A recorded game: what the world was built with (its size, the seed of its levels and the waves),
+ * every input event with the tick it was applied in, and keyframes of the whole world state every
+ * so often. Since a World steps the same way every time it is given the same inputs on the same
+ * ticks, this is enough to play the game again exactly (see ReplayPlayer), and the keyframes let
+ * playback start part way through without stepping all of the ticks before.
+ *
+ * A game carried on from a saved game starts at a later tick, with a keyframe of the world as it was
+ * restored.
+ *
+ * In a file, the header is followed by the events, each a variable length tick delta and one byte,
+ * then the keyframes, all compressed.
+ */
+public class Replay {
+
+	/**
+	 * The extension replay files are saved with.
+	 */
+	public static final String EXTENSION = ".sbreplay";
+
+	// the first bytes of a file, "SBRP", and the version of the format
+	static final int MAGIC = 0x53425250;
+	static final int VERSION = 4;
+
+	private final long seed;
+	private final int width;
+	private final int height;
+	private final String waves;
+	private long startTick = 0;
+	private long endTick = 0;
+
+	private long[] eventTicks = new long[256];
+	private byte[] events = new byte[256];
+	private int eventCount = 0;
+
+	private long[] keyframeTicks = new long[16];
+	private ArrayList<byte[]> keyframes = new ArrayList<byte[]>();
+
+	/**
+	 * Creates a new, empty replay for a game in a world built with the given settings.
+	 * @param s The seed of the levels, see LevelGenorator.getSeed().
+	 * @param w The width of the playing area.
+	 * @param h The height of the playing area.
+	 * @param wavesPath The path of the waves the world was built with, or an empty string for the default.
+	 */
+	public Replay(long s, int w, int h, String wavesPath) {
+		seed = s;
+		width = w;
+		height = h;
+		waves = wavesPath==null ? "" : wavesPath;
+	}
+
+	/**
+	 * Adds an input event. Events must be added in the order they were applied.
+	 * @param tick The tick it was applied in.
+	 * @param event The event, see InputEvent.
+	 */
+	public synchronized void addEvent(long tick, int event){
+		if(eventCount>0 && tick<eventTicks[eventCount-1]){
+			throw new IllegalArgumentException("Event at tick "+tick+" added after tick "+eventTicks[eventCount-1]);
+		}
+		if(eventCount==events.length){
+			eventTicks = Arrays.copyOf(eventTicks, eventCount*2);
+			events = Arrays.copyOf(events, eventCount*2);
+		}
+		eventTicks[eventCount] = tick;
+		events[eventCount] = (byte)event;
+		eventCount++;
+	}
+
+	/**
+	 * Adds a keyframe. Keyframes must be added in order.
+	 * @param tick The tick count of the world when the state was written, see World.getTickCount().
+	 * @param state The state, written with World.writeState(DataOutput out).
+	 */
+	public synchronized void addKeyframe(long tick, byte[] state){
+		int n = keyframes.size();
+		if(n>0 && tick<=keyframeTicks[n-1]){
+			throw new IllegalArgumentException("Keyframe at tick "+tick+" added after tick "+keyframeTicks[n-1]);
+		}
+		if(n==keyframeTicks.length){
+			keyframeTicks = Arrays.copyOf(keyframeTicks, n*2);
+		}
+		keyframeTicks[n] = tick;
+		keyframes.add(state);
+	}
+
+	/**
+	 * Sets the tick recording started at, when it did not start with a new world. There must be a
+	 * keyframe at that tick for the replay to start from.
+	 * @param tick The tick count of the world when recording started.
+	 */
+	public synchronized void setStartTick(long tick){
+		startTick = tick;
+	}
+
+	public synchronized long getStartTick(){
+		return startTick;
+	}
+
+	/**
+	 * Sets the tick the game was recorded up to.
+	 * @param tick The tick count of the world when recording stopped.
+	 */
+	public synchronized void setEndTick(long tick){
+		endTick = tick;
+	}
+
+	public synchronized long getEndTick(){
+		return endTick;
+	}
+
+	public long getSeed(){
+		return seed;
+	}
+
+	public int getWidth(){
+		return width;
+	}
+
+	public int getHeight(){
+		return height;
+	}
+
+	/**
+	 * Gets the path of the waves the world was built with.
+	 * @return String The path, or an empty string for the default waves.
+	 */
+	public String getWaves(){
+		return waves;
+	}
+
+	public synchronized int getEventCount(){
+		return eventCount;
+	}
+
+	public synchronized long getEventTick(int i){
+		return eventTicks[i];
+	}
+
+	public synchronized int getEvent(int i){
+		return events[i];
+	}
+
+	/**
+	 * Finds the first event applied in or after a tick.
+	 * @param tick The tick.
+	 * @return int The index of the event, or getEventCount() if there are none.
+	 */
+	public synchronized int findEvent(long tick){
+		int lo = 0;
+		int hi = eventCount;
+		while(lo<hi){
+			int mid = (lo+hi)>>>1;
+			if(eventTicks[mid]<tick){
+				lo = mid+1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	public synchronized int getKeyframeCount(){
+		return keyframes.size();
+	}
+
+	public synchronized long getKeyframeTick(int i){
+		return keyframeTicks[i];
+	}
+
+	public synchronized byte[] getKeyframe(int i){
+		return keyframes.get(i);
+	}
+
+	/**
+	 * Finds the last keyframe at or before a tick.
+	 * @param tick The tick.
+	 * @return int The index of the keyframe, or -1 if there are none that early.
+	 */
+	public synchronized int findKeyframe(long tick){
+		int lo = 0;
+		int hi = keyframes.size();
+		while(lo<hi){
+			int mid = (lo+hi)>>>1;
+			if(keyframeTicks[mid]<=tick){
+				lo = mid+1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo-1;
+	}
+
+	/**
+	 * Writes this replay to a file.
+	 * @param file The file, replaced if it exists.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void save(File file) throws IOException{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a replay from a file.
+	 * @param file The file.
+	 * @return Replay The replay.
+	 * @throws IOException If it cannot be read or is not a replay.
+	 */
+	public static Replay load(File file) throws IOException{
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes this replay.
+	 * @param out The stream to write to, flushed but left open.
+	 * @throws IOException If it cannot be written.
+	 */
+	public synchronized void write(OutputStream out) throws IOException{
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(MAGIC);
+		header.writeShort(VERSION);
+		header.flush();
+
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater, 8192);
+		DataOutputStream data = new DataOutputStream(compressed);
+		data.writeLong(seed);
+		data.writeInt(width);
+		data.writeInt(height);
+		data.writeUTF(waves);
+		data.writeLong(startTick);
+		data.writeLong(endTick);
+		data.writeInt(eventCount);
+		long last = 0;
+		for(int i = 0; i<eventCount; i++){
+			writeVarLong(data, eventTicks[i]-last);
+			data.writeByte(events[i]);
+			last = eventTicks[i];
+		}
+		data.writeInt(keyframes.size());
+		for(int i = 0; i<keyframes.size(); i++){
+			data.writeLong(keyframeTicks[i]);
+			data.writeInt(keyframes.get(i).length);
+			data.write(keyframes.get(i));
+		}
+		data.flush();
+		compressed.finish();
+		deflater.end();
+		out.flush();
+	}
+
+	/**
+	 * Reads a replay written by write(OutputStream out).
+	 * @param in The stream to read from, left open.
+	 * @return Replay The replay.
+	 * @throws IOException If it cannot be read or is not a replay.
+	 */
+	public static Replay read(InputStream in) throws IOException{
+		DataInputStream header = new DataInputStream(in);
+		if(header.readInt()!=MAGIC){
+			throw new IOException("Not a replay");
+		}
+		int version = header.readUnsignedShort();
+		if(version!=VERSION){
+			throw new IOException("Unsupported replay version "+version);
+		}
+		DataInputStream data = new DataInputStream(new InflaterInputStream(in));
+		Replay r = new Replay(data.readLong(), data.readInt(), data.readInt(), data.readUTF());
+		r.startTick = data.readLong();
+		r.endTick = data.readLong();
+		int n = data.readInt();
+		if(n<0){
+			throw new IOException("Bad event count "+n);
+		}
+		long tick = 0;
+		for(int i = 0; i<n; i++){
+			tick += readVarLong(data);
+			r.addEvent(tick, data.readByte());
+		}
+		n = data.readInt();
+		for(int i = 0; i<n; i++){
+			long t = data.readLong();
+			int length = data.readInt();
+			if(length<0){
+				throw new IOException("Bad keyframe length "+length);
+			}
+			byte[] state = new byte[length];
+			data.readFully(state);
+			r.addKeyframe(t, state);
+		}
+		return r;
+	}
+
+	/**
+	 * Writes a number that is not negative in as few bytes as it needs, 7 bits at a time.
+	 */
+	static void writeVarLong(DataOutput out, long v) throws IOException{
+		while((v & ~0x7FL)!=0){
+			out.writeByte((int)(v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte((int)v);
+	}
+
+	static long readVarLong(DataInput in) throws IOException{
+		long v = 0;
+		for(int shift = 0; shift<64; shift += 7){
+			int b = in.readUnsignedByte();
+			v |= (long)(b & 0x7F)<<shift;
+			if((b & 0x80)==0){
+				return v;
+			}
+		}
+		throw new IOException("Bad variable length number");
+	}
+
+	@Override
+	public synchronized String toString(){
+		return "Replay[seed="+seed+", size="+width+"x"+height+", ticks="+endTick+", events="+eventCount+", keyframes="+keyframes.size()+"]";
+	}
+
+}
@@ -0,0 +1,150 @@
+package spaceblaster.model.replay;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+
+/**
+ * Plays a Replay back by building a world the same way the recorded one was built and stepping it
+ * with the recorded input events, as fast as it can be stepped. Seeking starts from the closest
+ * keyframe before the tick asked for rather than from the beginning.
+ */
+public class ReplayPlayer {
+
+	private final Replay replay;
+	private final WorldBuilder builder;
+	private World world;
+	private int nextEvent;
+
+	/**
+	 * Creates a new player at the start of a replay.
+	 * @param r The replay.
+	 * @param b Builds the world, with the waves the replay was recorded with.
+	 */
+	public ReplayPlayer(Replay r, WorldBuilder b) throws IOException {
+		replay = r;
+		builder = b;
+		restart();
+	}
+
+	/**
+	 * Goes back to the start of the replay, with a new world.
+	 * @throws IOException If the replay starts from a keyframe that cannot be read into the world.
+	 */
+	public void restart() throws IOException{
+		world = builder.build(replay.getWidth(), replay.getHeight(), replay.getSeed());
+		nextEvent = 0;
+		if(replay.getStartTick()>0){
+			if(replay.getKeyframeCount()==0 || replay.getKeyframeTick(0)!=replay.getStartTick()){
+				throw new IOException("Missing the keyframe the replay starts from");
+			}
+			readKeyframe(0);
+		}
+	}
+
+	private void readKeyframe(int k) throws IOException{
+		world.readState(new DataInputStream(new ByteArrayInputStream(replay.getKeyframe(k))));
+		nextEvent = replay.findEvent(world.getTickCount());
+	}
+
+	/**
+	 * Moves to a tick, starting from the last keyframe at or before it (or the start if there is none
+	 * that early) and stepping the rest of the way. The world is replaced with a new one.
+	 * @param tick The tick, capped at the end of the replay.
+	 * @throws IOException If the keyframe cannot be read into the world.
+	 */
+	public void seek(long tick) throws IOException{
+		tick = Math.min(tick, replay.getEndTick());
+		restart();
+		int k = replay.findKeyframe(tick);
+		if(k>=0){
+			readKeyframe(k);
+		}
+		while(world.getTickCount()<tick && step()){
+		}
+	}
+
+	/**
+	 * Steps the world one tick, first submitting the events recorded for it.
+	 * @return boolean false if the replay has finished and the world was not stepped.
+	 */
+	public boolean step(){
+		if(isFinished()){
+			return false;
+		}
+		long tick = world.getTickCount();
+		int n = replay.getEventCount();
+		while(nextEvent<n && replay.getEventTick(nextEvent)<=tick){
+			world.submitInput(replay.getEvent(nextEvent));
+			nextEvent++;
+		}
+		world.step();
+		return true;
+	}
+
+	/**
+	 * Steps the world until the end of the replay.
+	 * @return long The number of ticks stepped.
+	 */
+	public long playToEnd(){
+		long start = world.getTickCount();
+		while(step()){
+		}
+		return world.getTickCount()-start;
+	}
+
+	/**
+	 * Whether the world has reached the end of the replay, or the player was destroyed.
+	 * @return
+	 */
+	public boolean isFinished(){
+		return world.isPlayerDestroyed() || world.getTickCount()>=replay.getEndTick();
+	}
+
+	/**
+	 * Plays the replay from the start, comparing the world with each keyframe as it gets to it. A
+	 * difference means the game no longer plays the same way it did when it was recorded.
+	 * @return long The first tick the world differed from its keyframe at, or -1 if it never did.
+	 * @throws IOException If the world state cannot be written.
+	 */
+	public long verify() throws IOException{
+		restart();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		DataOutputStream data = new DataOutputStream(bytes);
+		for(int k = 0; k<replay.getKeyframeCount(); k++){
+			long tick = replay.getKeyframeTick(k);
+			while(world.getTickCount()<tick && step()){
+			}
+			if(world.getTickCount()!=tick){
+				return world.getTickCount();
+			}
+			bytes.reset();
+			world.writeState(data);
+			data.flush();
+			if(!Arrays.equals(bytes.toByteArray(), replay.getKeyframe(k))){
+				return tick;
+			}
+		}
+		playToEnd();
+		return -1;
+	}
+
+	/**
+	 * Gets the world being played back. It is replaced by restart() and seek(long tick).
+	 * @return
+	 */
+	public World getWorld(){
+		return world;
+	}
+
+	public Replay getReplay(){
+		return replay;
+	}
+
+}
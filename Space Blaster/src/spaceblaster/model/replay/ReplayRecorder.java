@@ -0,0 +1,130 @@
+package spaceblaster.model.replay;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import spaceblaster.model.GameClock;
+import spaceblaster.model.InputListener;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldListener;
+import spaceblaster.model.entities.Entity;
+
+/**
+ * Records a game into a Replay as it is played: every input event the world applies, and a keyframe
+ * of the world state every so often. Everything is done on the thread stepping the world, between
+ * ticks.
+ */
+public class ReplayRecorder implements WorldListener, InputListener {
+
+	/**
+	 * The default number of ticks between keyframes, ten seconds of game time.
+	 */
+	public static final int DEFAULT_KEYFRAME_INTERVAL = 10*GameClock.TICKS_PER_SECOND;
+
+	private final Replay replay;
+	private final int keyframeInterval;
+	private World world;
+
+	// reused for every keyframe
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+	private final DataOutputStream data = new DataOutputStream(bytes);
+
+	/**
+	 * Creates a new recorder.
+	 * @param r The replay to record into.
+	 * @param interval The number of ticks between keyframes.
+	 */
+	public ReplayRecorder(Replay r, int interval) {
+		replay = r;
+		keyframeInterval = Math.max(interval, 1);
+	}
+
+	/**
+	 * Starts recording a world, starting with a keyframe if it has already been stepped (for
+	 * instance after restoring a saved game).
+	 * @param w The world, built with the settings of the replay.
+	 * @param wavesPath The path of the waves it was built with, or null for the default.
+	 * @param interval The number of ticks between keyframes.
+	 * @return ReplayRecorder The recorder, whose replay grows as the world is stepped.
+	 */
+	public static ReplayRecorder record(World w, String wavesPath, int interval){
+		Replay r = new Replay(w.getLevelGenorator().getSeed(), w.getWidth(), w.getHeight(), wavesPath);
+		ReplayRecorder recorder = new ReplayRecorder(r, interval);
+		recorder.attach(w);
+		return recorder;
+	}
+
+	/**
+	 * Starts listening to a world.
+	 * @param w The world.
+	 */
+	public void attach(World w){
+		world = w;
+		long tick = w.getTickCount();
+		replay.setStartTick(tick);
+		replay.setEndTick(tick);
+		if(tick>0){
+			writeKeyframe(w);
+		}
+		w.addListener(this);
+		w.setInputListener(this);
+	}
+
+	/**
+	 * Stops listening to the world, after which the replay is complete.
+	 */
+	public void detach(){
+		if(world!=null){
+			world.removeListener(this);
+			world.setInputListener(null);
+			world = null;
+		}
+	}
+
+	/**
+	 * Gets the replay being recorded into.
+	 * @return
+	 */
+	public Replay getReplay(){
+		return replay;
+	}
+
+	@Override
+	public void inputApplied(long tick, int event){
+		replay.addEvent(tick, event);
+	}
+
+	@Override
+	public void tickFinished(World w){
+		long tick = w.getTickCount();
+		replay.setEndTick(tick);
+		if(tick%keyframeInterval==0){
+			writeKeyframe(w);
+		}
+	}
+
+	private void writeKeyframe(World w){
+		bytes.reset();
+		try {
+			w.writeState(data);
+			data.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write a keyframe at tick "+w.getTickCount(), e);
+		}
+		replay.addKeyframe(w.getTickCount(), bytes.toByteArray());
+	}
+
+	@Override
+	public void entityAdded(Entity e){
+	}
+
+	@Override
+	public void entityRemoved(Entity e){
+	}
+
+	@Override
+	public void levelChanged(int level){
+	}
+
+}
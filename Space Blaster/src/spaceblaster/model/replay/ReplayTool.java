@@ -0,0 +1,89 @@
+package spaceblaster.model.replay;
+
+import java.io.File;
+import java.io.IOException;
+
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
+import spaceblaster.model.Game;
+import spaceblaster.model.GameClock;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+
+/**
+ * Plays recorded games without a window, as fast as they can be stepped:
+ *
+ * <pre>
+ * java -Djava.awt.headless=true spaceblaster.model.replay.ReplayTool [-seek tick] [-verify] game.sbreplay ...
+ * </pre>
+ *
+ * Games are recorded by setting the system property spaceblaster.record to the file to save them
+ * in. Prints how long each replay took to play and how the game ended. With -seek, playback starts
+ * from the given tick using the keyframes. With -verify, the world is compared with every keyframe
+ * on the way, and the tool exits with 1 if the game no longer plays the way it was recorded.
+ */
+public class ReplayTool {
+
+	public static void main(String[] args) throws IOException {
+		long seek = 0;
+		boolean verify = false;
+		boolean ok = true;
+		int files = 0;
+		AssetCache images = new AssetCache(new ImageLoader(), Long.MAX_VALUE);
+		Game.registerImages(images);
+		for(int i = 0; i<args.length; i++){
+			if(args[i].equals("-seek") && i+1<args.length){
+				seek = Long.parseLong(args[++i]);
+			} else if(args[i].equals("-verify")){
+				verify = true;
+			} else {
+				files++;
+				ok &= play(new File(args[i]), images, seek, verify);
+			}
+		}
+		if(files==0){
+			System.err.println("usage: ReplayTool [-seek tick] [-verify] game"+Replay.EXTENSION+" ...");
+			System.exit(2);
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static boolean play(File file, AssetCache images, long seek, boolean verify) throws IOException{
+		Replay replay = Replay.load(file);
+		System.out.println(file+": "+replay);
+		String waves = replay.getWaves().isEmpty() ? null : replay.getWaves();
+		ReplayPlayer player = new ReplayPlayer(replay, new WorldBuilder(images, null, WorldBuilder.loadWaves(waves)));
+
+		long start = System.nanoTime();
+		long ticks;
+		long diverged = -1;
+		if(verify){
+			diverged = player.verify();
+			ticks = player.getWorld().getTickCount();
+		} else {
+			player.seek(seek);
+			long seekTime = System.nanoTime()-start;
+			System.out.printf("  seek to tick %d took %.2f ms%n", player.getWorld().getTickCount(), seekTime/1e6);
+			start = System.nanoTime();
+			ticks = player.playToEnd();
+		}
+		double seconds = (System.nanoTime()-start)/1e9;
+		World w = player.getWorld();
+		System.out.printf("  played %d ticks in %.3f s, %.0f ticks/s (%.0fx real time)%n", ticks, seconds,
+				ticks/seconds, ticks/seconds/GameClock.TICKS_PER_SECOND);
+		System.out.printf("  ended at tick %d, level %d, score %d, health %d%s%n", w.getTickCount(), w.getLevel(),
+				w.getPlayer().getScore(), w.getPlayer().getHealth(), w.isPlayerDestroyed() ? " (destroyed)" : "");
+		if(w.getTickCount()!=replay.getEndTick() && !w.isPlayerDestroyed()){
+			System.out.println("  stopped before the end of the recording at tick "+replay.getEndTick());
+		}
+		if(diverged>=0){
+			System.out.println("  DIVERGED from the recording at tick "+diverged);
+			return false;
+		}
+		if(verify){
+			System.out.println("  matched all "+replay.getKeyframeCount()+" keyframes");
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,224 @@
+package spaceblaster.model.save;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import spaceblaster.model.GameClock;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldListener;
+import spaceblaster.model.entities.Entity;
+
+/**
+ * Saves the game in the background. The state of the world is copied on the thread stepping it,
+ * every so often while playing and whenever the game is paused (see capture(World w)), and the copy
+ * is written to disk and forced there on a thread of its own, so the game never waits for the disk.
+ * If the game is captured again before the last copy has been written, only the newest copy is written.
+ */
+public class Autosaver implements WorldListener {
+
+	/**
+	 * The default number of ticks between saves while playing, thirty seconds of game time.
+	 */
+	public static final int DEFAULT_INTERVAL = 30*GameClock.TICKS_PER_SECOND;
+
+	private final File file;
+	private final String waves;
+	private final int interval;
+
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Autosave");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	// the newest capture not yet written
+	private final AtomicReference<SaveFile> pending = new AtomicReference<SaveFile>();
+	private final Runnable writePending = new Runnable() {
+		public void run() {
+			SaveFile s = pending.getAndSet(null);
+			if(s==null){
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				s.write(file);
+				writes.incrementAndGet();
+				lastWriteNanos.set(System.nanoTime()-start);
+			} catch (IOException e) {
+				System.err.println("Could not save the game: "+e.getMessage());
+			}
+		}
+	};
+
+	// only used on the thread stepping the world
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16*1024);
+
+	private final AtomicLong captures = new AtomicLong();
+	private final AtomicLong writes = new AtomicLong();
+	private final AtomicLong lastCaptureNanos = new AtomicLong();
+	private final AtomicLong lastWriteNanos = new AtomicLong();
+
+	/**
+	 * Creates a new autosaver.
+	 * @param f The file to save to.
+	 * @param wavesPath The path of the waves the worlds are built with, or null for the default.
+	 * @param ticks The number of ticks between saves while playing.
+	 */
+	public Autosaver(File f, String wavesPath, int ticks) {
+		file = f;
+		waves = wavesPath;
+		interval = Math.max(ticks, 1);
+	}
+
+	/**
+	 * Copies the state of a world and queues it to be written. Should be called from the thread
+	 * stepping the world, between ticks, or while it is not being stepped.
+	 * @param w The world.
+	 */
+	public void capture(World w){
+		long start = System.nanoTime();
+		SaveFile s;
+		try {
+			s = SaveFile.capture(w, waves, buffer);
+		} catch (IOException e) {
+			System.err.println("Could not save the game: "+e.getMessage());
+			return;
+		}
+		captures.incrementAndGet();
+		lastCaptureNanos.set(System.nanoTime()-start);
+		if(pending.getAndSet(s)==null){
+			writer.execute(writePending);
+		}
+	}
+
+	/**
+	 * Throws away the save, after any copies still being written, for instance when the game is
+	 * lost and there is nothing to carry on from.
+	 */
+	public void delete(){
+		pending.set(null);
+		writer.execute(new Runnable() {
+			public void run() {
+				if(file.exists() && !file.delete()){
+					System.err.println("Could not delete "+file);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Reads the save, if there is one.
+	 * @return SaveFile The save, or null if there is none or it cannot be read.
+	 */
+	public SaveFile load(){
+		if(!file.isFile()){
+			return null;
+		}
+		try {
+			return SaveFile.read(file);
+		} catch (IOException e) {
+			System.err.println("Could not load the saved game: "+e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Waits for the copies queued so far to be written, for instance before the game exits.
+	 * @param timeout The longest to wait, in milliseconds.
+	 * @return boolean true if everything was written in time.
+	 */
+	public boolean flush(long timeout){
+		final Object done = new Object();
+		final boolean[] finished = {false};
+		writer.execute(new Runnable() {
+			public void run() {
+				synchronized(done){
+					finished[0] = true;
+					done.notifyAll();
+				}
+			}
+		});
+		long end = System.nanoTime()+TimeUnit.MILLISECONDS.toNanos(timeout);
+		synchronized(done){
+			while(!finished[0]){
+				long left = end-System.nanoTime();
+				if(left<=0){
+					return false;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(done, left);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	/**
+	 * Gets the number of times the game has been captured.
+	 * @return
+	 */
+	public long getCaptures(){
+		return captures.get();
+	}
+
+	/**
+	 * Gets the number of saves written to disk, less than the captures if some were replaced by newer
+	 * ones before they were written.
+	 * @return
+	 */
+	public long getWrites(){
+		return writes.get();
+	}
+
+	/**
+	 * Gets how long the last capture held up the thread stepping the world.
+	 * @return long The time in nanoseconds.
+	 */
+	public long getLastCaptureNanos(){
+		return lastCaptureNanos.get();
+	}
+
+	/**
+	 * Gets how long the last save took to write and force to disk, in the background.
+	 * @return long The time in nanoseconds.
+	 */
+	public long getLastWriteNanos(){
+		return lastWriteNanos.get();
+	}
+
+	@Override
+	public void tickFinished(World w){
+		if(w.getTickCount()%interval==0 && !w.isPlayerDestroyed()){
+			capture(w);
+		}
+	}
+
+	@Override
+	public void entityAdded(Entity e){
+	}
+
+	@Override
+	public void entityRemoved(Entity e){
+	}
+
+	@Override
+	public void levelChanged(int level){
+	}
+
+}
@@ -0,0 +1,299 @@
+package spaceblaster.model.save;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+
+/**
+ * A saved game: the state of a world written with World.writeState(DataOutput out), with a header
+ * describing how to build a world to read it back into and a summary for showing the save without
+ * reading the state. The file is written to a temporary file, forced to the disk and moved over the
+ * old one, so a crash while saving leaves the last save as it was; it is read back by mapping it
+ * into memory. The layout, all big endian:
+ *
+ * <pre>
+ * int    magic "SBSV"
+ * short  version
+ * short  flags, 0
+ * long   when it was saved, in milliseconds since 1970
+ * long   the seed of the levels
+ * int    width, int height of the playing area
+ * long   tick, int level, int score, int health
+ * short  length, then that many bytes of the waves path in UTF-8, empty for the default waves
+ * int    length of the state, int CRC32 of the state
+ * byte[] the state
+ * </pre>
+ */
+public class SaveFile {
+
+	/**
+	 * The extension save files are written with.
+	 */
+	public static final String EXTENSION = ".sbsave";
+
+	// "SBSV" and the version of the layout above
+	static final int MAGIC = 0x53425356;
+	static final int VERSION = 2;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private long savedAt;
+	private long seed;
+	private int width;
+	private int height;
+	private long tick;
+	private int level;
+	private int score;
+	private int health;
+	private String waves;
+	private ByteBuffer state;
+
+	private SaveFile() {
+	}
+
+	/**
+	 * Copies the state of a world, without writing anything to disk. Should be called from the
+	 * thread stepping the world, between ticks; takes about as long as a tick.
+	 * @param w The world.
+	 * @param wavesPath The path of the waves the world was built with, or null for the default.
+	 * @param buffer A buffer to write the state into first, reused from one capture to the next.
+	 * @return SaveFile The save, ready to write.
+	 * @throws IOException If the state of the world cannot be written.
+	 */
+	public static SaveFile capture(World w, String wavesPath, ByteArrayOutputStream buffer) throws IOException{
+		buffer.reset();
+		DataOutputStream data = new DataOutputStream(buffer);
+		w.writeState(data);
+		data.flush();
+		SaveFile s = new SaveFile();
+		s.savedAt = System.currentTimeMillis();
+		s.seed = w.getLevelGenorator().getSeed();
+		s.width = w.getWidth();
+		s.height = w.getHeight();
+		s.tick = w.getTickCount();
+		s.level = w.getLevel();
+		s.score = w.getPlayer().getScore();
+		s.health = w.getPlayer().getHealth();
+		s.waves = wavesPath==null ? "" : wavesPath;
+		s.state = ByteBuffer.wrap(buffer.toByteArray());
+		return s;
+	}
+
+	/**
+	 * Writes this save to a file, safely replacing any save already there. Blocks until the save is
+	 * on the disk, so should not be called from the thread stepping the world, see Autosaver.
+	 * @param file The file.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void write(File file) throws IOException{
+		byte[] wavesBytes = waves.getBytes(UTF8);
+		ByteBuffer state = this.state.duplicate();
+		state.rewind();
+		CRC32 crc = new CRC32();
+		crc.update(state.duplicate());
+
+		ByteBuffer header = ByteBuffer.allocate(64+wavesBytes.length);
+		header.putInt(MAGIC);
+		header.putShort((short)VERSION);
+		header.putShort((short)0);
+		header.putLong(savedAt);
+		header.putLong(seed);
+		header.putInt(width);
+		header.putInt(height);
+		header.putLong(tick);
+		header.putInt(level);
+		header.putInt(score);
+		header.putInt(health);
+		header.putShort((short)wavesBytes.length);
+		header.put(wavesBytes);
+		header.putInt(state.remaining());
+		header.putInt((int)crc.getValue());
+		header.flip();
+
+		File dir = file.getAbsoluteFile().getParentFile();
+		if(dir!=null && !dir.isDirectory() && !dir.mkdirs()){
+			throw new IOException("Could not create "+dir);
+		}
+		File temp = new File(file.getPath()+".tmp");
+		RandomAccessFile raf = new RandomAccessFile(temp, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			ByteBuffer[] buffers = {header, state};
+			while(header.hasRemaining() || state.hasRemaining()){
+				channel.write(buffers);
+			}
+			channel.force(true);
+		} finally {
+			raf.close();
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Reads a save by mapping the file into memory. The state is checked against its CRC but not
+	 * read until restore(World w).
+	 * @param file The file.
+	 * @return SaveFile The save.
+	 * @throws IOException If it cannot be read, is not a save, or is damaged.
+	 */
+	public static SaveFile read(File file) throws IOException{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		MappedByteBuffer map;
+		try {
+			// the mapping stays valid after the file is closed
+			map = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		} finally {
+			raf.close();
+		}
+		try {
+			if(map.getInt()!=MAGIC){
+				throw new IOException(file+" is not a saved game");
+			}
+			int version = map.getShort() & 0xFFFF;
+			if(version!=VERSION){
+				throw new IOException(file+" was saved by an unsupported version "+version);
+			}
+			map.getShort();
+			SaveFile s = new SaveFile();
+			s.savedAt = map.getLong();
+			s.seed = map.getLong();
+			s.width = map.getInt();
+			s.height = map.getInt();
+			s.tick = map.getLong();
+			s.level = map.getInt();
+			s.score = map.getInt();
+			s.health = map.getInt();
+			byte[] wavesBytes = new byte[map.getShort() & 0xFFFF];
+			map.get(wavesBytes);
+			s.waves = new String(wavesBytes, UTF8);
+			int length = map.getInt();
+			int crc = map.getInt();
+			if(length<0 || length>map.remaining()){
+				throw new IOException(file+" is cut short");
+			}
+			ByteBuffer state = map.slice();
+			state.limit(length);
+			CRC32 check = new CRC32();
+			check.update(state.duplicate());
+			if((int)check.getValue()!=crc){
+				throw new IOException(file+" is damaged");
+			}
+			s.state = state;
+			return s;
+		} catch (BufferUnderflowException e) {
+			throw new IOException(file+" is cut short");
+		}
+	}
+
+	/**
+	 * Puts the saved state into a world, see World.readState(DataInput in).
+	 * @param w The world, built the way the saved one was (see restore(WorldBuilder b)).
+	 * @throws IOException If the state does not fit the world.
+	 */
+	public void restore(World w) throws IOException{
+		final ByteBuffer in = state.duplicate();
+		in.rewind();
+		w.readState(new DataInputStream(new InputStream() {
+			@Override
+			public int read() {
+				return in.hasRemaining() ? in.get() & 0xFF : -1;
+			}
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if(!in.hasRemaining()){
+					return -1;
+				}
+				len = Math.min(len, in.remaining());
+				in.get(b, off, len);
+				return len;
+			}
+		}));
+	}
+
+	/**
+	 * Builds a new world the way the saved one was built and puts the saved state into it.
+	 * @param b The builder, with the waves the game was saved with.
+	 * @return World The world, ready to carry on from where it was saved.
+	 * @throws IOException If the state does not fit the world.
+	 */
+	public World restore(WorldBuilder b) throws IOException{
+		World w = b.build(width, height, seed);
+		restore(w);
+		return w;
+	}
+
+	public long getSavedAt(){
+		return savedAt;
+	}
+
+	public long getSeed(){
+		return seed;
+	}
+
+	public int getWidth(){
+		return width;
+	}
+
+	public int getHeight(){
+		return height;
+	}
+
+	public long getTick(){
+		return tick;
+	}
+
+	public int getLevel(){
+		return level;
+	}
+
+	public int getScore(){
+		return score;
+	}
+
+	public int getHealth(){
+		return health;
+	}
+
+	/**
+	 * Gets the path of the waves the world was built with.
+	 * @return String The path, or an empty string for the default waves.
+	 */
+	public String getWaves(){
+		return waves;
+	}
+
+	/**
+	 * Gets the size of the saved state.
+	 * @return int The size in bytes.
+	 */
+	public int getStateSize(){
+		return state.limit();
+	}
+
+	@Override
+	public String toString(){
+		return "SaveFile[tick="+tick+", level="+level+", score="+score+", health="+health+", state="+getStateSize()+" bytes]";
+	}
+
+}
@@ -0,0 +1,351 @@
+package spaceblaster.model.stress;
+
+import java.util.Random;
+
+import spaceblaster.model.LevelGenorator;
+import spaceblaster.model.World;
+import spaceblaster.model.entities.BasicEnemy;
+import spaceblaster.model.entities.F250Bullet;
+import spaceblaster.model.entities.Laser;
+import spaceblaster.model.entities.Player;
+
+/**
+ * Fills a world with far more entities than the levels ever spawn, to load the engine the way the
+ * worst moments of a game do: a number of copies of every BasicEnemy and F250Bullet in the waves,
+ * and lasers flying at random speeds and angles (see Laser.setSpeed(double spd, double angle)), half
+ * of them the player's. The entities are laid out in one of three ways:
+ *
+ * <ul>
+ * <li>LAYOUT_SPREAD, evenly over the screen.</li>
+ * <li>LAYOUT_CLUSTER, packed into a few small clusters, so every projectile in a cluster is tested
+ * against every ship in it.</li>
+ * <li>LAYOUT_EDGE, along the left and right edges, where the F250Bullets bounce back and forth
+ * every few ticks and the lasers keep flying out of the world.</li>
+ * </ul>
+ *
+ * With refill on, fill(World w, Random r) tops the world back up each tick, so ships and lasers that
+ * are destroyed or leave are replaced and the load stays the same for the whole run.
+ */
+public class StressScenario {
+
+	public static final int LAYOUT_SPREAD = 0;
+	public static final int LAYOUT_CLUSTER = 1;
+	public static final int LAYOUT_EDGE = 2;
+
+	private static final String[] LAYOUT_NAMES = {"spread", "cluster", "edge"};
+
+	/**
+	 * The scenarios run when none are given, see preset(String name).
+	 */
+	public static final String[] PRESETS = {"spread", "cluster", "edge"};
+
+	/**
+	 * How far from the edge of the screen the entities of LAYOUT_EDGE are put, and bounce within.
+	 */
+	public static final int EDGE_BAND = 40;
+
+	private static final double MIN_LASER_SPEED = 0.5;
+	private static final double MAX_LASER_SPEED = 4.0;
+
+	private String name;
+	private int basicEnemies = 0;
+	private int f250Bullets = 0;
+	private int lasers = 0;
+	private int layout = LAYOUT_SPREAD;
+	private int clusters = 6;
+	private int clusterRadius = 30;
+	private boolean refill = true;
+
+	// where the clusters are in the world being filled, picked the first time it is filled
+	private int[] clusterX;
+	private int[] clusterY;
+
+	// the next enemy and laser to copy, so every one is copied in turn
+	private int nextEnemy = 0;
+	private int nextLaser = 0;
+
+	/**
+	 * Creates a new, empty scenario, spread over the screen.
+	 * @param n The name it is reported under.
+	 */
+	public StressScenario(String n) {
+		name = n;
+	}
+
+	/**
+	 * Gets one of the PRESETS: "spread" and "cluster" have 1000 of each enemy and 4000 lasers,
+	 * "edge" has 2000 of each F250Bullet and 4000 lasers.
+	 * @param name The name of the preset.
+	 * @return StressScenario A new copy of the preset.
+	 * @throws IllegalArgumentException If there is no preset with that name.
+	 */
+	public static StressScenario preset(String name){
+		StressScenario s = new StressScenario(name);
+		s.setLayout(layoutOf(name));
+		if(s.getLayout()==LAYOUT_EDGE){
+			s.setF250Bullets(2000);
+		} else {
+			s.setBasicEnemies(1000);
+			s.setF250Bullets(1000);
+		}
+		s.setLasers(4000);
+		return s;
+	}
+
+	/**
+	 * Reads a scenario from the command line: the name of a preset, optionally followed by a colon
+	 * and a comma separated list of changes to it, for instance "cluster:basic=200,lasers=8000,radius=15".
+	 * The changes are basic, f250, lasers, layout, clusters, radius and refill (true or false).
+	 * @param spec The scenario.
+	 * @return StressScenario The scenario, named after the whole spec.
+	 * @throws IllegalArgumentException If the spec is not understood.
+	 */
+	public static StressScenario parse(String spec){
+		int colon = spec.indexOf(':');
+		StressScenario s = preset(colon<0 ? spec : spec.substring(0, colon));
+		s.name = spec;
+		if(colon<0){
+			return s;
+		}
+		for(String change: spec.substring(colon+1).split(",")){
+			int eq = change.indexOf('=');
+			if(eq<0){
+				throw new IllegalArgumentException("Expected key=value in "+spec+", not "+change);
+			}
+			String key = change.substring(0, eq).trim();
+			String value = change.substring(eq+1).trim();
+			if(key.equals("layout")){
+				s.setLayout(layoutOf(value));
+			} else if(key.equals("refill")){
+				s.setRefill(Boolean.parseBoolean(value));
+			} else {
+				int n;
+				try {
+					n = Integer.parseInt(value);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Expected a number for "+key+" in "+spec+", not "+value);
+				}
+				if(n<0){
+					throw new IllegalArgumentException("Negative "+key+" in "+spec);
+				}
+				if(key.equals("basic")){
+					s.setBasicEnemies(n);
+				} else if(key.equals("f250")){
+					s.setF250Bullets(n);
+				} else if(key.equals("lasers")){
+					s.setLasers(n);
+				} else if(key.equals("clusters")){
+					s.setClusters(Math.max(n, 1));
+				} else if(key.equals("radius")){
+					s.setClusterRadius(n);
+				} else {
+					throw new IllegalArgumentException("Unknown setting "+key+" in "+spec);
+				}
+			}
+		}
+		return s;
+	}
+
+	private static int layoutOf(String name){
+		for(int i = 0; i<LAYOUT_NAMES.length; i++){
+			if(LAYOUT_NAMES[i].equals(name)){
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("Unknown scenario "+name+", expected one of spread, cluster or edge");
+	}
+
+	/**
+	 * Makes the player of a world unable to be destroyed and puts it at the bottom middle of the
+	 * screen, so the world keeps stepping however many lasers hit it.
+	 * @param w The world.
+	 */
+	public static void protectPlayer(World w){
+		Player p = w.getPlayer();
+		p.setMaxHealth(Integer.MAX_VALUE/2);
+		p.setHealth(Integer.MAX_VALUE/2);
+		p.setX(w.getWidth()/2);
+		p.setY(w.getHeight()-100);
+	}
+
+	/**
+	 * Adds ships and lasers to a world until it has as many as this scenario asks for. Ships the
+	 * LevelGenorator spawned count towards the ships. Should be called between ticks.
+	 * @param w The world.
+	 * @param r The random numbers the entities are placed with.
+	 * @return int The number of entities added.
+	 */
+	public int fill(World w, Random r){
+		LevelGenorator gen = w.getLevelGenorator();
+		int copies = 0;
+		for(int i = 0; i<gen.getEnemyCount(); i++){
+			copies += getCount(gen.getEnemy(i));
+		}
+		if(layout==LAYOUT_CLUSTER && clusterX==null){
+			clusterX = new int[clusters];
+			clusterY = new int[clusters];
+			for(int i = 0; i<clusters; i++){
+				clusterX[i] = clusterRadius+r.nextInt(Math.max(w.getWidth()-clusterRadius*2, 1));
+				clusterY[i] = clusterRadius+r.nextInt(Math.max(w.getHeight()/2-clusterRadius*2, 1));
+			}
+		}
+
+		int added = 0;
+		while(copies>0 && w.getShips().size()<copies){
+			BasicEnemy e = gen.getEnemy(nextEnemy++ % gen.getEnemyCount());
+			if(getCount(e)==0){
+				continue;
+			}
+			w.addShip(placeEnemy(w, e, r));
+			added++;
+		}
+		while(w.getProjectiles().size()<lasers){
+			int i = nextLaser++;
+			Laser prototype = (i&1)==0 ? w.getPlayer().getLaser() : gen.getEnemy((i>>1)%gen.getEnemyCount()).getLaser();
+			w.addProjectile(placeLaser(w, prototype, r));
+			added++;
+		}
+		return added;
+	}
+
+	/**
+	 * The number of copies of an enemy to fill the world with.
+	 */
+	private int getCount(BasicEnemy e){
+		return e instanceof F250Bullet ? f250Bullets : basicEnemies;
+	}
+
+	private BasicEnemy placeEnemy(World w, BasicEnemy prototype, Random r){
+		int width = w.getWidth();
+		int height = w.getHeight();
+		if(layout==LAYOUT_CLUSTER){
+			int c = r.nextInt(clusters);
+			return prototype.getCopy(clusterX[c]+(int)(r.nextGaussian()*clusterRadius/2),
+					clusterY[c]+(int)(r.nextGaussian()*clusterRadius/2));
+		}
+		if(layout==LAYOUT_EDGE){
+			boolean left = r.nextBoolean();
+			int x = left ? r.nextInt(EDGE_BAND) : width-1-r.nextInt(EDGE_BAND);
+			BasicEnemy e = prototype.getCopy(x, r.nextInt(height*3/4));
+			if(e instanceof F250Bullet){
+				F250Bullet f = (F250Bullet)e;
+				f.setXMin(left ? 0 : width-EDGE_BAND);
+				f.setXMax(left ? EDGE_BAND : width);
+			}
+			return e;
+		}
+		return prototype.getCopy(r.nextInt(width), r.nextInt(height*3/4));
+	}
+
+	private Laser placeLaser(World w, Laser prototype, Random r){
+		int width = w.getWidth();
+		int height = w.getHeight();
+		double speed = MIN_LASER_SPEED+r.nextDouble()*(MAX_LASER_SPEED-MIN_LASER_SPEED);
+		double angle = r.nextDouble()*Math.PI*2;
+		int x;
+		int y;
+		if(layout==LAYOUT_CLUSTER){
+			int c = r.nextInt(clusters);
+			x = clusterX[c]+(int)(r.nextGaussian()*clusterRadius);
+			y = clusterY[c]+(int)(r.nextGaussian()*clusterRadius);
+		} else if(layout==LAYOUT_EDGE){
+			x = r.nextBoolean() ? r.nextInt(EDGE_BAND) : width-1-r.nextInt(EDGE_BAND);
+			y = r.nextInt(height);
+		} else {
+			x = r.nextInt(width);
+			y = r.nextInt(height);
+		}
+		Laser l = prototype.getCopy(x, y, speed, 0);
+		l.setSpeed(speed, angle);
+		return l;
+	}
+
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Gets the number of copies of each BasicEnemy in the waves, not counting F250Bullets.
+	 * @return
+	 */
+	public int getBasicEnemies(){
+		return basicEnemies;
+	}
+
+	public void setBasicEnemies(int n){
+		basicEnemies = n;
+	}
+
+	/**
+	 * Gets the number of copies of each F250Bullet in the waves.
+	 * @return
+	 */
+	public int getF250Bullets(){
+		return f250Bullets;
+	}
+
+	public void setF250Bullets(int n){
+		f250Bullets = n;
+	}
+
+	/**
+	 * Gets the number of lasers, of every kind together.
+	 * @return
+	 */
+	public int getLasers(){
+		return lasers;
+	}
+
+	public void setLasers(int n){
+		lasers = n;
+	}
+
+	/**
+	 * Gets how the entities are laid out, one of the LAYOUT constants.
+	 * @return
+	 */
+	public int getLayout(){
+		return layout;
+	}
+
+	public void setLayout(int l){
+		layout = l;
+	}
+
+	/**
+	 * Sets the number of clusters of LAYOUT_CLUSTER.
+	 * @param n
+	 */
+	public void setClusters(int n){
+		clusters = n;
+		clusterX = null;
+	}
+
+	/**
+	 * Sets roughly how far from the middle of a cluster the entities of LAYOUT_CLUSTER are put.
+	 * @param radius
+	 */
+	public void setClusterRadius(int radius){
+		clusterRadius = radius;
+		clusterX = null;
+	}
+
+	/**
+	 * Whether the world is topped back up every tick, or only filled at the start.
+	 * @return
+	 */
+	public boolean isRefill(){
+		return refill;
+	}
+
+	public void setRefill(boolean r){
+		refill = r;
+	}
+
+	@Override
+	public String toString(){
+		return name+" ("+LAYOUT_NAMES[layout]+", "+basicEnemies+" of each basic enemy, "+f250Bullets
+				+" of each F250, "+lasers+" lasers"+(refill ? ", refilled" : "")+")";
+	}
+
+}
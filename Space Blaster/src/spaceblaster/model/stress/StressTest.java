@@ -0,0 +1,204 @@
+package spaceblaster.model.stress;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
+import spaceblaster.model.Game;
+import spaceblaster.model.GameClock;
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+import spaceblaster.model.entities.ProjectileKernel;
+import spaceblaster.model.metrics.LatencyHistogram;
+import spaceblaster.model.metrics.TickMetrics;
+
+/**
+ * Runs StressScenarios without a window, as fast as the world can be stepped:
+ *
+ * <pre>
+ * java -Djava.awt.headless=true spaceblaster.model.stress.StressTest [-ticks n] [-warmup n] [-seed s]
+ *     [-parallel] [-budget ms] [scenario[:key=value,...] ...]
+ * </pre>
+ *
+ * Each scenario (see StressScenario.parse(String spec), or every preset if none are given) is run
+ * in a world of its own for the warmup ticks, then measured for the given number of ticks. Prints
+ * the ticks a second, how much memory was allocated and collected, and the median, 99th percentile
+ * and longest tick with the 99th percentile of each phase. With -budget, the tool exits with 1 if
+ * the 99th percentile tick of any scenario takes longer than that many milliseconds, so it can be
+ * run after every change to the engine. With -parallel, the ticks run on the common ForkJoinPool.
+ * The projectiles are moved and collided by ProjectileKernel.getDefault(), named at the start once
+ * it has warmed up.
+ */
+public class StressTest {
+
+	public static final int WIDTH = 1000;
+	public static final int HEIGHT = 650;
+
+	public static void main(String[] args) {
+		int ticks = 2000;
+		int warmup = 500;
+		long seed = 1234L;
+		boolean parallel = false;
+		double budget = -1;
+		List<StressScenario> scenarios = new ArrayList<StressScenario>();
+		try {
+			for(int i = 0; i<args.length; i++){
+				if(args[i].equals("-ticks") && i+1<args.length){
+					ticks = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-warmup") && i+1<args.length){
+					warmup = Integer.parseInt(args[++i]);
+				} else if(args[i].equals("-seed") && i+1<args.length){
+					seed = Long.parseLong(args[++i]);
+				} else if(args[i].equals("-budget") && i+1<args.length){
+					budget = Double.parseDouble(args[++i]);
+				} else if(args[i].equals("-parallel")){
+					parallel = true;
+				} else if(args[i].startsWith("-")){
+					throw new IllegalArgumentException("Unknown option "+args[i]);
+				} else {
+					scenarios.add(StressScenario.parse(args[i]));
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: StressTest [-ticks n] [-warmup n] [-seed s] [-parallel] [-budget ms] [scenario[:key=value,...] ...]");
+			System.exit(2);
+		}
+		if(scenarios.isEmpty()){
+			for(String name: StressScenario.PRESETS){
+				scenarios.add(StressScenario.preset(name));
+			}
+		}
+
+		AssetCache images = new AssetCache(new ImageLoader(), Long.MAX_VALUE);
+		Game.registerImages(images);
+		WorldBuilder builder = new WorldBuilder(images, null, WorldBuilder.loadWaves(null));
+		System.out.println("projectile kernel "+ProjectileKernel.awaitDefault());
+		boolean ok = true;
+		for(StressScenario s: scenarios){
+			ok &= run(s, builder, ticks, warmup, seed, parallel ? ForkJoinPool.commonPool() : null, budget);
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static boolean run(StressScenario s, WorldBuilder builder, int ticks, int warmup, long seed, ForkJoinPool pool, double budget){
+		System.out.println(s);
+		World w = builder.build(WIDTH, HEIGHT, seed);
+		w.setForkJoinPool(pool);
+		StressScenario.protectPlayer(w);
+		Random r = new Random(seed);
+		s.fill(w, r);
+		for(int i = 0; i<warmup; i++){
+			if(s.isRefill()){
+				s.fill(w, r);
+			}
+			w.step();
+		}
+
+		TickMetrics metrics = new TickMetrics(GameClock.NANOS_PER_TICK);
+		w.setMetrics(metrics);
+		long entities = 0;
+		long refilled = 0;
+		long gcCount = getCollections();
+		long gcTime = getCollectionMillis();
+		long[] threads = ManagementFactory.getThreadMXBean().getAllThreadIds();
+		long[] allocatedBefore = getAllocatedBytes(threads);
+		long start = System.nanoTime();
+		for(int i = 0; i<ticks; i++){
+			if(s.isRefill()){
+				refilled += s.fill(w, r);
+			}
+			w.step();
+			entities += w.getShips().size()+w.getProjectiles().size();
+		}
+		double seconds = (System.nanoTime()-start)/1e9;
+		long allocated = getAllocatedBytes(threads, allocatedBefore);
+		gcCount = getCollections()-gcCount;
+		gcTime = getCollectionMillis()-gcTime;
+		w.setMetrics(null);
+
+		LatencyHistogram h = metrics.getTickHistogram();
+		System.out.printf("  %d ticks in %.3f s, %.0f ticks/s (%.1fx real time), %.0f entities a tick, %d refilled%n",
+				ticks, seconds, ticks/seconds, ticks/seconds/GameClock.TICKS_PER_SECOND, (double)entities/ticks, refilled);
+		if(allocated>=0){
+			System.out.printf("  allocated %.1f MB/s, %.0f bytes a tick; %d collections taking %d ms%n",
+					allocated/seconds/(1<<20), (double)allocated/ticks, gcCount, gcTime);
+		} else {
+			System.out.printf("  allocation not measurable on this JVM; %d collections taking %d ms%n", gcCount, gcTime);
+		}
+		System.out.printf("  tick p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d over the %.0f ms budget%n",
+				h.getPercentile(0.5)/1e6, h.getPercentile(0.99)/1e6, h.getMax()/1e6, metrics.getTickOverruns(),
+				metrics.getTickBudgetNanos()/1e6);
+		StringBuilder phases = new StringBuilder("  phase p99");
+		for(int i = 0; i<TickMetrics.PHASE_COUNT; i++){
+			phases.append(String.format(" %s %.3f", TickMetrics.getPhaseName(i), metrics.getPhaseHistogram(i).getPercentile(0.99)/1e6));
+		}
+		System.out.println(phases.append(" ms"));
+		if(budget>=0 && h.getPercentile(0.99)>budget*1e6){
+			System.out.printf("  OVER BUDGET: p99 is over %.3f ms%n", budget);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the bytes allocated so far by each of the given threads.
+	 * @param ids The ids of the threads.
+	 * @return long[] The bytes allocated by each thread, -1 for threads no longer alive, or null if
+	 * the JVM cannot measure them.
+	 */
+	private static long[] getAllocatedBytes(long[] ids){
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if(!(threads instanceof com.sun.management.ThreadMXBean)){
+			return null;
+		}
+		com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean)threads;
+		if(!t.isThreadAllocatedMemorySupported() || !t.isThreadAllocatedMemoryEnabled()){
+			return null;
+		}
+		return t.getThreadAllocatedBytes(ids);
+	}
+
+	/**
+	 * Gets the bytes the given threads allocated since getAllocatedBytes(long[] ids), counting the
+	 * thread stepping the world and those of a ForkJoinPool it already started, but not threads
+	 * that ended or started in between.
+	 * @return long The bytes, or -1 if the JVM cannot measure them.
+	 */
+	private static long getAllocatedBytes(long[] ids, long[] before){
+		long[] after = getAllocatedBytes(ids);
+		if(before==null || after==null){
+			return -1;
+		}
+		long total = 0;
+		for(int i = 0; i<ids.length; i++){
+			if(before[i]>=0 && after[i]>=before[i]){
+				total += after[i]-before[i];
+			}
+		}
+		return total;
+	}
+
+	private static long getCollections(){
+		long n = 0;
+		for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()){
+			n += Math.max(gc.getCollectionCount(), 0);
+		}
+		return n;
+	}
+
+	private static long getCollectionMillis(){
+		long n = 0;
+		for(GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()){
+			n += Math.max(gc.getCollectionTime(), 0);
+		}
+		return n;
+	}
+
+}
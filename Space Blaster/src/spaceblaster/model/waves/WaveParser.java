@@ -0,0 +1,398 @@
+package spaceblaster.model.waves;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles the text form of a wave definition into a WaveTable. Each line is one definition, and
+ * anything after a # is a comment:
+ *
+ * <pre>
+ * laser &lt;name&gt; image=&lt;key&gt; damage=&lt;n&gt; speed=&lt;n&gt; angle=&lt;degrees&gt; [sound=&lt;key&gt;]
+ * enemy &lt;name&gt; kind=basic|f250 image=&lt;key&gt; laser=&lt;name&gt; [health=&lt;n&gt;] [speed=&lt;n&gt;] [shoot=&lt;ticks&gt;] [points=&lt;n&gt;] [margin=&lt;pixels&gt;]
+ * level &lt;n&gt;[-&lt;m&gt;] &lt;enemy&gt;=&lt;count&gt;[@&lt;frequency&gt;[..&lt;frequency&gt;]] ...
+ * </pre>
+ *
+ * Lasers must come before the enemies that fire them, and enemies before the levels. Levels start
+ * at 1 and follow on from each other, either one at a time or as a range that shares one line.
+ * A count is either a number or a range such as 5..10 to pick from, or either of those after a +
+ * to add to the enemy's count in the level before. The frequency is the average number of ticks
+ * between spawns; two frequencies give a spawn curve, changing evenly from the first to the second
+ * over a range of levels. An enemy left off a level line adds nothing to its count, and one given
+ * without a frequency keeps the frequency it had, so the first level must give every enemy its count.
+ */
+public class WaveParser {
+
+	/**
+	 * The extension of the text form. Anything else is taken to be the compiled form.
+	 */
+	public static final String EXTENSION = ".waves";
+
+	/**
+	 * The frequency of an enemy before it is given one, the same as BasicEnemy's.
+	 */
+	public static final double DEFAULT_FREQUENCY = 250;
+
+	private String source;
+	private int lineNumber;
+
+	private ArrayList<String[]> lasers = new ArrayList<String[]>();
+	private ArrayList<double[]> laserNumbers = new ArrayList<double[]>();
+	private Map<String, Integer> laserIndex = new HashMap<String, Integer>();
+
+	private ArrayList<String[]> enemies = new ArrayList<String[]>();
+	private ArrayList<int[]> enemyInts = new ArrayList<int[]>();
+	private ArrayList<Double> enemySpeeds = new ArrayList<Double>();
+	private Map<String, Integer> enemyIndex = new HashMap<String, Integer>();
+
+	// one int[] {mode, min, max} and one frequency per enemy for each level
+	private ArrayList<int[][]> levelCounts = new ArrayList<int[][]>();
+	private ArrayList<double[]> levelFrequencies = new ArrayList<double[]>();
+
+	/**
+	 * Compiles a wave definition.
+	 * @param in The text, in UTF-8. Left open.
+	 * @param name What to call the text in error messages, usually its file name.
+	 * @return WaveTable The compiled table.
+	 * @throws IOException If the text cannot be read, or has a mistake in it. The message gives the
+	 * line the mistake is on.
+	 */
+	public WaveTable parse(InputStream in, String name) throws IOException{
+		source = name;
+		lineNumber = 0;
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+		String line;
+		while((line = reader.readLine())!=null){
+			lineNumber++;
+			int comment = line.indexOf('#');
+			if(comment>=0){
+				line = line.substring(0, comment);
+			}
+			line = line.trim();
+			if(line.isEmpty()){
+				continue;
+			}
+			String[] words = line.split("\\s+");
+			if(words[0].equals("laser")){
+				parseLaser(words);
+			} else if(words[0].equals("enemy")){
+				parseEnemy(words);
+			} else if(words[0].equals("level")){
+				parseLevel(words);
+			} else {
+				throw error("unknown definition '"+words[0]+"'");
+			}
+		}
+		lineNumber = 0;
+		return build();
+	}
+
+	private void parseLaser(String[] words) throws IOException{
+		if(words.length<2){
+			throw error("laser needs a name");
+		}
+		Map<String, String> props = properties(words, 2);
+		String name = words[1];
+		if(laserIndex.containsKey(name)){
+			throw error("laser "+name+" is already defined");
+		}
+		String[] strings = {name, required(props, "image"), optional(props, "sound", "")};
+		double[] numbers = {
+				number(required(props, "damage")),
+				number(required(props, "speed")),
+				Math.toRadians(number(required(props, "angle")))};
+		checkUnused(props);
+		laserIndex.put(name, lasers.size());
+		lasers.add(strings);
+		laserNumbers.add(numbers);
+	}
+
+	private void parseEnemy(String[] words) throws IOException{
+		if(!levelCounts.isEmpty()){
+			throw error("enemies must be defined before the levels");
+		}
+		if(words.length<2){
+			throw error("enemy needs a name");
+		}
+		Map<String, String> props = properties(words, 2);
+		String name = words[1];
+		if(enemyIndex.containsKey(name)){
+			throw error("enemy "+name+" is already defined");
+		}
+		String kindName = required(props, "kind");
+		int kind = -1;
+		for(int i = 0; i<WaveTable.KIND_NAMES.length; i++){
+			if(WaveTable.KIND_NAMES[i].equals(kindName)){
+				kind = i;
+			}
+		}
+		if(kind<0){
+			throw error("unknown kind of enemy '"+kindName+"'");
+		}
+		String laserName = required(props, "laser");
+		Integer laser = laserIndex.get(laserName);
+		if(laser==null){
+			throw error("unknown laser '"+laserName+"'");
+		}
+		String[] strings = {name, required(props, "image")};
+		int[] ints = {
+				kind,
+				laser,
+				integer(optional(props, "health", null)),
+				integer(optional(props, "shoot", null)),
+				integer(optional(props, "points", null)),
+				integer(optional(props, "margin", null))};
+		String speed = optional(props, "speed", null);
+		checkUnused(props);
+		enemyIndex.put(name, enemies.size());
+		enemies.add(strings);
+		enemyInts.add(ints);
+		enemySpeeds.add(speed==null ? WaveTable.UNSET : number(speed));
+	}
+
+	private void parseLevel(String[] words) throws IOException{
+		if(enemies.isEmpty()){
+			throw error("enemies must be defined before the levels");
+		}
+		if(words.length<2){
+			throw error("level needs a number");
+		}
+		int first;
+		int last;
+		int dash = words[1].indexOf('-');
+		if(dash>=0){
+			first = integer(words[1].substring(0, dash));
+			last = integer(words[1].substring(dash+1));
+		} else {
+			first = integer(words[1]);
+			last = first;
+		}
+		if(first!=levelCounts.size()+1){
+			throw error("expected level "+(levelCounts.size()+1)+" next, not "+first);
+		}
+		if(last<first){
+			throw error("level range "+words[1]+" is backwards");
+		}
+
+		int n = enemies.size();
+		int[][] counts = new int[n][];
+		double[] fromFrequency = new double[n];
+		double[] toFrequency = new double[n];
+		boolean[] given = new boolean[n];
+		for(int i = 2; i<words.length; i++){
+			int equals = words[i].indexOf('=');
+			if(equals<=0){
+				throw error("expected <enemy>=<count>, not '"+words[i]+"'");
+			}
+			String name = words[i].substring(0, equals);
+			Integer e = enemyIndex.get(name);
+			if(e==null){
+				throw error("unknown enemy '"+name+"'");
+			}
+			if(given[e]){
+				throw error("enemy "+name+" is given twice");
+			}
+			given[e] = true;
+			String value = words[i].substring(equals+1);
+			int at = value.indexOf('@');
+			String count = at>=0 ? value.substring(0, at) : value;
+			counts[e] = count(count);
+			if(at>=0){
+				double[] range = range(value.substring(at+1));
+				fromFrequency[e] = range[0];
+				toFrequency[e] = range[1];
+			} else {
+				fromFrequency[e] = Double.NaN;
+			}
+		}
+
+		for(int level = first; level<=last; level++){
+			int[][] row = new int[n][];
+			double[] frequencies = new double[n];
+			double[] previous = levelFrequencies.isEmpty() ? null : levelFrequencies.get(levelFrequencies.size()-1);
+			for(int e = 0; e<n; e++){
+				if(counts[e]!=null){
+					if(level==1 && counts[e][0]==WaveTable.COUNT_ADD){
+						throw error("level 1 must set the count of enemy "+enemies.get(e)[0]+" rather than add to it");
+					}
+					row[e] = counts[e];
+				} else if(level==1){
+					throw error("level 1 must give a count for enemy "+enemies.get(e)[0]);
+				} else {
+					row[e] = new int[] {WaveTable.COUNT_ADD, 0, 0};
+				}
+				if(given[e] && !Double.isNaN(fromFrequency[e])){
+					double t = last==first ? 0 : (double)(level-first)/(last-first);
+					frequencies[e] = fromFrequency[e] + (toFrequency[e]-fromFrequency[e])*t;
+				} else {
+					frequencies[e] = previous==null ? DEFAULT_FREQUENCY : previous[e];
+				}
+			}
+			levelCounts.add(row);
+			levelFrequencies.add(frequencies);
+		}
+	}
+
+	/**
+	 * Parses a count, [+]n or [+]min..max, into {mode, min, max}.
+	 */
+	private int[] count(String s) throws IOException{
+		int mode = WaveTable.COUNT_SET;
+		if(s.startsWith("+")){
+			mode = WaveTable.COUNT_ADD;
+			s = s.substring(1);
+		}
+		int dots = s.indexOf("..");
+		int min;
+		int max;
+		if(dots>=0){
+			min = integer(s.substring(0, dots));
+			max = integer(s.substring(dots+2));
+		} else {
+			min = integer(s);
+			max = min;
+		}
+		if(min>max){
+			throw error("count range "+s+" is backwards");
+		}
+		if(min<0){
+			throw error("count "+s+" must not be negative");
+		}
+		return new int[] {mode, min, max};
+	}
+
+	/**
+	 * Parses a frequency, f or from..to, into {from, to}.
+	 */
+	private double[] range(String s) throws IOException{
+		int dots = s.indexOf("..");
+		double[] range = new double[2];
+		if(dots>=0){
+			range[0] = number(s.substring(0, dots));
+			range[1] = number(s.substring(dots+2));
+		} else {
+			range[0] = number(s);
+			range[1] = range[0];
+		}
+		if(!(range[0]>=1) || !(range[1]>=1)){
+			throw error("frequency "+s+" must be at least 1 tick");
+		}
+		return range;
+	}
+
+	private Map<String, String> properties(String[] words, int from) throws IOException{
+		Map<String, String> props = new HashMap<String, String>();
+		for(int i = from; i<words.length; i++){
+			int equals = words[i].indexOf('=');
+			if(equals<=0){
+				throw error("expected <property>=<value>, not '"+words[i]+"'");
+			}
+			props.put(words[i].substring(0, equals), words[i].substring(equals+1));
+		}
+		return props;
+	}
+
+	private String required(Map<String, String> props, String key) throws IOException{
+		String value = props.remove(key);
+		if(value==null || value.isEmpty()){
+			throw error("missing "+key+"=");
+		}
+		return value;
+	}
+
+	private String optional(Map<String, String> props, String key, String defaultValue){
+		String value = props.remove(key);
+		return value==null ? defaultValue : value;
+	}
+
+	private void checkUnused(Map<String, String> props) throws IOException{
+		if(!props.isEmpty()){
+			throw error("unknown property "+props.keySet().iterator().next()+"=");
+		}
+	}
+
+	private double number(String s) throws IOException{
+		try {
+			double d = Double.parseDouble(s);
+			if(Double.isNaN(d) || Double.isInfinite(d)){
+				throw error("'"+s+"' is not a number");
+			}
+			return d;
+		} catch (NumberFormatException e) {
+			throw error("'"+s+"' is not a number");
+		}
+	}
+
+	/**
+	 * Parses a whole number, giving WaveTable.UNSET for null.
+	 */
+	private int integer(String s) throws IOException{
+		if(s==null){
+			return WaveTable.UNSET;
+		}
+		try {
+			return Integer.parseInt(s);
+		} catch (NumberFormatException e) {
+			throw error("'"+s+"' is not a whole number");
+		}
+	}
+
+	private IOException error(String message){
+		if(lineNumber>0){
+			return new IOException(source+":"+lineNumber+": "+message);
+		}
+		return new IOException(source+": "+message);
+	}
+
+	/**
+	 * Copies everything parsed into the flat arrays of a table.
+	 */
+	private WaveTable build() throws IOException{
+		WaveTable t = new WaveTable();
+		t.allocateLasers(lasers.size());
+		for(int i = 0; i<t.laserCount; i++){
+			t.laserName[i] = lasers.get(i)[0];
+			t.laserImage[i] = lasers.get(i)[1];
+			t.laserSound[i] = lasers.get(i)[2];
+			t.laserDamage[i] = laserNumbers.get(i)[0];
+			t.laserSpeed[i] = laserNumbers.get(i)[1];
+			t.laserAngle[i] = laserNumbers.get(i)[2];
+		}
+		t.allocateEnemies(enemies.size());
+		for(int i = 0; i<t.enemyCount; i++){
+			int[] ints = enemyInts.get(i);
+			t.enemyName[i] = enemies.get(i)[0];
+			t.enemyImage[i] = enemies.get(i)[1];
+			t.enemyKind[i] = ints[0];
+			t.enemyLaser[i] = ints[1];
+			t.enemyHealth[i] = ints[2];
+			t.enemyShootTime[i] = ints[3];
+			t.enemyPoints[i] = ints[4];
+			t.enemyMargin[i] = ints[5];
+			t.enemySpeed[i] = enemySpeeds.get(i);
+		}
+		t.allocateLevels(levelCounts.size());
+		for(int level = 0; level<t.levelCount; level++){
+			for(int e = 0; e<t.enemyCount; e++){
+				int i = level*t.enemyCount+e;
+				int[] count = levelCounts.get(level)[e];
+				t.countMode[i] = count[0];
+				t.countMin[i] = count[1];
+				t.countMax[i] = count[2];
+				t.frequency[i] = levelFrequencies.get(level)[e];
+			}
+		}
+		List<String> problems = t.validate();
+		if(!problems.isEmpty()){
+			throw error(problems.get(0));
+		}
+		return t;
+	}
+
+}
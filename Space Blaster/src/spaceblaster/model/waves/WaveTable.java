@@ -0,0 +1,418 @@
+package spaceblaster.model.waves;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The enemies and levels of a game, compiled from a wave definition (see WaveParser) into flat
+ * tables. There is a row for every level defined and a column for every enemy, so setting up a
+ * level is a lookup with nothing left to interpret. Levels past the last one defined repeat the
+ * last one.
+ *
+ * A table can be written to and read from a compact binary form, which loads without parsing.
+ */
+public class WaveTable {
+
+	/**
+	 * The kinds of enemy, which decide the class the enemy is created with.
+	 */
+	public static final int KIND_BASIC = 0;
+	public static final int KIND_F250 = 1;
+
+	/**
+	 * The names of the kinds of enemy, indexed by kind.
+	 */
+	public static final String[] KIND_NAMES = {"basic", "f250"};
+
+	/**
+	 * How an enemy's count for a level is worked out: COUNT_SET picks a count between min and max,
+	 * COUNT_ADD adds a number between min and max to its count in the level before.
+	 */
+	public static final int COUNT_SET = 0;
+	public static final int COUNT_ADD = 1;
+
+	/**
+	 * Marks an optional number that was not given, so the enemy's class default is used.
+	 */
+	public static final int UNSET = -1;
+
+	// the first bytes of the binary form, "SBWV", and its version
+	static final int MAGIC = 0x53425756;
+	static final int VERSION = 1;
+
+	// lasers
+	int laserCount;
+	String[] laserName;
+	String[] laserImage;
+	String[] laserSound;
+	double[] laserDamage;
+	double[] laserSpeed;
+	double[] laserAngle;
+
+	// enemies
+	int enemyCount;
+	String[] enemyName;
+	int[] enemyKind;
+	String[] enemyImage;
+	int[] enemyLaser;
+	int[] enemyHealth;
+	double[] enemySpeed;
+	int[] enemyShootTime;
+	int[] enemyPoints;
+	int[] enemyMargin;
+
+	// levels, each array has levelCount*enemyCount entries with the row for level l starting at (l-1)*enemyCount
+	int levelCount;
+	int[] countMode;
+	int[] countMin;
+	int[] countMax;
+	double[] frequency;
+
+	WaveTable() {
+	}
+
+	/**
+	 * Loads a table, compiling it first if the URL ends with .waves and reading it as binary otherwise.
+	 * @param url Where the table is.
+	 * @return WaveTable The table.
+	 * @throws IOException If it cannot be read or is not a valid table.
+	 */
+	public static WaveTable load(URL url) throws IOException{
+		if(url==null){
+			throw new IOException("Missing wave definition");
+		}
+		InputStream in = url.openStream();
+		try {
+			if(url.getPath().endsWith(WaveParser.EXTENSION)){
+				return new WaveParser().parse(in, url.toString());
+			}
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads the binary form of a table.
+	 * @param in The stream to read from, left open.
+	 * @return WaveTable The table.
+	 * @throws IOException If it cannot be read or is not a valid table.
+	 */
+	public static WaveTable read(InputStream in) throws IOException{
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if(data.readInt()!=MAGIC){
+			throw new IOException("Not a compiled wave table");
+		}
+		int version = data.readUnsignedShort();
+		if(version!=VERSION){
+			throw new IOException("Unsupported wave table version "+version);
+		}
+		WaveTable t = new WaveTable();
+		t.allocateLasers(data.readUnsignedShort());
+		for(int i = 0; i<t.laserCount; i++){
+			t.laserName[i] = data.readUTF();
+			t.laserImage[i] = data.readUTF();
+			t.laserSound[i] = data.readUTF();
+			t.laserDamage[i] = data.readDouble();
+			t.laserSpeed[i] = data.readDouble();
+			t.laserAngle[i] = data.readDouble();
+		}
+		t.allocateEnemies(data.readUnsignedShort());
+		for(int i = 0; i<t.enemyCount; i++){
+			t.enemyName[i] = data.readUTF();
+			t.enemyKind[i] = data.readUnsignedByte();
+			t.enemyImage[i] = data.readUTF();
+			t.enemyLaser[i] = data.readUnsignedShort();
+			t.enemyHealth[i] = data.readInt();
+			t.enemySpeed[i] = data.readDouble();
+			t.enemyShootTime[i] = data.readInt();
+			t.enemyPoints[i] = data.readInt();
+			t.enemyMargin[i] = data.readInt();
+		}
+		t.allocateLevels(data.readInt());
+		for(int i = 0; i<t.levelCount*t.enemyCount; i++){
+			t.countMode[i] = data.readUnsignedByte();
+			t.countMin[i] = data.readInt();
+			t.countMax[i] = data.readInt();
+			t.frequency[i] = data.readDouble();
+		}
+		List<String> problems = t.validate();
+		if(!problems.isEmpty()){
+			throw new IOException("Invalid wave table: "+problems.get(0));
+		}
+		return t;
+	}
+
+	/**
+	 * Writes the binary form of this table.
+	 * @param out The stream to write to, flushed but left open.
+	 * @throws IOException If it cannot be written.
+	 */
+	public void write(OutputStream out) throws IOException{
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeShort(laserCount);
+		for(int i = 0; i<laserCount; i++){
+			data.writeUTF(laserName[i]);
+			data.writeUTF(laserImage[i]);
+			data.writeUTF(laserSound[i]);
+			data.writeDouble(laserDamage[i]);
+			data.writeDouble(laserSpeed[i]);
+			data.writeDouble(laserAngle[i]);
+		}
+		data.writeShort(enemyCount);
+		for(int i = 0; i<enemyCount; i++){
+			data.writeUTF(enemyName[i]);
+			data.writeByte(enemyKind[i]);
+			data.writeUTF(enemyImage[i]);
+			data.writeShort(enemyLaser[i]);
+			data.writeInt(enemyHealth[i]);
+			data.writeDouble(enemySpeed[i]);
+			data.writeInt(enemyShootTime[i]);
+			data.writeInt(enemyPoints[i]);
+			data.writeInt(enemyMargin[i]);
+		}
+		data.writeInt(levelCount);
+		for(int i = 0; i<levelCount*enemyCount; i++){
+			data.writeByte(countMode[i]);
+			data.writeInt(countMin[i]);
+			data.writeInt(countMax[i]);
+			data.writeDouble(frequency[i]);
+		}
+		data.flush();
+	}
+
+	void allocateLasers(int n){
+		laserCount = n;
+		laserName = new String[n];
+		laserImage = new String[n];
+		laserSound = new String[n];
+		laserDamage = new double[n];
+		laserSpeed = new double[n];
+		laserAngle = new double[n];
+	}
+
+	void allocateEnemies(int n){
+		enemyCount = n;
+		enemyName = new String[n];
+		enemyKind = new int[n];
+		enemyImage = new String[n];
+		enemyLaser = new int[n];
+		enemyHealth = new int[n];
+		enemySpeed = new double[n];
+		enemyShootTime = new int[n];
+		enemyPoints = new int[n];
+		enemyMargin = new int[n];
+	}
+
+	void allocateLevels(int n){
+		levelCount = n;
+		countMode = new int[n*enemyCount];
+		countMin = new int[n*enemyCount];
+		countMax = new int[n*enemyCount];
+		frequency = new double[n*enemyCount];
+	}
+
+	/**
+	 * Checks that the table makes sense: every enemy has a known kind and laser, every count range
+	 * is in order, every frequency is positive and the first level sets every count.
+	 * @return List<String> A description of each problem found, empty if there are none.
+	 */
+	public List<String> validate(){
+		ArrayList<String> problems = new ArrayList<String>();
+		if(enemyCount==0){
+			problems.add("no enemies are defined");
+		}
+		if(levelCount==0){
+			problems.add("no levels are defined");
+		}
+		for(int i = 0; i<enemyCount; i++){
+			if(enemyKind[i]<0 || enemyKind[i]>=KIND_NAMES.length){
+				problems.add("enemy "+enemyName[i]+" has an unknown kind "+enemyKind[i]);
+			}
+			if(enemyLaser[i]<0 || enemyLaser[i]>=laserCount){
+				problems.add("enemy "+enemyName[i]+" has an unknown laser");
+			}
+			if(enemyHealth[i]!=UNSET && enemyHealth[i]<=0){
+				problems.add("enemy "+enemyName[i]+" must have positive health");
+			}
+		}
+		for(int level = 1; level<=levelCount; level++){
+			for(int e = 0; e<enemyCount; e++){
+				int i = (level-1)*enemyCount+e;
+				String where = "level "+level+", enemy "+enemyName[e]+": ";
+				if(countMin[i]>countMax[i]){
+					problems.add(where+"count range "+countMin[i]+".."+countMax[i]+" is backwards");
+				}
+				if(countMode[i]==COUNT_SET && countMin[i]<0){
+					problems.add(where+"count must not be negative");
+				}
+				if(level==1 && countMode[i]!=COUNT_SET){
+					problems.add(where+"the first level must set the count rather than add to it");
+				}
+				if(!(frequency[i]>=1)){
+					problems.add(where+"frequency must be at least 1 tick");
+				}
+			}
+		}
+		return problems;
+	}
+
+	public int getLaserCount(){
+		return laserCount;
+	}
+
+	public String getLaserName(int laser){
+		return laserName[laser];
+	}
+
+	public String getLaserImage(int laser){
+		return laserImage[laser];
+	}
+
+	/**
+	 * Gets the key of the sound played when the laser is fired.
+	 * @param laser The laser.
+	 * @return String The key, or an empty string for no sound.
+	 */
+	public String getLaserSound(int laser){
+		return laserSound[laser];
+	}
+
+	public double getLaserDamage(int laser){
+		return laserDamage[laser];
+	}
+
+	public double getLaserSpeed(int laser){
+		return laserSpeed[laser];
+	}
+
+	/**
+	 * Gets the direction the laser is fired in, see Laser.setSpeed(double spd, double angle).
+	 * @param laser The laser.
+	 * @return double The angle in radians.
+	 */
+	public double getLaserAngle(int laser){
+		return laserAngle[laser];
+	}
+
+	public int getEnemyCount(){
+		return enemyCount;
+	}
+
+	public String getEnemyName(int enemy){
+		return enemyName[enemy];
+	}
+
+	/**
+	 * Gets the kind of an enemy, KIND_BASIC or KIND_F250.
+	 * @param enemy The enemy.
+	 * @return
+	 */
+	public int getEnemyKind(int enemy){
+		return enemyKind[enemy];
+	}
+
+	public String getEnemyImage(int enemy){
+		return enemyImage[enemy];
+	}
+
+	public int getEnemyLaser(int enemy){
+		return enemyLaser[enemy];
+	}
+
+	/**
+	 * Gets the health of an enemy.
+	 * @param enemy The enemy.
+	 * @return int The health, or UNSET for the default of its kind.
+	 */
+	public int getEnemyHealth(int enemy){
+		return enemyHealth[enemy];
+	}
+
+	/**
+	 * Gets the speed of an enemy.
+	 * @param enemy The enemy.
+	 * @return double The speed, or UNSET for the default of its kind.
+	 */
+	public double getEnemySpeed(int enemy){
+		return enemySpeed[enemy];
+	}
+
+	/**
+	 * Gets the ticks between shots of an enemy.
+	 * @param enemy The enemy.
+	 * @return int The ticks, or UNSET for the default of its kind.
+	 */
+	public int getEnemyShootTime(int enemy){
+		return enemyShootTime[enemy];
+	}
+
+	/**
+	 * Gets the points for destroying an enemy.
+	 * @param enemy The enemy.
+	 * @return int The points, or UNSET for the default of its kind.
+	 */
+	public int getEnemyPoints(int enemy){
+		return enemyPoints[enemy];
+	}
+
+	/**
+	 * Gets how far from the sides of the screen an enemy stays, for kinds that move sideways.
+	 * @param enemy The enemy.
+	 * @return int The distance in pixels, or UNSET for the default of its kind.
+	 */
+	public int getEnemyMargin(int enemy){
+		return enemyMargin[enemy];
+	}
+
+	/**
+	 * Gets the number of levels defined. Later levels repeat the last one.
+	 * @return
+	 */
+	public int getLevelCount(){
+		return levelCount;
+	}
+
+	private int row(int level, int enemy){
+		int l = Math.max(1, Math.min(level, levelCount));
+		return (l-1)*enemyCount+enemy;
+	}
+
+	/**
+	 * Gets how the count of an enemy is worked out in a level, COUNT_SET or COUNT_ADD.
+	 * @param level The level, from 1.
+	 * @param enemy The enemy.
+	 * @return
+	 */
+	public int getCountMode(int level, int enemy){
+		return countMode[row(level, enemy)];
+	}
+
+	public int getCountMin(int level, int enemy){
+		return countMin[row(level, enemy)];
+	}
+
+	public int getCountMax(int level, int enemy){
+		return countMax[row(level, enemy)];
+	}
+
+	/**
+	 * Gets how often an enemy spawns in a level, as in BasicEnemy.getFrequency().
+	 * @param level The level, from 1.
+	 * @param enemy The enemy.
+	 * @return double The average number of ticks between spawns.
+	 */
+	public double getFrequency(int level, int enemy){
+		return frequency[row(level, enemy)];
+	}
+
+}
@@ -0,0 +1,99 @@
+package spaceblaster.model.waves;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks wave definitions from the command line, and compiles them to the binary form:
+ *
+ * <pre>
+ * java spaceblaster.model.waves.WaveTool [-o out.wavesc] [-levels n] file.waves ...
+ * </pre>
+ *
+ * Prints a summary of each file, and the first few levels of enemy counts (or n of them), then
+ * exits with 1 if any file has a mistake in it. With -o, the one file given is also compiled.
+ */
+public class WaveTool {
+
+	public static void main(String[] args) {
+		String output = null;
+		int levels = 5;
+		ArrayList<File> files = new ArrayList<File>();
+		for(int i = 0; i<args.length; i++){
+			if(args[i].equals("-o") && i+1<args.length){
+				output = args[++i];
+			} else if(args[i].equals("-levels") && i+1<args.length){
+				levels = Integer.parseInt(args[++i]);
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		if(files.isEmpty() || (output!=null && files.size()!=1)){
+			System.err.println("usage: WaveTool [-o out.wavesc] [-levels n] file.waves ...");
+			System.exit(2);
+		}
+		boolean ok = true;
+		for(File f: files){
+			ok &= check(f, levels, output);
+		}
+		System.exit(ok ? 0 : 1);
+	}
+
+	private static boolean check(File file, int levels, String output){
+		WaveTable t;
+		try {
+			t = WaveTable.load(file.toURI().toURL());
+		} catch (IOException e) {
+			System.err.println(e.getMessage());
+			return false;
+		}
+		List<String> problems = t.validate();
+		for(String p: problems){
+			System.err.println(file+": "+p);
+		}
+		System.out.println(file+": "+t.getLaserCount()+" lasers, "+t.getEnemyCount()+" enemies, "+t.getLevelCount()+" levels");
+		printLevels(t, Math.min(levels, t.getLevelCount()));
+		if(output!=null && problems.isEmpty()){
+			try {
+				OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+				try {
+					t.write(out);
+				} finally {
+					out.close();
+				}
+				System.out.println("wrote "+output+" ("+new File(output).length()+" bytes)");
+			} catch (IOException e) {
+				System.err.println(output+": "+e.getMessage());
+				return false;
+			}
+		}
+		return problems.isEmpty();
+	}
+
+	/**
+	 * Prints the range of counts each enemy could have in the first levels, with its frequency.
+	 */
+	private static void printLevels(WaveTable t, int levels){
+		int[] min = new int[t.getEnemyCount()];
+		int[] max = new int[t.getEnemyCount()];
+		for(int level = 1; level<=levels; level++){
+			StringBuilder sb = new StringBuilder(String.format("  level %3d", level));
+			for(int e = 0; e<t.getEnemyCount(); e++){
+				if(t.getCountMode(level, e)==WaveTable.COUNT_SET){
+					min[e] = 0;
+					max[e] = 0;
+				}
+				min[e] += t.getCountMin(level, e);
+				max[e] += t.getCountMax(level, e);
+				sb.append(String.format("  %s=%d..%d@%.0f", t.getEnemyName(e), min[e], max[e], t.getFrequency(level, e)));
+			}
+			System.out.println(sb);
+		}
+	}
+
+}
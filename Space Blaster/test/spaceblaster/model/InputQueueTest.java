@@ -0,0 +1,97 @@
+package spaceblaster.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * The ring of InputQueue has to keep events in order and with their stamps as its indices wrap
+ * around, drop events rather than overwrite ones not yet taken, and hand every event from one thread
+ * to another exactly once.
+ */
+public class InputQueueTest {
+
+	@Test
+	public void capacityIsRoundedUpToAPowerOfTwo(){
+		assertEquals(8, new InputQueue(5).getCapacity());
+		assertEquals(8, new InputQueue(8).getCapacity());
+		assertEquals(2, new InputQueue(0).getCapacity());
+	}
+
+	@Test
+	public void fullQueueDropsEvents(){
+		InputQueue q = new InputQueue(8);
+		for(int i = 0; i<8; i++){
+			assertTrue(q.offer(i, 100+i));
+		}
+		assertFalse(q.offer(8, 108));
+		assertEquals(1, q.getDropped());
+		for(int i = 0; i<8; i++){
+			assertEquals(i, q.poll());
+			assertEquals(100+i, q.getLastStamp());
+		}
+		assertEquals(-1, q.poll());
+	}
+
+	@Test
+	public void eventsKeepTheirOrderAsTheRingWraps(){
+		InputQueue q = new InputQueue(8);
+		for(int i = 0; i<1000; i++){
+			// a few in, fewer out, then catch up, so the head and tail wrap at different places
+			for(int j = 0; j<i%7; j++){
+				q.offer(i*10+j, i*10+j);
+			}
+			for(int j = 0; j<i%7; j++){
+				int e = q.poll();
+				assertEquals(i*10+j, e);
+				assertEquals(e, q.getLastStamp());
+			}
+		}
+		assertEquals(-1, q.poll());
+		assertEquals(0, q.getDropped());
+	}
+
+	@Test
+	public void clearEmptiesTheQueue(){
+		InputQueue q = new InputQueue(8);
+		q.offer(1, 1);
+		q.offer(2, 2);
+		q.clear();
+		assertEquals(-1, q.poll());
+		assertTrue(q.offer(3, 3));
+		assertEquals(3, q.poll());
+	}
+
+	@Test
+	public void everyEventCrossesThreadsOnceInOrder() throws InterruptedException{
+		final InputQueue q = new InputQueue(16);
+		final int n = 200000;
+		Thread producer = new Thread("Input producer"){
+			public void run(){
+				for(int i = 0; i<n;){
+					if(q.offer(i, i)){
+						i++;
+					} else {
+						Thread.yield();
+					}
+				}
+			}
+		};
+		producer.start();
+		for(int expected = 0; expected<n;){
+			int e = q.poll();
+			if(e<0){
+				Thread.yield();
+				continue;
+			}
+			assertEquals(expected, e);
+			assertEquals(expected, q.getLastStamp());
+			expected++;
+		}
+		producer.join();
+		assertEquals(-1, q.poll());
+	}
+
+}
@@ -0,0 +1,233 @@
+package spaceblaster.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import spaceblaster.model.SoundManager.RequestQueue;
+
+/**
+ * The mixer, rendered directly without a line: how many copies of an effect play at once, which
+ * voice is stolen when there are too many, and clipping. Then the mixer thread, which must be the
+ * only one mixing after a restart and must be gone after stop(). Then the queue of sound requests,
+ * which has to keep them in order as its slots are reused, refuse them when full, and hand every
+ * one from many threads to the mixer exactly once.
+ */
+public class SoundManagerTest {
+
+	private static short[] constant(int value, int frames){
+		short[] samples = new short[frames];
+		Arrays.fill(samples, (short)value);
+		return samples;
+	}
+
+	private static int sample(byte[] b, int frame){
+		return (short)((b[frame*2] & 0xff) | (b[frame*2+1]<<8));
+	}
+
+	@Test
+	public void oneVoiceIsScaledByTheVoiceGain(){
+		SoundManager m = new SoundManager();
+		int id = m.add(null, constant(1000, SoundManager.BUFFER_FRAMES*2));
+		byte[] b = new byte[SoundManager.BUFFER_FRAMES*2];
+		m.play(id);
+		assertEquals(b.length, m.render(b));
+		assertEquals(1, m.getActiveVoices());
+		assertEquals(1000*96>>8, sample(b, 0));
+		assertEquals(1000*96>>8, sample(b, SoundManager.BUFFER_FRAMES-1));
+
+		// the second block finishes the effect, and the third is silent
+		m.render(b);
+		assertEquals(0, m.getActiveVoices());
+		m.render(b);
+		assertEquals(0, sample(b, 0));
+	}
+
+	@Test
+	public void effectShorterThanABlockEndsWithSilence(){
+		SoundManager m = new SoundManager();
+		int id = m.add(null, constant(1000, 10));
+		byte[] b = new byte[SoundManager.BUFFER_FRAMES*2];
+		m.play(id);
+		m.render(b);
+		assertEquals(1000*96>>8, sample(b, 9));
+		assertEquals(0, sample(b, 10));
+		assertEquals(0, m.getActiveVoices());
+	}
+
+	@Test
+	public void oneEffectPlaysAtMostMaxVoicesPerSound(){
+		SoundManager m = new SoundManager();
+		int id = m.add(null, constant(100, SoundManager.BUFFER_FRAMES*4));
+		byte[] b = new byte[SoundManager.BUFFER_FRAMES*2];
+		for(int i = 0; i<SoundManager.MAX_VOICES_PER_SOUND+2; i++){
+			m.play(id);
+		}
+		m.render(b);
+		assertEquals(SoundManager.MAX_VOICES_PER_SOUND, m.getActiveVoices());
+		assertEquals(SoundManager.MAX_VOICES_PER_SOUND+2, m.getVoicesStarted());
+		assertEquals(2, m.getVoicesStolen());
+		assertEquals(SoundManager.MAX_VOICES_PER_SOUND*(100*96)>>8, sample(b, 0));
+	}
+
+	@Test
+	public void oldestVoiceIsStolenWhenAllArePlaying(){
+		SoundManager m = new SoundManager();
+		byte[] b = new byte[SoundManager.BUFFER_FRAMES*2];
+		// the first effect is silent and long, the rest are loud and long
+		int quiet = m.add(null, constant(0, SoundManager.BUFFER_FRAMES*4));
+		m.play(quiet);
+		m.render(b);
+		for(int i = 0; i<SoundManager.MAX_VOICES; i++){
+			m.play(m.add(null, constant(100, SoundManager.BUFFER_FRAMES*4)));
+		}
+		m.render(b);
+		assertEquals(SoundManager.MAX_VOICES, m.getActiveVoices());
+		assertEquals(1, m.getVoicesStolen());
+		// every voice is a loud one, so the quiet one was the one stolen
+		assertEquals(SoundManager.MAX_VOICES*(100*96)>>8, sample(b, 0));
+	}
+
+	@Test
+	public void loudVoicesClip(){
+		SoundManager m = new SoundManager();
+		int loud = m.add(null, constant(Short.MAX_VALUE, SoundManager.BUFFER_FRAMES));
+		int low = m.add(null, constant(Short.MIN_VALUE, SoundManager.BUFFER_FRAMES));
+		byte[] b = new byte[SoundManager.BUFFER_FRAMES*2];
+		for(int i = 0; i<SoundManager.MAX_VOICES_PER_SOUND; i++){
+			m.play(loud);
+		}
+		m.render(b);
+		assertEquals(Short.MAX_VALUE, sample(b, 0));
+		for(int i = 0; i<SoundManager.MAX_VOICES_PER_SOUND; i++){
+			m.play(low);
+		}
+		m.render(b);
+		assertEquals(Short.MIN_VALUE, sample(b, 0));
+	}
+
+	@Test
+	public void unknownEffectsAreIgnored(){
+		SoundManager m = new SoundManager();
+		m.add(null, constant(100, 10));
+		m.play(SoundManager.NO_SOUND);
+		m.play(1);
+		m.render(new byte[SoundManager.BUFFER_FRAMES*2]);
+		assertEquals(0, m.getVoicesStarted());
+	}
+
+	/**
+	 * Counts the blocks written to it, slowly enough that the mixer is usually inside a write.
+	 */
+	private static class CountingSink implements SoundManager.Sink {
+
+		final AtomicInteger writes = new AtomicInteger();
+
+		public void write(byte[] b, int off, int len){
+			writes.incrementAndGet();
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				// stopped
+			}
+		}
+
+	}
+
+	@Test
+	public void onlyTheNewestMixerThreadMixes() throws InterruptedException{
+		SoundManager m = new SoundManager();
+		CountingSink first = new CountingSink();
+		CountingSink second = new CountingSink();
+		m.start(first);
+		Thread.sleep(20);
+		m.start(second);
+		int firstWrites = first.writes.get();
+		Thread.sleep(50);
+		assertEquals(firstWrites, first.writes.get());
+		assertTrue(second.writes.get()>0);
+
+		m.stop();
+		int secondWrites = second.writes.get();
+		Thread.sleep(20);
+		assertEquals(secondWrites, second.writes.get());
+	}
+
+	@Test
+	public void fullQueueRefusesRequests(){
+		RequestQueue q = new RequestQueue(5);
+		for(int i = 0; i<8; i++){
+			assertTrue(q.offer(i));
+		}
+		assertFalse(q.offer(8));
+		for(int i = 0; i<8; i++){
+			assertEquals(i, q.poll());
+		}
+		assertEquals(SoundManager.NO_SOUND, q.poll());
+	}
+
+	@Test
+	public void requestsKeepTheirOrderAsSlotsAreReused(){
+		RequestQueue q = new RequestQueue(8);
+		for(int i = 0; i<1000; i++){
+			for(int j = 0; j<i%7; j++){
+				assertTrue(q.offer(i*10+j));
+			}
+			for(int j = 0; j<i%7; j++){
+				assertEquals(i*10+j, q.poll());
+			}
+		}
+		assertEquals(SoundManager.NO_SOUND, q.poll());
+	}
+
+	@Test
+	public void everyRequestFromManyThreadsIsTakenOnce() throws InterruptedException{
+		final RequestQueue q = new RequestQueue(16);
+		final int threads = 4;
+		final int each = 50000;
+		Thread[] producers = new Thread[threads];
+		for(int p = 0; p<threads; p++){
+			final int first = p*each;
+			producers[p] = new Thread("Request producer "+p){
+				public void run(){
+					for(int i = first; i<first+each;){
+						if(q.offer(i)){
+							i++;
+						} else {
+							Thread.yield();
+						}
+					}
+				}
+			};
+			producers[p].start();
+		}
+		boolean[] seen = new boolean[threads*each];
+		int[] last = new int[threads];
+		for(int p = 0; p<threads; p++){
+			last[p] = p*each-1;
+		}
+		for(int taken = 0; taken<threads*each;){
+			int v = q.poll();
+			if(v==SoundManager.NO_SOUND){
+				Thread.yield();
+				continue;
+			}
+			assertFalse("taken twice "+v, seen[v]);
+			seen[v] = true;
+			// each producer's requests come out in the order it made them
+			assertEquals(last[v/each]+1, v);
+			last[v/each] = v;
+			taken++;
+		}
+		for(Thread t: producers){
+			t.join();
+		}
+		assertEquals(SoundManager.NO_SOUND, q.poll());
+	}
+
+}
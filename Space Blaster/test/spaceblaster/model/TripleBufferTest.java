@@ -0,0 +1,75 @@
+package spaceblaster.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * TripleBuffer has to give the consumer the newest published buffer, never one the producer is
+ * writing, however the publishes and takes interleave.
+ */
+public class TripleBufferTest {
+
+	@Test
+	public void consumerKeepsItsBufferUntilANewOneIsPublished(){
+		TripleBuffer<int[]> t = new TripleBuffer<int[]>(new int[1], new int[1], new int[1]);
+		int[] front = t.getFront();
+		assertSame(front, t.getFront());
+		t.getBack()[0] = 1;
+		t.publish();
+		assertEquals(1, t.getFront()[0]);
+		assertSame(t.getFront(), t.getFront());
+	}
+
+	@Test
+	public void consumerGetsTheNewestOfManyPublishes(){
+		TripleBuffer<int[]> t = new TripleBuffer<int[]>(new int[1], new int[1], new int[1]);
+		for(int i = 1; i<=1000; i++){
+			// publish one to three times between takes, so the indices cycle through every order
+			for(int j = 0; j<=i%3; j++){
+				t.getBack()[0] = i*10+j;
+				t.publish();
+				assertNotSame(t.getBack(), t.getFront());
+			}
+			assertEquals(i*10+i%3, t.getFront()[0]);
+			assertNotSame(t.getBack(), t.getFront());
+		}
+	}
+
+	@Test
+	public void producerNeverWritesWhatTheConsumerHolds() throws InterruptedException{
+		// each buffer is {count, count again}, written in two steps; a torn buffer means both threads had it
+		final TripleBuffer<long[]> t = new TripleBuffer<long[]>(new long[2], new long[2], new long[2]);
+		final AtomicBoolean done = new AtomicBoolean();
+		Thread producer = new Thread("Buffer producer"){
+			public void run(){
+				for(long i = 1; i<=500000; i++){
+					long[] b = t.getBack();
+					b[0] = i;
+					b[1] = i;
+					t.publish();
+				}
+				done.set(true);
+			}
+		};
+		producer.start();
+		long last = 0;
+		while(!done.get()){
+			long[] b = t.getFront();
+			long first = b[0];
+			Thread.yield();
+			assertEquals(first, b[1]);
+			assertEquals(first, b[0]);
+			assertTrue(first>=last);
+			last = first;
+		}
+		producer.join();
+		assertEquals(500000, t.getFront()[0]);
+	}
+
+}
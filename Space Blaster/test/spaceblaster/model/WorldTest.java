@@ -0,0 +1,118 @@
+package spaceblaster.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import spaceblaster.gui.AssetCache;
+import spaceblaster.gui.ImageLoader;
+import spaceblaster.model.stress.StressScenario;
+
+/**
+ * A tick run on a ForkJoinPool has to give exactly the same world as one run on a single thread,
+ * see World.setForkJoinPool(ForkJoinPool p).
+ */
+public class WorldTest {
+
+	public static final int TICKS = 1000;
+
+	private static WorldBuilder builder;
+
+	@BeforeClass
+	public static void setUpBuilder(){
+		builder = createBuilder();
+	}
+
+	/**
+	 * Creates a builder of worlds with the default waves, without a window.
+	 * @return
+	 */
+	public static WorldBuilder createBuilder(){
+		AssetCache images = new AssetCache(new ImageLoader(), Long.MAX_VALUE);
+		Game.registerImages(images);
+		return new WorldBuilder(images, null, WorldBuilder.loadWaves(null));
+	}
+
+	/**
+	 * Gets the whole state of a world, as it is saved.
+	 * @param w The world.
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] getState(World w) throws IOException{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		w.writeState(data);
+		data.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Steps a world, now and then pressing or releasing a random key, until the player is destroyed.
+	 * @param w The world.
+	 * @param r The random numbers the keys are picked with.
+	 * @param ticks The most ticks to step.
+	 */
+	public static void play(World w, Random r, int ticks){
+		for(int i = 0; i<ticks && !w.isPlayerDestroyed(); i++){
+			if(r.nextInt(20)==0){
+				int action = r.nextInt(InputEvent.ACTION_COUNT);
+				w.submitInput(r.nextBoolean() ? InputEvent.pressed(action) : InputEvent.released(action));
+			}
+			w.step();
+		}
+	}
+
+	/**
+	 * Steps a world full of a stress scenario, keeping its state every 100 ticks. The worlds share the
+	 * prototypes of their builder, so each one is run to the end before the next is built.
+	 */
+	private static List<byte[]> run(String scenario, ForkJoinPool pool) throws IOException{
+		StressScenario s = StressScenario.parse(scenario);
+		World w = builder.build(1000, 650, 7L);
+		w.setForkJoinPool(pool);
+		StressScenario.protectPlayer(w);
+		Random r = new Random(3);
+		s.fill(w, r);
+		List<byte[]> states = new ArrayList<byte[]>();
+		for(int t = 0; t<TICKS; t++){
+			if(s.isRefill()){
+				s.fill(w, r);
+			}
+			w.step();
+			if(t%100==0){
+				states.add(getState(w));
+			}
+		}
+		states.add(getState(w));
+		return states;
+	}
+
+	@Test
+	public void parallelTicksMatchSerialTicks() throws IOException{
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(String scenario: StressScenario.PRESETS){
+				List<byte[]> serial = run(scenario, null);
+				List<byte[]> parallel = run(scenario, pool);
+				assertEquals(scenario, serial.size(), parallel.size());
+				for(int i = 0; i<serial.size(); i++){
+					assertArrayEquals(scenario+" state "+i, serial.get(i), parallel.get(i));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
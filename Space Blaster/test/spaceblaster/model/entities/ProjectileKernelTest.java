@@ -0,0 +1,105 @@
+package spaceblaster.model.entities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import spaceblaster.model.collision.CollisionLayer;
+
+/**
+ * The vector kernel has to give exactly what the scalar kernel gives, to the bit, for any positions,
+ * including ones no game gets to. Only run when the tests are run with the vector profile, which
+ * builds the vector kernel and adds the incubator module.
+ */
+public class ProjectileKernelTest {
+
+	public static final int ROUNDS = 20000;
+
+	private static final double[] ODD = {Double.NaN, 1e300, -1e300, Double.POSITIVE_INFINITY, -0.0,
+			2147483648.0, -2147483649.0, 0.5, -0.5};
+
+	private ProjectileKernel scalar;
+	private ProjectileKernel vector;
+
+	@Before
+	public void setUp(){
+		scalar = ProjectileKernel.forName("scalar");
+		vector = ProjectileKernel.forName("vector");
+		assumeNotNull(vector);
+	}
+
+	/**
+	 * Fills a store with lasers anywhere, now and then somewhere odd, a third of them from the player.
+	 */
+	private static EntityStore createStore(Random r, int n){
+		Laser laser = new Laser(0, 0, 1.0, 0.0, 1, false, null, null);
+		EntityStore s = new EntityStore(n);
+		for(int i = 0; i<n; i++){
+			Laser l = laser.getCopy(0, 0);
+			l.setX(r.nextInt(10)==0 ? ODD[r.nextInt(ODD.length)] : r.nextDouble()*1200-100);
+			l.setY(r.nextInt(10)==0 ? ODD[r.nextInt(ODD.length)] : r.nextDouble()*900-150);
+			l.setXVelocity(r.nextDouble()*8-4);
+			l.setYVelocity(r.nextInt(4)==0 ? 0 : r.nextDouble()*8-4);
+			l.setIsFromPlayer(r.nextInt(3)==0);
+			s.add(l);
+		}
+		return s;
+	}
+
+	@Test
+	public void classifyMatchesScalar(){
+		Random r = new Random(5);
+		for(int round = 0; round<ROUNDS; round++){
+			int n = 1+r.nextInt(70);
+			EntityStore s = createStore(r, n);
+			int from = r.nextInt(n);
+			int to = from+r.nextInt(n-from+1);
+			int left = r.nextInt(1000)-100;
+			int top = r.nextInt(700)-50;
+			int w = r.nextInt(60)-5;
+			int h = r.nextInt(60)-5;
+			if(r.nextInt(5)==0){
+				// a box whose right edge overflows
+				left = Integer.MAX_VALUE-r.nextInt(10);
+			} else if(r.nextBoolean()){
+				// a box right on top of one of the lasers
+				Entity e = s.getEntity(r.nextInt(n));
+				left = (int)e.getX()-r.nextInt(30);
+				top = (int)e.getY()-r.nextInt(30);
+			}
+			int[] expected = new int[n];
+			int[] actual = new int[n];
+			scalar.classify(s, from, to, 1000, 650, -64, CollisionLayer.ENEMY_LASER, CollisionLayer.PLAYER_LASER,
+					left, top, w, h, expected);
+			vector.classify(s, from, to, 1000, 650, -64, CollisionLayer.ENEMY_LASER, CollisionLayer.PLAYER_LASER,
+					left, top, w, h, actual);
+			assertArrayEquals("round "+round, expected, actual);
+		}
+	}
+
+	@Test
+	public void integrateMatchesScalar(){
+		Random r = new Random(6);
+		for(int round = 0; round<ROUNDS/10; round++){
+			int n = 1+r.nextInt(70);
+			EntityStore a = createStore(new Random(round), n);
+			EntityStore b = createStore(new Random(round), n);
+			int from = r.nextInt(n);
+			int to = from+r.nextInt(n-from+1);
+			scalar.integrate(a, from, to);
+			vector.integrate(b, from, to);
+			for(int i = 0; i<n; i++){
+				assertEquals("round "+round+" x", Double.doubleToRawLongBits(a.x[i]), Double.doubleToRawLongBits(b.x[i]));
+				assertEquals("round "+round+" y", Double.doubleToRawLongBits(a.y[i]), Double.doubleToRawLongBits(b.y[i]));
+				assertEquals("round "+round+" last x", Double.doubleToRawLongBits(a.lastX[i]), Double.doubleToRawLongBits(b.lastX[i]));
+				assertEquals("round "+round+" last y", Double.doubleToRawLongBits(a.lastY[i]), Double.doubleToRawLongBits(b.lastY[i]));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+package spaceblaster.model.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+import spaceblaster.model.WorldTest;
+
+/**
+ * A replay has to play back to exactly the world it was recorded from, through a file, from the
+ * start or from a keyframe it seeks to.
+ */
+public class ReplayTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static WorldBuilder builder;
+
+	@BeforeClass
+	public static void setUpBuilder(){
+		builder = WorldTest.createBuilder();
+	}
+
+	@Test
+	public void replayPlaysBackTheSame() throws IOException{
+		World w = builder.build(1000, 650, 1234L);
+		ReplayRecorder recorder = ReplayRecorder.record(w, null, 500);
+		WorldTest.play(w, new Random(7), 20000);
+		recorder.detach();
+		byte[] end = WorldTest.getState(w);
+		File file = new File(folder.getRoot(), "test"+Replay.EXTENSION);
+		recorder.getReplay().save(file);
+
+		Replay replay = Replay.load(file);
+		ReplayPlayer player = new ReplayPlayer(replay, builder);
+		assertEquals(-1, player.verify());
+		assertArrayEquals(end, WorldTest.getState(player.getWorld()));
+
+		player.seek(replay.getEndTick()-100);
+		player.playToEnd();
+		assertArrayEquals(end, WorldTest.getState(player.getWorld()));
+	}
+
+}
@@ -0,0 +1,87 @@
+package spaceblaster.model.save;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import spaceblaster.model.World;
+import spaceblaster.model.WorldBuilder;
+import spaceblaster.model.WorldTest;
+
+/**
+ * A restored save has to carry on exactly as the saved world does, and a damaged one has to be
+ * refused rather than restored.
+ */
+public class SaveFileTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static WorldBuilder builder;
+
+	@BeforeClass
+	public static void setUpBuilder(){
+		builder = WorldTest.createBuilder();
+	}
+
+	private File save(World w) throws IOException{
+		File file = new File(folder.getRoot(), "test"+SaveFile.EXTENSION);
+		SaveFile.capture(w, null, new ByteArrayOutputStream()).write(file);
+		return file;
+	}
+
+	@Test
+	public void restoredWorldCarriesOnTheSame() throws IOException{
+		World w = builder.build(1000, 650, 99L);
+		WorldTest.play(w, new Random(3), 4000);
+		SaveFile s = SaveFile.read(save(w));
+		assertEquals(w.getTickCount(), s.getTick());
+		assertEquals(w.getLevel(), s.getLevel());
+		assertEquals(w.getPlayer().getScore(), s.getScore());
+		World restored = s.restore(builder);
+		assertArrayEquals(WorldTest.getState(w), WorldTest.getState(restored));
+
+		// both worlds are given the same keys, one tick at a time since they share the builder's prototypes
+		Random r1 = new Random(5);
+		Random r2 = new Random(5);
+		for(int i = 0; i<3000; i++){
+			WorldTest.play(w, r1, 1);
+			WorldTest.play(restored, r2, 1);
+		}
+		assertArrayEquals(WorldTest.getState(w), WorldTest.getState(restored));
+	}
+
+	@Test
+	public void damagedSaveIsRefused() throws IOException{
+		World w = builder.build(1000, 650, 99L);
+		WorldTest.play(w, new Random(3), 500);
+		File file = save(w);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(raf.length()-10);
+			int b = raf.read();
+			raf.seek(raf.length()-10);
+			raf.write(b^0x5A);
+		} finally {
+			raf.close();
+		}
+		try {
+			SaveFile.read(file);
+			fail("Read a damaged save");
+		} catch (IOException e) {
+			assertEquals(file+" is damaged", e.getMessage());
+		}
+	}
+
+}
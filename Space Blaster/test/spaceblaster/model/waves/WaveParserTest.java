@@ -0,0 +1,83 @@
+package spaceblaster.model.waves;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import spaceblaster.model.WorldBuilder;
+
+/**
+ * The default waves have to compile, and every mistake in a wave definition has to be reported with
+ * the line it is on rather than build a broken table.
+ */
+public class WaveParserTest {
+
+	private static final String LASERS = "laser basic image=basicLaser damage=5 speed=2.0 angle=180\n";
+	private static final String ENEMIES = LASERS+"enemy basic kind=basic image=basicEnemy0 laser=basic\n";
+
+	private static WaveTable parse(String text) throws IOException{
+		return new WaveParser().parse(new ByteArrayInputStream(text.getBytes("UTF-8")), "test.waves");
+	}
+
+	private static void assertError(String text, String message){
+		try {
+			parse(text);
+			fail("Parsed "+text);
+		} catch (IOException e) {
+			assertEquals(message, e.getMessage());
+		}
+	}
+
+	@Test
+	public void defaultWavesCompile() throws IOException{
+		InputStream in = WaveParserTest.class.getResourceAsStream(WorldBuilder.DEFAULT_WAVES);
+		try {
+			WaveTable t = new WaveParser().parse(in, "default.waves");
+			assertEquals(2, t.getLaserCount());
+			assertEquals(2, t.getEnemyCount());
+			assertEquals(15, t.getLevelCount());
+			assertEquals(Math.PI, t.getLaserAngle(0), 1e-9);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void commentsAndBlankLinesAreSkipped() throws IOException{
+		WaveTable t = parse("# lasers\n\n"+ENEMIES+"   \nlevel 1 basic=5  # the first\n");
+		assertEquals(1, t.getLevelCount());
+	}
+
+	@Test
+	public void mistakesGiveTheirLine(){
+		assertError("bullet basic\n", "test.waves:1: unknown definition 'bullet'");
+		assertError("laser\n", "test.waves:1: laser needs a name");
+		assertError("laser basic image=basicLaser damage=5 speed=2.0\n", "test.waves:1: missing angle=");
+		assertError("laser basic image=basicLaser damage=five speed=2.0 angle=0\n", "test.waves:1: 'five' is not a number");
+		assertError("laser basic image=basicLaser damage=5 speed=NaN angle=0\n", "test.waves:1: 'NaN' is not a number");
+		assertError("laser basic image=basicLaser damage=5 speed=2.0 angle=0 colour=red\n", "test.waves:1: unknown property colour=");
+		assertError("laser basic image=basicLaser damage=5 speed=2.0 angle=0 red\n", "test.waves:1: expected <property>=<value>, not 'red'");
+		assertError(LASERS+LASERS, "test.waves:2: laser basic is already defined");
+		assertError(LASERS+"enemy basic kind=boss image=basicEnemy0 laser=basic\n", "test.waves:2: unknown kind of enemy 'boss'");
+		assertError(LASERS+"enemy basic kind=basic image=basicEnemy0 laser=heavy\n", "test.waves:2: unknown laser 'heavy'");
+		assertError(LASERS+"enemy basic kind=basic image=basicEnemy0 laser=basic health=1.5\n", "test.waves:2: '1.5' is not a whole number");
+		assertError(LASERS+"level 1\n", "test.waves:2: enemies must be defined before the levels");
+		assertError(ENEMIES+"level 1 basic=5\nenemy f250 kind=f250 image=f250Image0 laser=basic\n", "test.waves:4: enemies must be defined before the levels");
+		assertError(ENEMIES+"level 2 basic=5\n", "test.waves:3: expected level 1 next, not 2");
+		assertError(ENEMIES+"level 1 basic=5\nlevel 2-1 basic=+1\n", "test.waves:4: level range 2-1 is backwards");
+		assertError(ENEMIES+"level 1\n", "test.waves:3: level 1 must give a count for enemy basic");
+		assertError(ENEMIES+"level 1 basic=+5\n", "test.waves:3: level 1 must set the count of enemy basic rather than add to it");
+		assertError(ENEMIES+"level 1 boss=5\n", "test.waves:3: unknown enemy 'boss'");
+		assertError(ENEMIES+"level 1 basic=5 basic=6\n", "test.waves:3: enemy basic is given twice");
+		assertError(ENEMIES+"level 1 basic\n", "test.waves:3: expected <enemy>=<count>, not 'basic'");
+		assertError(ENEMIES+"level 1 basic=9..5\n", "test.waves:3: count range 9..5 is backwards");
+		assertError(ENEMIES+"level 1 basic=-5\n", "test.waves:3: count -5 must not be negative");
+		assertError(ENEMIES+"level 1 basic=5@0.5\n", "test.waves:3: frequency 0.5 must be at least 1 tick");
+	}
+
+}